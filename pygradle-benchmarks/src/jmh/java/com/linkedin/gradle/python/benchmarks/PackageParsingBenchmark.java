@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.benchmarks;
+
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.PythonAbiContainer;
+import com.linkedin.gradle.python.wheel.PythonWheelDetails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of package and wheel file names and matching of wheel tags.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PackageParsingBenchmark {
+
+    private static final File PYTHON_EXECUTABLE = new File("/venv/bin/python");
+
+    private final File sdist = new File("/cache/Sphinx-1.6.3.tar.gz");
+    private final File universalWheel = new File("/cache/Sphinx-1.6.3-py2.py3-none-any.whl");
+    private final File platformWheel = new File("/cache/numpy-1.16.4-cp27-cp27mu-manylinux1_x86_64.whl");
+    private final PythonAbiContainer supportedAbis = SyntheticWheelCache.supportedAbis(PYTHON_EXECUTABLE);
+
+    @Benchmark
+    public Optional<PythonWheelDetails> wheelDetailsFromUniversalWheel() {
+        return PythonWheelDetails.fromFile(universalWheel);
+    }
+
+    @Benchmark
+    public Optional<PythonWheelDetails> wheelDetailsFromPlatformWheel() {
+        return PythonWheelDetails.fromFile(platformWheel);
+    }
+
+    @Benchmark
+    public PackageInfo packageInfoFromSdist() {
+        return PackageInfo.fromPath(sdist);
+    }
+
+    @Benchmark
+    public PackageInfo packageInfoFromWheel() {
+        return PackageInfo.fromPath(universalWheel);
+    }
+
+    @Benchmark
+    public boolean matchesCompressedTags() {
+        return supportedAbis.matchesSupportedVersion(PYTHON_EXECUTABLE, "py2.py3", "none", "any");
+    }
+
+    @Benchmark
+    public boolean matchesPlatformTags() {
+        return supportedAbis.matchesSupportedVersion(PYTHON_EXECUTABLE, "cp27", "cp27mu", "manylinux1_x86_64");
+    }
+
+    @Benchmark
+    public boolean mismatchesPlatformTags() {
+        return supportedAbis.matchesSupportedVersion(PYTHON_EXECUTABLE, "cp37", "cp37m", "macosx_10_9_x86_64");
+    }
+}
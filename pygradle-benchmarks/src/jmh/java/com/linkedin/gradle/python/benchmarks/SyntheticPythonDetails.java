@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.benchmarks;
+
+import com.linkedin.gradle.python.extension.PythonDefaultVersions;
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.extension.PythonVersion;
+import com.linkedin.gradle.python.extension.VirtualEnvironment;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Python details of a virtual environment that is never created.
+ *
+ * <p>Wheel lookups only need the interpreter, and a Gradle project is too
+ * much to bootstrap in a forked benchmark JVM. The other details are fixed
+ * paths in the virtual environment, which is all a benchmark may ask for.</p>
+ */
+class SyntheticPythonDetails implements PythonDetails {
+
+    private final File virtualEnv;
+    private String virtualEnvPrompt;
+    private File activateLink;
+    private File systemPythonInterpreter = new File("/usr/bin/python2.7");
+    private PythonDefaultVersions defaultVersions = new PythonDefaultVersions();
+    private PythonVersion pythonVersion = new PythonVersion("2.7");
+
+    SyntheticPythonDetails(File virtualEnv) {
+        this.virtualEnv = virtualEnv;
+        this.virtualEnvPrompt = virtualEnv.getName();
+        this.activateLink = new File(virtualEnv, "bin/activate");
+    }
+
+    @Override
+    public String getVirtualEnvPrompt() {
+        return virtualEnvPrompt;
+    }
+
+    @Override
+    public void setVirtualEnvPrompt(String virtualEnvPrompt) {
+        this.virtualEnvPrompt = virtualEnvPrompt;
+    }
+
+    @Override
+    public File getVirtualEnv() {
+        return virtualEnv;
+    }
+
+    @Override
+    public File getVirtualEnvInterpreter() {
+        return new File(virtualEnv, "bin/python");
+    }
+
+    @Override
+    public File getSystemPythonInterpreter() {
+        return systemPythonInterpreter;
+    }
+
+    @Override
+    public File getActivateLink() {
+        return activateLink;
+    }
+
+    @Override
+    public void setActivateLink(File activateLink) {
+        this.activateLink = activateLink;
+    }
+
+    @Override
+    public void prependExecutableDirectory(File file) {
+        // The interpreter is never searched for.
+    }
+
+    @Override
+    public void appendExecutableDirectory(File file) {
+        // The interpreter is never searched for.
+    }
+
+    @Override
+    public void setPythonDefaultVersions(PythonDefaultVersions defaults) {
+        this.defaultVersions = defaults;
+    }
+
+    @Override
+    public void setPythonDefaultVersions(String defaultPython2, String defaultPython3, Collection<String> allowedVersions) {
+        this.defaultVersions = new PythonDefaultVersions(defaultPython2, defaultPython3, allowedVersions);
+    }
+
+    @Override
+    public PythonDefaultVersions getPythonDefaultVersions() {
+        return defaultVersions;
+    }
+
+    @Override
+    public void setPythonVersion(String version) {
+        this.pythonVersion = new PythonVersion(version);
+    }
+
+    @Override
+    public void setSystemPythonInterpreter(String path) {
+        this.systemPythonInterpreter = new File(path);
+    }
+
+    @Override
+    public PythonVersion getPythonVersion() {
+        return pythonVersion;
+    }
+
+    @Override
+    public VirtualEnvironment getVirtualEnvironment() {
+        return new SyntheticVirtualEnvironment(new File(virtualEnv, "bin"));
+    }
+
+    private static final class SyntheticVirtualEnvironment implements VirtualEnvironment {
+
+        private final File binDir;
+
+        private SyntheticVirtualEnvironment(File binDir) {
+            this.binDir = binDir;
+        }
+
+        @Override
+        public File getPip() {
+            return findExecutable("pip");
+        }
+
+        @Override
+        public File getPex() {
+            return findExecutable("pex");
+        }
+
+        @Override
+        public File getExecutable(String path) {
+            return findExecutable(path);
+        }
+
+        @Override
+        public File getScript(String path) {
+            return findExecutable(path);
+        }
+
+        @Override
+        public File findExecutable(String path) {
+            return new File(binDir, path);
+        }
+    }
+}
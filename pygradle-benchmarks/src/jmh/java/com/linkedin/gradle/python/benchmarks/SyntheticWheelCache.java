@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.benchmarks;
+
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.AbiDetails;
+import com.linkedin.gradle.python.wheel.PythonAbiContainer;
+import com.linkedin.gradle.python.wheel.internal.DefaultPythonAbiContainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A wheel cache directory filled with empty wheel files.
+ *
+ * <p>Every package version has a universal wheel and a manylinux wheel,
+ * so lookups have to rank the candidates like they do in real caches.</p>
+ */
+final class SyntheticWheelCache {
+
+    private static final String[] TAGS = {"py2.py3-none-any", "cp27-cp27mu-manylinux1_x86_64"};
+
+    private SyntheticWheelCache() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Creates the wheel files in the directory.
+     *
+     * @param cacheDir the directory to fill
+     * @param wheelCount the number of wheel files to create
+     * @return the package versions that have wheels in the directory
+     * @throws IOException when a wheel file cannot be created
+     */
+    static List<PackageInfo> create(File cacheDir, int wheelCount) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        List<PackageInfo> packages = new ArrayList<>();
+        for (int i = 0; i < wheelCount / TAGS.length; i++) {
+            String name = packageName(i);
+            String version = version(i);
+            for (String tag : TAGS) {
+                Files.createFile(new File(cacheDir, name + "-" + version + "-" + tag + ".whl").toPath());
+            }
+            packages.add(PackageInfo.fromPath(new File(cacheDir, name + "-" + version + ".tar.gz")));
+        }
+        return packages;
+    }
+
+    /**
+     * Gets the ABIs supported by the interpreter, as a CPython 2.7 on Linux would report them.
+     *
+     * @param pythonExecutable the interpreter
+     * @return the supported ABIs
+     */
+    static PythonAbiContainer supportedAbis(File pythonExecutable) {
+        DefaultPythonAbiContainer container = new DefaultPythonAbiContainer();
+        container.addSupportedAbi(new AbiDetails(pythonExecutable, "cp27", "cp27mu", "manylinux1_x86_64"));
+        container.addSupportedAbi(new AbiDetails(pythonExecutable, "cp27", "cp27mu", "linux_x86_64"));
+        container.addSupportedAbi(new AbiDetails(pythonExecutable, "cp27", "none", "any"));
+        container.addSupportedAbi(new AbiDetails(pythonExecutable, "py2", "none", "any"));
+        container.addSupportedAbi(new AbiDetails(pythonExecutable, "py27", "none", "any"));
+        return container;
+    }
+
+    private static String packageName(int index) {
+        return "package_" + index;
+    }
+
+    private static String version(int index) {
+        return "1." + (index % 7) + "." + (index % 3);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.benchmarks;
+
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.FileBackedWheelCache;
+import com.linkedin.gradle.python.wheel.LayeredWheelCache;
+import com.linkedin.gradle.python.wheel.PythonAbiContainer;
+import com.linkedin.gradle.python.wheel.WheelCacheLayer;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures wheel lookups in synthetic caches of 1k, 10k and 100k wheels.
+ *
+ * <p>The caches are indexed before the measurement, so the benchmarks show
+ * the cost of a lookup during a build. The lookup in a new cache shows the
+ * cost of the first lookup of a new daemon, which reads the manifest.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WheelCacheBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    private int wheelCount;
+
+    private File workDir;
+    private File hostLayerDir;
+    private PythonDetails pythonDetails;
+    private PythonAbiContainer supportedAbis;
+    private FileBackedWheelCache fileBackedWheelCache;
+    private LayeredWheelCache layeredWheelCache;
+    private List<PackageInfo> packages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("wheel-cache-benchmark").toFile();
+        hostLayerDir = new File(workDir, "host-layer");
+        File projectLayerDir = new File(workDir, "project-layer");
+        Files.createDirectories(projectLayerDir.toPath());
+        packages = SyntheticWheelCache.create(hostLayerDir, wheelCount);
+
+        pythonDetails = new SyntheticPythonDetails(new File(workDir, "venv"));
+        supportedAbis = SyntheticWheelCache.supportedAbis(pythonDetails.getVirtualEnvInterpreter());
+
+        Map<WheelCacheLayer, File> layers = new LinkedHashMap<>();
+        layers.put(WheelCacheLayer.PROJECT_LAYER, projectLayerDir);
+        layers.put(WheelCacheLayer.HOST_LAYER, hostLayerDir);
+        layeredWheelCache = new LayeredWheelCache(layers, supportedAbis);
+        fileBackedWheelCache = new FileBackedWheelCache(hostLayerDir, supportedAbis);
+
+        // Index both caches, so the measurement starts from a warm build.
+        PackageInfo first = packages.get(0);
+        fileBackedWheelCache.findWheel(first.getName(), first.getVersion(), pythonDetails);
+        layeredWheelCache.findWheel(first.getName(), first.getVersion(), pythonDetails);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    /**
+     * Walks through the packages, one per lookup and thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        PackageInfo next(List<PackageInfo> packages) {
+            next = (next + 1) % packages.size();
+            return packages.get(next);
+        }
+
+        List<PackageInfo> nextBatch(List<PackageInfo> packages) {
+            List<PackageInfo> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(next(packages));
+            }
+            return batch;
+        }
+    }
+
+    @Benchmark
+    public Optional<File> fileBackedHit(Cursor cursor) {
+        PackageInfo packageInfo = cursor.next(packages);
+        return fileBackedWheelCache.findWheel(packageInfo.getName(), packageInfo.getVersion(), pythonDetails);
+    }
+
+    @Benchmark
+    public Optional<File> fileBackedMiss(Cursor cursor) {
+        PackageInfo packageInfo = cursor.next(packages);
+        return fileBackedWheelCache.findWheel(packageInfo.getName(), "0.0.0", pythonDetails);
+    }
+
+    @Benchmark
+    public Optional<File> layeredHostLayerHit(Cursor cursor) {
+        PackageInfo packageInfo = cursor.next(packages);
+        return layeredWheelCache.findWheel(packageInfo.getName(), packageInfo.getVersion(), pythonDetails);
+    }
+
+    @Benchmark
+    public Map<PackageInfo, Optional<File>> layeredBatchOf100(Cursor cursor) {
+        return layeredWheelCache.findWheels(cursor.nextBatch(packages), pythonDetails);
+    }
+
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Optional<File> layeredHostLayerHitContended(Cursor cursor) {
+        PackageInfo packageInfo = cursor.next(packages);
+        return layeredWheelCache.findWheel(packageInfo.getName(), packageInfo.getVersion(), pythonDetails);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 20)
+    public Optional<File> newCacheFirstLookup(Cursor cursor) {
+        PackageInfo packageInfo = cursor.next(packages);
+        return new FileBackedWheelCache(hostLayerDir, supportedAbis)
+            .findWheel(packageInfo.getName(), packageInfo.getVersion(), pythonDetails);
+    }
+}
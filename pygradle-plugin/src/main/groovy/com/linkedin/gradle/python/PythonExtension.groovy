@@ -79,6 +79,30 @@ class PythonExtension {
         'wheel'         : ['group': 'pypi', 'name': 'wheel', 'version': '0.31.1'],
     ]
 
+    /**
+     * Run pip and setup.py commands, such as pip wheel, in a long-lived Python process per virtual environment.
+     *
+     * Saves starting the interpreter and importing pip for every command. The helper
+     * is restarted after each command that changes the virtual environment.
+     */
+    public boolean pythonHelper = false
+
+    /**
+     * Uninstall the packages no install task asks for any more before installing the requirements.
+     *
+     * Keeps the virtual environment in sync with the dependencies, instead of
+     * having to delete it when a dependency is dropped.
+     */
+    public boolean syncVirtualEnv = false
+
+    /**
+     * Copy the virtual environment from a template in the Gradle user home.
+     *
+     * The template has the setup requirements installed already. It is made once
+     * per interpreter, virtualenv and setup requirements, for all the projects of the host.
+     */
+    public boolean virtualEnvTemplates = false
+
     /* Container of the details related to the venv/python instance */
     private final PythonDetails details
 
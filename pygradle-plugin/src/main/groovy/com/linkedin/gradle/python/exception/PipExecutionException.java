@@ -46,6 +46,13 @@ public class PipExecutionException extends GradleException {
         return new PipExecutionException(body, pipText);
     }
 
+    public static PipExecutionException failedUninstall(List<String> packageNames, String pipText) {
+        String body = String.format("Failed to uninstall %s. "
+            + "Please see above output for reason, or re-run your build using "
+            + "``gradle -i build`` for additional logging.", String.join(", ", packageNames));
+        return new PipExecutionException(body, pipText);
+    }
+
     public static PipExecutionException unsupportedPythonVersion(PackageInfo packageInfo, List<String> supportedVersions) {
         String message = String.format("Package %s works only with Python versions: %s", packageInfo.getName(), supportedVersions);
         return new PipExecutionException(message, message);
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.extension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Python versions the pythonMatrix task tests the project with, besides the one of the project.
+ *
+ * <pre>
+ * python {
+ *     matrix {
+ *         versions = ['3.6', '3.7', '3.8']
+ *     }
+ * }
+ * </pre>
+ */
+public class MatrixExtension {
+    private List<String> versions = new ArrayList<>();
+    private boolean buildWheels = true;
+
+    /**
+     * @return the Python versions, such as 3.7, each tested in a virtual environment of its own
+     */
+    public List<String> getVersions() {
+        return versions;
+    }
+
+    public void setVersions(List<String> versions) {
+        this.versions = versions;
+    }
+
+    /**
+     * @return true to build the wheels of the project and its dependencies for every version too
+     */
+    public boolean isBuildWheels() {
+        return buildWheels;
+    }
+
+    public void setBuildWheels(boolean buildWheels) {
+        this.buildWheels = buildWheels;
+    }
+}
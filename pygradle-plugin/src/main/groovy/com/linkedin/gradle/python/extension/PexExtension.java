@@ -39,6 +39,7 @@ public class PexExtension implements ApplicationContainer {
 
     private File cache;
     private boolean pythonWrapper = true;
+    private boolean nativeAssembler = false;
     private Project project;
 
     public PexExtension(Project project) {
@@ -67,6 +68,19 @@ public class PexExtension implements ApplicationContainer {
         this.pythonWrapper = pythonWrapper;
     }
 
+    /**
+     * When true, the pex files are written from the wheel cache by the plugin, without running pex.
+     *
+     * @return should assemble the pex files natively
+     */
+    public boolean isNativeAssembler() {
+        return nativeAssembler;
+    }
+
+    public void setNativeAssembler(boolean nativeAssembler) {
+        this.nativeAssembler = nativeAssembler;
+    }
+
     public File getCache() {
         return cache;
     }
@@ -45,6 +45,23 @@ public class PythonDetailsFactory {
         return nextDetails;
     }
 
+    /**
+     * Make a new PythonDetails for another Python version, with its own venv
+     *
+     * @param project the project
+     * @param fromDetails the details of the project, for the default versions
+     * @param version the Python version, such as 3.7
+     * @param venv the venv directory
+     * @return the details
+     */
+    public static PythonDetails withPythonVersion(Project project, PythonDetails fromDetails, String version, File venv) {
+        DefaultPythonDetails nextDetails = new DefaultPythonDetails(project, venv);
+        nextDetails.setPythonDefaultVersions(fromDetails.getPythonDefaultVersions());
+        nextDetails.setVirtualEnvPrompt(String.format("(%s-py%s)", project.getName(), version));
+        nextDetails.setPythonVersion(version);
+        return nextDetails;
+    }
+
     /**
      * @return The name of the "exec" dir
      */
@@ -15,13 +15,10 @@
  */
 package com.linkedin.gradle.python.extension;
 
-import org.gradle.api.GradleException;
+import com.linkedin.gradle.python.util.internal.InterpreterMetadata;
 import org.gradle.api.Project;
-import org.gradle.process.ExecResult;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.Collections;
 
 public class PythonVersionParser {
 
@@ -29,23 +26,14 @@ public class PythonVersionParser {
         // noop
     }
 
+    /**
+     * Gets the version of the interpreter, from the interpreter metadata the builds of the host share.
+     *
+     * @param project the project using the interpreter
+     * @param pythonInterpreter the Python interpreter
+     * @return the version of the interpreter
+     */
     public static PythonVersion parsePythonVersion(final Project project, final File pythonInterpreter) {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        ExecResult execResult = project.exec(execSpec -> {
-            execSpec.setExecutable(pythonInterpreter.getAbsolutePath());
-            execSpec.setArgs(Collections.singletonList("--version"));
-            execSpec.setStandardOutput(outputStream);
-            execSpec.setErrorOutput(outputStream);
-            execSpec.setIgnoreExitValue(true);
-        });
-
-        String output = outputStream.toString();
-        if (execResult.getExitValue() != 0) {
-            throw new GradleException(output);
-        }
-
-        String versionString = output.trim().split(" ")[1];
-        return new PythonVersion(versionString);
+        return new PythonVersion(InterpreterMetadata.forInterpreter(project, pythonInterpreter).getVersion());
     }
 }
@@ -16,18 +16,21 @@
 package com.linkedin.gradle.python.plugin;
 
 import com.linkedin.gradle.python.extension.WheelExtension;
+import com.linkedin.gradle.python.tasks.CleanWheelCacheTask;
 import com.linkedin.gradle.python.tasks.LayeredWheelCacheTask;
 import com.linkedin.gradle.python.tasks.provides.ProvidesVenv;
 import com.linkedin.gradle.python.tasks.supports.SupportsWheelCache;
 import com.linkedin.gradle.python.util.ExtensionUtils;
 import com.linkedin.gradle.python.wheel.EditablePythonAbiContainer;
 import com.linkedin.gradle.python.wheel.LayeredWheelCache;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheCleaner;
 
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.TaskContainer;
 
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_FLAKE;
+import static com.linkedin.gradle.python.util.StandardTextValues.TASK_PYTHON_MATRIX;
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_VENV_CREATE;
 
 
@@ -50,6 +53,24 @@ public class LayeredWheelCachePlugin implements Plugin<Project> {
         tasks.create(LayeredWheelCacheTask.TASK_LAYERED_WHEEL_CACHE, LayeredWheelCacheTask.class, task -> {
             tasks.getByName(TASK_VENV_CREATE.getValue()).dependsOn(task);
             tasks.getByName(TASK_FLAKE.getValue()).dependsOn(task);
+            tasks.getByName(TASK_PYTHON_MATRIX.getValue()).dependsOn(task);
         });
+
+        tasks.create(CleanWheelCacheTask.TASK_CLEAN_WHEEL_CACHE, CleanWheelCacheTask.class);
+
+        project.afterEvaluate(it -> wheelExtension.getRemoteWheelCacheClient().ifPresent(client ->
+            wheelCache.setRemoteWheelCache(client, wheelExtension.isRemoteWheelCachePush())));
+
+        // Uploads to the remote layer run in the background and should not be cut short by the end of the build.
+        project.getGradle().buildFinished(result -> wheelCache.awaitRemotePushes());
+
+        /*
+         * Keep the host layer within its budget without making the build wait.
+         * Every project registers this, but a cache directory is cleaned
+         * at most once an hour.
+         */
+        project.getGradle().buildFinished(result -> wheelExtension.getHostLayerWheelCache().ifPresent(cacheDir ->
+            new WheelCacheCleaner(cacheDir, wheelExtension.getHostLayerWheelCacheMaxSize(), wheelExtension.getHostLayerWheelCacheMaxAge())
+                .cleanInBackground()));
     }
 }
@@ -17,6 +17,7 @@ package com.linkedin.gradle.python.plugin.internal;
 
 import com.linkedin.gradle.python.PythonExtension;
 import com.linkedin.gradle.python.tasks.PipInstallTask;
+import com.linkedin.gradle.python.tasks.SyncVirtualEnvironmentTask;
 import com.linkedin.gradle.python.util.ExtensionUtils;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -33,6 +34,7 @@ import static com.linkedin.gradle.python.util.StandardTextValues.TASK_INSTALL_PY
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_INSTALL_SETUP_REQS;
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_INSTALL_TEST_REQS;
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_SETUP_LINKS;
+import static com.linkedin.gradle.python.util.StandardTextValues.TASK_SYNC_VENV;
 
 public class InstallDependenciesPlugin implements Plugin<Project> {
 
@@ -57,6 +59,18 @@ public class InstallDependenciesPlugin implements Plugin<Project> {
             it.setSorted(false);
         });
 
+        /*
+         * Uninstall the packages that are no longer required from the virtualenv.
+         *
+         * Only runs when the python extension asks for it. It runs before the other requirements are installed,
+         * so they are installed over a virtualenv holding none of the packages the product dropped.
+         */
+        project.getTasks().create(TASK_SYNC_VENV.getValue(), SyncVirtualEnvironmentTask.class, it -> {
+            it.setPythonDetails(settings.getDetails());
+            it.dependsOn(project.getTasks().getByName(TASK_INSTALL_SETUP_REQS.getValue()));
+            it.onlyIf(task -> settings.syncVirtualEnv);
+        });
+
         /*
          * Install build requirements into virtualenv.
          *
@@ -64,7 +78,7 @@ public class InstallDependenciesPlugin implements Plugin<Project> {
          */
         project.getTasks().create(TASK_INSTALL_BUILD_REQS.getValue(), PipInstallTask.class, it -> {
             it.setPythonDetails(settings.getDetails());
-            it.dependsOn(project.getTasks().getByName(TASK_INSTALL_SETUP_REQS.getValue()));
+            it.dependsOn(project.getTasks().getByName(TASK_SYNC_VENV.getValue()));
             it.setArgs(Collections.singletonList(PIP_UPGRADE));
             it.setInstallFileCollection(project.getConfigurations().getByName(CONFIGURATION_BUILD_REQS.getValue()));
         });
@@ -18,6 +18,7 @@ package com.linkedin.gradle.python.plugin.internal;
 import com.linkedin.gradle.python.PythonExtension;
 import com.linkedin.gradle.python.extension.BlackExtension;
 import com.linkedin.gradle.python.extension.IsortExtension;
+import com.linkedin.gradle.python.extension.MatrixExtension;
 import com.linkedin.gradle.python.extension.MypyExtension;
 import com.linkedin.gradle.python.extension.CoverageExtension;
 import com.linkedin.gradle.python.tasks.AbstractPythonMainSourceDefaultTask;
@@ -29,6 +30,7 @@ import com.linkedin.gradle.python.tasks.MypyTask;
 import com.linkedin.gradle.python.tasks.IsortTask;
 import com.linkedin.gradle.python.tasks.PyCoverageTask;
 import com.linkedin.gradle.python.tasks.PyTestTask;
+import com.linkedin.gradle.python.tasks.PythonMatrixTask;
 import com.linkedin.gradle.python.util.ExtensionUtils;
 import java.util.function.BiPredicate;
 import org.gradle.api.Plugin;
@@ -46,6 +48,7 @@ import static com.linkedin.gradle.python.util.StandardTextValues.TASK_INSTALL_PR
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_MYPY;
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_ISORT;
 import static com.linkedin.gradle.python.util.StandardTextValues.TASK_PYTEST;
+import static com.linkedin.gradle.python.util.StandardTextValues.TASK_PYTHON_MATRIX;
 
 public class ValidationPlugin implements Plugin<Project> {
     private final static Logger LOG = Logging.getLogger(ValidationPlugin.class);
@@ -94,6 +97,19 @@ public class ValidationPlugin implements Plugin<Project> {
         project.getTasks().getByName(TASK_CHECK.getValue())
             .dependsOn(project.getTasks().getByName(TASK_PYTEST.getValue()));
 
+        /*
+         * Run the tests, and build the wheels, with every Python version of the matrix.
+         *
+         * The versions run at the same time, each in a virtual environment of its own.
+         */
+        MatrixExtension matrix = ExtensionUtils.maybeCreate(project, "matrix", MatrixExtension.class);
+        project.getTasks().create(TASK_PYTHON_MATRIX.getValue(), PythonMatrixTask.class,
+            task -> task.onlyIf(it -> !matrix.getVersions().isEmpty()));
+
+        // Make task "check" depend on the matrix task.
+        project.getTasks().getByName(TASK_CHECK.getValue())
+            .dependsOn(project.getTasks().getByName(TASK_PYTHON_MATRIX.getValue()));
+
         /*
          * Run coverage using py.test.
          *
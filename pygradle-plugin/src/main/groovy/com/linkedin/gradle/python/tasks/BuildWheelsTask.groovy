@@ -19,6 +19,7 @@ import com.linkedin.gradle.python.PythonExtension
 import com.linkedin.gradle.python.exception.PipExecutionException
 import com.linkedin.gradle.python.extension.PythonDetails
 import com.linkedin.gradle.python.extension.WheelExtension
+import com.linkedin.gradle.python.tasks.action.pip.CachedWheelsReport
 import com.linkedin.gradle.python.tasks.action.pip.PipWheelAction
 import com.linkedin.gradle.python.tasks.exec.ExternalExec
 import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec
@@ -35,6 +36,7 @@ import com.linkedin.gradle.python.util.PackageSettings
 import com.linkedin.gradle.python.util.internal.TaskTimer
 import com.linkedin.gradle.python.wheel.EmptyWheelCache
 import com.linkedin.gradle.python.wheel.WheelCache
+import com.linkedin.gradle.python.wheel.internal.WheelBuildPermits
 import org.gradle.api.DefaultTask
 import org.gradle.api.Project
 import org.gradle.api.file.FileCollection
@@ -47,6 +49,12 @@ import org.gradle.api.tasks.TaskAction
 import org.gradle.internal.logging.progress.ProgressLogger
 import org.gradle.internal.logging.progress.ProgressLoggerFactory
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+
 class BuildWheelsTask extends DefaultTask implements SupportsWheelCache, SupportsPackageInfoSettings,
     FailureReasonProvider, SupportsPackageFiltering {
 
@@ -77,6 +85,13 @@ class BuildWheelsTask extends DefaultTask implements SupportsWheelCache, Support
 
     String lastInstallMessage = null
 
+    /**
+     * The number of wheels built at the same time, Gradle's max workers by default.
+     * The wheel builds of all the projects together stay within max workers either way.
+     */
+    @Internal
+    int maxParallelWheelBuilds = project.gradle.startParameter.maxWorkerCount
+
     @TaskAction
     void buildWheelsTask() {
         /*
@@ -103,6 +118,10 @@ class BuildWheelsTask extends DefaultTask implements SupportsWheelCache, Support
         return details
     }
 
+    void setPythonDetails(PythonDetails pythonDetails) {
+        this.details = pythonDetails
+    }
+
     @Input
     PythonExtension getPythonExtension() {
         if (null == pythonExtension) {
@@ -136,24 +155,67 @@ class BuildWheelsTask extends DefaultTask implements SupportsWheelCache, Support
         def wheelAction = new PipWheelAction(packageSettings, project, externalExec, baseEnvironment,
             pythonDetails, wheelCache, environmentMerger, wheelExtension, packageExcludeFilter)
 
+        CachedWheelsReport.report(installables, pythonDetails, wheelCache, packageSettings, packageExcludeFilter)
+
         def taskTimer = new TaskTimer()
 
-        int counter = 0
+        /*
+         * Wheels are built with --no-deps, so the builds do not depend on
+         * each other and can run at the same time. The pool takes them in
+         * dependency order. Once a build fails, no new build is started.
+         */
+        def counter = new AtomicInteger()
         def numberOfInstallables = installables.size()
-        installables.each { File installable ->
-            def packageInfo = PackageInfo.fromPath(installable)
-            def shortHand = packageInfo.toShortHand()
-
-            def clock = taskTimer.start(shortHand)
-            progressLogger.progress("Preparing wheel $shortHand (${++counter} of $numberOfInstallables)")
-
-            try {
-                wheelAction.execute(packageInfo, args)
-            } catch (PipExecutionException e) {
-                lastInstallMessage = e.pipText
-                throw e
+        def failures = new ConcurrentLinkedQueue<PipExecutionException>()
+        // The permits keep the wheel builds of all the projects within --max-workers.
+        def permits = WheelBuildPermits.forBuild(project.gradle)
+        def executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallelWheelBuilds, numberOfInstallables)))
+
+        try {
+            def builds = installables.collect { File installable ->
+                executor.submit({
+                    if (!failures.isEmpty()) {
+                        return
+                    }
+
+                    def packageInfo = PackageInfo.fromPath(installable)
+                    def shortHand = packageInfo.toShortHand()
+
+                    def clock = taskTimer.start(shortHand)
+                    synchronized (progressLogger) {
+                        progressLogger.progress("Preparing wheel $shortHand (${counter.incrementAndGet()} of $numberOfInstallables)")
+                    }
+
+                    // The Groovy form of try-with-resources, the permit is released however the build ends.
+                    boolean built = permits.acquire().withCloseable {
+                        try {
+                            wheelAction.execute(packageInfo, args)
+                            return true
+                        } catch (PipExecutionException e) {
+                            failures << e
+                            return false
+                        }
+                    }
+                    if (built) {
+                        clock.stop()
+                    }
+                } as Runnable)
             }
-            clock.stop()
+
+            builds.each { Future<?> build ->
+                try {
+                    build.get()
+                } catch (ExecutionException e) {
+                    throw e.cause
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        if (!failures.isEmpty()) {
+            lastInstallMessage = failures.collect { it.pipText }.join('\n')
+            throw failures.peek()
         }
 
         progressLogger.completed()
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks;
+
+import com.linkedin.gradle.python.extension.WheelExtension;
+import com.linkedin.gradle.python.util.ExtensionUtils;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheCleaner;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+
+/**
+ * Removes the least recently used wheels from the host layer wheel cache
+ * until it is within the size and age budget set in the wheel extension.
+ */
+public class CleanWheelCacheTask extends DefaultTask {
+    public static final String TASK_CLEAN_WHEEL_CACHE = "cleanWheelCache";
+
+    @TaskAction
+    public void cleanWheelCache() throws IOException {
+        WheelExtension wheelExtension = ExtensionUtils.getPythonComponentExtension(getProject(), WheelExtension.class);
+        LayeredWheelCacheTask layeredWheelCacheTask = (LayeredWheelCacheTask) getProject().getTasks()
+            .getByName(LayeredWheelCacheTask.TASK_LAYERED_WHEEL_CACHE);
+        File cacheDir = layeredWheelCacheTask.getHostLayerWheelCache();
+
+        WheelCacheCleaner cleaner = new WheelCacheCleaner(cacheDir,
+            wheelExtension.getHostLayerWheelCacheMaxSize(), wheelExtension.getHostLayerWheelCacheMaxAge());
+
+        if (!cleaner.hasBudget()) {
+            getLogger().lifecycle("No size or age budget is set for {}, nothing to clean", cacheDir);
+            return;
+        }
+
+        if (!cacheDir.isDirectory()) {
+            return;
+        }
+
+        Optional<WheelCacheCleaner.Result> result = cleaner.clean();
+        if (result.isPresent()) {
+            getLogger().lifecycle("Removed {} wheels ({} bytes) from {}, {} bytes remain",
+                result.get().getRemovedWheels(), result.get().getRemovedBytes(), cacheDir, result.get().getRemainingBytes());
+        } else {
+            getLogger().lifecycle("Another build is cleaning {}", cacheDir);
+        }
+    }
+}
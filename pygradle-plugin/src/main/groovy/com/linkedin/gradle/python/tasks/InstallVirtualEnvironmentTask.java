@@ -15,16 +15,23 @@
  */
 package com.linkedin.gradle.python.tasks;
 
+import com.linkedin.gradle.python.PythonExtension;
 import com.linkedin.gradle.python.extension.PythonDetails;
 import com.linkedin.gradle.python.tasks.action.CreateVirtualEnvAction;
+import com.linkedin.gradle.python.tasks.action.ProbeVenvInfoAction;
+import com.linkedin.gradle.python.tasks.action.VirtualEnvBootstrapCache;
 import com.linkedin.gradle.python.tasks.action.VirtualEnvCustomizer;
+import com.linkedin.gradle.python.tasks.action.VirtualEnvTemplate;
 import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec;
 import com.linkedin.gradle.python.tasks.execution.FailureReasonProvider;
 import com.linkedin.gradle.python.tasks.execution.TeeOutputContainer;
 import com.linkedin.gradle.python.tasks.provides.ProvidesVenv;
 import com.linkedin.gradle.python.tasks.supports.SupportsDistutilsCfg;
+import com.linkedin.gradle.python.util.ExtensionUtils;
+import com.linkedin.gradle.python.util.OperatingSystem;
 import com.linkedin.gradle.python.wheel.EditablePythonAbiContainer;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
@@ -33,6 +40,9 @@ import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
+import java.util.Collection;
+
+import static com.linkedin.gradle.python.util.StandardTextValues.CONFIGURATION_SETUP_REQS;
 
 public class InstallVirtualEnvironmentTask extends DefaultTask implements FailureReasonProvider, SupportsDistutilsCfg,
     ProvidesVenv {
@@ -54,8 +64,33 @@ public class InstallVirtualEnvironmentTask extends DefaultTask implements Failur
 
     @TaskAction
     public void installVEnv() {
-        CreateVirtualEnvAction action = new CreateVirtualEnvAction(getProject(), pythonDetails, editablePythonAbiContainer);
-        action.buildVenv(new VirtualEnvCustomizer(distutilsCfg, new ProjectExternalExec(getProject()), pythonDetails));
+        buildVenv(getProject(), pythonDetails, editablePythonAbiContainer, distutilsCfg, ProbeVenvInfoAction.defaultProbeDir(getProject()));
+    }
+
+    /*
+     * Shared with the tasks making virtual environments of their own, such as PythonMatrixTask.
+     * Each virtual environment built at the same time needs a probe directory of its own.
+     */
+    static void buildVenv(Project project, PythonDetails pythonDetails, EditablePythonAbiContainer editablePythonAbiContainer,
+                          String distutilsCfg, File probeDir) {
+        CreateVirtualEnvAction action = new CreateVirtualEnvAction(project, pythonDetails, editablePythonAbiContainer);
+        action.setProbeDir(probeDir);
+        VirtualEnvCustomizer customizer = new VirtualEnvCustomizer(distutilsCfg, new ProjectExternalExec(project), pythonDetails);
+        File bootstrapDir = new File(project.getGradle().getGradleUserHomeDir(), "pygradle/virtualenv-bootstrap");
+        action.setBootstrapCache(new VirtualEnvBootstrapCache(bootstrapDir, distutilsCfg));
+
+        // The templates are copied with their paths rewritten, which the Windows launchers do not allow.
+        PythonExtension settings = ExtensionUtils.getPythonExtension(project);
+        if (settings.virtualEnvTemplates && !OperatingSystem.current().isWindows()) {
+            Collection<File> setupRequirements = project.getConfigurations().getByName(CONFIGURATION_SETUP_REQS.getValue()).getFiles();
+            Collection<File> bootstrap = project.getConfigurations().getByName("pygradleBootstrap").getFiles();
+            String key = VirtualEnvTemplate.key(pythonDetails, distutilsCfg, bootstrap, setupRequirements);
+            File templatesDir = new File(project.getGradle().getGradleUserHomeDir(), "pygradle/venv-templates");
+            VirtualEnvTemplate.removeUnused(templatesDir);
+            action.buildVenv(customizer, new VirtualEnvTemplate(templatesDir, key), setupRequirements);
+        } else {
+            action.buildVenv(customizer);
+        }
     }
 
     @Override
@@ -23,7 +23,14 @@ import com.linkedin.gradle.python.tasks.supports.SupportsPackageInfoSettings;
 import com.linkedin.gradle.python.util.PackageInfo;
 import com.linkedin.gradle.python.util.PackageSettings;
 import com.linkedin.gradle.python.util.internal.TaskTimer;
+import com.linkedin.gradle.python.util.internal.VenvState;
 import com.linkedin.gradle.python.wheel.WheelCache;
+import com.linkedin.gradle.python.wheel.WheelCacheLock;
+import com.linkedin.gradle.python.wheel.internal.InFlightWheelBuilds;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildLock;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildPermits;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildTimes;
+import com.linkedin.gradle.python.wheel.internal.WheelFiles;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.artifacts.Configuration;
@@ -45,13 +52,20 @@ import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -76,13 +90,6 @@ public class ParallelWheelGenerationTask extends DefaultTask implements Supports
 
     public ParallelWheelGenerationTask() {
         onlyIf(task -> {
-            ByteArrayOutputStream stdOut = new ByteArrayOutputStream();
-            getProject().exec(execSpec -> {
-                execSpec.setExecutable(getPythonDetails().getVirtualEnvInterpreter());
-                execSpec.args(getPythonDetails().getVirtualEnvironment().getPip(), "freeze", "--all");
-                execSpec.setStandardOutput(stdOut);
-            });
-
             Configuration requiredDependencies = getProject().getConfigurations()
                 .getByName(CONFIGURATION_SETUP_REQS.getValue());
 
@@ -90,8 +97,8 @@ public class ParallelWheelGenerationTask extends DefaultTask implements Supports
                 .flatMap(it -> Stream.of(it.getName(), it.getName().replace("-", "_")))
                 .collect(Collectors.toSet());
 
-            Set<String> extraDependencies = Arrays.stream(stdOut.toString().trim().split(System.lineSeparator()))
-                .filter(it -> it.contains("==")).map(it -> it.split("==")[0])
+            // Read from the package metadata, which is what pip freeze --all lists too.
+            Set<String> extraDependencies = VenvState.of(getPythonDetails()).getPackages().keySet().stream()
                 .filter(it -> !setupRequiresDependencies.contains(it))
                 .collect(Collectors.toSet());
 
@@ -114,34 +121,70 @@ public class ParallelWheelGenerationTask extends DefaultTask implements Supports
 
         TaskTimer taskTimer = new TaskTimer();
 
-        // This way we don't try to over-alloc the system to much. We'll use slightly over 1/2 of the machine to build
-        // the wheels in parallel. Allowing other operations to continue.
-        ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors() / 2 + 1);
+        List<PackageInfo> packages = getFilesToConvert().getFiles().stream()
+            .map(PackageInfo::fromPath)
+            .filter(this::needsWheel)
+            .collect(Collectors.toList());
+
+        // Look up all the wheels at once, so only the missing ones go to the pool.
+        Map<PackageInfo, Optional<File>> cachedWheels = wheelCache.findWheels(packages, getPythonDetails());
+        List<PackageInfo> missingWheels = new ArrayList<>();
+        cachedWheels.forEach((packageInfo, wheel) -> {
+            if (wheel.isPresent()) {
+                if (PythonHelpers.isPlainOrVerbose(getProject())) {
+                    logger.lifecycle("Wheel for {}-{} was found: {}", packageInfo.getName(), packageInfo.getVersion(), wheel.get());
+                }
+            } else {
+                missingWheels.add(packageInfo);
+            }
+        });
+
+        logger.info("Found {} of {} wheels in the cache, building {}",
+            packages.size() - missingWheels.size(), packages.size(), missingWheels.size());
 
-        Set<File> files = getFilesToConvert().getFiles();
-        int totalSize = files.size();
+        int totalSize = missingWheels.size();
+
+        // The longest builds go first, so they do not start last and hold up the task.
+        WheelBuildTimes buildTimes = new WheelBuildTimes(cacheDir, getPythonDetails().getPythonVersion().getPythonMajorMinor());
+        List<PackageInfo> scheduledWheels = buildTimes.schedule(missingWheels);
+
+        /*
+         * The permits are shared with the other projects of the build, so all
+         * of them together build at most --max-workers wheels at the same time.
+         */
+        WheelBuildPermits permits = WheelBuildPermits.forBuild(getProject().getGradle());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(permits.getSize(), totalSize)));
 
         try {
-            forkJoinPool.submit(() -> {
-                files.stream().parallel().forEach(file -> {
-
-                    PackageInfo packageInfo = PackageInfo.fromPath(file);
-                    currentPackages.add(packageInfo.getName());
-                    counter.incrementAndGet();
-                    updateStatusLine(progressLogger, totalSize, counter.get());
-                    TaskTimer.TickingClock clock = taskTimer.start(packageInfo.getName() + "-" + packageInfo.getVersion());
-                    if (!packageSettings.requiresSourceBuild(packageInfo)) {
-                        makeWheelFromSdist(packageInfo);
-                    }
-                    currentPackages.remove(packageInfo.getName());
-                    updateStatusLine(progressLogger, totalSize, counter.get());
-                    clock.stop();
-                });
-            }).get();
-        } catch (InterruptedException | ExecutionException e) {
+            List<Future<?>> builds = scheduledWheels.stream().map(packageInfo -> executor.submit(() -> {
+                currentPackages.add(packageInfo.getName());
+                counter.incrementAndGet();
+                updateStatusLine(progressLogger, totalSize, counter.get());
+                TaskTimer.TickingClock clock = taskTimer.start(packageInfo.getName() + "-" + packageInfo.getVersion());
+                makeWheelFromSdist(packageInfo, buildTimes, permits);
+                currentPackages.remove(packageInfo.getName());
+                updateStatusLine(progressLogger, totalSize, counter.get());
+                clock.stop();
+            })).collect(Collectors.toList());
+
+            boolean failed = false;
+            for (Future<?> build : builds) {
+                try {
+                    build.get();
+                } catch (ExecutionException e) {
+                    logger.info("Unable to pre-build a dependency", e.getCause());
+                    failed = true;
+                }
+            }
+            if (failed) {
+                logger.warn("Unable to pre-build some dependencies");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             logger.warn("Unable to pre-build some dependencies");
         } finally {
-            forkJoinPool.shutdown();
+            executor.shutdownNow();
+            buildTimes.save();
         }
 
         try {
@@ -152,19 +195,53 @@ public class ParallelWheelGenerationTask extends DefaultTask implements Supports
         progressLogger.completed();
     }
 
-    private void makeWheelFromSdist(PackageInfo packageInfo) {
-
-        if (packageInfo.getPackageFile().getName().endsWith(".whl")) {
-            return;
+    private boolean needsWheel(PackageInfo packageInfo) {
+        if (packageSettings.requiresSourceBuild(packageInfo) || packageInfo.getPackageFile().getName().endsWith(".whl")) {
+            return false;
         }
 
         if (packageFilter != null && packageFilter.isSatisfiedBy(packageInfo)) {
             if (PythonHelpers.isPlainOrVerbose(getProject())) {
                 logger.lifecycle("Skipping building {} wheel - Excluded", packageInfo.toShortHand());
             }
-            return;
+            return false;
+        }
+
+        return true;
+    }
+
+    private void makeWheelFromSdist(PackageInfo packageInfo, WheelBuildTimes buildTimes, WheelBuildPermits permits) {
+        /*
+         * Other projects of the build and other builds on the host share the
+         * cache directory. Wait for any of them building the same wheel, and
+         * build it only if they did not build one for this interpreter. No
+         * permit is held while waiting, so the waits do not keep the other
+         * projects from building.
+         */
+        String pythonVersion = getPythonDetails().getPythonVersion().getPythonMajorMinor();
+        try (InFlightWheelBuilds.Registration build = InFlightWheelBuilds.register(packageInfo.getName(), packageInfo.getVersion(), pythonVersion)) {
+            if (!build.isOwner()) {
+                build.await();
+                if (findCachedWheel(packageInfo)) {
+                    return;
+                }
+            }
+
+            try (WheelCacheLock ignored = WheelBuildLock.acquire(cacheDir, packageInfo.getName(), packageInfo.getVersion(), pythonVersion)) {
+                if (!findCachedWheel(packageInfo)) {
+                    try (WheelBuildPermits.Permit permit = permits.acquire()) {
+                        long startedAt = System.currentTimeMillis();
+                        if (buildWheel(packageInfo)) {
+                            buildTimes.record(packageInfo, System.currentTimeMillis() - startedAt);
+                        }
+                    }
+                }
+            }
+            build.complete(wheelCache.findWheel(packageInfo.getName(), packageInfo.getVersion(), getPythonDetails()));
         }
+    }
 
+    private boolean findCachedWheel(PackageInfo packageInfo) {
         Optional<File> cachedWheel = wheelCache.findWheel(
             packageInfo.getName(),
             packageInfo.getVersion(),
@@ -175,34 +252,71 @@ public class ParallelWheelGenerationTask extends DefaultTask implements Supports
                 logger.lifecycle("Wheel for {}-{} was found: {}",
                     packageInfo.getName(), packageInfo.getVersion(), cachedWheel.get());
             }
-            return;
+            return true;
         }
+        return false;
+    }
 
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        ExecResult results = getProject().exec(exec -> {
-            exec.commandLine(getPythonDetails().getVirtualEnvInterpreter(),
-                getPythonDetails().getVirtualEnvironment().getPip(),
-                "wheel",
-                "--disable-pip-version-check",
-                "--wheel-dir", cacheDir,
-                "--no-deps",
-                packageInfo.getPackageFile().getAbsoluteFile().getAbsolutePath());
-            exec.setStandardOutput(stream);
-            exec.setErrorOutput(stream);
-            exec.setIgnoreExitValue(true);
-        });
+    /*
+     * The wheel is built into a private directory and then published into
+     * the shared one atomically, so other builds never see a partial wheel.
+     */
+    private boolean buildWheel(PackageInfo packageInfo) {
+        File buildDir;
+        try {
+            buildDir = Files.createTempDirectory(cacheDir.toPath(), ".build").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-        if (results.getExitValue() != 0) {
-            logger.info("Unable to build wheel for {}-{}", packageInfo.getName(), packageInfo.getVersion());
-            File resultDir = new File(getProject().getBuildDir(), getName() + "-" + packageInfo.getName() + "-" + packageInfo.getVersion() + ".txt");
-            try {
-                FileUtils.write(resultDir, stream.toString());
-            } catch (IOException ignored) {
-                // Don't fail if there is are issues writing the wheel report.
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ExecResult results = getProject().exec(exec -> {
+                exec.commandLine(getPythonDetails().getVirtualEnvInterpreter(),
+                    getPythonDetails().getVirtualEnvironment().getPip(),
+                    "wheel",
+                    "--disable-pip-version-check",
+                    "--wheel-dir", buildDir,
+                    "--no-deps",
+                    packageInfo.getPackageFile().getAbsoluteFile().getAbsolutePath());
+                exec.setStandardOutput(stream);
+                exec.setErrorOutput(stream);
+                exec.setIgnoreExitValue(true);
+            });
+
+            if (results.getExitValue() != 0) {
+                logger.info("Unable to build wheel for {}-{}", packageInfo.getName(), packageInfo.getVersion());
+                File resultDir = new File(getProject().getBuildDir(), getName() + "-" + packageInfo.getName() + "-" + packageInfo.getVersion() + ".txt");
+                try {
+                    FileUtils.write(resultDir, stream.toString());
+                } catch (IOException ignored) {
+                    // Don't fail if there is are issues writing the wheel report.
+                }
+            } else {
+                publishWheels(buildDir);
+                if (PythonHelpers.isPlainOrVerbose(getProject())) {
+                    logger.lifecycle("Wheel was built for {}-{}", packageInfo.getName(), packageInfo.getVersion());
+                }
             }
-        } else {
-            if (PythonHelpers.isPlainOrVerbose(getProject())) {
-                logger.lifecycle("Wheel was built for {}-{}", packageInfo.getName(), packageInfo.getVersion());
+            return results.getExitValue() == 0;
+        } finally {
+            FileUtils.deleteQuietly(buildDir);
+        }
+    }
+
+    private void publishWheels(File buildDir) {
+        File[] wheels = buildDir.listFiles((dir, name) -> name.endsWith(".whl"));
+        if (wheels == null) {
+            return;
+        }
+
+        for (File wheel : wheels) {
+            try {
+                WheelFiles.publish(wheel.toPath(), new File(cacheDir, wheel.getName()).toPath());
+            } catch (FileAlreadyExistsException e) {
+                logger.info("Wheel {} already stored in {}", wheel.getName(), cacheDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
     }
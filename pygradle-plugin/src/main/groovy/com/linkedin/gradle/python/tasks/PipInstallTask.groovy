@@ -18,6 +18,8 @@ package com.linkedin.gradle.python.tasks
 import com.linkedin.gradle.python.exception.PipExecutionException
 import com.linkedin.gradle.python.extension.PythonDetails
 import com.linkedin.gradle.python.plugin.PythonHelpers
+import com.linkedin.gradle.python.tasks.action.WheelInstaller
+import com.linkedin.gradle.python.tasks.action.pip.CachedWheelsReport
 import com.linkedin.gradle.python.tasks.action.pip.PipInstallAction
 import com.linkedin.gradle.python.tasks.exec.ExternalExec
 import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec
@@ -74,6 +76,22 @@ class PipInstallTask extends DefaultTask implements FailureReasonProvider, Suppo
     @Optional
     boolean sorted = true
 
+    /**
+     * Installs the packages that need no options of their own with a single
+     * pip command, instead of one pip command per package.
+     */
+    @Input
+    @Optional
+    boolean batched = false
+
+    /**
+     * Installs the wheels that need no options of their own without pip,
+     * several at a time. Other packages, and wheels that fail, still go to pip.
+     */
+    @Input
+    @Optional
+    boolean nativeWheelInstall = false
+
     PackageSettings<PackageInfo> packageSettings
     EnvironmentMerger environmentMerger = new DefaultEnvironmentMerger()
     ExternalExec externalExec = new ProjectExternalExec(getProject())
@@ -128,25 +146,46 @@ class PipInstallTask extends DefaultTask implements FailureReasonProvider, Suppo
         def baseEnvironment = environmentMerger.mergeEnvironments([extension.pythonEnvironment, environment])
         def pipInstallAction = new PipInstallAction(packageSettings, project, externalExec,
             baseEnvironment, pythonDetails, wheelCache, environmentMerger, packageExcludeFilter)
+        if (nativeWheelInstall) {
+            pipInstallAction.wheelInstaller = new WheelInstaller(pythonDetails, pipInstallAction.sitePackagesPath,
+                project.gradle.startParameter.maxWorkerCount)
+        }
 
         int counter = 0
         def installableFiles = DependencyOrder.getConfigurationFiles(installFileCollection, sorted)
-        for (File installable : installableFiles) {
-            if (isReadyForInstall(installable)) {
-                def packageInfo = PackageInfo.fromPath(installable)
-
-                def shortHand = packageInfo.toShortHand()
-                def timer = taskTimer.start(shortHand)
-                progressLogger.progress("Installing ${ shortHand } (${ ++counter } of ${ installableFiles.size() })")
-
-                try {
-                    pipInstallAction.execute(packageInfo, args)
-                } catch (PipExecutionException e) {
-                    lastInstallMessage = e.pipText
-                    throw e
-                }
+        CachedWheelsReport.report(installableFiles, pythonDetails, wheelCache, packageSettings, packageExcludeFilter)
+
+        if (batched) {
+            def packages = installableFiles.findAll { File it -> isReadyForInstall(it) }.collect { File it -> PackageInfo.fromPath(it) }
+            def timer = taskTimer.start("${ packages.size() } packages".toString())
+            progressLogger.progress("Installing ${ packages.size() } packages")
+
+            try {
+                pipInstallAction.executeBatched(packages, args)
+            } catch (PipExecutionException e) {
+                lastInstallMessage = e.pipText
+                throw e
+            }
 
-                timer.stop()
+            timer.stop()
+        } else {
+            for (File installable : installableFiles) {
+                if (isReadyForInstall(installable)) {
+                    def packageInfo = PackageInfo.fromPath(installable)
+
+                    def shortHand = packageInfo.toShortHand()
+                    def timer = taskTimer.start(shortHand)
+                    progressLogger.progress("Installing ${ shortHand } (${ ++counter } of ${ installableFiles.size() })")
+
+                    try {
+                        pipInstallAction.execute(packageInfo, args)
+                    } catch (PipExecutionException e) {
+                        lastInstallMessage = e.pipText
+                        throw e
+                    }
+
+                    timer.stop()
+                }
             }
         }
 
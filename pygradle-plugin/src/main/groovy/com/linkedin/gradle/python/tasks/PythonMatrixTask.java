@@ -0,0 +1,368 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks;
+
+import com.linkedin.gradle.python.PythonExtension;
+import com.linkedin.gradle.python.exception.PipExecutionException;
+import com.linkedin.gradle.python.extension.MatrixExtension;
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.extension.PythonDetailsFactory;
+import com.linkedin.gradle.python.extension.WheelExtension;
+import com.linkedin.gradle.python.plugin.PythonHelpers;
+import com.linkedin.gradle.python.tasks.action.ProbeVenvInfoAction;
+import com.linkedin.gradle.python.tasks.action.pip.PipInstallAction;
+import com.linkedin.gradle.python.tasks.action.pip.PipWheelAction;
+import com.linkedin.gradle.python.tasks.exec.ExternalExec;
+import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec;
+import com.linkedin.gradle.python.tasks.execution.FailureReasonProvider;
+import com.linkedin.gradle.python.tasks.provides.ProvidesVenv;
+import com.linkedin.gradle.python.tasks.supports.SupportsDistutilsCfg;
+import com.linkedin.gradle.python.tasks.supports.SupportsPackageInfoSettings;
+import com.linkedin.gradle.python.tasks.supports.SupportsWheelCache;
+import com.linkedin.gradle.python.util.DefaultEnvironmentMerger;
+import com.linkedin.gradle.python.util.DependencyOrder;
+import com.linkedin.gradle.python.util.EnvironmentMerger;
+import com.linkedin.gradle.python.util.ExtensionUtils;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.util.PackageSettings;
+import com.linkedin.gradle.python.util.StandardTextValues;
+import com.linkedin.gradle.python.wheel.EditablePythonAbiContainer;
+import com.linkedin.gradle.python.wheel.EmptyWheelCache;
+import com.linkedin.gradle.python.wheel.WheelCache;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildPermits;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.process.ExecResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.linkedin.gradle.python.util.StandardTextValues.CONFIGURATION_BOOTSTRAP_REQS;
+import static com.linkedin.gradle.python.util.StandardTextValues.CONFIGURATION_PYTHON;
+import static com.linkedin.gradle.python.util.StandardTextValues.CONFIGURATION_SETUP_REQS;
+import static com.linkedin.gradle.python.util.StandardTextValues.CONFIGURATION_TEST;
+
+/**
+ * Tests the project with several Python versions at the same time, like tox.
+ *
+ * <p>{@link PythonDetails} holds a single interpreter, so testing a project
+ * with several Python versions took one build per version. For each of
+ * the versions of {@link MatrixExtension}, this task makes a virtual
+ * environment under {@code build/python-matrix}, installs the project and
+ * its requirements into it, runs py.test and builds the wheels. The
+ * versions go through these steps at the same time, each on a thread of
+ * its own. They share the layered wheel cache, and the ABI container
+ * keeps the wheel tags of each virtual environment apart.</p>
+ *
+ * <p>The outcome of every version is logged and written to
+ * {@code build/python-matrix/report.txt}, then the task fails if any of
+ * the versions did.</p>
+ */
+public class PythonMatrixTask extends DefaultTask implements SupportsWheelCache, SupportsPackageInfoSettings,
+    SupportsDistutilsCfg, ProvidesVenv, FailureReasonProvider {
+
+    private static final int NO_TESTS_COLLECTED_ERRNO = 5;
+
+    private WheelCache wheelCache = new EmptyWheelCache();
+    private PackageSettings<PackageInfo> packageSettings;
+    private String distutilsCfg;
+    private EditablePythonAbiContainer editablePythonAbiContainer;
+    private EnvironmentMerger environmentMerger = new DefaultEnvironmentMerger();
+    private ExternalExec externalExec = new ProjectExternalExec(getProject());
+    private final List<String> onlyVersions = new ArrayList<>();
+    private String lastFailureMessage;
+
+    // setup.py writes into the project directory, so one version at a time installs and builds the project itself.
+    private final ReentrantLock projectLock = new ReentrantLock();
+
+    @TaskAction
+    public void runMatrix() {
+        List<String> versions = getVersions();
+
+        // Gradle resolves configurations on its own threads only, the versions read them resolved.
+        for (StandardTextValues configuration : Arrays.asList(
+            CONFIGURATION_BOOTSTRAP_REQS, CONFIGURATION_SETUP_REQS, CONFIGURATION_TEST, CONFIGURATION_PYTHON)) {
+            getProject().getConfigurations().getByName(configuration.getValue()).getFiles();
+        }
+
+        int threads = Math.max(1, Math.min(getProject().getGradle().getStartParameter().getMaxWorkerCount(), versions.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        Map<String, Future<String>> runs = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        StringBuilder report = new StringBuilder();
+        try {
+            versions.forEach(version -> runs.put(version, executor.submit(() -> runVersion(version))));
+            for (Map.Entry<String, Future<String>> run : runs.entrySet()) {
+                String version = run.getKey();
+                try {
+                    String outcome = run.getValue().get();
+                    getLogger().lifecycle(PythonHelpers.createPrettyLine("Python " + version, "[PASSED]"));
+                    report.append(version).append(": passed, ").append(outcome).append('\n');
+                } catch (ExecutionException e) {
+                    String message = failureMessage(e.getCause());
+                    getLogger().lifecycle(PythonHelpers.createPrettyLine("Python " + version, "[FAILED]"));
+                    getLogger().info("Python {} failed", version, e.getCause());
+                    report.append(version).append(": failed, ").append(message).append('\n');
+                    failures.put(version, message);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while running the Python matrix", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        File reportFile = new File(getMatrixDir(), "report.txt");
+        write(reportFile, report.toString());
+
+        if (!failures.isEmpty()) {
+            lastFailureMessage = failures.entrySet().stream()
+                .map(it -> "Python " + it.getKey() + ": " + it.getValue())
+                .collect(Collectors.joining("\n"));
+            throw new GradleException("The Python matrix failed for " + String.join(", ", failures.keySet()) + ", see " + reportFile);
+        }
+    }
+
+    /*
+     * The whole chain of one version: virtual environment, requirements,
+     * project, tests and wheels. Returns what it did, for the report.
+     */
+    private String runVersion(String version) {
+        PythonExtension settings = ExtensionUtils.getPythonExtension(getProject());
+        File versionDir = new File(getMatrixDir(), "py" + version);
+        PythonDetails details = PythonDetailsFactory.withPythonVersion(getProject(), settings.getDetails(), version, new File(versionDir, "venv"));
+
+        // The versions run at the same time, each is probed into a directory of its own.
+        File probeDir = new File(versionDir, "probe-venv");
+        if (details.getVirtualEnvInterpreter().isFile()) {
+            ProbeVenvInfoAction.getProbedTags(getProject(), details, editablePythonAbiContainer, probeDir);
+        } else {
+            InstallVirtualEnvironmentTask.buildVenv(getProject(), details, editablePythonAbiContainer, distutilsCfg, probeDir);
+        }
+
+        // The PATH of the python extension leads to the virtual environment of the project.
+        Map<String, String> environment = environmentMerger.mergeEnvironments(Collections.singletonList(settings.pythonEnvironment));
+        environment.put("PATH", new File(details.getVirtualEnv(), PythonDetailsFactory.getPythonApplicationDirectory()).getAbsolutePath()
+            + File.pathSeparator + System.getenv("PATH"));
+        Map<String, String> projectEnvironment = environmentMerger.mergeEnvironments(
+            Arrays.asList(environment, settings.pythonEnvironmentDistgradle));
+
+        PipInstallAction install = new PipInstallAction(packageSettings, getProject(), externalExec, environment, details,
+            wheelCache, environmentMerger, null);
+        installAll(install, CONFIGURATION_SETUP_REQS.getValue(), false, Collections.singletonList("--upgrade"));
+        installAll(install, CONFIGURATION_TEST.getValue(), true, Collections.emptyList());
+        installAll(install, CONFIGURATION_PYTHON.getValue(), true, Collections.emptyList());
+
+        boolean hasSetupPy = new File(getProject().getProjectDir(), "setup.py").exists();
+        if (hasSetupPy) {
+            PipInstallAction installProject = new PipInstallAction(packageSettings, getProject(), externalExec, projectEnvironment,
+                details, wheelCache, environmentMerger, null);
+            onProject(project -> installProject.execute(project, Collections.emptyList()));
+        }
+
+        List<String> outcome = new ArrayList<>();
+        if (getProject().file(settings.testDir).exists()) {
+            outcome.add(runTests(details, projectEnvironment, versionDir, settings.testDir));
+        }
+
+        MatrixExtension matrix = ExtensionUtils.getPythonComponentExtension(getProject(), MatrixExtension.class);
+        if (matrix.isBuildWheels()) {
+            WheelExtension wheelExtension = ExtensionUtils.getPythonComponentExtension(getProject(), WheelExtension.class);
+            WheelBuildPermits permits = WheelBuildPermits.forBuild(getProject().getGradle());
+            PipWheelAction wheels = new PipWheelAction(packageSettings, getProject(), externalExec, environment, details,
+                wheelCache, environmentMerger, wheelExtension, null);
+
+            Collection<File> packages = DependencyOrder.getConfigurationFiles(
+                getProject().getConfigurations().getByName(CONFIGURATION_PYTHON.getValue()));
+            for (File file : packages) {
+                try (WheelBuildPermits.Permit ignored = permits.acquire()) {
+                    wheels.execute(PackageInfo.fromPath(file), Collections.emptyList());
+                }
+            }
+            if (hasSetupPy) {
+                PipWheelAction projectWheel = new PipWheelAction(packageSettings, getProject(), externalExec, projectEnvironment,
+                    details, wheelCache, environmentMerger, wheelExtension, null);
+                onProject(project -> projectWheel.execute(project, Collections.emptyList()));
+            }
+            outcome.add(packages.size() + (hasSetupPy ? 1 : 0) + " wheels");
+        }
+        return String.join(", ", outcome);
+    }
+
+    private void installAll(PipInstallAction install, String configuration, boolean sorted, List<String> args) {
+        Collection<File> files = DependencyOrder.getConfigurationFiles(getProject().getConfigurations().getByName(configuration), sorted);
+        for (File file : files) {
+            install.execute(PackageInfo.fromPath(file), args);
+        }
+    }
+
+    private void onProject(Consumer<PackageInfo> action) {
+        projectLock.lock();
+        try {
+            action.accept(PackageInfo.fromPath(getProject().getProjectDir()));
+        } finally {
+            projectLock.unlock();
+        }
+    }
+
+    private String runTests(PythonDetails details, Map<String, String> environment, File versionDir, String testDir) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ExecResult result = externalExec.exec(execSpec -> {
+            execSpec.environment(environment);
+            execSpec.commandLine(
+                details.getVirtualEnvInterpreter(),
+                details.getVirtualEnvironment().findExecutable("py.test").getAbsolutePath(),
+                testDir,
+                // The versions share the project directory, so they keep no cache there.
+                "-p", "no:cacheprovider",
+                "--junitxml=" + new File(versionDir, "pytest.xml").getAbsolutePath());
+            execSpec.setStandardOutput(output);
+            execSpec.setErrorOutput(output);
+            execSpec.setIgnoreExitValue(true);
+        });
+
+        File log = new File(versionDir, "pytest.log");
+        write(log, output.toString());
+        if (result.getExitValue() == NO_TESTS_COLLECTED_ERRNO) {
+            return "no tests";
+        }
+        if (result.getExitValue() != 0) {
+            throw new GradleException("py.test failed, see " + log);
+        }
+        return "tests passed";
+    }
+
+    private static String failureMessage(Throwable failure) {
+        if (failure instanceof PipExecutionException) {
+            return failure.getMessage() + "\n" + ((PipExecutionException) failure).getPipText();
+        }
+        return failure.getMessage();
+    }
+
+    private static void write(File file, String text) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the versions the matrix runs with, those of the python extension unless the command line picked some
+     */
+    @Input
+    public List<String> getVersions() {
+        List<String> versions = ExtensionUtils.getPythonComponentExtension(getProject(), MatrixExtension.class).getVersions();
+        if (onlyVersions.isEmpty()) {
+            return versions;
+        }
+        return versions.stream().filter(onlyVersions::contains).collect(Collectors.toList());
+    }
+
+    /**
+     * Only run the matrix with the given Python version
+     *
+     * @param version the Python version, one of those of the matrix
+     */
+    @Option(option = "python-version", description = "Only run the matrix with the given Python version")
+    public void onlyVersion(String version) {
+        onlyVersions.add(version);
+    }
+
+    @Internal
+    public File getMatrixDir() {
+        return new File(getProject().getBuildDir(), "python-matrix");
+    }
+
+    @Override
+    @Internal
+    public WheelCache getWheelCache() {
+        return wheelCache;
+    }
+
+    @Override
+    public void setWheelCache(WheelCache wheelCache) {
+        this.wheelCache = wheelCache;
+    }
+
+    @Override
+    @Internal
+    public PackageSettings<PackageInfo> getPackageSettings() {
+        return packageSettings;
+    }
+
+    @Override
+    public void setPackageSettings(PackageSettings<PackageInfo> packageSettings) {
+        this.packageSettings = packageSettings;
+    }
+
+    @Override
+    @Input
+    @Optional
+    public String getDistutilsCfg() {
+        return distutilsCfg;
+    }
+
+    @Override
+    public void setDistutilsCfg(String distutilsCfg) {
+        this.distutilsCfg = distutilsCfg;
+    }
+
+    @Override
+    public void setEditablePythonAbiContainer(EditablePythonAbiContainer editablePythonAbiContainer) {
+        this.editablePythonAbiContainer = editablePythonAbiContainer;
+    }
+
+    public void setExternalExec(ExternalExec externalExec) {
+        this.externalExec = externalExec;
+    }
+
+    public void setEnvironmentMerger(EnvironmentMerger environmentMerger) {
+        this.environmentMerger = environmentMerger;
+    }
+
+    @Override
+    @Internal
+    public String getReason() {
+        return lastFailureMessage;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks;
+
+import com.linkedin.gradle.python.exception.PipExecutionException;
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.tasks.exec.ExternalExec;
+import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec;
+import com.linkedin.gradle.python.tasks.execution.FailureReasonProvider;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.util.internal.VenvState;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheIndex;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Removes the packages no install task of the project asks for from the virtual environment.
+ *
+ * <p>The install tasks only ever add packages, so a dependency dropped from
+ * the build stays in the virtual environment, where it can break a pex
+ * build, until the virtual environment is deleted and rebuilt from
+ * scratch. This task brings the virtual environment back in sync instead:
+ * it uninstalls the packages none of the {@link PipInstallTask}s of the
+ * project install, and leaves the rest to the install tasks, which skip
+ * the packages already installed.</p>
+ */
+public class SyncVirtualEnvironmentTask extends DefaultTask implements FailureReasonProvider {
+
+    private static final List<String> BOOTSTRAP_PACKAGES = Arrays.asList("pip", "setuptools", "wheel");
+
+    private PythonDetails pythonDetails;
+    private List<String> keep = new ArrayList<>();
+    private ExternalExec externalExec = new ProjectExternalExec(getProject());
+    private String lastUninstallMessage;
+
+    @TaskAction
+    public void syncVenv() {
+        Set<String> wanted = new HashSet<>();
+        getProject().getTasks().withType(PipInstallTask.class).forEach(task -> {
+            if (task.getPythonDetails().getVirtualEnv().equals(pythonDetails.getVirtualEnv())) {
+                task.getInstallFileCollection().getFiles().stream()
+                    .filter(File::isFile)
+                    .forEach(file -> wanted.add(PackageInfo.fromPath(file).getName()));
+            }
+        });
+        wanted.addAll(BOOTSTRAP_PACKAGES);
+        wanted.addAll(keep);
+        wanted.add(getProject().getName());
+
+        VenvState venvState = VenvState.of(pythonDetails);
+        List<String> stale = findStalePackages(venvState.getPackages(), wanted);
+        if (stale.isEmpty()) {
+            getLogger().info("The virtual environment has no stale packages");
+            return;
+        }
+
+        getLogger().lifecycle("Uninstalling stale packages: {}", String.join(", ", stale));
+        List<String> commandLine = new ArrayList<>(Arrays.asList(
+            pythonDetails.getVirtualEnvInterpreter().toString(),
+            pythonDetails.getVirtualEnvironment().getPip().toString(),
+            "uninstall",
+            "--yes"));
+        commandLine.addAll(stale);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        int exitValue = externalExec.exec(execSpec -> {
+            execSpec.commandLine(commandLine);
+            execSpec.setStandardOutput(stream);
+            execSpec.setErrorOutput(stream);
+            execSpec.setIgnoreExitValue(true);
+        }).getExitValue();
+        venvState.invalidate();
+
+        getLogger().info(stream.toString());
+        if (exitValue != 0) {
+            lastUninstallMessage = stream.toString();
+            throw PipExecutionException.failedUninstall(stale, lastUninstallMessage);
+        }
+    }
+
+    /**
+     * Finds the installed packages that are not wanted.
+     *
+     * @param installed the versions of the installed packages by name
+     * @param wanted the names of the wanted packages, in any spelling pip accepts
+     * @return the names of the installed packages to uninstall
+     */
+    static List<String> findStalePackages(Map<String, String> installed, Collection<String> wanted) {
+        Set<String> wantedNames = wanted.stream().map(WheelCacheIndex::normalizeName).collect(Collectors.toSet());
+        return installed.keySet().stream()
+            .filter(name -> !wantedNames.contains(WheelCacheIndex.normalizeName(name)))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getReason() {
+        return lastUninstallMessage;
+    }
+
+    @Input
+    public PythonDetails getPythonDetails() {
+        return pythonDetails;
+    }
+
+    public void setPythonDetails(PythonDetails pythonDetails) {
+        this.pythonDetails = pythonDetails;
+    }
+
+    /**
+     * Packages to keep even though no install task asks for them, such as packages installed by hand.
+     *
+     * @return the names of the packages to keep
+     */
+    @Input
+    public List<String> getKeep() {
+        return keep;
+    }
+
+    public void setKeep(List<String> keep) {
+        this.keep = keep;
+    }
+
+    public void setExternalExec(ExternalExec externalExec) {
+        this.externalExec = externalExec;
+    }
+}
@@ -34,6 +34,11 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class CreateVirtualEnvAction {
@@ -43,34 +48,98 @@ public class CreateVirtualEnvAction {
     private final PythonDetails pythonDetails;
     private final EditablePythonAbiContainer editablePythonAbiContainer;
     private final TeeOutputContainer container = new TeeOutputContainer();
+    private VirtualEnvBootstrapCache bootstrapCache;
+    private File probeDir;
 
     public CreateVirtualEnvAction(Project project, PythonDetails pythonDetails,
                                   EditablePythonAbiContainer editablePythonAbiContainer) {
         this.project = project;
         this.pythonDetails = pythonDetails;
         this.editablePythonAbiContainer = editablePythonAbiContainer;
+        this.probeDir = ProbeVenvInfoAction.defaultProbeDir(project);
+    }
+
+    /**
+     * Sets the cache the virtualenv distribution is unpacked into, instead of a new temporary directory.
+     *
+     * @param bootstrapCache the cache, or null to unpack the distribution for every virtual environment
+     */
+    public void setBootstrapCache(@Nullable VirtualEnvBootstrapCache bootstrapCache) {
+        this.bootstrapCache = bootstrapCache;
+    }
+
+    /**
+     * Sets the directory the new virtual environment is probed into, so virtual environments built at the same time do not share one.
+     *
+     * @param probeDir the probe directory, build/probe-venv by default
+     */
+    public void setProbeDir(File probeDir) {
+        this.probeDir = probeDir;
     }
 
     public void buildVenv(@Nullable Consumer<File> customize) {
+        buildVenv(customize, null, Collections.emptyList());
+    }
+
+    /**
+     * Builds the virtual environment, as a copy of a template when one is given.
+     *
+     * @param customize customizes the virtualenv distribution before the virtual environment is created
+     * @param template the template to copy, made first if needed, or null to create the virtual environment
+     * @param setupRequirements the setup requirements installed into a new template
+     */
+    public void buildVenv(@Nullable Consumer<File> customize, @Nullable VirtualEnvTemplate template, Collection<File> setupRequirements) {
         PipConfFile pipConfFile = new PipConfFile(project, pythonDetails);
 
-        File packageDir = makeTempDir().toFile();
-        getPyGradleBootstrap(project).getFiles().forEach(file -> {
-            project.copy(copySpec -> {
-                copySpec.from(project.tarTree(file.getPath()));
-                copySpec.into(packageDir);
-                copySpec.eachFile(it -> {
-                    // Remove the virtualenv-<version> from the file.
-                    Path pathInsideTar = Paths.get(it.getPath());
-                    if (pathInsideTar.getNameCount() > 1) {
-                        it.setPath(pathInsideTar.subpath(1, pathInsideTar.getNameCount()).toString());
-                    }
+        if (template == null) {
+            createVenv(pythonDetails.getVirtualEnv(), pythonDetails.getVirtualEnvPrompt(), customize);
+        } else {
+            if (!template.exists()) {
+                log.lifecycle("Making a virtual environment template for {}", pythonDetails.getSystemPythonInterpreter());
+                template.create(venvDir -> {
+                    createVenv(venvDir, VirtualEnvTemplate.TEMPLATE_PROMPT, customize);
+                    installSetupRequirements(venvDir, setupRequirements);
+                });
+            }
+            template.copyTo(pythonDetails.getVirtualEnv(), pythonDetails.getVirtualEnvPrompt());
+        }
+
+        ProbeVenvInfoAction.probeVenv(project, pythonDetails, editablePythonAbiContainer, probeDir);
+
+        try {
+            pipConfFile.buildPipConfFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void createVenv(File venvDir, String prompt, @Nullable Consumer<File> customize) {
+        Consumer<File> unpack = dir -> {
+            getPyGradleBootstrap(project).getFiles().forEach(file -> {
+                project.copy(copySpec -> {
+                    copySpec.from(project.tarTree(file.getPath()));
+                    copySpec.into(dir);
+                    copySpec.eachFile(it -> {
+                        // Remove the virtualenv-<version> from the file.
+                        Path pathInsideTar = Paths.get(it.getPath());
+                        if (pathInsideTar.getNameCount() > 1) {
+                            it.setPath(pathInsideTar.subpath(1, pathInsideTar.getNameCount()).toString());
+                        }
+                    });
                 });
             });
-        });
 
-        if (null != customize) {
-            customize.accept(packageDir);
+            if (null != customize) {
+                customize.accept(dir);
+            }
+        };
+
+        File packageDir;
+        if (bootstrapCache != null) {
+            packageDir = bootstrapCache.get(getPyGradleBootstrap(project).getFiles(), unpack);
+        } else {
+            packageDir = makeTempDir().toFile();
+            unpack.accept(packageDir);
         }
 
         // In virtualenv-16.1.0 the install script was relocated and will be in 17+.
@@ -88,8 +157,8 @@ public class CreateVirtualEnvAction {
                 installScript,
                 "--never-download",
                 "--python", pythonDetails.getSystemPythonInterpreter(),
-                "--prompt", pythonDetails.getVirtualEnvPrompt(),
-                pythonDetails.getVirtualEnv()
+                "--prompt", prompt,
+                venvDir
             );
             execSpec.setErrorOutput(outputStream);
             execSpec.setStandardOutput(outputStream);
@@ -103,15 +172,44 @@ public class CreateVirtualEnvAction {
         }
 
         execResult.assertNormalExitValue();
+        if (bootstrapCache == null) {
+            project.delete(packageDir);
+        }
+    }
 
-        ProbeVenvInfoAction.probeVenv(project, pythonDetails, editablePythonAbiContainer);
+    /*
+     * Installs the setup requirements like installSetupRequirements does, so
+     * that task finds them installed in the copies of the template.
+     */
+    private void installSetupRequirements(File venvDir, Collection<File> setupRequirements) {
+        if (setupRequirements.isEmpty()) {
+            return;
+        }
 
-        project.delete(packageDir);
-        try {
-            pipConfFile.buildPipConfFile();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        List<String> commandLine = new ArrayList<>(Arrays.asList(
+            new File(venvDir, "bin/python").getAbsolutePath(),
+            new File(venvDir, "bin/pip").getAbsolutePath(),
+            "install",
+            "--disable-pip-version-check",
+            "--no-deps",
+            "--upgrade"));
+        setupRequirements.forEach(file -> commandLine.add(file.getAbsolutePath()));
+
+        OutputStream outputStream = new ByteArrayOutputStream();
+        ExecResult execResult = project.exec(execSpec -> {
+            execSpec.commandLine(commandLine);
+            execSpec.setErrorOutput(outputStream);
+            execSpec.setStandardOutput(outputStream);
+            execSpec.setIgnoreExitValue(true);
+        });
+
+        if (log.isInfoEnabled()) {
+            log.info(outputStream.toString());
+        } else if (execResult.getExitValue() != 0) {
+            log.lifecycle(outputStream.toString());
         }
+
+        execResult.assertNormalExitValue();
     }
 
     private Configuration getPyGradleBootstrap(Project project) {
@@ -20,6 +20,8 @@ import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec;
+import com.linkedin.gradle.python.util.internal.InterpreterMetadata;
 import com.linkedin.gradle.python.wheel.AbiDetails;
 import com.linkedin.gradle.python.wheel.EditablePythonAbiContainer;
 import org.gradle.api.Project;
@@ -27,11 +29,12 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 
 public class ProbeVenvInfoAction {
 
@@ -42,10 +45,20 @@ public class ProbeVenvInfoAction {
         //This is an internal class
     }
 
+    /**
+     * Gets the directory the probe of the project virtual environment writes to.
+     *
+     * @param project current project
+     * @return the probe directory in the build directory
+     */
+    public static File defaultProbeDir(Project project) {
+        return new File(project.getBuildDir(), PROBE_DIR_NAME);
+    }
+
     static void probeVenv(Project project, PythonDetails pythonDetails,
-                                  EditablePythonAbiContainer editablePythonAbiContainer) {
+                                  EditablePythonAbiContainer editablePythonAbiContainer, File probeDir) {
         try {
-            doProbe(project, pythonDetails, editablePythonAbiContainer);
+            doProbe(project, pythonDetails, editablePythonAbiContainer, probeDir);
         } catch (IOException ioe) {
             logger.info("Unable to probe venv for supported wheel details. Ignoring Venv.");
         }
@@ -61,7 +74,25 @@ public class ProbeVenvInfoAction {
     public static void getProbedTags(Project project,
                                     PythonDetails pythonDetails,
                                     EditablePythonAbiContainer editablePythonAbiContainer) {
-        File probeDir = new File(project.getBuildDir(), PROBE_DIR_NAME);
+        getProbedTags(project, pythonDetails, editablePythonAbiContainer, defaultProbeDir(project));
+    }
+
+    /**
+     * Populate the ABI container with supported wheel tags from the environment probed into the given directory.
+     *
+     * @param project current project
+     * @param pythonDetails current python details
+     * @param editablePythonAbiContainer the ABI container object to populate
+     * @param probeDir the directory the virtual environment was probed into
+     */
+    public static void getProbedTags(Project project,
+                                    PythonDetails pythonDetails,
+                                    EditablePythonAbiContainer editablePythonAbiContainer,
+                                    File probeDir) {
+        if (addKnownTags(project, pythonDetails, editablePythonAbiContainer)) {
+            return;
+        }
+
         File supportedAbiFormatsFile = getSupportedAbiFormatsFile(probeDir, pythonDetails);
         try {
             getSavedTags(pythonDetails, editablePythonAbiContainer, supportedAbiFormatsFile);
@@ -71,21 +102,19 @@ public class ProbeVenvInfoAction {
     }
 
     private static void doProbe(Project project, PythonDetails pythonDetails,
-                          EditablePythonAbiContainer editablePythonAbiContainer) throws IOException {
-        InputStream wheelApiResource = ProbeVenvInfoAction.class.getClassLoader()
-            .getResourceAsStream("templates/wheel-api.py");
-
-        byte[] buffer = new byte[wheelApiResource.available()];
-        wheelApiResource.read(buffer);
+                          EditablePythonAbiContainer editablePythonAbiContainer, File probeDir) throws IOException {
+        if (addKnownTags(project, pythonDetails, editablePythonAbiContainer)) {
+            return;
+        }
 
-        File probeDir = new File(project.getBuildDir(), PROBE_DIR_NAME);
         probeDir.mkdirs();
-
-        OutputStream outStream = new FileOutputStream(getPythonFileForSupportedWheels(probeDir));
-        outStream.write(buffer);
+        try (InputStream wheelApiResource = ProbeVenvInfoAction.class.getClassLoader()
+            .getResourceAsStream("templates/wheel-api.py")) {
+            Files.copy(wheelApiResource, getPythonFileForSupportedWheels(probeDir).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
 
         File supportedAbiFormatsFile = getSupportedAbiFormatsFile(probeDir, pythonDetails);
-        project.exec(execSpec -> {
+        new ProjectExternalExec(project).exec(execSpec -> {
             execSpec.commandLine(pythonDetails.getVirtualEnvInterpreter());
             execSpec.args(getPythonFileForSupportedWheels(probeDir));
             execSpec.args(supportedAbiFormatsFile.getAbsolutePath());
@@ -97,10 +126,23 @@ public class ProbeVenvInfoAction {
          * although it's not necessary for InstallVirtualEnvironmentTask because
          * GetProbedTagsTask will get the tags.
          */
-        getSavedTags(pythonDetails, editablePythonAbiContainer, supportedAbiFormatsFile);
+        JsonArray tags = getSavedTags(pythonDetails, editablePythonAbiContainer, supportedAbiFormatsFile);
+        InterpreterMetadata.recordTags(project, pythonDetails.getSystemPythonInterpreter(), tags);
+    }
+
+    /*
+     * Every virtual environment made from an interpreter supports the same
+     * tags, so they are probed in the first one only, for the whole host.
+     */
+    private static boolean addKnownTags(Project project, PythonDetails pythonDetails,
+                                        EditablePythonAbiContainer editablePythonAbiContainer) {
+        List<AbiDetails> tags = InterpreterMetadata.forInterpreter(project, pythonDetails.getSystemPythonInterpreter())
+            .getTags(pythonDetails.getVirtualEnvInterpreter());
+        tags.forEach(editablePythonAbiContainer::addSupportedAbi);
+        return !tags.isEmpty();
     }
 
-    private static void getSavedTags(PythonDetails pythonDetails,
+    private static JsonArray getSavedTags(PythonDetails pythonDetails,
                                      EditablePythonAbiContainer editablePythonAbiContainer,
                                      File supportedAbiFormatsFile) throws IOException {
         JsonArray array = Json.parse(new FileReader(supportedAbiFormatsFile)).asArray();
@@ -115,6 +157,7 @@ public class ProbeVenvInfoAction {
                 pythonTag, abiTag, platformTag);
             editablePythonAbiContainer.addSupportedAbi(triple);
         }
+        return array;
     }
 
     private static File getPythonFileForSupportedWheels(File tempDir) {
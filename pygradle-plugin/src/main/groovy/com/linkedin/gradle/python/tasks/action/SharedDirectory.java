@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Makes directories shared by the builds of a host, such as the virtual environment templates.
+ *
+ * <p>A directory is made under a staging name next to its final one and
+ * moved into place in one step, so no build sees it half made. When two
+ * builds make the same directory at once, the first one moved into place
+ * is kept. The move of the others fails, with an error that depends on
+ * the platform and the JDK: on Linux it is a plain
+ * {@link java.nio.file.FileSystemException} for "Directory not empty".
+ * So a failed move only counts as a lost race when a complete directory
+ * is in place.</p>
+ */
+final class SharedDirectory {
+
+    /** Part of the names of the staging directories. */
+    static final String STAGING_INFIX = ".tmp-";
+
+    private SharedDirectory() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Makes the directory, unless another build moves it into place first.
+     *
+     * @param target the directory to make
+     * @param complete tells if a directory in place of the target is complete
+     * @param maker makes the content of the directory into the staging directory it is given
+     * @return true when this build made the directory
+     */
+    static boolean make(Path target, Predicate<Path> complete, Maker maker) {
+        Path staging = target.resolveSibling(target.getFileName() + STAGING_INFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(staging);
+            maker.make(staging);
+            try {
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException e) {
+                if (Files.isDirectory(target) && complete.test(target)) {
+                    return false;
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            FileUtils.deleteQuietly(staging.toFile());
+        }
+    }
+
+    /**
+     * Makes the content of a shared directory.
+     */
+    interface Maker {
+        void make(Path staging) throws IOException;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action;
+
+import com.linkedin.gradle.python.util.internal.Digests;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * The unpacked virtualenv distributions, shared by the projects of a host.
+ *
+ * <p>Every virtual environment is created from the virtualenv
+ * distribution, unpacked and customized with the distutils.cfg of the
+ * project. The result only depends on the distribution and the
+ * distutils.cfg, so it is unpacked once per host, under a key made of
+ * their hashes, and used read-only from then on.</p>
+ */
+public class VirtualEnvBootstrapCache {
+
+    private static final Logger logger = Logging.getLogger(VirtualEnvBootstrapCache.class);
+
+    // Marks a complete entry; entries are moved into place with it.
+    private static final String COMPLETE_FILE = ".complete";
+
+    private final File cacheDir;
+    private final String distutilsCfg;
+
+    /**
+     * @param cacheDir the directory holding the unpacked distributions
+     * @param distutilsCfg the distutils.cfg the distributions are customized with, if any
+     */
+    public VirtualEnvBootstrapCache(File cacheDir, String distutilsCfg) {
+        this.cacheDir = cacheDir;
+        this.distutilsCfg = distutilsCfg;
+    }
+
+    /**
+     * Gets the unpacked and customized distribution, unpacking it first if needed.
+     *
+     * <p>The directory is shared, so it must not be changed.</p>
+     *
+     * @param bootstrap the virtualenv distributions
+     * @param unpack unpacks and customizes the distributions into the directory it is given
+     * @return the directory holding the distribution
+     */
+    public File get(Collection<File> bootstrap, Consumer<File> unpack) {
+        Path entry = cacheDir.toPath().resolve(key(bootstrap));
+        if (Files.isRegularFile(entry.resolve(COMPLETE_FILE))) {
+            logger.info("Using the unpacked virtualenv in {}", entry);
+            return entry.toFile();
+        }
+
+        boolean unpacked = SharedDirectory.make(entry, dir -> Files.isRegularFile(dir.resolve(COMPLETE_FILE)), staging -> {
+            unpack.accept(staging.toFile());
+            Files.createFile(staging.resolve(COMPLETE_FILE));
+        });
+        if (unpacked) {
+            logger.info("Unpacked virtualenv into {}", entry);
+        } else {
+            logger.info("Another build unpacked virtualenv into {}", entry);
+        }
+        return entry.toFile();
+    }
+
+    private String key(Collection<File> bootstrap) {
+        MessageDigest digest = Digests.newSha256();
+        try {
+            for (File file : bootstrap) {
+                Digests.update(digest, file.toPath());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (distutilsCfg != null) {
+            digest.update(distutilsCfg.getBytes(StandardCharsets.UTF_8));
+        }
+        return Digests.toHex(digest.digest());
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action;
+
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.internal.Digests;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A virtual environment with the setup requirements installed, shared by the projects of a host.
+ *
+ * <p>Creating a virtual environment and installing the setup requirements
+ * into it gives the same result for every project using the same
+ * interpreter, virtualenv and setup requirements. The template is made
+ * once, in the Gradle user home, and each project virtual environment is
+ * a copy of it, with the paths and the prompt of the template rewritten
+ * to those of the project.</p>
+ *
+ * <p>Every copy marks the template as used. Templates no build copied for
+ * a month, such as those of interpreters no longer installed, are removed
+ * by {@link #removeUnused(File)}.</p>
+ */
+public class VirtualEnvTemplate {
+
+    private static final Logger logger = Logging.getLogger(VirtualEnvTemplate.class);
+
+    /** The prompt the template is made with, replaced by the prompt of each copy. */
+    public static final String TEMPLATE_PROMPT = "(pygradle-venv-template)";
+
+    // Bump when the layout of the templates changes, so old templates are not used.
+    private static final String FORMAT = "1";
+    private static final String ORIGIN_FILE = ".pygradle-template-origin";
+    private static final Pattern SHEBANG = Pattern.compile("^#!([^\n]+)\n");
+    private static final long UNUSED_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long LEFTOVER_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    // Longer shebang lines are cut short by the kernel, see the BINPRM_BUF_SIZE.
+    private static final int MAX_SHEBANG_LENGTH = 127;
+
+    private final Path templateDir;
+
+    /**
+     * @param templatesDir the directory holding the templates
+     * @param key the key of the template, see {@link #key(PythonDetails, String, Collection, Collection)}
+     */
+    public VirtualEnvTemplate(File templatesDir, String key) {
+        this.templateDir = templatesDir.toPath().resolve(key);
+    }
+
+    /**
+     * Computes the key of the template made with the given interpreter, virtualenv and setup requirements.
+     *
+     * @param pythonDetails the Python details, for the system interpreter
+     * @param distutilsCfg the distutils.cfg the virtual environment is customized with, if any
+     * @param bootstrap the virtualenv distributions
+     * @param setupRequirements the setup requirements installed into the template, in install order
+     * @return a key for the template directory name
+     */
+    public static String key(PythonDetails pythonDetails, String distutilsCfg, Collection<File> bootstrap, Collection<File> setupRequirements) {
+        StringBuilder description = new StringBuilder(FORMAT).append('\n');
+        File interpreter = pythonDetails.getSystemPythonInterpreter().getAbsoluteFile();
+        description.append(interpreter).append(' ').append(interpreter.length()).append(' ').append(interpreter.lastModified()).append('\n');
+        description.append(pythonDetails.getPythonVersion().getPythonMajorMinor()).append('\n');
+        description.append(distutilsCfg).append('\n');
+
+        MessageDigest digest = Digests.newSha256();
+        digest.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            // By content, since a rebuilt distribution may keep its name and size.
+            for (Collection<File> files : Arrays.asList(bootstrap, setupRequirements)) {
+                for (File file : files) {
+                    digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+                    Digests.update(digest, file.toPath());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Half of the hash is plenty, and keeps the template paths and shebangs short.
+        return Digests.toHex(Arrays.copyOf(digest.digest(), 16));
+    }
+
+    /**
+     * Removes the templates no build copied for a month, and the leftovers of killed builds.
+     *
+     * @param templatesDir the directory holding the templates
+     */
+    public static void removeUnused(File templatesDir) {
+        File[] entries = templatesDir.listFiles(File::isDirectory);
+        if (entries == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (File entry : entries) {
+            if (entry.getName().contains(SharedDirectory.STAGING_INFIX)) {
+                if (now - entry.lastModified() > LEFTOVER_AGE_MS) {
+                    logger.info("Removing leftover {}", entry);
+                    FileUtils.deleteQuietly(entry);
+                }
+                continue;
+            }
+
+            if (now - new File(entry, ORIGIN_FILE).lastModified() > UNUSED_MS) {
+                // Moved aside first, so no build copies a template half removed.
+                Path removed = entry.toPath().resolveSibling(entry.getName() + SharedDirectory.STAGING_INFIX + UUID.randomUUID());
+                try {
+                    Files.move(entry.toPath(), removed, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    logger.info("Could not remove the virtual environment template {}", entry, e);
+                    continue;
+                }
+                logger.info("Removing the unused virtual environment template {}", entry);
+                FileUtils.deleteQuietly(removed.toFile());
+            }
+        }
+    }
+
+    /**
+     * Tells if the template is made.
+     *
+     * @return true when the template can be copied
+     */
+    public boolean exists() {
+        return Files.isRegularFile(templateDir.resolve(ORIGIN_FILE));
+    }
+
+    /**
+     * Makes the template, unless another build made it in the meantime.
+     *
+     * @param build creates the virtual environment, with the setup requirements, into the directory it is given
+     */
+    public void create(Consumer<File> build) {
+        boolean made = SharedDirectory.make(templateDir, dir -> Files.isRegularFile(dir.resolve(ORIGIN_FILE)), staging -> {
+            build.accept(staging.toFile());
+            // The copies rewrite the paths of the staging directory, the template was made there.
+            Files.write(staging.resolve(ORIGIN_FILE), staging.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+        });
+        if (made) {
+            logger.info("Made the virtual environment template {}", templateDir);
+        } else {
+            logger.info("Another build made the virtual environment template {}", templateDir);
+        }
+    }
+
+    /**
+     * Copies the template to a virtual environment.
+     *
+     * @param venv the virtual environment directory
+     * @param prompt the prompt of the virtual environment
+     */
+    public void copyTo(File venv, String prompt) {
+        Path target = venv.toPath().toAbsolutePath();
+        try {
+            Path originFile = templateDir.resolve(ORIGIN_FILE);
+            Files.setLastModifiedTime(originFile, FileTime.fromMillis(System.currentTimeMillis()));
+            String origin = new String(Files.readAllBytes(originFile), StandardCharsets.UTF_8);
+            Files.walkFileTree(templateDir, new Copier(origin, target, prompt));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Copied the virtual environment template {} to {}", templateDir, target);
+    }
+
+    // Bytes as a string of the same length, so text can be rewritten without decoding it.
+    private static String latin1(String text) {
+        return new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+
+
+    private final class Copier extends SimpleFileVisitor<Path> {
+        private final String originPath;
+        private final Path target;
+        private final String origin;
+        private final String venv;
+        private final String prompt;
+
+        private Copier(String originPath, Path target, String prompt) {
+            this.originPath = originPath;
+            this.target = target;
+            this.origin = latin1(originPath);
+            this.venv = latin1(target.toString());
+            this.prompt = latin1(prompt);
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            // Compiled files record the template paths; Python compiles them again for the copy.
+            if (dir.getFileName().toString().equals("__pycache__")) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            Files.createDirectories(target.resolve(templateDir.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            String name = file.getFileName().toString();
+            if (name.equals(ORIGIN_FILE) || name.endsWith(".pyc")) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            Path copy = target.resolve(templateDir.relativize(file).toString());
+            Files.deleteIfExists(copy);
+            if (attrs.isSymbolicLink()) {
+                String link = Files.readSymbolicLink(file).toString();
+                String linkInVenv = link.startsWith(originPath) ? target + link.substring(originPath.length()) : link;
+                Files.createSymbolicLink(copy, copy.getFileSystem().getPath(linkInVenv));
+                return FileVisitResult.CONTINUE;
+            }
+
+            if (!mayRecordPaths(file)) {
+                Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+
+            String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+            if (content.contains(origin) || content.contains(TEMPLATE_PROMPT)) {
+                content = relocateShebang(content.replace(origin, venv).replace(TEMPLATE_PROMPT, prompt));
+            }
+            Files.write(copy, content.getBytes(StandardCharsets.ISO_8859_1));
+            if (Files.isExecutable(file) && !copy.toFile().setExecutable(true, false)) {
+                logger.info("Could not make {} executable", copy);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        /*
+         * Only the scripts, the activate scripts, the .pth and .egg-link files
+         * and the configs record the path or the prompt of the template.
+         * Binaries, such as the interpreter, are copied as they are, even if
+         * they happen to contain the path.
+         */
+        private boolean mayRecordPaths(Path file) throws IOException {
+            String name = file.getFileName().toString();
+            if (name.startsWith("activate") || name.endsWith(".pth") || name.endsWith(".egg-link") || name.endsWith(".cfg")) {
+                return true;
+            }
+
+            byte[] start = new byte[2];
+            try (InputStream input = Files.newInputStream(file)) {
+                return input.read(start) == 2 && start[0] == '#' && start[1] == '!';
+            }
+        }
+
+        /*
+         * A shebang that fit the template path may not fit the virtual
+         * environment path. Such scripts let the shell start the interpreter,
+         * like pip writes them.
+         */
+        private String relocateShebang(String content) {
+            Matcher matcher = SHEBANG.matcher(content);
+            if (!matcher.find() || !matcher.group(1).startsWith(venv)) {
+                return content;
+            }
+
+            String interpreter = matcher.group(1);
+            if (interpreter.substring(venv.length()).contains(" ")
+                || interpreter.length() + 3 <= MAX_SHEBANG_LENGTH && !venv.contains(" ")) {
+                return content;
+            }
+            return "#!/bin/sh\n'''exec' \"" + interpreter + "\" \"$0\" \"$@\"\n' '''\n" + content.substring(matcher.end());
+        }
+    }
+}
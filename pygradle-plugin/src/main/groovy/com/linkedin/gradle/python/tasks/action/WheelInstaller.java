@@ -0,0 +1,598 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action;
+
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.OperatingSystem;
+import com.linkedin.gradle.python.util.internal.Digests;
+import com.linkedin.gradle.python.util.internal.VenvState;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Installs wheels into a virtual environment without running pip.
+ *
+ * <p>Installing a wheel is file work only, see PEP 427. The wheel content is
+ * streamed into site-packages and the data directories of the virtual
+ * environment, the console scripts are written, and the dist-info directory
+ * gets the INSTALLER and the RECORD of the installed files, so pip can list
+ * and uninstall the package later. The dist-info directory is moved into
+ * place last, so a package is never seen as installed before all of its
+ * files are.</p>
+ *
+ * <p>No file is ever overwritten. A wheel with a file that is already there,
+ * e.g. one of a namespace package another wheel installed, is not installed,
+ * and the caller leaves it to pip. When an install fails, only the files and
+ * directories it created are removed again. Wheels that share a top-level
+ * name are installed one after the other, so one cannot remove a directory
+ * the other is about to write into.</p>
+ *
+ * <p>Byte code is not compiled ahead of time; Python compiles the modules on
+ * first import and pip finds the compiled files on uninstall either way.</p>
+ */
+public class WheelInstaller {
+
+    private static final Logger logger = Logging.getLogger(WheelInstaller.class);
+
+    private static final String INSTALLER = "pygradle";
+    private static final String DIST_INFO_SUFFIX = ".dist-info";
+    private static final String DATA_SUFFIX = ".data";
+    // Longer shebang lines are cut short by the kernel, see the BINPRM_BUF_SIZE.
+    private static final int MAX_SHEBANG_LENGTH = 127;
+
+    private final PythonDetails pythonDetails;
+    private final Path sitePackages;
+    private final int parallelism;
+
+    /**
+     * Creates the installer for a virtual environment.
+     *
+     * @param pythonDetails the details of the virtual environment
+     * @param sitePackages the site-packages directory of the virtual environment
+     * @param parallelism the number of wheels installed at the same time
+     */
+    public WheelInstaller(PythonDetails pythonDetails, Path sitePackages, int parallelism) {
+        this.pythonDetails = pythonDetails;
+        this.sitePackages = sitePackages;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Tells if the package can be installed without pip.
+     *
+     * <p>Windows needs launcher executables for console scripts, which pip
+     * brings along, and another installed version of the package has to be
+     * uninstalled first, which is better left to pip as well.</p>
+     *
+     * @param packageFile the package file to install
+     * @return true when the package is a wheel this installer can install
+     */
+    public boolean canInstall(File packageFile) {
+        if (OperatingSystem.current().isWindows() || !packageFile.isFile() || !packageFile.getName().endsWith(".whl")) {
+            return false;
+        }
+
+        return !VenvState.of(sitePackages).getVersion(packageFile.getName().split("-", 2)[0]).isPresent();
+    }
+
+    /**
+     * Installs the wheels, several at a time.
+     *
+     * @param wheels the wheels to install
+     * @return the wheels that could not be installed, possibly empty, never null
+     */
+    public List<File> installAll(Collection<File> wheels) {
+        if (wheels.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<List<File>> groups = groupByTopLevelNames(wheels);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, groups.size()));
+        try {
+            List<Future<List<File>>> installs = new ArrayList<>();
+            for (List<File> group : groups) {
+                installs.add(executor.submit(() -> installEach(group)));
+            }
+
+            Set<File> failed = new HashSet<>();
+            for (Future<List<File>> install : installs) {
+                try {
+                    failed.addAll(install.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return wheels.stream().filter(failed::contains).collect(Collectors.toList());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<File> installEach(List<File> wheels) {
+        List<File> failed = new ArrayList<>();
+        for (File wheel : wheels) {
+            try {
+                install(wheel);
+            } catch (IOException | RuntimeException e) {
+                logger.info("Could not install {} without pip", wheel, e);
+                failed.add(wheel);
+            }
+        }
+        return failed;
+    }
+
+    /*
+     * Wheels that share a top-level name in any of the install schemes end
+     * up in one group, which is installed in order.
+     */
+    private static List<List<File>> groupByTopLevelNames(Collection<File> wheels) {
+        List<List<File>> groups = new ArrayList<>();
+        List<Set<String>> groupNames = new ArrayList<>();
+        for (File wheel : wheels) {
+            List<File> group = new ArrayList<>();
+            Set<String> names = readTopLevelNames(wheel);
+            for (int i = groups.size() - 1; i >= 0; i--) {
+                if (!Collections.disjoint(groupNames.get(i), names)) {
+                    group.addAll(0, groups.remove(i));
+                    names.addAll(groupNames.remove(i));
+                }
+            }
+            group.add(wheel);
+            groups.add(group);
+            groupNames.add(names);
+        }
+        return groups;
+    }
+
+    private static Set<String> readTopLevelNames(File wheel) {
+        Set<String> names = new HashSet<>();
+        try (ZipFile zipFile = new ZipFile(wheel)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String[] segments = entries.nextElement().getName().split("/", 3);
+                if (segments[0].endsWith(DATA_SUFFIX) && segments.length == 3) {
+                    String scheme = segments[1].equals("platlib") ? "purelib" : segments[1];
+                    names.add(scheme + "/" + segments[2].split("/", 2)[0]);
+                } else {
+                    names.add("purelib/" + segments[0]);
+                }
+            }
+        } catch (IOException e) {
+            // The install fails on its own, without touching any file.
+            logger.debug("Could not read {}", wheel, e);
+        }
+        return names;
+    }
+
+    /**
+     * Installs the wheel.
+     *
+     * <p>The files and directories created before a failure are removed again.</p>
+     *
+     * @param wheel the wheel to install
+     * @throws java.nio.file.FileAlreadyExistsException when a file of the wheel is already there
+     * @throws IOException when the wheel is invalid or cannot be installed
+     */
+    public void install(File wheel) throws IOException {
+        List<Path> created = new ArrayList<>();
+        Path staging = null;
+        try (ZipFile zipFile = new ZipFile(wheel)) {
+            String distInfo = findDistInfo(zipFile, wheel);
+            String dataDir = distInfo.substring(0, distInfo.length() - DIST_INFO_SUFFIX.length()) + DATA_SUFFIX;
+            checkWheelVersion(zipFile, distInfo, wheel);
+            Map<String, String> expectedHashes = readRecordedHashes(zipFile, distInfo);
+
+            Path distInfoPath = resolveInside(sitePackages, distInfo);
+            staging = sitePackages.resolve("." + distInfo + ".tmp");
+            FileUtils.deleteQuietly(staging.toFile());
+
+            Map<Path, String> record = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.equals(distInfo + "/RECORD")) {
+                    continue;
+                }
+
+                Path target;
+                Path recorded;
+                boolean script = false;
+                if (name.startsWith(distInfo + "/")) {
+                    // Dist-info files are staged, so the package looks installed only once it is.
+                    target = resolveInside(staging, name.substring(distInfo.length() + 1));
+                    recorded = distInfoPath.resolve(name.substring(distInfo.length() + 1));
+                } else if (name.startsWith(dataDir + "/")) {
+                    String[] schemeAndPath = name.substring(dataDir.length() + 1).split("/", 2);
+                    if (schemeAndPath.length < 2) {
+                        continue;
+                    }
+                    target = resolveInside(getSchemeDir(schemeAndPath[0], distInfo, wheel), schemeAndPath[1]);
+                    recorded = target;
+                    script = schemeAndPath[0].equals("scripts");
+                } else {
+                    target = resolveInside(sitePackages, name);
+                    recorded = target;
+                }
+
+                createDirectories(target.getParent(), created);
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    String hash = script ? writeScript(input, target, created) : write(input, target, created);
+                    String expected = expectedHashes.get(name);
+                    if (expected != null && !script && !expected.equals(hash.substring(0, hash.indexOf(',')))) {
+                        throw new IOException("The content of " + name + " in " + wheel + " does not match its RECORD");
+                    }
+                    record.put(recorded, hash);
+                }
+            }
+
+            Path entryPoints = staging.resolve("entry_points.txt");
+            if (Files.exists(entryPoints)) {
+                for (Map.Entry<String, String> script : readConsoleScripts(entryPoints).entrySet()) {
+                    Path target = getScriptsDir().resolve(script.getKey());
+                    createDirectories(target.getParent(), created);
+                    record.put(target, writeConsoleScript(script.getValue(), target, created));
+                }
+            }
+
+            createDirectories(staging, created);
+            record.put(distInfoPath.resolve("INSTALLER"), write(INSTALLER + "\n", staging.resolve("INSTALLER"), created));
+            writeRecord(record, distInfoPath, staging.resolve("RECORD"));
+
+            Files.move(staging, distInfoPath, ATOMIC_MOVE);
+            staging = null;
+        } catch (IOException | RuntimeException e) {
+            rollback(created, e);
+            throw e;
+        } finally {
+            if (staging != null) {
+                FileUtils.deleteQuietly(staging.toFile());
+            }
+        }
+    }
+
+    /*
+     * Creates the missing directories, remembering which ones this install
+     * created. A directory created by a concurrent install is not ours.
+     */
+    private static void createDirectories(Path dir, List<Path> created) throws IOException {
+        if (Files.isDirectory(dir)) {
+            return;
+        }
+
+        createDirectories(dir.getParent(), created);
+        try {
+            Files.createDirectory(dir);
+            created.add(dir);
+        } catch (FileAlreadyExistsException e) {
+            if (!Files.isDirectory(dir)) {
+                throw e;
+            }
+        }
+    }
+
+    // Removes what the install created, the files before the directories holding them.
+    private static void rollback(List<Path> created, Exception failure) {
+        for (int i = created.size() - 1; i >= 0; i--) {
+            Path path = created.get(i);
+            try {
+                Files.deleteIfExists(path);
+            } catch (DirectoryNotEmptyException e) {
+                logger.info("Keeping {}, another package installed files into it", path);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private static String findDistInfo(ZipFile zipFile, File wheel) throws IOException {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            int slash = name.indexOf('/');
+            if (slash > 0 && name.substring(0, slash).endsWith(DIST_INFO_SUFFIX) && name.substring(slash + 1).equals("WHEEL")) {
+                return name.substring(0, slash);
+            }
+        }
+        throw new IOException("No dist-info directory with a WHEEL file in " + wheel);
+    }
+
+    private static void checkWheelVersion(ZipFile zipFile, String distInfo, File wheel) throws IOException {
+        for (String line : readLines(zipFile, distInfo + "/WHEEL")) {
+            if (line.startsWith("Wheel-Version:")) {
+                String version = line.substring("Wheel-Version:".length()).trim();
+                if (!version.startsWith("1.")) {
+                    throw new IOException("Unsupported Wheel-Version " + version + " of " + wheel);
+                }
+                return;
+            }
+        }
+        throw new IOException("No Wheel-Version in " + wheel);
+    }
+
+    private static Map<String, String> readRecordedHashes(ZipFile zipFile, String distInfo) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        for (String line : readLines(zipFile, distInfo + "/RECORD")) {
+            List<String> fields = parseCsvLine(line);
+            if (fields.size() >= 2 && !fields.get(1).isEmpty()) {
+                hashes.put(fields.get(0), fields.get(1));
+            }
+        }
+        return hashes;
+    }
+
+    private static List<String> readLines(ZipFile zipFile, String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /*
+     * The schemes of the data directory, as a virtual environment lays them out.
+     * Python puts both purelib and platlib into site-packages there.
+     */
+    private Path getSchemeDir(String scheme, String distInfo, File wheel) throws IOException {
+        switch (scheme) {
+            case "purelib":
+            case "platlib":
+                return sitePackages;
+            case "scripts":
+                return getScriptsDir();
+            case "headers":
+                String distName = distInfo.split("-", 2)[0];
+                return pythonDetails.getVirtualEnv().toPath().resolve(Paths.get("include", "site",
+                    "python" + pythonDetails.getPythonVersion().getPythonMajorMinor(), distName));
+            case "data":
+                return pythonDetails.getVirtualEnv().toPath();
+            default:
+                throw new IOException("Unknown data scheme " + scheme + " in " + wheel);
+        }
+    }
+
+    private Path getScriptsDir() {
+        return pythonDetails.getVirtualEnvInterpreter().toPath().getParent();
+    }
+
+    // Rejects paths escaping the directory, such as ../../etc/passwd.
+    private static Path resolveInside(Path dir, String relative) throws IOException {
+        Path resolved = dir.resolve(relative).normalize();
+        if (!resolved.startsWith(dir.normalize())) {
+            throw new IOException("Wheel entry " + relative + " is outside of " + dir);
+        }
+        return resolved;
+    }
+
+    // Creates the file, never replacing one, and remembers it as created once it is.
+    private static String write(InputStream input, Path target, List<Path> created) throws IOException {
+        MessageDigest digest = Digests.newSha256();
+        long size;
+        OutputStream file = Files.newOutputStream(target, CREATE_NEW, WRITE);
+        created.add(target);
+        try (OutputStream output = new DigestOutputStream(file, digest)) {
+            size = copy(input, output);
+        }
+        return hashAndSize(digest, size);
+    }
+
+    private static String write(String content, Path target, List<Path> created) throws IOException {
+        return write(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), target, created);
+    }
+
+    /*
+     * Scripts with a #!python shebang get the interpreter of the virtual
+     * environment, like pip does. Other scripts are copied as they are.
+     */
+    private String writeScript(InputStream input, Path target, List<Path> created) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        copy(input, content);
+        String text = new String(content.toByteArray(), StandardCharsets.ISO_8859_1);
+
+        String hash;
+        if (text.startsWith("#!python")) {
+            int endOfLine = text.indexOf('\n');
+            String rest = endOfLine < 0 ? "" : text.substring(endOfLine + 1);
+            byte[] bytes = (getShebang() + rest).getBytes(StandardCharsets.ISO_8859_1);
+            hash = write(new ByteArrayInputStream(bytes), target, created);
+        } else {
+            hash = write(new ByteArrayInputStream(content.toByteArray()), target, created);
+        }
+
+        makeExecutable(target);
+        return hash;
+    }
+
+    private String writeConsoleScript(String entryPoint, Path target, List<Path> created) throws IOException {
+        String[] moduleAndAttribute = entryPoint.split(":", 2);
+        String module = moduleAndAttribute[0].trim();
+        String attribute = moduleAndAttribute.length > 1 ? moduleAndAttribute[1].trim() : "";
+        if (module.isEmpty() || attribute.isEmpty()) {
+            // Scripts need a function to call, pip rejects such entry points with a message of its own.
+            throw new IOException("Entry point " + entryPoint + " of " + target.getFileName() + " has no function to call");
+        }
+        String importName = attribute.split("\\.", 2)[0];
+
+        // The same script pip writes, so the packages cannot tell the difference.
+        String script = getShebang()
+            + "# -*- coding: utf-8 -*-\n"
+            + "import re\n"
+            + "import sys\n"
+            + "from " + module + " import " + importName + "\n"
+            + "if __name__ == '__main__':\n"
+            + "    sys.argv[0] = re.sub(r'(-script\\.pyw|\\.exe)?$', '', sys.argv[0])\n"
+            + "    sys.exit(" + attribute + "())\n";
+
+        String hash = write(script, target, created);
+        makeExecutable(target);
+        return hash;
+    }
+
+    private String getShebang() {
+        String interpreter = pythonDetails.getVirtualEnvInterpreter().getAbsolutePath();
+        if (interpreter.length() + 3 > MAX_SHEBANG_LENGTH || interpreter.contains(" ")) {
+            // Too long or spaced for a shebang, let the shell start the interpreter.
+            return "#!/bin/sh\n'''exec' \"" + interpreter + "\" \"$0\" \"$@\"\n' '''\n";
+        }
+        return "#!" + interpreter + "\n";
+    }
+
+    private static void makeExecutable(Path target) {
+        if (!target.toFile().setExecutable(true, false)) {
+            logger.info("Could not make {} executable", target);
+        }
+    }
+
+    private static Map<String, String> readConsoleScripts(Path entryPoints) throws IOException {
+        Map<String, String> scripts = new LinkedHashMap<>();
+        String section = "";
+        for (String line : Files.readAllLines(entryPoints, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith(";")) {
+                continue;
+            }
+            if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                section = trimmed.substring(1, trimmed.length() - 1).trim();
+                continue;
+            }
+
+            int equals = trimmed.indexOf('=');
+            if (equals > 0 && (section.equals("console_scripts") || section.equals("gui_scripts"))) {
+                String value = trimmed.substring(equals + 1).trim();
+                // Extras, as in "module:function [extra]", do not change the script.
+                int extras = value.indexOf('[');
+                scripts.put(trimmed.substring(0, equals).trim(), extras < 0 ? value : value.substring(0, extras).trim());
+            }
+        }
+        return scripts;
+    }
+
+    private void writeRecord(Map<Path, String> record, Path distInfoPath, Path target) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<Path, String> entry : record.entrySet()) {
+            content.append(toCsvField(toRecordPath(entry.getKey()))).append(',').append(entry.getValue()).append('\n');
+        }
+        content.append(toCsvField(toRecordPath(distInfoPath.resolve("RECORD")))).append(",,\n");
+        Files.write(target, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // RECORD paths are relative to site-packages, also for scripts and data outside of it.
+    private String toRecordPath(Path path) {
+        return sitePackages.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String toCsvField(String value) {
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+            size += read;
+        }
+        return size;
+    }
+
+    private static String hashAndSize(MessageDigest digest, long size) {
+        String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        return "sha256=" + hash + "," + size;
+    }
+}
@@ -66,14 +66,21 @@ abstract class AbstractPipAction {
     }
 
     public void execute(PackageInfo packageInfo, List<String> extraArgs) {
+        if (isExcluded(packageInfo)) {
+            return;
+        }
+
+        doPipOperation(packageInfo, extraArgs);
+    }
+
+    boolean isExcluded(PackageInfo packageInfo) {
         if (packageExcludeFilter != null && packageExcludeFilter.isSatisfiedBy(packageInfo)) {
             if (PythonHelpers.isPlainOrVerbose(project)) {
                 getLogger().lifecycle("Skipping {} - Excluded", packageInfo.toShortHand());
             }
-            return;
+            return true;
         }
-
-        doPipOperation(packageInfo, extraArgs);
+        return false;
     }
 
     void throwIfPythonVersionIsNotSupported(PackageInfo packageInfo) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action.pip;
+
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.util.PackageSettings;
+import com.linkedin.gradle.python.wheel.WheelCache;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.specs.Spec;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reports how many of the wheels a task needs are in the wheel cache, at info level.
+ *
+ * <p>The wheels of all the packages are looked up at once, before any of
+ * them is installed or built, so the cache hit rate is known up front. Only
+ * the local cache layers are read, so the report never downloads a wheel
+ * nor keeps one from being cleaned up. Nothing is looked up unless info
+ * logging is enabled.</p>
+ */
+public final class CachedWheelsReport {
+
+    private static final Logger logger = Logging.getLogger(CachedWheelsReport.class);
+
+    private CachedWheelsReport() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Logs the number of wheels found in the local cache layers.
+     *
+     * @param installables the packages the task works on
+     * @param pythonDetails the Python interpreter and other details
+     * @param wheelCache the wheel cache of the task
+     * @param packageSettings the settings telling which packages are built from source
+     * @param packageExcludeFilter the packages the task skips, may be null
+     */
+    public static void report(Collection<File> installables, PythonDetails pythonDetails, WheelCache wheelCache,
+                              PackageSettings<PackageInfo> packageSettings, Spec<PackageInfo> packageExcludeFilter) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        List<PackageInfo> packages = installables.stream()
+            .filter(it -> !it.isDirectory())
+            .map(PackageInfo::fromPath)
+            .filter(it -> !packageSettings.requiresSourceBuild(it) && !packageSettings.isCustomized(it)
+                && (packageExcludeFilter == null || !packageExcludeFilter.isSatisfiedBy(it)))
+            .collect(Collectors.toList());
+        if (packages.isEmpty()) {
+            return;
+        }
+
+        Map<PackageInfo, Optional<File>> wheels = wheelCache.findLocalWheels(packages, pythonDetails);
+        long found = wheels.values().stream().filter(Optional::isPresent).count();
+        logger.info("Found {} of {} wheels in the wheel cache", found, packages.size());
+    }
+}
@@ -18,11 +18,12 @@ package com.linkedin.gradle.python.tasks.action.pip;
 import com.linkedin.gradle.python.extension.PythonDetails;
 import com.linkedin.gradle.python.plugin.PythonHelpers;
 import com.linkedin.gradle.python.exception.PipExecutionException;
+import com.linkedin.gradle.python.tasks.action.WheelInstaller;
 import com.linkedin.gradle.python.tasks.exec.ExternalExec;
 import com.linkedin.gradle.python.util.EnvironmentMerger;
-import com.linkedin.gradle.python.util.OperatingSystem;
 import com.linkedin.gradle.python.util.PackageInfo;
 import com.linkedin.gradle.python.util.PackageSettings;
+import com.linkedin.gradle.python.util.internal.VenvState;
 import com.linkedin.gradle.python.wheel.WheelCache;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
@@ -32,13 +33,16 @@ import org.gradle.process.ExecResult;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 
 public class PipInstallAction extends AbstractPipAction {
@@ -47,6 +51,7 @@ public class PipInstallAction extends AbstractPipAction {
 
     private final Path sitePackagesPath;
     private final WheelBuilder wheelBuilder;
+    private WheelInstaller wheelInstaller;
 
     public PipInstallAction(PackageSettings<PackageInfo> packageSettings,
                             Project project,
@@ -56,7 +61,7 @@ public class PipInstallAction extends AbstractPipAction {
                             Spec<PackageInfo> packageExcludeFilter) {
         super(packageSettings, project, externalExec, baseEnvironment, pythonDetails, wheelCache,
                 environmentMerger, packageExcludeFilter);
-        this.sitePackagesPath = findSitePackages(pythonDetails);
+        this.sitePackagesPath = VenvState.findSitePackages(pythonDetails);
         this.wheelBuilder = new WheelBuilder(packageSettings, project, externalExec, baseEnvironment, pythonDetails,
                 wheelCache, environmentMerger, packageExcludeFilter);
     }
@@ -65,13 +70,13 @@ public class PipInstallAction extends AbstractPipAction {
         return sitePackagesPath;
     }
 
-    private static Path findSitePackages(PythonDetails pythonDetails) {
-        String pyVersion = pythonDetails.getPythonVersion().getPythonMajorMinor();
-        if (OperatingSystem.current().isUnix()) {
-            return pythonDetails.getVirtualEnv().toPath().resolve(Paths.get("lib", "python" + pyVersion, "site-packages"));
-        } else {
-            return pythonDetails.getVirtualEnv().toPath().resolve(Paths.get("Lib", "site-packages"));
-        }
+    /**
+     * Sets the installer used for wheels that need no pip options, instead of pip.
+     *
+     * @param wheelInstaller the installer, or null to install everything with pip
+     */
+    public void setWheelInstaller(WheelInstaller wheelInstaller) {
+        this.wheelInstaller = wheelInstaller;
     }
 
     @Override
@@ -79,31 +84,70 @@ public class PipInstallAction extends AbstractPipAction {
         return logger;
     }
 
+    /**
+     * Installs the packages in order, sharing one pip command among packages where possible.
+     *
+     * <p>Each run of packages that need no environment, options or source
+     * build of their own is installed with a single pip command, saving the
+     * interpreter and pip startup for every package but the first. Other
+     * packages are installed on their own, in between the runs, so the
+     * dependency order is kept.</p>
+     *
+     * <p>When the shared pip command fails, its packages are installed one
+     * by one, so the failure is reported for the package that caused it.</p>
+     *
+     * @param packages the packages to install, in dependency order
+     * @param extraArgs the arguments passed to every pip command
+     */
+    public void executeBatched(List<PackageInfo> packages, List<String> extraArgs) {
+        boolean editable = extraArgs.contains("-e") || extraArgs.contains("--editable");
+        List<PackageInfo> batch = new ArrayList<>();
+
+        for (PackageInfo packageInfo : packages) {
+            if (isExcluded(packageInfo)) {
+                continue;
+            }
+
+            if (editable || !isBatchable(packageInfo)) {
+                installBatch(batch, extraArgs);
+                batch.clear();
+                doPipOperation(packageInfo, extraArgs);
+                continue;
+            }
+
+            throwIfPythonVersionIsNotSupported(packageInfo);
+            if (!skipIfInstalled(packageInfo)) {
+                batch.add(packageInfo);
+            }
+        }
+
+        installBatch(batch, extraArgs);
+    }
+
     @Override
     void doPipOperation(PackageInfo packageInfo, List<String> extraArgs) {
         throwIfPythonVersionIsNotSupported(packageInfo);
 
-        String pyVersion = pythonDetails.getPythonVersion().getPythonMajorMinor();
-        String sanitizedName = packageInfo.getName().replace('-', '_');
-
-        // See: https://www.python.org/dev/peps/pep-0376/
-        File egg = sitePackagesPath.resolve(sanitizedName + "-" + packageInfo.getVersion() + "-py" + pyVersion + ".egg-info").toFile();
-        File dist = sitePackagesPath.resolve(sanitizedName + "-" + packageInfo.getVersion() + ".dist-info").toFile();
+        if (skipIfInstalled(packageInfo)) {
+            return;
+        }
 
-        if (!packageSettings.requiresSourceBuild(packageInfo)
-                && (project.file(egg).exists() || project.file(dist).exists())) {
-            if (PythonHelpers.isPlainOrVerbose(project)) {
-                logger.lifecycle("Skipping {} - Installed", packageInfo.toShortHand());
+        File packageFile = wheelBuilder.getPackage(packageInfo, extraArgs);
+        if (canInstallNatively(packageInfo, packageFile, extraArgs)) {
+            try {
+                wheelInstaller.install(packageFile);
+                logger.info("Installed {} without pip", packageFile.getName());
+                return;
+            } catch (IOException e) {
+                logger.info("Could not install {} without pip, falling back to pip", packageFile.getName(), e);
             }
-            wheelBuilder.updateWheelReadiness(packageInfo);
-            return;
         }
 
         Map<String, String> mergedEnv = environmentMerger.mergeEnvironments(
             Arrays.asList(baseEnvironment, packageSettings.getEnvironment(packageInfo)));
 
 
-        List<String> commandLine = makeCommandLine(packageInfo, extraArgs);
+        List<String> commandLine = makeCommandLine(packageInfo, packageFile, extraArgs);
 
         if (PythonHelpers.isPlainOrVerbose(project)) {
             logger.lifecycle("Installing {}", packageInfo.toShortHand());
@@ -129,13 +173,118 @@ public class PipInstallAction extends AbstractPipAction {
         }
     }
 
-    private List<String> makeCommandLine(PackageInfo packageInfo, List<String> extraArgs) {
+    private boolean skipIfInstalled(PackageInfo packageInfo) {
+        // See: https://www.python.org/dev/peps/pep-0376/
+        if (!packageSettings.requiresSourceBuild(packageInfo)
+                && VenvState.of(sitePackagesPath).isInstalled(packageInfo.getName(), packageInfo.getVersion())) {
+            if (PythonHelpers.isPlainOrVerbose(project)) {
+                logger.lifecycle("Skipping {} - Installed", packageInfo.toShortHand());
+            }
+            wheelBuilder.updateWheelReadiness(packageInfo);
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Packages with their own environment or options need a pip command of
+     * their own. So do directories, which are usually installed editable.
+     */
+    private boolean isBatchable(PackageInfo packageInfo) {
+        return !packageInfo.getPackageFile().isDirectory()
+            && !packageSettings.requiresSourceBuild(packageInfo)
+            && !packageSettings.isCustomized(packageInfo)
+            && isEmpty(packageSettings.getEnvironment(packageInfo))
+            && getGlobalOptions(packageInfo).isEmpty()
+            && getInstallOptions(packageInfo).isEmpty();
+    }
+
+    private boolean canInstallNatively(PackageInfo packageInfo, File packageFile, List<String> extraArgs) {
+        return wheelInstaller != null
+            && extraArgs.isEmpty()
+            && isBatchable(packageInfo)
+            && wheelInstaller.canInstall(packageFile);
+    }
+
+    private static boolean isEmpty(Map<String, String> environment) {
+        return environment == null || environment.isEmpty();
+    }
+
+    private void installBatch(List<PackageInfo> batch, List<String> extraArgs) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (batch.size() == 1) {
+            doPipOperation(batch.get(0), extraArgs);
+            return;
+        }
+
+        Map<PackageInfo, File> packageFiles = new LinkedHashMap<>();
+        for (PackageInfo packageInfo : batch) {
+            packageFiles.put(packageInfo, wheelBuilder.getPackage(packageInfo, extraArgs));
+        }
+        installNatively(packageFiles, extraArgs);
+        if (packageFiles.isEmpty()) {
+            return;
+        }
+
+        List<String> commandLine = new ArrayList<>();
+        commandLine.addAll(baseInstallArguments());
+        commandLine.addAll(extraArgs);
+        for (File packageFile : packageFiles.values()) {
+            commandLine.add(packageFile.toString());
+        }
+
+        if (PythonHelpers.isPlainOrVerbose(project)) {
+            logger.lifecycle("Installing {}", packageFiles.keySet().stream().map(PackageInfo::toShortHand).collect(Collectors.joining(", ")));
+        }
+
+        OutputStream stream = new ByteArrayOutputStream();
+        ExecResult installResult = execCommand(environmentMerger.mergeEnvironments(Collections.singletonList(baseEnvironment)),
+            commandLine, stream);
+
+        String message = stream.toString().trim();
+        logger.info(message);
+        if (installResult.getExitValue() != 0) {
+            // The packages pip installed before the failure are skipped as installed.
+            logger.info("Installing {} packages at once failed, installing them one by one", packageFiles.size());
+            for (PackageInfo packageInfo : packageFiles.keySet()) {
+                doPipOperation(packageInfo, extraArgs);
+            }
+        }
+    }
+
+    /*
+     * Installs the wheels of the batch without pip, several at a time, and
+     * removes them from the batch. The packages a batch is made of have no
+     * dependencies on each other to install, pip gets --no-deps too.
+     */
+    private void installNatively(Map<PackageInfo, File> packageFiles, List<String> extraArgs) {
+        if (wheelInstaller == null || !extraArgs.isEmpty()) {
+            return;
+        }
+
+        List<File> wheels = packageFiles.values().stream().filter(wheelInstaller::canInstall).collect(Collectors.toList());
+        if (wheels.isEmpty()) {
+            return;
+        }
+
+        if (PythonHelpers.isPlainOrVerbose(project)) {
+            logger.lifecycle("Installing {} wheels without pip", wheels.size());
+        }
+
+        wheels.removeAll(wheelInstaller.installAll(wheels));
+        packageFiles.values().removeAll(wheels);
+    }
+
+    private List<String> makeCommandLine(PackageInfo packageInfo, File packageFile, List<String> extraArgs) {
         List<String> commandLine = new ArrayList<>();
         commandLine.addAll(baseInstallArguments());
         commandLine.addAll(extraArgs);
         commandLine.addAll(getGlobalOptions(packageInfo));
         commandLine.addAll(getInstallOptions(packageInfo));
-        commandLine.add(wheelBuilder.getPackage(packageInfo, extraArgs).toString());
+        commandLine.add(packageFile.toString());
 
         return commandLine;
     }
@@ -24,6 +24,8 @@ import com.linkedin.gradle.python.util.EnvironmentMerger;
 import com.linkedin.gradle.python.util.PackageInfo;
 import com.linkedin.gradle.python.util.PackageSettings;
 import com.linkedin.gradle.python.wheel.WheelCache;
+import com.linkedin.gradle.python.wheel.internal.WheelBlobStore;
+import com.linkedin.gradle.python.wheel.internal.WheelFiles;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.Project;
 import org.gradle.api.file.ConfigurableFileTree;
@@ -37,6 +39,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -111,11 +115,7 @@ public class PipWheelAction extends AbstractPipAction {
                 File wheelCopy = new File(wheelExtension.getWheelCache(), wheelFile.getName());
 
                 if (!wheelFile.equals(wheelCopy)) {
-                    try {
-                        FileUtils.copyFile(wheelFile, wheelCopy);
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
+                    copyWheel(wheelFile, wheelCopy);
                 }
 
                 if (PythonHelpers.isPlainOrVerbose(project)) {
@@ -140,6 +140,33 @@ public class PipWheelAction extends AbstractPipAction {
         return false;
     }
 
+    /*
+     * The copy shares its content with the host layer when there is one.
+     * An up to date copy from an earlier build is left alone. The copy is
+     * published atomically, so a killed build leaves no truncated wheel.
+     */
+    private void copyWheel(File wheelFile, File wheelCopy) {
+        try {
+            if (wheelCopy.exists() && Files.isSameFile(wheelFile.toPath(), wheelCopy.toPath())) {
+                return;
+            }
+
+            Files.deleteIfExists(wheelCopy.toPath());
+            FileUtils.forceMkdir(wheelCopy.getParentFile());
+
+            Optional<File> hostLayerDir = wheelExtension.getHostLayerWheelCache();
+            if (hostLayerDir.isPresent()) {
+                new WheelBlobStore(hostLayerDir.get()).materialize(wheelFile, wheelCopy);
+            } else {
+                WheelFiles.copy(wheelFile.toPath(), wheelCopy.toPath());
+            }
+        } catch (FileAlreadyExistsException e) {
+            logger.info("Wheel {} already copied by another build", wheelCopy);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private List<String> makeCommandLine(PackageInfo packageInfo, List<String> extraArgs) {
         List<String> commandLine = new ArrayList<>();
         commandLine.addAll(Arrays.asList(
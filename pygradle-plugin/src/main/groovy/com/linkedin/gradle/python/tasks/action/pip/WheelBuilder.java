@@ -24,6 +24,9 @@ import com.linkedin.gradle.python.util.PackageInfo;
 import com.linkedin.gradle.python.util.PackageSettings;
 import com.linkedin.gradle.python.wheel.WheelCache;
 import com.linkedin.gradle.python.wheel.WheelCacheLayer;
+import com.linkedin.gradle.python.wheel.WheelCacheLock;
+import com.linkedin.gradle.python.wheel.internal.InFlightWheelBuilds;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildPermits;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -190,6 +193,9 @@ public class WheelBuilder extends AbstractPipAction {
                 return packageFile;
             } else if (!customBuild) {
                 wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.HOST_LAYER);
+                if (!wheel.isPresent()) {
+                    wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.REMOTE_LAYER);
+                }
                 if (wheel.isPresent()) {
                     packageFile = wheel.get();
                     wheelCache.storeWheel(packageFile, WheelCacheLayer.PROJECT_LAYER);
@@ -199,37 +205,90 @@ public class WheelBuilder extends AbstractPipAction {
             }
         }
 
-        // Build the wheel into the project layer by default.
-        try {
-            execute(packageInfo, extraArgs);
-        } catch (PipExecutionException e) {
-            if (!customBuild) {
-                /*
-                 * The users may need PythonEnvironment for their wheel build.
-                 * We must treat this as a custom build and set a flag for
-                 * doPipOperation to merge PythonEnvironment in accordingly.
-                 * Then retry.
-                 */
-                customBuild = true;
-                try {
-                    execute(packageInfo, extraArgs);
-                } catch (PipExecutionException ignored) {
-                    wheelCache.setWheelsReady(false);
+        /*
+         * Other projects of the build, or other builds on the host, may be
+         * building the same wheel right now. Wait for them and take their
+         * wheel rather than build it again.
+         */
+        if (!customBuild) {
+            String pythonVersion = pythonDetails.getPythonVersion().getPythonMajorMinor();
+            try (InFlightWheelBuilds.Registration build = InFlightWheelBuilds.register(name, version, pythonVersion)) {
+                if (!build.isOwner()) {
+                    // The wheel of the other project may not fit this interpreter, look for one that does.
+                    build.await();
+                    wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.HOST_LAYER);
+                    if (wheel.isPresent()) {
+                        packageFile = wheel.get();
+                        wheelCache.storeWheel(packageFile, WheelCacheLayer.PROJECT_LAYER);
+                        logLifecycle(packageInfo, packageFile);
+                        return packageFile;
+                    }
+                    // The other project built no wheel to share, e.g. because it failed.
+                    return buildPackage(packageInfo, extraArgs, name, version, packageFile);
                 }
-            } else {
-                wheelCache.setWheelsReady(false);
+
+                try (WheelCacheLock ignored = wheelCache.lockWheelBuild(name, version, pythonDetails)) {
+                    wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.HOST_LAYER);
+                    if (wheel.isPresent()) {
+                        packageFile = wheel.get();
+                        wheelCache.storeWheel(packageFile, WheelCacheLayer.PROJECT_LAYER);
+                        logLifecycle(packageInfo, packageFile);
+                    } else {
+                        packageFile = buildPackage(packageInfo, extraArgs, name, version, packageFile);
+                    }
+                }
+
+                // Only a wheel stored in the host layer is built without customization and can be shared.
+                build.complete(wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.HOST_LAYER));
+                return packageFile;
             }
         }
 
-        wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.PROJECT_LAYER);
-        if (wheel.isPresent()) {
-            packageFile = wheel.get();
-            if (!customBuild) {
-                wheelCache.storeWheel(packageFile, WheelCacheLayer.HOST_LAYER);
+        return buildPackage(packageInfo, extraArgs, name, version, packageFile);
+    }
+
+    /*
+     * The permits are shared with the other projects of the build, so all
+     * of them together build at most --max-workers wheels at the same time.
+     */
+    private File buildPackage(PackageInfo packageInfo, List<String> extraArgs, String name, String version, File packageFile) {
+        try (WheelBuildPermits.Permit permit = WheelBuildPermits.forBuild(project.getGradle()).acquire()) {
+            Optional<File> wheel;
+
+            // Build the wheel into the project layer by default.
+            try {
+                execute(packageInfo, extraArgs);
+            } catch (PipExecutionException e) {
+                if (!customBuild) {
+                    /*
+                     * The users may need PythonEnvironment for their wheel build.
+                     * We must treat this as a custom build and set a flag for
+                     * doPipOperation to merge PythonEnvironment in accordingly.
+                     * Then retry.
+                     */
+                    customBuild = true;
+                    try {
+                        execute(packageInfo, extraArgs);
+                    } catch (PipExecutionException ignored) {
+                        wheelCache.setWheelsReady(false);
+                    }
+                } else {
+                    wheelCache.setWheelsReady(false);
+                }
             }
-        }
 
-        return packageFile;
+            wheel = wheelCache.findWheel(name, version, pythonDetails, WheelCacheLayer.PROJECT_LAYER);
+            if (wheel.isPresent()) {
+                packageFile = wheel.get();
+                if (!customBuild) {
+                    wheelCache.storeWheel(packageFile, WheelCacheLayer.HOST_LAYER);
+                    // Uploads in the background, so other hosts do not build it again.
+                    wheelCache.storeWheel(packageFile, WheelCacheLayer.REMOTE_LAYER);
+                }
+            }
+
+            return packageFile;
+        }
     }
 
     /**
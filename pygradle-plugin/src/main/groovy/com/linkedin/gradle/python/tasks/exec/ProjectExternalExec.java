@@ -30,6 +30,8 @@ public class ProjectExternalExec implements ExternalExec {
 
     @Override
     public ExecResult exec(Action<? super ExecSpec> action) {
-        return project.exec(action);
+        return PythonHelperProcess.forProject(project)
+            .flatMap(helper -> helper.tryExec(project, action))
+            .orElseGet(() -> project.exec(action));
     }
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.exec;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.linkedin.gradle.python.PythonExtension;
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.internal.VenvState;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.process.ExecResult;
+import org.gradle.process.ExecSpec;
+import org.gradle.process.internal.ExecException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * A long-lived Python process running the pip and setup.py commands of a virtual environment.
+ *
+ * <p>Starting the interpreter and importing pip and setuptools costs more
+ * than many of the pip commands a build runs. The helper pays for it once
+ * per virtual environment and build: it reads one command per line of JSON
+ * on stdin, runs it in its own interpreter and answers with the exit code,
+ * the standard output and the error output on stdout.</p>
+ *
+ * <p>It runs pip wheel, install, uninstall and freeze, setup.py entrypoints
+ * and the wheel tags probe. The modules and the package metadata pip loaded
+ * stay in the helper, so after an install or an uninstall the helper is
+ * stopped and the next command starts a new one. So the runs of pip wheel,
+ * one per package, share a helper. When the installed packages change by a
+ * regular exec, the helper is restarted before its next command too. pip,
+ * setuptools and wheel are not installed by the helper: pip cannot replace
+ * the modules it runs from.</p>
+ *
+ * <p>Gradle 5 has no build services, so the helpers belong to the root
+ * build, like {@link com.linkedin.gradle.python.wheel.internal.WheelBuildPermits},
+ * and are stopped when the build finishes. A command the helper cannot run,
+ * or runs while busy with another one, goes back to a regular exec.</p>
+ */
+public final class PythonHelperProcess implements AutoCloseable {
+
+    private static final Logger logger = Logging.getLogger(PythonHelperProcess.class);
+
+    private static final String HELPER_RESOURCE = "templates/python-helper.py";
+    private static final Pattern BUILD_TOOL = Pattern.compile("(pip|setuptools|wheel)-\\d.*");
+    private static final Map<Gradle, Map<File, PythonHelperProcess>> BUILDS = new WeakHashMap<>();
+
+    private final File interpreter;
+    private final File pip;
+    private final Path sitePackages;
+    private final File script;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Process process;
+    private Writer requests;
+    private BufferedReader responses;
+    // The packages installed when the helper started.
+    private Map<String, String> packages;
+    private boolean broken;
+
+    PythonHelperProcess(File interpreter, File pip, Path sitePackages, File script) {
+        this.interpreter = interpreter.getAbsoluteFile();
+        this.pip = pip.getAbsoluteFile();
+        this.sitePackages = sitePackages;
+        this.script = script;
+    }
+
+    /**
+     * Gets the helper of the project's virtual environment.
+     *
+     * @param project the project running the command
+     * @return the helper, unless the project does not use one
+     */
+    public static Optional<PythonHelperProcess> forProject(Project project) {
+        PythonExtension settings = project.getExtensions().findByType(PythonExtension.class);
+        if (settings == null || !settings.pythonHelper) {
+            return Optional.empty();
+        }
+
+        PythonDetails pythonDetails = settings.getDetails();
+        if (!pythonDetails.getVirtualEnvInterpreter().isFile()) {
+            return Optional.empty();
+        }
+
+        Gradle root = project.getGradle();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+
+        synchronized (BUILDS) {
+            Map<File, PythonHelperProcess> helpers = BUILDS.get(root);
+            if (helpers == null) {
+                Map<File, PythonHelperProcess> created = new HashMap<>();
+                helpers = created;
+                BUILDS.put(root, created);
+                root.buildFinished(result -> closeAll(created));
+            }
+
+            File script = new File(project.getRootProject().getBuildDir(), "python-helper/python-helper.py");
+            return Optional.of(helpers.computeIfAbsent(pythonDetails.getVirtualEnvInterpreter().getAbsoluteFile(),
+                it -> new PythonHelperProcess(it, pythonDetails.getVirtualEnvironment().getPip(),
+                    VenvState.findSitePackages(pythonDetails), script)));
+        }
+    }
+
+    /**
+     * Runs the command of an exec action in the helper.
+     *
+     * @param project the project running the command, for its default working directory
+     * @param action the exec action
+     * @return the result, or {@code Optional.empty()} when the command is left to a regular exec
+     */
+    public Optional<ExecResult> tryExec(Project project, Action<? super ExecSpec> action) {
+        Optional<RecordedExecSpec> recorded = RecordedExecSpec.record(action);
+        if (!recorded.isPresent() || !canRun(recorded.get().getCommandLine()) || !lock.tryLock()) {
+            return Optional.empty();
+        }
+
+        RecordedExecSpec spec = recorded.get();
+        JsonObject response;
+        try {
+            response = call(spec, spec.getWorkingDir().orElse(project.getProjectDir()));
+            if (changesVenv(spec.getCommandLine())) {
+                stop();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (response == null) {
+            return Optional.empty();
+        }
+
+        int exitCode = response.getInt("exitCode", 1);
+        try {
+            // Like a regular exec, the output goes to the console unless the spec takes it.
+            write(response.getString("stdout", ""), spec.getStandardOutput(), logger::lifecycle);
+            write(response.getString("stderr", ""), spec.getErrorOutput(), logger::error);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write the output of " + spec.getCommandLine(), e);
+        }
+
+        HelperExecResult result = new HelperExecResult(spec.getCommandLine(), exitCode);
+        if (!spec.isIgnoreExitValue()) {
+            result.assertNormalExitValue();
+        }
+        return Optional.of(result);
+    }
+
+    private static void write(String text, Optional<OutputStream> stream, Consumer<String> log) throws IOException {
+        if (stream.isPresent()) {
+            stream.get().write(text.getBytes(StandardCharsets.UTF_8));
+            stream.get().flush();
+        } else if (!text.isEmpty()) {
+            log.accept(text.trim());
+        }
+    }
+
+    boolean canRun(List<String> commandLine) {
+        if (commandLine.size() < 2 || broken || !new File(commandLine.get(0)).getAbsoluteFile().equals(interpreter)) {
+            return false;
+        }
+
+        String scriptName = new File(commandLine.get(1)).getName();
+        if (isPip(commandLine)) {
+            String command = commandLine.get(2);
+            if (command.equals("install") || command.equals("uninstall")) {
+                return commandLine.stream().skip(3).noneMatch(it -> BUILD_TOOL.matcher(new File(it).getName()).matches());
+            }
+            return command.equals("wheel") || command.equals("freeze");
+        }
+        return scriptName.equals("wheel-api.py")
+            || scriptName.equals("setup.py") && commandLine.size() == 3 && commandLine.get(2).equals("entrypoints");
+    }
+
+    private boolean isPip(List<String> commandLine) {
+        return commandLine.size() > 2 && new File(commandLine.get(1)).getAbsoluteFile().equals(pip);
+    }
+
+    private boolean changesVenv(List<String> commandLine) {
+        return isPip(commandLine) && (commandLine.get(2).equals("install") || commandLine.get(2).equals("uninstall"));
+    }
+
+    private JsonObject call(RecordedExecSpec spec, File workingDir) {
+        JsonObject env = new JsonObject();
+        spec.getEnvironment().forEach(env::add);
+        JsonArray argv = new JsonArray();
+        spec.getCommandLine().subList(1, spec.getCommandLine().size()).forEach(argv::add);
+        JsonObject request = new JsonObject()
+            .add("argv", argv)
+            .add("env", env)
+            .add("cwd", workingDir.getAbsolutePath());
+
+        try {
+            if (process != null && !VenvState.of(sitePackages).getPackages().equals(packages)) {
+                logger.info("Restarting the Python helper of {}, the installed packages changed", interpreter);
+                stop();
+            }
+            if (process == null || !process.isAlive()) {
+                start();
+            }
+            requests.write(request.toString());
+            requests.write('\n');
+            requests.flush();
+
+            String line = responses.readLine();
+            if (line == null) {
+                throw new IOException("The Python helper exited");
+            }
+            return Json.parse(line).asObject();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("The Python helper of {} failed, running pip in new processes instead", interpreter, e);
+            broken = true;
+            stop();
+            return null;
+        }
+    }
+
+    private void start() throws IOException {
+        // Helpers of other builds may be starting from the script, so it is replaced in one step.
+        Files.createDirectories(script.getParentFile().toPath());
+        Path temp = script.toPath().resolveSibling(script.getName() + "." + UUID.randomUUID() + ".tmp");
+        try (InputStream resource = PythonHelperProcess.class.getClassLoader().getResourceAsStream(HELPER_RESOURCE)) {
+            Files.copy(resource, temp);
+            Files.move(temp, script.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        logger.info("Starting the Python helper of {}", interpreter);
+        packages = VenvState.of(sitePackages).getPackages();
+        process = new ProcessBuilder(interpreter.getAbsolutePath(), "-u", script.getAbsolutePath()).start();
+        requests = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        responses = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+        Thread errors = new Thread(() -> drain(process.getErrorStream()), "python-helper-stderr");
+        errors.setDaemon(true);
+        errors.start();
+
+        String ready = responses.readLine();
+        if (ready == null || !Json.parse(ready).asObject().getBoolean("ready", false)) {
+            throw new IOException("The Python helper did not start: " + ready);
+        }
+    }
+
+    private static void drain(InputStream stream) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logger.info(line);
+            }
+        } catch (IOException ignored) {
+            // The helper is gone.
+        }
+    }
+
+    private void stop() {
+        if (process != null) {
+            try {
+                requests.close();
+            } catch (IOException ignored) {
+                // Closing stdin only asks the helper to exit.
+            }
+            process.destroy();
+            process = null;
+        }
+    }
+
+    /**
+     * Stops the helper.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            stop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeAll(Map<File, PythonHelperProcess> helpers) {
+        synchronized (BUILDS) {
+            helpers.values().forEach(PythonHelperProcess::close);
+            helpers.clear();
+        }
+    }
+
+    private static final class HelperExecResult implements ExecResult {
+        private final List<String> commandLine;
+        private final int exitValue;
+
+        private HelperExecResult(List<String> commandLine, int exitValue) {
+            this.commandLine = commandLine;
+            this.exitValue = exitValue;
+        }
+
+        @Override
+        public int getExitValue() {
+            return exitValue;
+        }
+
+        @Override
+        public ExecResult assertNormalExitValue() {
+            if (exitValue != 0) {
+                throw new ExecException(String.format("Process '%s' finished with non-zero exit value %d", commandLine, exitValue));
+            }
+            return this;
+        }
+
+        @Override
+        public ExecResult rethrowFailure() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.exec;
+
+import org.gradle.api.Action;
+import org.gradle.process.ExecSpec;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The command an exec action configures, recorded without running it.
+ *
+ * <p>Only the settings pip and setup.py commands use are recorded. An
+ * action using any other setting is not recorded at all, so it is left to
+ * a regular exec.</p>
+ */
+final class RecordedExecSpec implements InvocationHandler {
+
+    private final List<String> commandLine = new ArrayList<>();
+    private final Map<String, String> environment = new LinkedHashMap<>();
+    private File workingDir;
+    private OutputStream standardOutput;
+    private OutputStream errorOutput;
+    private boolean ignoreExitValue;
+    private boolean supported = true;
+
+    private RecordedExecSpec() {
+    }
+
+    /**
+     * Records the command the action configures.
+     *
+     * @param action the exec action
+     * @return the recorded command, unless the action uses a setting that is not recorded
+     */
+    static Optional<RecordedExecSpec> record(Action<? super ExecSpec> action) {
+        RecordedExecSpec recorded = new RecordedExecSpec();
+        ExecSpec spec = (ExecSpec) Proxy.newProxyInstance(ExecSpec.class.getClassLoader(), new Class<?>[]{ExecSpec.class}, recorded);
+        try {
+            action.execute(spec);
+        } catch (UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+        return recorded.supported ? Optional.of(recorded) : Optional.empty();
+    }
+
+    List<String> getCommandLine() {
+        return commandLine;
+    }
+
+    Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    Optional<File> getWorkingDir() {
+        return Optional.ofNullable(workingDir);
+    }
+
+    Optional<OutputStream> getStandardOutput() {
+        return Optional.ofNullable(standardOutput);
+    }
+
+    Optional<OutputStream> getErrorOutput() {
+        return Optional.ofNullable(errorOutput);
+    }
+
+    boolean isIgnoreExitValue() {
+        return ignoreExitValue;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "commandLine":
+            case "setCommandLine":
+                commandLine.clear();
+                commandLine.addAll(toStrings(args[0]));
+                return proxy;
+            case "executable":
+            case "setExecutable":
+                if (commandLine.isEmpty()) {
+                    commandLine.add(toString(args[0]));
+                } else {
+                    commandLine.set(0, toString(args[0]));
+                }
+                return proxy;
+            case "args":
+                commandLine.addAll(toStrings(args[0]));
+                return proxy;
+            case "environment":
+                if (args.length == 2) {
+                    environment.put(String.valueOf(args[0]), toString(args[1]));
+                } else {
+                    ((Map<?, ?>) args[0]).forEach((key, value) -> environment.put(String.valueOf(key), toString(value)));
+                }
+                return proxy;
+            case "workingDir":
+            case "setWorkingDir":
+                workingDir = args[0] instanceof File ? (File) args[0] : new File(toString(args[0]));
+                return proxy;
+            case "setStandardOutput":
+                standardOutput = (OutputStream) args[0];
+                return proxy;
+            case "setErrorOutput":
+                errorOutput = (OutputStream) args[0];
+                return proxy;
+            case "setIgnoreExitValue":
+                ignoreExitValue = (Boolean) args[0];
+                return proxy;
+            case "isIgnoreExitValue":
+                return ignoreExitValue;
+            case "getCommandLine":
+                return Collections.unmodifiableList(commandLine);
+            case "getEnvironment":
+                return Collections.unmodifiableMap(environment);
+            default:
+                supported = false;
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    // Arguments come as varargs, iterables or single values of any type, like Gradle takes them.
+    private static List<String> toStrings(Object arg) {
+        List<String> strings = new ArrayList<>();
+        if (arg instanceof Object[]) {
+            Arrays.stream((Object[]) arg).forEach(it -> strings.add(toString(it)));
+        } else if (arg instanceof Iterable) {
+            ((Iterable<?>) arg).forEach(it -> strings.add(toString(it)));
+        } else {
+            strings.add(toString(arg));
+        }
+        return strings;
+    }
+
+    private static String toString(Object value) {
+        return value instanceof File ? ((File) value).getAbsolutePath() : String.valueOf(value);
+    }
+}
@@ -16,6 +16,7 @@
 package com.linkedin.gradle.python.util
 
 import com.linkedin.gradle.python.PythonExtension
+import com.linkedin.gradle.python.tasks.exec.ProjectExternalExec
 import groovy.transform.TypeChecked
 import org.gradle.api.Project
 import org.gradle.process.ExecSpec
@@ -39,7 +40,7 @@ public class EntryPointHelpers {
     static public List<String> collectEntryPoints(Project project) {
         PythonExtension settings = project.getExtensions().getByType(PythonExtension)
         def entryPointsBuf = new ByteArrayOutputStream()
-        project.exec { ExecSpec exec ->
+        new ProjectExternalExec(project).exec { ExecSpec exec ->
             exec.environment settings.pythonEnvironment + settings.pythonEnvironmentDistgradle
             exec.commandLine([
                 settings.details.getVirtualEnvInterpreter().absolutePath,
@@ -47,7 +47,9 @@ public enum StandardTextValues {
     TASK_PACKAGE_DOCS("packageDocs"),
     TASK_PACKAGE_JSON_DOCS("packageJsonDocs"),
     TASK_PYTEST("pytest"),
+    TASK_PYTHON_MATRIX("pythonMatrix"),
     TASK_SETUP_LINKS("installLinks"),
+    TASK_SYNC_VENV("syncVirtualEnvironment"),
     TASK_VENV_CREATE("createVirtualEnvironment"),
     TASK_GET_PROBED_TAGS("getProbedTags"),
     TASK_PIN_REQUIREMENTS("pinRequirements"),
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digests of files and text, hex encoded, for cache keys and content addresses.
+ */
+public final class Digests {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Digests() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Creates a message digest.
+     *
+     * @param algorithm an algorithm every Java platform supports, such as SHA-1 or SHA-256
+     * @return the message digest
+     */
+    public static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return the message digest
+     */
+    public static MessageDigest newSha256() {
+        return newDigest("SHA-256");
+    }
+
+    /**
+     * Adds the content of the file to the digest.
+     *
+     * @param digest the digest to update
+     * @param file the file to read
+     * @throws IOException when the file cannot be read
+     */
+    public static void update(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Gets the SHA-256 of the file.
+     *
+     * @param file the file to digest
+     * @return the hex encoded digest
+     * @throws IOException when the file cannot be read
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        update(digest, file);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Gets the SHA-256 of the text.
+     *
+     * @param text the text to digest
+     * @return the hex encoded digest
+     */
+    public static String sha256(String text) {
+        return toHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Encodes bytes as lower case hex.
+     *
+     * @param bytes the bytes to encode
+     * @return two hex digits per byte
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.linkedin.gradle.python.wheel.AbiDetails;
+import com.linkedin.gradle.python.wheel.internal.Pep425Tags;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What the builds need to know about a Python interpreter, probed once per host.
+ *
+ * <p>Every project used to start its interpreter for {@code python --version}
+ * while being configured, and once more for the wheel tags when its
+ * virtual environment was made. All the projects of a host share a few
+ * interpreters, so the answers are kept in the Gradle user home instead,
+ * under the real path, size and modification time of the interpreter. An
+ * upgraded interpreter is probed again.</p>
+ *
+ * <p>The wheel tags are computed from the facts the probe records, see
+ * {@link Pep425Tags}. For an interpreter the probe script does not work
+ * with, they are taken from the first virtual environment probed instead,
+ * and added to the cached entry.</p>
+ *
+ * <p>The metadata is looked up from any thread, including the workers of
+ * the parallel wheel builds, so the interpreter is started as a plain
+ * process rather than with {@code project.exec}.</p>
+ */
+public final class InterpreterMetadata {
+
+    private static final Logger logger = Logging.getLogger(InterpreterMetadata.class);
+
+    private static final String PROBE_RESOURCE = "templates/interpreter-info.py";
+    // Bump when the probe records something new, so the old entries are probed again.
+    private static final String FORMAT = "2";
+
+    // entry key -> metadata, for the daemon
+    private static final ConcurrentMap<String, InterpreterMetadata> KNOWN = new ConcurrentHashMap<>();
+    // interpreter path -> entry key, for the lookups that only have the interpreter
+    private static final ConcurrentMap<File, String> KEYS = new ConcurrentHashMap<>();
+
+    private final JsonObject json;
+
+    private InterpreterMetadata(JsonObject json) {
+        this.json = json;
+    }
+
+    /**
+     * Gets the metadata of the interpreter, probing it if no build of the host did yet.
+     *
+     * @param project the project using the interpreter, to run the probe
+     * @param interpreter the Python interpreter
+     * @return the metadata of the interpreter
+     */
+    public static InterpreterMetadata forInterpreter(Project project, File interpreter) {
+        String key = key(interpreter);
+        KEYS.put(interpreter.getAbsoluteFile(), key);
+        InterpreterMetadata known = KNOWN.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        // Looked up outside of the map, which must not be blocked while the interpreter runs.
+        InterpreterMetadata metadata = lookUp(project, interpreter, key);
+        InterpreterMetadata raced = KNOWN.putIfAbsent(key, metadata);
+        return raced != null ? raced : metadata;
+    }
+
+    private static InterpreterMetadata lookUp(Project project, File interpreter, String key) {
+        Path cacheFile = cacheFile(project, key);
+        Optional<InterpreterMetadata> cached = read(cacheFile);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        Optional<InterpreterMetadata> probed = probe(project, interpreter);
+        if (probed.isPresent()) {
+            write(cacheFile, probed.get().json);
+            return probed.get();
+        }
+        return askVersion(interpreter);
+    }
+
+    /**
+     * Gets the metadata of the interpreter when a project of the build already looked it up.
+     *
+     * @param interpreter the Python interpreter
+     * @return the metadata, if known without probing the interpreter
+     */
+    public static Optional<InterpreterMetadata> known(File interpreter) {
+        String key = KEYS.get(interpreter.getAbsoluteFile());
+        return key == null ? Optional.empty() : Optional.ofNullable(KNOWN.get(key));
+    }
+
+    /**
+     * Adds the wheel tags probed in a virtual environment to the metadata of its interpreter.
+     *
+     * @param project the project owning the virtual environment
+     * @param interpreter the Python interpreter the virtual environment was made with
+     * @param tags the tags, as wheel-api.py lists them
+     */
+    public static void recordTags(Project project, File interpreter, JsonArray tags) {
+        InterpreterMetadata metadata = forInterpreter(project, interpreter);
+        if (!metadata.getTags(interpreter).isEmpty() || tags.isEmpty()) {
+            return;
+        }
+
+        String key = key(interpreter);
+        JsonObject json = Json.parse(metadata.json.toString()).asObject().set("tags", tags);
+        write(cacheFile(project, key), json);
+        KNOWN.put(key, new InterpreterMetadata(json));
+    }
+
+    /**
+     * @return the version, as {@code python --version} prints it
+     */
+    public String getVersion() {
+        return json.getString("version", null);
+    }
+
+    /**
+     * @return the site-packages directory of a virtual environment, relative to its root
+     */
+    public Optional<String> getSitePackages() {
+        return Optional.ofNullable(json.getString("sitePackages", null));
+    }
+
+    /**
+     * Gets the wheel tags the interpreter supports, most specific first.
+     *
+     * @param pythonExecutable the interpreter the tags are for, such as the one of a virtual environment
+     * @return the tags, or an empty list when no probe found them yet
+     */
+    public List<AbiDetails> getTags(File pythonExecutable) {
+        JsonValue facts = json.get("tagFacts");
+        if (facts != null && facts.isObject()) {
+            return computeTags(pythonExecutable, facts.asObject());
+        }
+
+        JsonValue tags = json.get("tags");
+        if (tags == null || !tags.isArray()) {
+            return Collections.emptyList();
+        }
+
+        List<AbiDetails> details = new ArrayList<>();
+        for (JsonValue value : tags.asArray()) {
+            JsonObject entry = value.asObject();
+            details.add(new AbiDetails(pythonExecutable,
+                entry.get("pythonTag").asString(), entry.get("abiTag").asString(), entry.get("platformTag").asString()));
+        }
+        return details;
+    }
+
+    private List<AbiDetails> computeTags(File pythonExecutable, JsonObject facts) {
+        String[] version = getVersion().split("\\.");
+        int major = Integer.parseInt(version[0]);
+        int minor = Integer.parseInt(version[1]);
+        String implementation = facts.getString("implementation", "cp");
+
+        JsonValue withPymalloc = facts.get("withPymalloc");
+        String abiTag = Pep425Tags.abiTag(implementation, major, minor, stringOrNull(facts.get("soabi")),
+            facts.getBoolean("pyDebug", false),
+            withPymalloc == null || withPymalloc.isNull() ? null : withPymalloc.asBoolean(),
+            facts.getBoolean("ucs4", false));
+        List<String> platformTags = Pep425Tags.platformTags(facts.getString("platform", "any"),
+            facts.getBoolean("is32bit", false), stringOrNull(facts.get("glibcVersion")), stringOrNull(facts.get("macVersion")));
+        return Pep425Tags.supportedTags(pythonExecutable, implementation, major, minor, abiTag, platformTags);
+    }
+
+    private static String stringOrNull(JsonValue value) {
+        return value == null || !value.isString() ? null : value.asString();
+    }
+
+    static String key(File interpreter) {
+        try {
+            Path realPath = interpreter.toPath().toRealPath();
+            String description = FORMAT + '\n' + realPath + '\n' + Files.size(realPath) + '\n' + Files.getLastModifiedTime(realPath).toMillis();
+            byte[] digest = Digests.newSha256().digest(description.getBytes(StandardCharsets.UTF_8));
+            return Digests.toHex(Arrays.copyOf(digest, 16));
+        } catch (IOException e) {
+            throw new GradleException("Unable to find or execute python " + interpreter, e);
+        }
+    }
+
+    private static Path cacheFile(Project project, String key) {
+        return project.getGradle().getGradleUserHomeDir().toPath().resolve("pygradle/interpreters").resolve(key + ".json");
+    }
+
+    private static Optional<InterpreterMetadata> read(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            JsonObject json = Json.parse(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8)).asObject();
+            return json.get("version") == null ? Optional.empty() : Optional.of(new InterpreterMetadata(json));
+        } catch (IOException | RuntimeException e) {
+            logger.info("Ignoring the unreadable interpreter metadata {}", cacheFile, e);
+            return Optional.empty();
+        }
+    }
+
+    private static void write(Path cacheFile, JsonObject json) {
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Files.write(temp, json.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Only the next builds lose; they probe the interpreter again.
+            logger.info("Unable to save the interpreter metadata {}", cacheFile, e);
+            temp.toFile().delete();
+        }
+    }
+
+    /*
+     * Runs the probe script. Interpreters the script does not work with, such as
+     * wrappers only answering to --version, are left to askVersion.
+     */
+    private static Optional<InterpreterMetadata> probe(Project project, File interpreter) {
+        Path script = project.getGradle().getGradleUserHomeDir().toPath().resolve("pygradle/interpreters/interpreter-info-" + FORMAT + ".py");
+        try {
+            if (!Files.isRegularFile(script)) {
+                Files.createDirectories(script.getParent());
+                Path temp = script.resolveSibling(script.getFileName() + "." + UUID.randomUUID() + ".tmp");
+                try (InputStream resource = InterpreterMetadata.class.getClassLoader().getResourceAsStream(PROBE_RESOURCE)) {
+                    Files.copy(resource, temp);
+                }
+                Files.move(temp, script, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ProcessOutput output = run(new ProcessBuilder(interpreter.getAbsolutePath(), script.toString()));
+        if (output.exitValue != 0) {
+            logger.info("Unable to probe the interpreter {}: {}", interpreter, output.errors);
+            return Optional.empty();
+        }
+
+        try {
+            logger.info("Probed the interpreter {}", interpreter);
+            return Optional.of(new InterpreterMetadata(Json.parse(output.output).asObject()));
+        } catch (RuntimeException e) {
+            logger.info("Unable to probe the interpreter {}", interpreter, e);
+            return Optional.empty();
+        }
+    }
+
+    /*
+     * The version only. It is kept in the daemon, like the probed metadata,
+     * but not saved, so the builds of the next daemons probe the interpreter again.
+     */
+    private static InterpreterMetadata askVersion(File interpreter) {
+        // Python 2 prints its version to stderr.
+        ProcessOutput output = run(new ProcessBuilder(interpreter.getAbsolutePath(), "--version").redirectErrorStream(true));
+        if (output.exitValue != 0) {
+            throw new GradleException(output.output);
+        }
+
+        String versionString = output.output.trim().split(" ")[1];
+        return new InterpreterMetadata(new JsonObject().add("version", versionString));
+    }
+
+    private static ProcessOutput run(ProcessBuilder processBuilder) {
+        try {
+            Process process = processBuilder.start();
+            process.getOutputStream().close();
+            // The errors are read on another thread, so a chatty interpreter cannot fill the pipe and hang.
+            CompletableFuture<String> errors = CompletableFuture.supplyAsync(() -> readQuietly(process.getErrorStream()));
+            String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8.name());
+            return new ProcessOutput(process.waitFor(), output, errors.join());
+        } catch (IOException e) {
+            throw new GradleException("Unable to find or execute python " + processBuilder.command().get(0), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while running " + processBuilder.command(), e);
+        }
+    }
+
+    private static String readQuietly(InputStream stream) {
+        try {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+
+    private static final class ProcessOutput {
+        private final int exitValue;
+        private final String output;
+        private final String errors;
+
+        private ProcessOutput(int exitValue, String output, String errors) {
+            this.exitValue = exitValue;
+            this.output = output;
+            this.errors = errors;
+        }
+    }
+}
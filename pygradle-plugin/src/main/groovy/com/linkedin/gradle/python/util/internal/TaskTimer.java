@@ -15,12 +15,18 @@
  */
 package com.linkedin.gradle.python.util.internal;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+/**
+ * Times the steps of a task and reports how long each of them took.
+ *
+ * <p>Clocks may be started and stopped on any thread. The report lists the
+ * steps by name, so it reads the same whatever order they finished in.</p>
+ */
 public class TaskTimer {
 
-    private Map<String, Long> timingResults = new HashMap<>();
+    private final Map<String, Long> timingResults = new ConcurrentSkipListMap<>();
 
     public TickingClock start(String name) {
         return new TickingClock(name, System.currentTimeMillis());
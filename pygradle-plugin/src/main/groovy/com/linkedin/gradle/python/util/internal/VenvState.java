@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal;
+
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.OperatingSystem;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheIndex;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The packages installed in a virtual environment, as {@code pip freeze --all} lists them.
+ *
+ * <p>The packages are read from the dist-info and egg-info metadata in
+ * site-packages, without starting Python. The snapshot is kept until the
+ * site-packages directory changes, which it does whenever a package is
+ * installed or removed. A directory modified within the file system time
+ * granularity of the snapshot may still change unnoticed, so it is read
+ * again on the next use; only the metadata of new entries is parsed.</p>
+ *
+ * <p>Editable installs are left out, like {@code pip freeze} lists them as
+ * requirements of their own that the callers skip.</p>
+ */
+public final class VenvState {
+
+    private static final Logger logger = Logging.getLogger(VenvState.class);
+
+    private static final long MODIFICATION_TIME_GRANULARITY_MS = 2000L;
+
+    private static final ConcurrentMap<Path, VenvState> STATES = new ConcurrentHashMap<>();
+
+    private final Path sitePackages;
+    // metadata directory name -> package
+    private Map<String, Distribution> distributions = Collections.emptyMap();
+    private long lastModified = -1;
+    private boolean settled;
+
+    private VenvState(Path sitePackages) {
+        this.sitePackages = sitePackages;
+    }
+
+    /**
+     * Gets the state of the virtual environment.
+     *
+     * @param pythonDetails the details of the virtual environment
+     * @return the state, shared by all the callers in the daemon
+     */
+    public static VenvState of(PythonDetails pythonDetails) {
+        return of(findSitePackages(pythonDetails));
+    }
+
+    /**
+     * Gets the state of the site-packages directory.
+     *
+     * @param sitePackages the site-packages directory of a virtual environment
+     * @return the state, shared by all the callers in the daemon
+     */
+    public static VenvState of(Path sitePackages) {
+        return STATES.computeIfAbsent(sitePackages.toAbsolutePath().normalize(), VenvState::new);
+    }
+
+    /**
+     * Finds the site-packages directory of the virtual environment.
+     *
+     * @param pythonDetails the details of the virtual environment
+     * @return the site-packages directory
+     */
+    public static Path findSitePackages(PythonDetails pythonDetails) {
+        // The layout the interpreter reported, when the build probed it already.
+        Optional<String> probed = InterpreterMetadata.known(pythonDetails.getSystemPythonInterpreter())
+            .flatMap(InterpreterMetadata::getSitePackages);
+        if (probed.isPresent()) {
+            return pythonDetails.getVirtualEnv().toPath().resolve(probed.get());
+        }
+
+        String pyVersion = pythonDetails.getPythonVersion().getPythonMajorMinor();
+        if (OperatingSystem.current().isUnix()) {
+            return pythonDetails.getVirtualEnv().toPath().resolve(Paths.get("lib", "python" + pyVersion, "site-packages"));
+        } else {
+            return pythonDetails.getVirtualEnv().toPath().resolve(Paths.get("Lib", "site-packages"));
+        }
+    }
+
+    /**
+     * Gets the installed packages.
+     *
+     * @return the versions of the installed packages by project name, in the order of the names
+     */
+    public synchronized Map<String, String> getPackages() {
+        revalidate();
+
+        Map<String, String> packages = new LinkedHashMap<>();
+        distributions.values().stream()
+            .sorted((left, right) -> left.name.compareToIgnoreCase(right.name))
+            .forEach(it -> packages.put(it.name, it.version));
+        return packages;
+    }
+
+    /**
+     * Gets the installed version of the package.
+     *
+     * @param name the package name, in any spelling pip accepts
+     * @return the installed version, if the package is installed
+     */
+    public synchronized Optional<String> getVersion(String name) {
+        revalidate();
+
+        String normalizedName = WheelCacheIndex.normalizeName(name);
+        return distributions.values().stream()
+            .filter(it -> it.normalizedName.equals(normalizedName))
+            .map(it -> it.version)
+            .findFirst();
+    }
+
+    /**
+     * Tells if the package version is installed.
+     *
+     * @param name the package name, in any spelling pip accepts
+     * @param version the package version
+     * @return true when that version of the package is installed, by its metadata or its directory name
+     */
+    public synchronized boolean isInstalled(String name, String version) {
+        revalidate();
+
+        String normalizedName = WheelCacheIndex.normalizeName(name);
+        return distributions.values().stream()
+            .anyMatch(it -> it.normalizedName.equals(normalizedName) && (it.version.equals(version) || it.directoryVersion.equals(version)));
+    }
+
+    /**
+     * Forgets the snapshot, for changes made inside of the metadata directories.
+     */
+    public synchronized void invalidate() {
+        distributions = Collections.emptyMap();
+        lastModified = -1;
+    }
+
+    private void revalidate() {
+        long currentLastModified = sitePackages.toFile().lastModified();
+        if (currentLastModified == lastModified && settled) {
+            return;
+        }
+
+        long listedAt = System.currentTimeMillis();
+        String[] entries = sitePackages.toFile().list((dir, entry) -> entry.endsWith(".dist-info") || entry.endsWith(".egg-info"));
+        Map<String, Distribution> listed = new HashMap<>();
+        if (entries != null) {
+            Arrays.sort(entries);
+            for (String entry : entries) {
+                Distribution known = distributions.get(entry);
+                Distribution distribution = known != null ? known : read(entry);
+                if (distribution != null) {
+                    listed.put(entry, distribution);
+                }
+            }
+        }
+
+        distributions = listed;
+        lastModified = currentLastModified;
+        settled = listedAt - currentLastModified >= MODIFICATION_TIME_GRANULARITY_MS;
+    }
+
+    /*
+     * The metadata has the name as the project spells it, which the
+     * directory name has lost. The directory name is the fallback.
+     */
+    private Distribution read(String entry) {
+        String baseName = entry.substring(0, entry.lastIndexOf('.'));
+        String[] parts = baseName.split("-");
+        String name = parts[0];
+        String version = parts.length > 1 ? parts[1] : null;
+
+        File metadataDir = sitePackages.resolve(entry).toFile();
+        File metadata;
+        if (entry.endsWith(".dist-info")) {
+            metadata = new File(metadataDir, "METADATA");
+        } else {
+            // An egg-info may be the metadata file itself.
+            metadata = metadataDir.isDirectory() ? new File(metadataDir, "PKG-INFO") : metadataDir;
+        }
+
+        if (metadata.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(metadata.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if (line.startsWith("Name:")) {
+                        name = line.substring("Name:".length()).trim();
+                    } else if (line.startsWith("Version:")) {
+                        version = line.substring("Version:".length()).trim();
+                    }
+                }
+            } catch (IOException e) {
+                logger.info("Could not read the metadata of {}", metadataDir, e);
+            }
+        }
+
+        return version == null ? null : new Distribution(name, version, parts.length > 1 ? parts[1] : version);
+    }
+
+    private static final class Distribution {
+        private final String name;
+        private final String normalizedName;
+        private final String version;
+        private final String directoryVersion;
+
+        private Distribution(String name, String version, String directoryVersion) {
+            this.name = name;
+            this.normalizedName = WheelCacheIndex.normalizeName(name);
+            this.version = version;
+            this.directoryVersion = directoryVersion;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal.pex;
+
+import com.linkedin.gradle.python.PythonExtension;
+import com.linkedin.gradle.python.extension.DeployableExtension;
+import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.extension.WheelExtension;
+import com.linkedin.gradle.python.util.ExtensionUtils;
+import com.linkedin.gradle.python.util.PexFileUtil;
+import com.linkedin.gradle.python.util.internal.VenvState;
+import com.linkedin.gradle.python.util.internal.zipapp.PexAssembler;
+import com.linkedin.gradle.python.wheel.FileBackedWheelCache;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+
+/**
+ * Builds a pex file with {@link PexAssembler} instead of the pex command.
+ *
+ * <p>The wheels come from the wheel cache pex would be given as its
+ * repository, and the runtime from the pex installed in the virtual
+ * environment.</p>
+ */
+class AssemblePexAction {
+
+    private static final Logger logger = Logging.getLogger(AssemblePexAction.class);
+
+    // Options of the pex command that do not change what goes into the pex file.
+    private static final List<String> IGNORED_OPTIONS = Arrays.asList("--no-pypi", "--pre", "--disable-cache", "--no-compile");
+
+    private final Project project;
+    private final File outputFile;
+    private final String entryPoint;
+    private final List<String> pexOptions;
+    private final Map<String, String> dependencies;
+
+    private AssemblePexAction(Project project, File outputFile, String entryPoint, List<String> pexOptions,
+                              Map<String, String> dependencies) {
+        this.project = project;
+        this.outputFile = outputFile;
+        this.entryPoint = entryPoint;
+        this.pexOptions = pexOptions;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Tells if the pex file can be built without the pex command.
+     *
+     * @param pexOptions the options to be passed to pex
+     * @return true when every option is one the assembler knows
+     */
+    public static boolean supports(List<String> pexOptions) {
+        List<String> unsupported = new ArrayList<>();
+        for (String option : pexOptions) {
+            if (!IGNORED_OPTIONS.contains(option) && !option.equals("--zip-safe") && !option.equals("--not-zip-safe")
+                && !option.equals("--always-write-cache") && !option.equals("--ignore-errors")
+                && !option.startsWith("--inherit-path") && !option.startsWith("--python-shebang=")
+                && !option.startsWith("--sources-directory=")) {
+                unsupported.add(option);
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            logger.lifecycle("Building the pex with the pex command, for the options {}", unsupported);
+        }
+        return unsupported.isEmpty();
+    }
+
+    /**
+     * Assemble a pex with an entry point
+     *
+     * @param project      a reference to a project.
+     * @param pexName      the name of the pex you want to make
+     * @param entryPoint   the entry point you want to make
+     * @param pexOptions   Options that pex would be passed
+     * @param dependencies The dependencies that are needed for this pex name => version
+     * @return an instance of AssemblePexAction to build a pex
+     */
+    public static AssemblePexAction withEntryPoint(
+        Project project, String pexName, String entryPoint, List<String> pexOptions, Map<String, String> dependencies) {
+        DeployableExtension deployableExtension = ExtensionUtils.getPythonComponentExtension(project, DeployableExtension.class);
+        return new AssemblePexAction(project, new File(deployableExtension.getDeployableBinDir(), pexName), entryPoint,
+            pexOptions, dependencies);
+    }
+
+    /**
+     * Assemble a pex without an entry point
+     *
+     * @param project      a reference to a project.
+     * @param pexName      the name of the pex you want to make
+     * @param pexOptions   Options that pex would be passed
+     * @param dependencies The dependencies that are needed for this pex name => version
+     * @return an instance of AssemblePexAction to build a pex
+     */
+    public static AssemblePexAction withOutEntryPoint(
+        Project project, String pexName, List<String> pexOptions, Map<String, String> dependencies) {
+        DeployableExtension deployableExtension = ExtensionUtils.getPythonComponentExtension(project, DeployableExtension.class);
+        return new AssemblePexAction(project, new File(deployableExtension.getDeployableBinDir(),
+            PexFileUtil.createThinPexFilename(pexName)), null, pexOptions, dependencies);
+    }
+
+    /**
+     * Assemble a pex of the dependencies only, for the entry points to be copied from
+     *
+     * @param project      a reference to a project.
+     * @param outputFile   the pex file to write
+     * @param pexOptions   Options that pex would be passed
+     * @param dependencies The dependencies that are needed for this pex name => version
+     * @return an instance of AssemblePexAction to build a pex
+     */
+    public static AssemblePexAction forDependencies(
+        Project project, File outputFile, List<String> pexOptions, Map<String, String> dependencies) {
+        return new AssemblePexAction(project, outputFile, null, pexOptions, dependencies);
+    }
+
+    public void assemble() {
+        PythonExtension pythonExtension = ExtensionUtils.getPythonExtension(project);
+        WheelExtension wheelExtension = ExtensionUtils.getPythonComponentExtension(project, WheelExtension.class);
+        PythonDetails details = pythonExtension.getDetails();
+
+        File runtime = VenvState.findSitePackages(details).resolve("pex").toFile();
+        if (!new File(runtime, "pex_bootstrapper.py").isFile()) {
+            throw new GradleException("Cannot find the pex runtime in " + runtime);
+        }
+
+        PexAssembler assembler = new PexAssembler(runtime, details.getSystemPythonInterpreter().getAbsolutePath());
+        assembler.setEntryPoint(entryPoint);
+        applyOptions(assembler);
+
+        FileBackedWheelCache wheelCache = new FileBackedWheelCache(wheelExtension.getWheelCache(),
+            ExtensionUtils.getEditablePythonAbiContainer(project));
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, String> entry : dependencies.entrySet()) {
+            Optional<File> wheel = wheelCache.findWheel(entry.getKey(), entry.getValue(), details);
+            if (wheel.isPresent()) {
+                assembler.addWheel(wheel.get(), entry.getKey() + "==" + entry.getValue());
+            } else {
+                missing.add(entry.getKey() + "==" + entry.getValue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new GradleException("No wheels for " + missing + " in " + wheelExtension.getWheelCache());
+        }
+
+        logger.lifecycle("Assembling {} from {} wheels", outputFile, dependencies.size());
+        try {
+            assembler.assemble(outputFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void applyOptions(PexAssembler assembler) {
+        for (String option : pexOptions) {
+            if (option.equals("--zip-safe") || option.equals("--not-zip-safe")) {
+                assembler.setZipSafe(option.equals("--zip-safe"));
+            } else if (option.equals("--always-write-cache")) {
+                assembler.setAlwaysWriteCache(true);
+            } else if (option.equals("--ignore-errors")) {
+                assembler.setIgnoreErrors(true);
+            } else if (option.startsWith("--inherit-path")) {
+                // A bare --inherit-path means prefer, as with pex.
+                assembler.setInheritPath(option.contains("=") ? option.substring(option.indexOf('=') + 1) : "prefer");
+            } else if (option.startsWith("--python-shebang=")) {
+                assembler.setPythonShebang(option.substring("--python-shebang=".length()));
+            } else if (option.startsWith("--sources-directory=")) {
+                addSources(assembler, project.file(option.substring("--sources-directory=".length())).toPath());
+            }
+        }
+    }
+
+    // Every file of the directory, hidden ones too, as pex walks it.
+    private static void addSources(PexAssembler assembler, Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile).forEach(file ->
+                assembler.addSource(file.toFile(), directory.relativize(file).toString().replace(File.separatorChar, '/')));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
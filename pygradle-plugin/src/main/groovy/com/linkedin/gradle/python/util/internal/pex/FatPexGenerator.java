@@ -16,18 +16,31 @@
 package com.linkedin.gradle.python.util.internal.pex;
 
 import com.linkedin.gradle.python.PythonExtension;
+import com.linkedin.gradle.python.extension.DeployableExtension;
+import com.linkedin.gradle.python.extension.PexExtension;
 import com.linkedin.gradle.python.util.EntryPointHelpers;
+import com.linkedin.gradle.python.util.ExtensionUtils;
 import com.linkedin.gradle.python.util.PexFileUtil;
+import com.linkedin.gradle.python.util.internal.zipapp.PexAssembler;
 import com.linkedin.gradle.python.util.internal.zipapp.ZipappGenerator;
 import com.linkedin.gradle.python.util.pip.PipFreezeAction;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.process.ExecResult;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 public class FatPexGenerator implements ZipappGenerator {
@@ -48,26 +61,99 @@ public class FatPexGenerator implements ZipappGenerator {
         return new HashMap<>();
     }
 
+    /**
+     * Builds a pex per entry point.
+     *
+     * <p>The pex files only differ by their entry point, so the dependencies
+     * are packed into a pex once, and each entry point gets a copy of it
+     * with its entry point set. The copies are made at the same time.</p>
+     */
     @Override
-    public void buildEntryPoints() {
+    public void buildEntryPoints() throws Exception {
         Map<String, String> dependencies = new PipFreezeAction(project).getDependencies();
+        List<String> entryPoints = EntryPointHelpers.collectEntryPoints(project);
+        if (entryPoints.isEmpty()) {
+            return;
+        }
+
+        DeployableExtension deployableExtension = ExtensionUtils.getPythonComponentExtension(project, DeployableExtension.class);
+        File dependencyPex = new File(deployableExtension.getDeployableBuildDir(), project.getName() + "-dependencies.pex");
+        buildDependencyPex(dependencyPex, dependencies);
+        copyEntryPoints(dependencyPex, entryPoints);
+    }
 
-        for (String it : EntryPointHelpers.collectEntryPoints(project)) {
-            logger.lifecycle("Processing entry point: {}", it);
-            String[] split = it.split("=");
-            String name = PexFileUtil.createFatPexFilename(split[0].trim());
-            String entry = split[1].trim();
+    /*
+     * Copies the dependency pex to a pex per entry point, then deletes it.
+     * Each copy is written under another name and renamed, so a failed
+     * build leaves no partial pex files.
+     */
+    void copyEntryPoints(File dependencyPex, List<String> entryPoints) {
+        DeployableExtension deployableExtension = ExtensionUtils.getPythonComponentExtension(project, DeployableExtension.class);
+        int threads = Math.min(project.getGradle().getStartParameter().getMaxWorkerCount(), entryPoints.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> copies = new ArrayList<>();
+        try {
+            for (String it : entryPoints) {
+                logger.lifecycle("Processing entry point: {}", it);
+                String[] split = it.split("=");
+                File pexFile = new File(deployableExtension.getDeployableBinDir(), PexFileUtil.createFatPexFilename(split[0].trim()));
+                String entry = split[1].trim();
 
-            buildEntryPoint(name, entry, dependencies);
+                copies.add(executor.submit(() -> {
+                    PexAssembler.copyWithEntryPoint(dependencyPex, pexFile, entry);
+                    return null;
+                }));
+            }
+            for (Future<?> copy : copies) {
+                try {
+                    copy.get();
+                } catch (ExecutionException e) {
+                    throw new GradleException("Failed to build a pex from " + dependencyPex, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while building the pex files from " + dependencyPex, e);
+        } finally {
+            // The dependency pex can only be deleted once no copy reads it, on Windows.
+            copies.forEach(it -> it.cancel(true));
+            executor.shutdownNow();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.lifecycle("Waiting for the copies of {} to stop", dependencyPex);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Quietly, not to hide the failure of a copy.
+            FileUtils.deleteQuietly(dependencyPex);
         }
     }
 
+    private void buildDependencyPex(File dependencyPex, Map<String, String> dependencies) {
+        PexExtension pexExtension = ExtensionUtils.getPythonComponentExtension(project, PexExtension.class);
+        if (pexExtension.isNativeAssembler() && AssemblePexAction.supports(pexOptions)) {
+            AssemblePexAction.forDependencies(project, dependencyPex, pexOptions, dependencies).assemble();
+            return;
+        }
+
+        PexExecSpecAction action = PexExecSpecAction.forDependencies(project, dependencyPex, pexOptions, dependencies);
+        ExecResult exec = project.exec(action);
+        new PexExecOutputParser(action, exec).validatePexBuildSuccessfully();
+    }
+
     public void buildEntryPoint(String name, String entry, Map<String, String> pipFreezeDependencies) {
         Map<String, String> dependencies = pipFreezeDependencies;
         // When called from outside buildEntryPoints above, this can be null
         if (dependencies == null) {
             dependencies = new PipFreezeAction(project).getDependencies();
         }
+        PexExtension pexExtension = ExtensionUtils.getPythonComponentExtension(project, PexExtension.class);
+        if (pexExtension.isNativeAssembler() && AssemblePexAction.supports(pexOptions)) {
+            AssemblePexAction.withEntryPoint(project, name, entry, pexOptions, dependencies).assemble();
+            return;
+        }
+
         PexExecSpecAction action = PexExecSpecAction.withEntryPoint(project, name, entry, pexOptions, dependencies);
         ExecResult exec = project.exec(action);
         new PexExecOutputParser(action, exec).validatePexBuildSuccessfully();
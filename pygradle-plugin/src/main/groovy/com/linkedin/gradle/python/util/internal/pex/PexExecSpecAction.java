@@ -151,6 +151,31 @@ class PexExecSpecAction implements Action<ExecSpec> {
             dependencies);
     }
 
+    /**
+     * Generate a Pex of the dependencies only, for the entry points to be copied from
+     *
+     * @param project      a reference to a project.
+     * @param outputFile   the pex file to write
+     * @param pexOptions   Options to be passed to pex
+     * @param dependencies The dependencies that are needed for this pex name => version
+     * @return an instance of PexExecSpecAction to build a pex
+     */
+    public static PexExecSpecAction forDependencies(
+        Project project, File outputFile, List<String> pexOptions, Map<String, String> dependencies) {
+        PythonExtension pythonExtension = ExtensionUtils.getPythonExtension(project);
+        PexExtension pexExtension = ExtensionUtils.getPythonComponentExtension(project, PexExtension.class);
+        WheelExtension wheelExtension = ExtensionUtils.getPythonComponentExtension(project, WheelExtension.class);
+
+        return new PexExecSpecAction(pythonExtension,
+            pexExtension.getPexCache(),
+            outputFile,
+            wheelExtension.getWheelCache(),
+            pythonExtension.getDetails().getSystemPythonInterpreter(),
+            null,
+            pexOptions,
+            dependencies);
+    }
+
     private List<String> pexRequirements(Map<String, String> dependencies) {
         List<String> requirements = new ArrayList<>();
         for (Map.Entry<String, String> entry : dependencies.entrySet()) {
@@ -63,11 +63,15 @@ public class ThinPexGenerator extends ThinZipappGenerator {
 
         Map<String, String> dependencies = new PipFreezeAction(project).getDependencies();
 
-        PexExecSpecAction action = PexExecSpecAction.withOutEntryPoint(
-            project, project.getName(), options, dependencies);
+        if (pexExtension.isNativeAssembler() && AssemblePexAction.supports(options)) {
+            AssemblePexAction.withOutEntryPoint(project, project.getName(), options, dependencies).assemble();
+        } else {
+            PexExecSpecAction action = PexExecSpecAction.withOutEntryPoint(
+                project, project.getName(), options, dependencies);
 
-        ExecResult exec = project.exec(action);
-        new PexExecOutputParser(action, exec).validatePexBuildSuccessfully();
+            ExecResult exec = project.exec(action);
+            new PexExecOutputParser(action, exec).validatePexBuildSuccessfully();
+        }
 
         for (String it : EntryPointHelpers.collectEntryPoints(project)) {
             logger.lifecycle("Processing entry point: {}", it);
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal.zipapp;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.linkedin.gradle.python.util.internal.Digests;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes a pex file from wheels, without running pex.
+ *
+ * <p>pex resolves the requirements again for every pex, unpacks each
+ * wheel into its cache and compresses everything once more. The
+ * requirements are already pinned by the time a pex is built and their
+ * wheels are in the wheel cache, so this writes the zip pex 1.5 would:
+ * the contents of each wheel installed under {@code .deps/<wheel>}, the
+ * sources at the root, the pex runtime under {@code .bootstrap},
+ * {@code PEX-INFO} and the {@code __main__.py} that starts the runtime.
+ * The wheel entries are copied as they are compressed, only their names
+ * change.</p>
+ *
+ * <p>Entries are sorted and carry a fixed time, so the same wheels and
+ * settings give the same bytes. The pex file is written under another
+ * name and renamed, so it is either the old or the new file, never a
+ * part of one.</p>
+ */
+public class PexAssembler {
+
+    private static final String MAIN_RESOURCE = "templates/pex-main.py";
+    private static final String BOOTSTRAP_DIR = ".bootstrap";
+    private static final String DEPS_DIR = ".deps";
+    private static final Pattern VERSION = Pattern.compile("__version__\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+    // The earliest time a zip entry can tell, in local time, like the DOS time fields it is stored in.
+    private static final long ENTRY_TIME = new GregorianCalendar(1980, Calendar.JANUARY, 1).getTimeInMillis();
+    private static final int FILE_MODE = 0644;
+
+    private final File bootstrapPackage;
+    private String pythonShebang;
+    private final List<File> wheels = new ArrayList<>();
+    private final Set<String> requirements = new TreeSet<>();
+    private final Map<String, File> sources = new TreeMap<>();
+    private String entryPoint;
+    private boolean zipSafe = true;
+    private boolean alwaysWriteCache;
+    private boolean ignoreErrors;
+    private String inheritPath = "false";
+
+    /**
+     * @param bootstrapPackage the {@code pex} package of an installed pex, the runtime of the pex file
+     * @param pythonShebang the interpreter the pex file runs with, or a whole shebang line
+     */
+    public PexAssembler(File bootstrapPackage, String pythonShebang) {
+        this.bootstrapPackage = bootstrapPackage;
+        this.pythonShebang = pythonShebang;
+    }
+
+    /**
+     * Adds a wheel to install into the pex file.
+     *
+     * @param wheel the wheel file
+     * @param requirement the requirement the wheel satisfies, such as {@code six==1.12.0}
+     */
+    public void addWheel(File wheel, String requirement) {
+        wheels.add(wheel);
+        requirements.add(requirement);
+    }
+
+    /**
+     * Adds a file of user code to the root of the pex file, as the {@code --sources-directory} option of pex does.
+     *
+     * @param file the file to add
+     * @param name the path of the file in the pex file, with / separators
+     */
+    public void addSource(File file, String name) {
+        sources.put(name, file);
+    }
+
+    public void setPythonShebang(String pythonShebang) {
+        this.pythonShebang = pythonShebang;
+    }
+
+    public void setEntryPoint(String entryPoint) {
+        this.entryPoint = entryPoint;
+    }
+
+    public void setZipSafe(boolean zipSafe) {
+        this.zipSafe = zipSafe;
+    }
+
+    public void setAlwaysWriteCache(boolean alwaysWriteCache) {
+        this.alwaysWriteCache = alwaysWriteCache;
+    }
+
+    public void setIgnoreErrors(boolean ignoreErrors) {
+        this.ignoreErrors = ignoreErrors;
+    }
+
+    /**
+     * @param inheritPath {@code false}, {@code prefer} or {@code fallback}, as for the {@code --inherit-path} option of pex
+     */
+    public void setInheritPath(String inheritPath) {
+        this.inheritPath = inheritPath;
+    }
+
+    /**
+     * Writes the pex file, replacing the file if it exists.
+     *
+     * @param pexFile the pex file to write
+     * @throws IOException when a wheel or the runtime cannot be read, or the pex file cannot be written
+     */
+    public void assemble(File pexFile) throws IOException {
+        List<File> sortedWheels = wheels.stream()
+            .sorted(Comparator.comparing(File::getName))
+            .collect(Collectors.toList());
+
+        String shebang = pythonShebang.startsWith("#!") ? pythonShebang : "#!" + pythonShebang;
+        writeAtomically(pexFile, (shebang + "\n").getBytes(StandardCharsets.UTF_8), zip -> {
+            Set<String> written = new HashSet<>();
+            for (Map.Entry<String, File> source : sources.entrySet()) {
+                writeEntry(zip, source.getKey(), Files.readAllBytes(source.getValue().toPath()), written);
+            }
+            writeBootstrap(zip, written);
+
+            JsonObject distributions = new JsonObject();
+            for (File wheel : sortedWheels) {
+                distributions.add(wheel.getName(), writeWheel(zip, wheel, written));
+            }
+
+            writeEntry(zip, "PEX-INFO", pexInfo(distributions).getBytes(StandardCharsets.UTF_8), written);
+            writeEntry(zip, "__main__.py", mainScript(), written);
+        });
+    }
+
+    /**
+     * Copies a pex file, with another entry point.
+     *
+     * <p>Only {@code PEX-INFO} is written anew, the other entries are copied
+     * as they are compressed. This makes a pex per entry point out of a pex
+     * of the dependencies in about the time it takes to copy the file, with
+     * pex files written by pex as well as by this class.</p>
+     *
+     * @param pexFile the pex file to copy
+     * @param target the pex file to write, replaced if it exists
+     * @param entryPoint the entry point of the copy
+     * @throws IOException when the pex file cannot be read or the copy cannot be written
+     */
+    public static void copyWithEntryPoint(File pexFile, File target, String entryPoint) throws IOException {
+        try (ZipFile source = new ZipFile(pexFile)) {
+            ZipArchiveEntry pexInfoEntry = source.getEntry("PEX-INFO");
+            if (pexInfoEntry == null) {
+                throw new IOException("No PEX-INFO in " + pexFile);
+            }
+            JsonObject pexInfo;
+            try (InputStream in = source.getInputStream(pexInfoEntry)) {
+                pexInfo = Json.parse(IOUtils.toString(in, "UTF-8")).asObject();
+            }
+
+            // The keys stay sorted, like pex sorts them.
+            List<String> names = new ArrayList<>(pexInfo.names());
+            if (!names.contains("entry_point")) {
+                names.add("entry_point");
+            }
+            Collections.sort(names);
+            JsonObject withEntryPoint = new JsonObject();
+            for (String name : names) {
+                withEntryPoint.add(name, name.equals("entry_point") ? Json.value(entryPoint) : pexInfo.get(name));
+            }
+
+            writeAtomically(target, readShebang(pexFile), zip -> {
+                source.copyRawEntries(zip, entry -> !entry.getName().equals("PEX-INFO"));
+                writeEntry(zip, "PEX-INFO", withEntryPoint.toString().getBytes(StandardCharsets.UTF_8), new HashSet<>());
+            });
+        }
+    }
+
+    /*
+     * The shebang line is written as the preamble of the zip, so the
+     * offsets of the entries count from the start of the file, as in the
+     * pex files Python writes.
+     */
+    private static void writeAtomically(File pexFile, byte[] shebang, EntryWriter writer) throws IOException {
+        Path target = pexFile.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                zip.writePreamble(shebang);
+                writer.write(zip);
+            }
+            temp.toFile().setExecutable(true, false);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(temp.toFile());
+        }
+    }
+
+    private static byte[] readShebang(File pexFile) throws IOException {
+        ByteArrayOutputStream shebang = new ByteArrayOutputStream();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pexFile))) {
+            int read = in.read();
+            if (read != '#') {
+                return new byte[0];
+            }
+            while (read != -1) {
+                shebang.write(read);
+                if (read == '\n') {
+                    break;
+                }
+                read = in.read();
+            }
+        }
+        return shebang.toByteArray();
+    }
+
+    /*
+     * The wheel is installed as pex installs it: the purelib, platlib and
+     * data schemes go to the root, scripts to bin and headers to headers.
+     * Returns the digest of the wheel, the runtime only uses it to name
+     * the directory it unpacks the wheel in.
+     */
+    private String writeWheel(ZipArchiveOutputStream zip, File wheel, Set<String> written) throws IOException {
+        String prefix = DEPS_DIR + "/" + wheel.getName() + "/";
+        try (ZipFile source = new ZipFile(wheel)) {
+            List<ZipArchiveEntry> entries = Collections.list(source.getEntries()).stream()
+                .filter(it -> !it.isDirectory())
+                .sorted(Comparator.comparing(ZipArchiveEntry::getName))
+                .collect(Collectors.toList());
+
+            for (ZipArchiveEntry entry : entries) {
+                String name = prefix + installedName(entry.getName());
+                if (!written.add(name)) {
+                    continue;
+                }
+
+                ZipArchiveEntry target = new ZipArchiveEntry(name);
+                target.setTime(ENTRY_TIME);
+                target.setUnixMode(entry.getUnixMode() != 0 ? entry.getUnixMode() : FILE_MODE);
+                if (entry.getMethod() == ZipArchiveEntry.STORED || entry.getMethod() == ZipArchiveEntry.DEFLATED) {
+                    target.setMethod(entry.getMethod());
+                    target.setCrc(entry.getCrc());
+                    target.setSize(entry.getSize());
+                    target.setCompressedSize(entry.getCompressedSize());
+                    try (InputStream raw = source.getRawInputStream(entry)) {
+                        zip.addRawArchiveEntry(target, raw);
+                    }
+                } else {
+                    // zipimport only reads stored and deflated entries.
+                    target.setMethod(ZipArchiveEntry.DEFLATED);
+                    zip.putArchiveEntry(target);
+                    try (InputStream content = source.getInputStream(entry)) {
+                        IOUtils.copy(content, zip);
+                    }
+                    zip.closeArchiveEntry();
+                }
+            }
+        }
+        return sha1(wheel);
+    }
+
+    static String installedName(String name) {
+        String[] parts = name.split("/", 4);
+        if (parts.length < 3 || !parts[0].endsWith(".data")) {
+            return name;
+        }
+
+        String rest = name.substring(parts[0].length() + parts[1].length() + 2);
+        switch (parts[1]) {
+            case "purelib":
+            case "platlib":
+            case "data":
+                return rest;
+            case "scripts":
+                return "bin/" + rest;
+            case "headers":
+                return "headers/" + rest;
+            default:
+                return name;
+        }
+    }
+
+    private void writeBootstrap(ZipArchiveOutputStream zip, Set<String> written) throws IOException {
+        Path root = bootstrapPackage.toPath();
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(root)) {
+            sources = files
+                .filter(it -> it.getFileName().toString().endsWith(".py") && Files.isRegularFile(it))
+                .sorted(Comparator.comparing(it -> root.relativize(it).toString().replace(File.separatorChar, '/')))
+                .collect(Collectors.toList());
+        }
+
+        String prefix = BOOTSTRAP_DIR + "/" + bootstrapPackage.getName() + "/";
+        for (Path source : sources) {
+            String name = prefix + root.relativize(source).toString().replace(File.separatorChar, '/');
+            writeEntry(zip, name, Files.readAllBytes(source), written);
+        }
+    }
+
+    private String pexInfo(JsonObject distributions) throws IOException {
+        JsonObject buildProperties = new JsonObject();
+        String pexVersion = pexVersion();
+        if (pexVersion != null) {
+            buildProperties.add("pex_version", pexVersion);
+        }
+
+        JsonArray requirementArray = new JsonArray();
+        requirements.forEach(requirementArray::add);
+
+        // The keys are sorted, like pex sorts them.
+        JsonObject pexInfo = new JsonObject()
+            .add("always_write_cache", alwaysWriteCache)
+            .add("build_properties", buildProperties)
+            .add("code_hash", codeHash())
+            .add("distributions", distributions);
+        if (entryPoint != null) {
+            pexInfo.add("entry_point", entryPoint);
+        }
+        return pexInfo
+            .add("ignore_errors", ignoreErrors)
+            .add("inherit_path", inheritPath)
+            .add("interpreter_constraints", new JsonArray())
+            .add("requirements", requirementArray)
+            .add("zip_safe", zipSafe)
+            .toString();
+    }
+
+    private String pexVersion() throws IOException {
+        File versionFile = new File(bootstrapPackage, "version.py");
+        if (!versionFile.isFile()) {
+            return null;
+        }
+        Matcher matcher = VERSION.matcher(new String(Files.readAllBytes(versionFile.toPath()), StandardCharsets.UTF_8));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static byte[] mainScript() throws IOException {
+        try (InputStream resource = PexAssembler.class.getClassLoader().getResourceAsStream(MAIN_RESOURCE)) {
+            if (resource == null) {
+                throw new IOException("Missing resource " + MAIN_RESOURCE);
+            }
+            return IOUtils.toByteArray(resource);
+        }
+    }
+
+    private static void writeEntry(ZipArchiveOutputStream zip, String name, byte[] content, Set<String> written)
+        throws IOException {
+        if (!written.add(name)) {
+            return;
+        }
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setTime(ENTRY_TIME);
+        entry.setUnixMode(FILE_MODE);
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        zip.putArchiveEntry(entry);
+        zip.write(content);
+        zip.closeArchiveEntry();
+    }
+
+    private static String sha1(File file) throws IOException {
+        MessageDigest digest = Digests.newDigest("SHA-1");
+        Digests.update(digest, file.toPath());
+        return Digests.toHex(digest.digest());
+    }
+
+    /*
+     * The hash pex 1.5 computes when it freezes a pex: of the user code
+     * only, names first, then contents. The runtime and the wheels are in
+     * hidden directories, and pex writes PEX-INFO and __main__.py after.
+     */
+    private String codeHash() throws IOException {
+        List<String> names = sources.keySet().stream()
+            .filter(it -> !it.endsWith(".pyc") && !it.startsWith("."))
+            .collect(Collectors.toList());
+
+        MessageDigest digest = Digests.newDigest("SHA-1");
+        digest.update(String.join("", names).getBytes(StandardCharsets.UTF_8));
+        for (String name : names) {
+            Digests.update(digest, sources.get(name).toPath());
+        }
+        return Digests.toHex(digest.digest());
+    }
+
+    /**
+     * Writes the entries of a pex file.
+     */
+    private interface EntryWriter {
+        void write(ZipArchiveOutputStream zip) throws IOException;
+    }
+}
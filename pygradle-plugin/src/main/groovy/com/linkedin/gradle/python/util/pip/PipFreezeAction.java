@@ -19,9 +19,9 @@ import com.linkedin.gradle.python.PythonExtension;
 import com.linkedin.gradle.python.util.ExtensionUtils;
 import com.linkedin.gradle.python.util.PackageInfo;
 import com.linkedin.gradle.python.util.StandardTextValues;
+import com.linkedin.gradle.python.util.internal.VenvState;
 import org.gradle.api.Project;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Collection;
 import java.util.HashSet;
@@ -46,26 +46,13 @@ public class PipFreezeAction {
 
         developmentDependencies.removeAll(configurationToSet(project, StandardTextValues.CONFIGURATION_PYTHON.getValue()));
 
-        final ByteArrayOutputStream requirements = new ByteArrayOutputStream();
-
         /*
-         * NOTE: It is very important to provide "--all" in the list of arguments
-         * to "pip freeze". Otherwise, setuptools, wheel, or pip would not be included
-         * even if required by runtime configuration "python".
+         * NOTE: Like "pip freeze --all", this includes setuptools, wheel and pip,
+         * which may well be required by runtime configuration "python".
          */
-        project.exec(execSpec -> {
-            execSpec.environment(settings.getEnvironment());
-            execSpec.commandLine(
-                settings.getDetails().getVirtualEnvInterpreter(),
-                settings.getDetails().getVirtualEnvironment().getPip(),
-                "freeze",
-                "--all",
-                "--disable-pip-version-check"
-            );
-            execSpec.setStandardOutput(requirements);
-        });
+        Map<String, String> installed = VenvState.of(settings.getDetails()).getPackages();
 
-        Map<String, String> dependencies = PipFreezeOutputParser.getDependencies(developmentDependencies, requirements);
+        Map<String, String> dependencies = PipFreezeOutputParser.getDependencies(developmentDependencies, installed);
         // Always add project unconditionally.
         dependencies.put(project.getName(), project.getVersion().toString());
         return dependencies;
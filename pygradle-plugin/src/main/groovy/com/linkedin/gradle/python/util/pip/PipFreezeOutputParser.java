@@ -20,6 +20,7 @@ import org.gradle.api.GradleException;
 import java.io.ByteArrayOutputStream;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class PipFreezeOutputParser {
@@ -33,7 +34,7 @@ public class PipFreezeOutputParser {
     }
 
     static Map<String, String> getDependencies(Collection<String> ignoredDependencies, String requirements) {
-        Map<String, String> reqs = new HashMap<>();
+        Map<String, String> packages = new LinkedHashMap<>();
 
         // In regex world \n will also match the windows CR+LF
         for (String line : requirements.split("\n")) {
@@ -42,18 +43,26 @@ public class PipFreezeOutputParser {
                 if (parts.length != 2) {
                     throw new GradleException("Unsupported requirement format. expected: <requirement>==<version>. found: " + line);
                 }
-                String name = parts[0];
-                String version = parts[1];
-                /*
-                 * The tar name can have _ when package name has -, so check both.
-                 * The version will convert - into _ for wheel builds, so convert right here.
-                 */
-                if (!(ignoredDependencies.contains(name) || ignoredDependencies.contains(name.replace("-", "_")))) {
-                    reqs.put(name, version);
-                }
+                packages.put(parts[0], parts[1]);
             }
         }
 
+        return getDependencies(ignoredDependencies, packages);
+    }
+
+    static Map<String, String> getDependencies(Collection<String> ignoredDependencies, Map<String, String> packages) {
+        Map<String, String> reqs = new HashMap<>();
+
+        packages.forEach((name, version) -> {
+            /*
+             * The tar name can have _ when package name has -, so check both.
+             * The version will convert - into _ for wheel builds, so convert right here.
+             */
+            if (!(ignoredDependencies.contains(name) || ignoredDependencies.contains(name.replace("-", "_")))) {
+                reqs.put(name, version);
+            }
+        });
+
         return reqs;
     }
 }
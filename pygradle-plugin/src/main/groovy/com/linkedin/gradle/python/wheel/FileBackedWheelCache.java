@@ -16,15 +16,19 @@
 package com.linkedin.gradle.python.wheel;
 
 import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheIndex;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
 import java.io.File;
 import java.io.Serializable;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class FileBackedWheelCache implements WheelCache, Serializable {
 
@@ -49,6 +53,20 @@ public class FileBackedWheelCache implements WheelCache, Serializable {
         return Optional.empty();
     }
 
+    @Override
+    public Map<PackageInfo, Optional<File>> findWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails) {
+        Map<PackageInfo, Optional<File>> wheels = new LinkedHashMap<>();
+        if (cacheDir == null) {
+            packages.forEach(it -> wheels.put(it, Optional.empty()));
+            return wheels;
+        }
+
+        File pythonExecutable = pythonDetails.getVirtualEnvInterpreter();
+        WheelCacheIndex.getWheels(cacheDir, packages).forEach((packageInfo, wheelDetails) ->
+            wheels.put(packageInfo, selectWheel(pythonExecutable, wheelDetails)));
+        return wheels;
+    }
+
     @Override
     public void storeWheel(File wheel) { }
 
@@ -81,47 +99,32 @@ public class FileBackedWheelCache implements WheelCache, Serializable {
             return Optional.empty();
         }
 
-        /*
-         * NOTE: Careful here! The prefix *must* end with a hyphen.
-         * Otherwise 0.0.2 version will match 0.0.20.
-         * Both name and version of the package must replace hyphen with underscore.
-         * See PEP 427: https://www.python.org/dev/peps/pep-0427/
-         */
-        String wheelPrefix = (
-                name.replace("-", "_")
-                + "-"
-                + version.replace("-", "_")
-                + "-"
-        );
-        logger.info("Searching for {} {} with prefix {}", name, version, wheelPrefix);
-        File[] files = cacheDir.listFiles((dir, entry) -> entry.startsWith(wheelPrefix) && entry.endsWith(".whl"));
-
-        if (files == null) {
-            return Optional.empty();
-        }
-
-        List<PythonWheelDetails> wheelDetails = Arrays.stream(files).map(PythonWheelDetails::fromFile)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .collect(Collectors.toList());
+        logger.info("Searching for {} {} in {}", name, version, cacheDir);
+        List<PythonWheelDetails> wheelDetails = WheelCacheIndex.getWheels(cacheDir, name, version);
 
         logger.info("Wheels for version of package: {}", wheelDetails);
 
-        Optional<PythonWheelDetails> foundWheel = wheelDetails.stream()
-            .filter(it -> wheelMatches(pythonExecutable, it))
-            .findFirst();
+        Optional<File> foundWheel = selectWheel(pythonExecutable, wheelDetails);
 
         logger.info("Found artifacts: {}", foundWheel);
 
-        return foundWheel.map(it -> it.getFile());
+        return foundWheel;
     }
 
     public File getCacheDir() {
         return cacheDir;
     }
 
-    private boolean wheelMatches(File pythonExecutable, PythonWheelDetails wheelDetails) {
-        return pythonAbiContainer.matchesSupportedVersion(
+    private Optional<File> selectWheel(File pythonExecutable, List<PythonWheelDetails> wheelDetails) {
+        // Several wheels may suit the interpreter, e.g. manylinux1 and linux_x86_64; take the most preferred one.
+        return wheelDetails.stream()
+            .filter(it -> wheelRank(pythonExecutable, it) != PythonAbiContainer.NOT_SUPPORTED)
+            .min(Comparator.comparingInt(it -> wheelRank(pythonExecutable, it)))
+            .map(PythonWheelDetails::getFile);
+    }
+
+    private int wheelRank(File pythonExecutable, PythonWheelDetails wheelDetails) {
+        return pythonAbiContainer.rankSupportedVersion(
             pythonExecutable,
             wheelDetails.getPythonTag(),
             wheelDetails.getAbiTag(),
@@ -16,6 +16,14 @@
 package com.linkedin.gradle.python.wheel;
 
 import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.internal.RemoteWheelLayer;
+import com.linkedin.gradle.python.wheel.internal.WheelBlobStore;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheCleaner;
+import com.linkedin.gradle.python.wheel.internal.WheelBuildLock;
+import com.linkedin.gradle.python.wheel.internal.WheelCacheIndex;
+import com.linkedin.gradle.python.wheel.internal.WheelFiles;
+import org.apache.commons.io.FileUtils;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
@@ -24,16 +32,15 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
 import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
-
 
 public class LayeredWheelCache implements WheelCache, Serializable {
 
@@ -41,6 +48,8 @@ public class LayeredWheelCache implements WheelCache, Serializable {
 
     private final Map<WheelCacheLayer, File> layeredCacheMap;
     private final PythonAbiContainer pythonAbiContainer;
+    // The remote layer does not change what the tasks produce, so it is not part of their inputs.
+    private transient RemoteWheelLayer remoteWheelLayer;
 
     private boolean wheelsReady;
 
@@ -61,7 +70,7 @@ public class LayeredWheelCache implements WheelCache, Serializable {
             }
         }
 
-        return Optional.empty();
+        return findWheel(name, version, pythonDetails.getVirtualEnvInterpreter(), WheelCacheLayer.REMOTE_LAYER);
     }
 
     @Override
@@ -70,6 +79,70 @@ public class LayeredWheelCache implements WheelCache, Serializable {
         return findWheel(name, version, pythonDetails.getVirtualEnvInterpreter(), wheelCacheLayer);
     }
 
+    /**
+     * Finds the wheels for several packages in the cache.
+     *
+     * <p>Each local layer is looked up once for all the packages not found in
+     * the layers before it. The remote layer is asked for the rest.</p>
+     *
+     * @param packages the packages to look up
+     * @param pythonDetails the Python interpreter and other details
+     * @return the wheel, if found, for each package in the order of the packages
+     */
+    @Override
+    public Map<PackageInfo, Optional<File>> findWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails) {
+        File pythonExecutable = pythonDetails.getVirtualEnvInterpreter();
+        Map<PackageInfo, Optional<File>> wheels = findLocalWheels(packages, pythonDetails, true);
+
+        for (PackageInfo packageInfo : getMissing(wheels)) {
+            wheels.put(packageInfo, fetchWheel(packageInfo.getName(), packageInfo.getVersion(), pythonExecutable));
+        }
+
+        logger.info("Found {} of {} wheels in the cache", packages.size() - getMissing(wheels).size(), packages.size());
+        return wheels;
+    }
+
+    /**
+     * Finds the wheels for several packages in the local cache layers.
+     *
+     * <p>Each local layer is looked up once for all the packages not found in
+     * the layers before it. The layers are only read: the wheels found in the
+     * host layer are not recorded as used, since the caller may not use them.</p>
+     *
+     * @param packages the packages to look up
+     * @param pythonDetails the Python interpreter and other details
+     * @return the wheel, if found locally, for each package in the order of the packages
+     */
+    @Override
+    public Map<PackageInfo, Optional<File>> findLocalWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails) {
+        return findLocalWheels(packages, pythonDetails, false);
+    }
+
+    private Map<PackageInfo, Optional<File>> findLocalWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails,
+                                                             boolean recordAccess) {
+        File pythonExecutable = pythonDetails.getVirtualEnvInterpreter();
+        Map<PackageInfo, Optional<File>> wheels = new LinkedHashMap<>();
+        packages.forEach(it -> wheels.put(it, Optional.empty()));
+
+        for (Map.Entry<WheelCacheLayer, File> layer : layeredCacheMap.entrySet()) {
+            List<PackageInfo> missing = getMissing(wheels);
+            if (layer.getValue() == null || missing.isEmpty()) {
+                continue;
+            }
+
+            WheelCacheIndex.getWheels(layer.getValue(), missing).forEach((packageInfo, wheelDetails) -> {
+                Optional<File> foundWheel = selectWheel(pythonExecutable, wheelDetails);
+                if (foundWheel.isPresent()) {
+                    if (recordAccess && layer.getKey() == WheelCacheLayer.HOST_LAYER) {
+                        WheelCacheCleaner.recordAccess(foundWheel.get());
+                    }
+                    wheels.put(packageInfo, foundWheel);
+                }
+            });
+        }
+
+        return wheels;
+    }
 
     @Override
     public void storeWheel(File wheel) {
@@ -78,32 +151,57 @@ public class LayeredWheelCache implements WheelCache, Serializable {
         }
     }
 
+    /**
+     * Stores the wheel file into the cache layer.
+     *
+     * <p>Storing into the remote layer only schedules an upload, when pushing is enabled.</p>
+     *
+     * @param wheel the wheel file to store
+     * @param wheelCacheLayer the {@link WheelCacheLayer} to store the wheel in
+     */
     @Override
     public void storeWheel(File wheel, WheelCacheLayer wheelCacheLayer) {
+        if (wheelCacheLayer == WheelCacheLayer.REMOTE_LAYER) {
+            if (wheel != null && remoteWheelLayer != null) {
+                remoteWheelLayer.push(wheel);
+            }
+            return;
+        }
+
         File cacheDir = layeredCacheMap.get(wheelCacheLayer);
 
         if (wheel != null && cacheDir != null) {
             /*
-             * Although it seemed unlikely, because we look for the wheel
-             * before trying to store it, the following scenario is possible
-             * and observed in testing.
-             *
-             * When two (or more) sub-projects do not find the wheel in any
-             * layer of the cache during build, they all proceed with the
-             * build into their respective project layers. One of them
-             * finishes first and stores the wheel into the host layer,
-             * if wheel build is not customized. The others then do not
-             * need to store the same wheel.
+             * Sub-projects that miss the same wheel do not all build it:
+             * the first one builds it, see InFlightWheelBuilds, and other
+             * builds on the host wait on the build lock. The wheel may
+             * still be stored already, e.g. by a build that built it on
+             * its own after a shared build failed, or by a build of an
+             * older plugin version that takes no lock. The others then
+             * do not need to store the same wheel.
              *
              * We do not try to overwrite the existing file, but instead
              * catch the exception and log it. The try-catch avoids race
              * conditions here much better than conditional expressions.
              * We re-throw other exceptions.
              *
-             * The file attributes are preserved after copy.
+             * The file attributes are preserved after copy. When there is
+             * a host layer, the layers share one copy of the wheel content
+             * through the blob store instead.
              */
             try {
-                Files.copy(wheel.toPath(), new File(cacheDir, wheel.getName()).toPath(), COPY_ATTRIBUTES);
+                long lastModified = cacheDir.lastModified();
+                File storedWheel = new File(cacheDir, wheel.getName());
+                File hostLayerDir = layeredCacheMap.get(WheelCacheLayer.HOST_LAYER);
+                if (hostLayerDir != null) {
+                    new WheelBlobStore(hostLayerDir).materialize(wheel, storedWheel);
+                } else {
+                    WheelFiles.copy(wheel.toPath(), storedWheel.toPath());
+                }
+                WheelCacheIndex.addWheel(cacheDir, storedWheel, lastModified);
+                if (wheelCacheLayer == WheelCacheLayer.HOST_LAYER) {
+                    WheelCacheCleaner.recordAccess(storedWheel);
+                }
             } catch (FileAlreadyExistsException e) {
                 logger.info("Wheel {} already stored in {}", wheel.getName(), cacheDir.toString());
             } catch (NoSuchFileException e) {
@@ -134,6 +232,42 @@ public class LayeredWheelCache implements WheelCache, Serializable {
         }
     }
 
+    /**
+     * Locks the build of a wheel in the host layer, shared with other builds on the host.
+     *
+     * @param name package name
+     * @param version package version
+     * @param pythonDetails the interpreter the wheel is built for
+     * @return the lock, which does nothing when there is no host layer
+     */
+    @Override
+    public WheelCacheLock lockWheelBuild(String name, String version, PythonDetails pythonDetails) {
+        File cacheDir = layeredCacheMap.get(WheelCacheLayer.HOST_LAYER);
+        if (cacheDir == null) {
+            return WheelCache.super.lockWheelBuild(name, version, pythonDetails);
+        }
+        return WheelBuildLock.acquire(cacheDir, name, version, pythonDetails.getPythonVersion().getPythonMajorMinor());
+    }
+
+    /**
+     * Sets the remote layer, looked up after all local layers.
+     *
+     * @param client the client of the remote wheel cache
+     * @param push whether the wheels built locally are uploaded
+     */
+    public void setRemoteWheelCache(RemoteWheelCacheClient client, boolean push) {
+        this.remoteWheelLayer = new RemoteWheelLayer(client, push, pythonAbiContainer);
+    }
+
+    /**
+     * Waits for the wheels stored into the remote layer to be uploaded.
+     */
+    public void awaitRemotePushes() {
+        if (remoteWheelLayer != null) {
+            remoteWheelLayer.awaitPushes();
+        }
+    }
+
     @Override
     public Optional<File> getTargetDirectory() {
         return Optional.ofNullable(layeredCacheMap.get(WheelCacheLayer.PROJECT_LAYER));
@@ -160,49 +294,76 @@ public class LayeredWheelCache implements WheelCache, Serializable {
      */
     private Optional<File> findWheel(String name, String version, File pythonExecutable,
                                     WheelCacheLayer wheelCacheLayer) {
+        if (wheelCacheLayer == WheelCacheLayer.REMOTE_LAYER) {
+            return fetchWheel(name, version, pythonExecutable);
+        }
+
         File cacheDir = layeredCacheMap.get(wheelCacheLayer);
 
         if (cacheDir == null) {
             return Optional.empty();
         }
 
-        /*
-         * NOTE: Careful here! The prefix *must* end with a hyphen.
-         * Otherwise 0.0.2 version will match 0.0.20.
-         * Both name and version of the package must replace hyphen with underscore.
-         * See PEP 427: https://www.python.org/dev/peps/pep-0427/
-         */
-        String wheelPrefix = (
-                name.replace("-", "_")
-                + "-"
-                + version.replace("-", "_")
-                + "-"
-        );
-        logger.info("Searching for {} {} with prefix {}", name, version, wheelPrefix);
-        File[] files = cacheDir.listFiles((dir, entry) -> entry.startsWith(wheelPrefix) && entry.endsWith(".whl"));
-
-        if (files == null) {
-            return Optional.empty();
+        logger.info("Searching for {} {} in {}", name, version, cacheDir);
+        List<PythonWheelDetails> wheelDetails = WheelCacheIndex.getWheels(cacheDir, name, version);
+
+        logger.info("Wheels for version of package: {}", wheelDetails);
+
+        Optional<File> foundWheel = selectWheel(pythonExecutable, wheelDetails);
+
+        logger.info("Found artifacts: {}", foundWheel);
+
+        if (foundWheel.isPresent() && wheelCacheLayer == WheelCacheLayer.HOST_LAYER) {
+            WheelCacheCleaner.recordAccess(foundWheel.get());
         }
 
-        List<PythonWheelDetails> wheelDetails = Arrays.stream(files).map(PythonWheelDetails::fromFile)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
+        return foundWheel;
+    }
+
+    private Optional<File> selectWheel(File pythonExecutable, List<PythonWheelDetails> wheelDetails) {
+        // Several wheels may suit the interpreter, e.g. manylinux1 and linux_x86_64; take the most preferred one.
+        return wheelDetails.stream()
+            .filter(it -> wheelRank(pythonExecutable, it) != PythonAbiContainer.NOT_SUPPORTED)
+            .min(Comparator.comparingInt(it -> wheelRank(pythonExecutable, it)))
+            .map(PythonWheelDetails::getFile);
+    }
+
+    private static List<PackageInfo> getMissing(Map<PackageInfo, Optional<File>> wheels) {
+        return wheels.entrySet().stream()
+            .filter(it -> !it.getValue().isPresent())
+            .map(Map.Entry::getKey)
             .collect(Collectors.toList());
+    }
 
-        logger.info("Wheels for version of package: {}", wheelDetails);
+    /*
+     * The wheel is downloaded into the layer it goes into, so the store
+     * can link it, and the layer gives back its own copy. The host layer
+     * is preferred, so other projects on the host find the wheel too.
+     */
+    private Optional<File> fetchWheel(String name, String version, File pythonExecutable) {
+        WheelCacheLayer targetLayer = layeredCacheMap.get(WheelCacheLayer.HOST_LAYER) != null
+            ? WheelCacheLayer.HOST_LAYER : WheelCacheLayer.PROJECT_LAYER;
+        File cacheDir = layeredCacheMap.get(targetLayer);
 
-        Optional<PythonWheelDetails> foundWheel = wheelDetails.stream()
-            .filter(it -> wheelMatches(pythonExecutable, it))
-            .findFirst();
+        if (remoteWheelLayer == null || cacheDir == null || !cacheDir.isDirectory() || name == null || version == null) {
+            return Optional.empty();
+        }
 
-        logger.info("Found artifacts: {}", foundWheel);
+        Optional<File> downloaded = remoteWheelLayer.fetch(name, version, pythonExecutable, cacheDir);
+        if (!downloaded.isPresent()) {
+            return Optional.empty();
+        }
 
-        return foundWheel.map(it -> it.getFile());
+        try {
+            storeWheel(downloaded.get(), targetLayer);
+            return findWheel(name, version, pythonExecutable, targetLayer);
+        } finally {
+            FileUtils.deleteQuietly(downloaded.get().getParentFile());
+        }
     }
 
-    private boolean wheelMatches(File pythonExecutable, PythonWheelDetails wheelDetails) {
-        return pythonAbiContainer.matchesSupportedVersion(
+    private int wheelRank(File pythonExecutable, PythonWheelDetails wheelDetails) {
+        return pythonAbiContainer.rankSupportedVersion(
             pythonExecutable,
             wheelDetails.getPythonTag(),
             wheelDetails.getAbiTag(),
@@ -23,6 +23,12 @@ import java.io.Serializable;
  * component.
  */
 public interface PythonAbiContainer extends Serializable {
+
+    /**
+     * Rank of a python, abi and platform combination the python executable does not support.
+     */
+    int NOT_SUPPORTED = -1;
+
     /**
      * Checks to see if a python executable is compatible with a python version, python abi, and platform.
      *
@@ -37,6 +43,23 @@ public interface PythonAbiContainer extends Serializable {
      */
     boolean matchesSupportedVersion(File pythonExecutable, String pythonTag, String abiTag, String platformTag);
 
+    /**
+     * Ranks how well a python version, python abi, and platform suit a python executable.
+     *
+     * <p>Lower ranks are preferred, following the order of PEP 425 supported tags. The same
+     * compressed tag sets as in {@link #matchesSupportedVersion} are accepted and the best
+     * rank of any combination is returned.</p>
+     *
+     * @param pythonExecutable to check against
+     * @param pythonTag version of python (ex. py2.py3)
+     * @param abiTag the ABI for the python exec
+     * @param platformTag platform required
+     * @return zero or a positive rank, or {@link #NOT_SUPPORTED} if the python exec is not compatible
+     */
+    default int rankSupportedVersion(File pythonExecutable, String pythonTag, String abiTag, String platformTag) {
+        return matchesSupportedVersion(pythonExecutable, pythonTag, abiTag, platformTag) ? 0 : NOT_SUPPORTED;
+    }
+
     /**
      * Create and return a new object with the same containers
      */
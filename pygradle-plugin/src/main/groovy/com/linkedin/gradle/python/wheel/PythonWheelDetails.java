@@ -36,18 +36,35 @@ public class PythonWheelDetails {
     private final String platformTag;
 
     private PythonWheelDetails(File wheelFile, Matcher matcher) {
-        file = wheelFile;
-        dist = matcher.group("dist");
-        String matchedVersion = matcher.group("version");
-        pythonTag = matcher.group("pythonTag");
-        abiTag = matcher.group("abiTag");
-        platformTag = matcher.group("platformTag");
+        this(wheelFile, matcher.group("dist"), snapshotVersion(matcher.group("version")),
+            matcher.group("pythonTag"), matcher.group("abiTag"), matcher.group("platformTag"));
+    }
+
+    /**
+     * Creates the details from already parsed wheel file name parts.
+     *
+     * @param wheelFile the wheel file
+     * @param dist distribution name
+     * @param version distribution version, with SNAPSHOT suffix restored
+     * @param pythonTag python tag
+     * @param abiTag ABI tag
+     * @param platformTag platform tag
+     */
+    public PythonWheelDetails(File wheelFile, String dist, String version, String pythonTag, String abiTag, String platformTag) {
+        this.file = wheelFile;
+        this.dist = dist;
+        this.version = version;
+        this.pythonTag = pythonTag;
+        this.abiTag = abiTag;
+        this.platformTag = platformTag;
+    }
 
+    private static String snapshotVersion(String matchedVersion) {
         Matcher snapshotMatcher = SNAPSHOT_PATTERN.matcher(matchedVersion);
         if (snapshotMatcher.find()) {
-            version = snapshotMatcher.replaceFirst("-" + snapshotMatcher.group("snapshot"));
+            return snapshotMatcher.replaceFirst("-" + snapshotMatcher.group("snapshot"));
         } else {
-            version = matchedVersion;
+            return matchedVersion;
         }
     }
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Client of a remote wheel cache.
+ *
+ * <p>The remote cache is a plain store of files by key, such as an HTTP
+ * build cache node. Keys are hex strings safe to use in URLs and file
+ * names. Implementations must be safe to use from several threads.</p>
+ */
+public interface RemoteWheelCacheClient {
+    /**
+     * Loads the file stored under the key.
+     *
+     * @param key the key of the file
+     * @param target the file to write the content to, replaced if it exists
+     * @return true when the file was found, false when nothing is stored under the key
+     * @throws IOException when the remote cache cannot be reached or fails
+     */
+    boolean load(String key, File target) throws IOException;
+
+    /**
+     * Stores the file under the key, replacing whatever was stored before.
+     *
+     * @param key the key of the file
+     * @param source the file to store
+     * @throws IOException when the remote cache cannot be reached or fails
+     */
+    void store(String key, File source) throws IOException;
+}
@@ -16,9 +16,13 @@
 package com.linkedin.gradle.python.wheel;
 
 import com.linkedin.gradle.python.extension.PythonDetails;
+import com.linkedin.gradle.python.util.PackageInfo;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public interface WheelCache extends Serializable {
@@ -45,6 +49,40 @@ public interface WheelCache extends Serializable {
      */
     Optional<File> findWheel(String name, String version, PythonDetails pythonDetails, WheelCacheLayer wheelCacheLayer);
 
+    /**
+     * Finds the wheels for several packages in the cache.
+     *
+     * <p>Each wheel can be stored in any cache layer. Packages without a wheel
+     * are mapped to {@code Optional.empty()}, so the caller can plan the builds
+     * before running any of them.</p>
+     *
+     * @param packages the packages to look up
+     * @param pythonDetails the Python interpreter and other details
+     * @return the wheel, if found, for each package in the order of the packages
+     */
+    default Map<PackageInfo, Optional<File>> findWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails) {
+        Map<PackageInfo, Optional<File>> wheels = new LinkedHashMap<>();
+        for (PackageInfo packageInfo : packages) {
+            wheels.put(packageInfo, findWheel(packageInfo.getName(), packageInfo.getVersion(), pythonDetails));
+        }
+        return wheels;
+    }
+
+    /**
+     * Finds the wheels for several packages in the local cache layers only.
+     *
+     * <p>Unlike {@link #findWheels(Collection, PythonDetails)}, this never
+     * fetches a wheel from a remote layer, nor records the wheels found as
+     * used, so it is cheap enough for reports.</p>
+     *
+     * @param packages the packages to look up
+     * @param pythonDetails the Python interpreter and other details
+     * @return the wheel, if found locally, for each package in the order of the packages
+     */
+    default Map<PackageInfo, Optional<File>> findLocalWheels(Collection<PackageInfo> packages, PythonDetails pythonDetails) {
+        return findWheels(packages, pythonDetails);
+    }
+
     /**
      * Stores the wheel file into all cache layers.
      *
@@ -60,6 +98,21 @@ public interface WheelCache extends Serializable {
      */
     void storeWheel(File wheel, WheelCacheLayer wheelCacheLayer);
 
+    /**
+     * Locks the build of a wheel against other builds sharing the cache.
+     *
+     * <p>The lock is held until the wheel is stored, so the builds waiting
+     * for it find the wheel instead of building it again.</p>
+     *
+     * @param name package name
+     * @param version package version
+     * @param pythonDetails the interpreter the wheel is built for
+     * @return the lock to close once the wheel is stored
+     */
+    default WheelCacheLock lockWheelBuild(String name, String version, PythonDetails pythonDetails) {
+        return () -> { };
+    }
+
     /**
      * Gets the default directory for wheel build target.
      *
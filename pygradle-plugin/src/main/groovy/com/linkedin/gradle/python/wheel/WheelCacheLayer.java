@@ -17,7 +17,8 @@ package com.linkedin.gradle.python.wheel;
 
 public enum WheelCacheLayer {
     PROJECT_LAYER("projectLayer"),
-    HOST_LAYER("hostLayer");
+    HOST_LAYER("hostLayer"),
+    REMOTE_LAYER("remoteLayer");
 
     private final String value;
 
@@ -24,53 +24,82 @@ import org.gradle.api.logging.Logging;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
+/**
+ * Supported wheel tags of the Python interpreters.
+ *
+ * <p>The tags are added one by one while probing an interpreter, but then
+ * looked up for every wheel candidate, often from parallel wheel builds.
+ * So the added tags are compiled into an immutable lookup table per
+ * interpreter on the first match after a change. A match is then a few
+ * hash lookups without splitting or allocating anything.</p>
+ *
+ * <p>The tags are ranked in the order they were added, which is the PEP 425
+ * order of preference reported by the interpreter, most preferred first.</p>
+ */
 public class DefaultPythonAbiContainer implements EditablePythonAbiContainer, PythonAbiContainer, Serializable {
 
     private static final Logger logger = Logging.getLogger(PythonAbiContainer.class);
 
-    private List<AbiDetails> supportedAbis = new ArrayList<>();
+    private List<AbiDetails> supportedAbis = Collections.emptyList();
+
+    // Compiled from supportedAbis on demand, null when out of date.
+    private transient volatile Map<String, SupportedTags> supportedTags;
 
     @Override
-    public void addSupportedAbi(AbiDetails triple) {
-        supportedAbis.add(triple);
+    public synchronized void addSupportedAbi(AbiDetails triple) {
+        List<AbiDetails> abis = new ArrayList<>(supportedAbis);
+        abis.add(triple);
+        supportedAbis = Collections.unmodifiableList(abis);
+        supportedTags = null;
         logger.debug("Available ABI's: {}", supportedAbis);
     }
 
     @Override
     public boolean matchesSupportedVersion(File pythonExecutable, String pythonTag, String abiTag, String platformTag) {
-        String[] pythonTags = pythonTag.split("\\.");
-        String[] abiTags = abiTag.split("\\.");
-        String[] platformTags = platformTag.split("\\.");
+        return rankSupportedVersion(pythonExecutable, pythonTag, abiTag, platformTag) != NOT_SUPPORTED;
+    }
 
-        return supportedAbis.stream()
-            .filter(it -> Objects.equals(it.getPythonExecutable().getAbsolutePath(), pythonExecutable.getAbsolutePath()))
-            .anyMatch(it -> contains(it, pythonTags, abiTags, platformTags));
+    @Override
+    public int rankSupportedVersion(File pythonExecutable, String pythonTag, String abiTag, String platformTag) {
+        Map<String, SupportedTags> compiled = supportedTags;
+        if (compiled == null) {
+            compiled = compile();
+        }
+
+        SupportedTags interpreterTags = compiled.get(pythonExecutable.getAbsolutePath());
+        if (interpreterTags == null) {
+            return NOT_SUPPORTED;
+        }
+
+        return interpreterTags.rank(pythonTag, abiTag, platformTag);
     }
 
     @Override
-    public EditablePythonAbiContainer copy() {
+    public synchronized EditablePythonAbiContainer copy() {
         DefaultPythonAbiContainer container = new DefaultPythonAbiContainer();
-        container.supportedAbis = new ArrayList<>(supportedAbis);
+        container.supportedAbis = supportedAbis;
         return container;
     }
 
-    private static boolean contains(AbiDetails triple, String[] pythonTags, String[] abiTags, String[] platformTags) {
-        return contains(triple.getPythonTag(), pythonTags)
-            && contains(triple.getAbiTag(), abiTags)
-            && contains(triple.getPlatformTag(), platformTags);
-    }
-
-    private static boolean contains(String needle, String[] haystack) {
-        for (String s : haystack) {
-            if (Objects.equals(needle, s)) {
-                return true;
+    private synchronized Map<String, SupportedTags> compile() {
+        if (supportedTags == null) {
+            Map<String, SupportedTags> compiled = new HashMap<>();
+            for (AbiDetails abiDetails : supportedAbis) {
+                compiled.computeIfAbsent(abiDetails.getPythonExecutable().getAbsolutePath(), key -> new SupportedTags())
+                    .add(abiDetails);
             }
+            supportedTags = Collections.unmodifiableMap(compiled);
         }
 
-        return false;
+        return supportedTags;
     }
 
     @Override
@@ -79,4 +108,52 @@ public class DefaultPythonAbiContainer implements EditablePythonAbiContainer, Py
             + "supportedAbis=" + supportedAbis
             + '}';
     }
+
+    /**
+     * Tags of one interpreter: python tag to ABI tag to platform tag to rank.
+     */
+    private static final class SupportedTags {
+        private static final Pattern TAG_SEPARATOR = Pattern.compile("\\.");
+
+        private final Map<String, Map<String, Map<String, Integer>>> ranks = new HashMap<>();
+
+        // Compressed tag sets, such as py2.py3, seen in wheel names so far.
+        private final ConcurrentMap<String, String[]> expandedTags = new ConcurrentHashMap<>();
+
+        private int size;
+
+        private void add(AbiDetails abiDetails) {
+            ranks.computeIfAbsent(abiDetails.getPythonTag(), key -> new HashMap<>())
+                .computeIfAbsent(abiDetails.getAbiTag(), key -> new HashMap<>())
+                .putIfAbsent(abiDetails.getPlatformTag(), size++);
+        }
+
+        private int rank(String pythonTag, String abiTag, String platformTag) {
+            int best = NOT_SUPPORTED;
+            for (String python : expand(pythonTag)) {
+                Map<String, Map<String, Integer>> abis = ranks.get(python);
+                if (abis == null) {
+                    continue;
+                }
+                for (String abi : expand(abiTag)) {
+                    Map<String, Integer> platforms = abis.get(abi);
+                    if (platforms == null) {
+                        continue;
+                    }
+                    for (String platform : expand(platformTag)) {
+                        Integer rank = platforms.get(platform);
+                        if (rank != null && (best == NOT_SUPPORTED || rank < best)) {
+                            best = rank;
+                        }
+                    }
+                }
+            }
+
+            return best;
+        }
+
+        private String[] expand(String tag) {
+            return expandedTags.computeIfAbsent(tag, TAG_SEPARATOR::split);
+        }
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.wheel.RemoteWheelCacheClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Remote wheel cache client using plain HTTP GET and PUT requests.
+ *
+ * <p>The keys are resolved against the base URI, so any server that can
+ * store files with PUT and serve them with GET will do, e.g. a Gradle HTTP
+ * build cache node. Credentials in the user info part of the URI are sent
+ * with basic authentication.</p>
+ */
+public class HttpRemoteWheelCacheClient implements RemoteWheelCacheClient {
+
+    private static final int TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private final URI baseUri;
+    private final String authorization;
+
+    public HttpRemoteWheelCacheClient(URI baseUri) {
+        this.baseUri = baseUri.getPath().endsWith("/") ? baseUri : withPath(baseUri, baseUri.getPath() + "/");
+        this.authorization = baseUri.getUserInfo() == null ? null
+            : "Basic " + Base64.getEncoder().encodeToString(baseUri.getUserInfo().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean load(String key, File target) throws IOException {
+        HttpURLConnection connection = open(key);
+        connection.setRequestMethod("GET");
+
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            discard(connection);
+            return false;
+        }
+        if (!isSuccess(status)) {
+            discard(connection);
+            throw new IOException("Loading " + key + " from " + baseUri + " failed with HTTP status " + status);
+        }
+
+        try (InputStream input = connection.getInputStream()) {
+            Files.copy(input, target.toPath(), REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    @Override
+    public void store(String key, File source) throws IOException {
+        try {
+            put(key, source);
+        } catch (SocketException e) {
+            // The server may have closed the kept alive connection. Streamed requests are not retried for us.
+            put(key, source);
+        }
+    }
+
+    private void put(String key, File source) throws IOException {
+        HttpURLConnection connection = open(key);
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(source.length());
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+
+        try (OutputStream output = connection.getOutputStream()) {
+            Files.copy(source.toPath(), output);
+        }
+
+        int status = connection.getResponseCode();
+        discard(connection);
+        if (!isSuccess(status)) {
+            throw new IOException("Storing " + key + " into " + baseUri + " failed with HTTP status " + status);
+        }
+    }
+
+    private HttpURLConnection open(String key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) baseUri.resolve(key).toURL().openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setUseCaches(false);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        return connection;
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    /*
+     * Reading the rest of the response lets the connection go back
+     * to the keep-alive pool for the next request.
+     */
+    private static void discard(HttpURLConnection connection) throws IOException {
+        InputStream input = connection.getErrorStream();
+        if (input == null) {
+            try {
+                input = connection.getInputStream();
+            } catch (IOException e) {
+                return;
+            }
+        }
+
+        try (InputStream ignored = input) {
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) != -1) {
+                // Discard.
+            }
+        }
+    }
+
+    private static URI withPath(URI uri, String path) {
+        try {
+            return new URI(uri.getScheme(), uri.getUserInfo(), uri.getHost(), uri.getPort(), path, uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
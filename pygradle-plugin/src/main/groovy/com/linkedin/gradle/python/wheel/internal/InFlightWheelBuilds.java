@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the wheels being built in the daemon.
+ *
+ * <p>When several projects of a parallel build miss the same wheel, the
+ * first one builds it and the others wait for its result instead of
+ * building the wheel again. Builds are told apart by package name, version
+ * and Python version, so the wheels of one package for different
+ * interpreters are still built at the same time. Interpreters of the same
+ * Python version may still differ in their ABI or platform tags, so the
+ * waiting builds look the wheel up in the cache for their own interpreter
+ * once the build is done, rather than take the wheel of the owner.</p>
+ *
+ * <p>The registry only covers the threads of one daemon. Other Gradle
+ * processes on the host are covered by the {@link WheelBuildLock} of the
+ * host cache directory, which the owner of a build takes on top. It tells
+ * builds apart by the same Python version.</p>
+ */
+public final class InFlightWheelBuilds {
+
+    private static final Logger logger = Logging.getLogger(InFlightWheelBuilds.class);
+
+    private static final ConcurrentMap<String, CompletableFuture<Optional<File>>> BUILDS = new ConcurrentHashMap<>();
+
+    private InFlightWheelBuilds() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Registers the build of a wheel, unless it is already being built.
+     *
+     * @param name package name
+     * @param version package version
+     * @param pythonVersion the major and minor version of the interpreter the wheel is built for
+     * @return the registration, owning the build when no other build of the wheel is in flight
+     */
+    public static Registration register(String name, String version, String pythonVersion) {
+        String key = WheelCacheIndex.normalizeName(name)
+            + "-" + WheelCacheIndex.normalizeVersion(String.valueOf(version))
+            + "-py" + pythonVersion;
+
+        CompletableFuture<Optional<File>> build = new CompletableFuture<>();
+        CompletableFuture<Optional<File>> inFlight = BUILDS.putIfAbsent(key, build);
+        return inFlight == null ? new Registration(key, build, true) : new Registration(key, inFlight, false);
+    }
+
+    /**
+     * Registration of a wheel build, to close when the build is done.
+     */
+    public static final class Registration implements AutoCloseable {
+        private final String key;
+        private final CompletableFuture<Optional<File>> build;
+        private final boolean owner;
+
+        private Registration(String key, CompletableFuture<Optional<File>> build, boolean owner) {
+            this.key = key;
+            this.build = build;
+            this.owner = owner;
+        }
+
+        /**
+         * Tells if this registration builds the wheel, rather than waiting for another build.
+         *
+         * @return true when the caller has to build the wheel
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * Waits for the build in flight.
+         *
+         * <p>The wheel is built for the interpreter of the owner. Callers with
+         * another interpreter of the same Python version look up their own.</p>
+         *
+         * @return the wheel it built, or {@code Optional.empty()} when it built none to share
+         */
+        public Optional<File> await() {
+            if (!build.isDone()) {
+                logger.lifecycle("Waiting for another project building the {} wheel", key);
+            }
+
+            try {
+                return build.join();
+            } catch (CompletionException e) {
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Hands the wheel over to the builds waiting for it.
+         *
+         * @param wheel the wheel built, or {@code Optional.empty()} when there is none to share
+         */
+        public void complete(Optional<File> wheel) {
+            if (owner) {
+                BUILDS.remove(key, build);
+                build.complete(wheel);
+            }
+        }
+
+        /**
+         * Ends the registration. A build closed without a wheel leaves the waiting builds to build it themselves.
+         */
+        @Override
+        public void close() {
+            complete(Optional.empty());
+        }
+    }
+}
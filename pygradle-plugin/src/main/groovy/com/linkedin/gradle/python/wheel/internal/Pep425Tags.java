@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.wheel.AbiDetails;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the PEP 425 tags an interpreter supports, most specific first.
+ *
+ * <p>The tags used to come from {@code wheel.pep425tags}, run in every
+ * virtual environment, which newer wheel releases no longer ship and
+ * older ones do not know the recent manylinux tags of. The tags only
+ * depend on a few facts about the interpreter, so they are computed here,
+ * in the order of the {@code packaging.tags} module pip uses.</p>
+ */
+public final class Pep425Tags {
+
+    private static final Pattern GLIBC_VERSION = Pattern.compile("(\\d+)\\.(\\d+)");
+    private static final Pattern DEBUG_ABI = Pattern.compile("(cp\\d+)d(\\w*)");
+
+    // The manylinux tags from before PEP 600, by the glibc version they stand for.
+    private static final Map<String, String> LEGACY_MANYLINUX = new HashMap<>();
+    private static final Set<String> MANYLINUX2014_ARCHS = new LinkedHashSet<>(
+        Arrays.asList("x86_64", "i686", "aarch64", "armv7l", "ppc64", "ppc64le", "s390x"));
+
+    static {
+        LEGACY_MANYLINUX.put("2_17", "manylinux2014");
+        LEGACY_MANYLINUX.put("2_12", "manylinux2010");
+        LEGACY_MANYLINUX.put("2_5", "manylinux1");
+    }
+
+    private Pep425Tags() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Computes the ABI tag of an interpreter.
+     *
+     * @param implementation the implementation tag, such as {@code cp}
+     * @param major the major version
+     * @param minor the minor version
+     * @param soabi the SOABI config variable, if the interpreter has one
+     * @param pyDebug if the interpreter is a debug build
+     * @param withPymalloc if the interpreter uses pymalloc, null when unknown
+     * @param ucs4 if a Python 2 interpreter uses 4 bytes per unicode character
+     * @return the ABI tag, such as {@code cp37m}
+     */
+    public static String abiTag(String implementation, int major, int minor, String soabi,
+                                boolean pyDebug, Boolean withPymalloc, boolean ucs4) {
+        if (soabi != null && soabi.startsWith("cpython-")) {
+            return "cp" + soabi.split("-")[1];
+        }
+        if (soabi != null && soabi.startsWith("cp")) {
+            // Windows, from Python 3.8 on: cp38-win_amd64
+            return soabi.split("-")[0];
+        }
+        if (soabi != null && !soabi.isEmpty()) {
+            return normalize(soabi);
+        }
+        if (!implementation.equals("cp")) {
+            return "none";
+        }
+
+        StringBuilder abi = new StringBuilder("cp").append(major).append(minor);
+        if (pyDebug) {
+            abi.append('d');
+        }
+        // pymalloc no longer changes the ABI from Python 3.8 on.
+        if ((withPymalloc == null || withPymalloc) && (major == 2 || minor < 8)) {
+            abi.append('m');
+        }
+        if (major == 2 && ucs4) {
+            abi.append('u');
+        }
+        return abi.toString();
+    }
+
+    /**
+     * Computes the platform tags of an interpreter, most specific first.
+     *
+     * @param platform the platform, as {@code sysconfig.get_platform()} tells it
+     * @param is32bit if the interpreter is a 32 bit build
+     * @param glibcVersion the glibc version, as {@code os.confstr('CS_GNU_LIBC_VERSION')} tells it, if any
+     * @param macVersion the macOS version, as {@code platform.mac_ver()} tells it, if any
+     * @return the platform tags
+     */
+    public static List<String> platformTags(String platform, boolean is32bit, String glibcVersion, String macVersion) {
+        String linux = normalize(platform);
+        if (linux.startsWith("linux_")) {
+            if (is32bit) {
+                linux = linux.equals("linux_x86_64") ? "linux_i686" : linux.equals("linux_aarch64") ? "linux_armv7l" : linux;
+            }
+            List<String> tags = new ArrayList<>(manylinuxTags(linux.substring("linux_".length()), glibcVersion));
+            tags.add(linux);
+            return tags;
+        }
+        if (linux.startsWith("macosx_") && macVersion != null && !macVersion.isEmpty()) {
+            String arch = platform.substring(platform.lastIndexOf('-') + 1);
+            if (is32bit && arch.equals("x86_64")) {
+                arch = "i386";
+            }
+            return macTags(macVersion, arch);
+        }
+        return Collections.singletonList(linux);
+    }
+
+    /**
+     * Computes the tags an interpreter supports, most specific first.
+     *
+     * @param pythonExecutable the interpreter the tags are for, such as the one of a virtual environment
+     * @param implementation the implementation tag, such as {@code cp}
+     * @param major the major version
+     * @param minor the minor version
+     * @param abiTag the ABI tag, see {@link #abiTag}
+     * @param platformTags the platform tags, see {@link #platformTags}
+     * @return the supported tags
+     */
+    public static List<AbiDetails> supportedTags(File pythonExecutable, String implementation, int major, int minor,
+                                                 String abiTag, List<String> platformTags) {
+        List<AbiDetails> tags = new ArrayList<>();
+        String interpreter = implementation + major + minor;
+        boolean abi3 = implementation.equals("cp") && major == 3 && minor >= 2;
+
+        if (!abiTag.equals("none") && !abiTag.equals("abi3")) {
+            List<String> abis = new ArrayList<>(Collections.singletonList(abiTag));
+            /*
+             * Since Python 3.8, debug builds also take the wheels built for the ABI
+             * without debugging, like packaging.tags. Older debug builds do not.
+             */
+            Matcher debug = DEBUG_ABI.matcher(abiTag);
+            if (major == 3 && minor >= 8 && debug.matches()) {
+                abis.add(debug.group(1) + debug.group(2));
+            }
+            abis.forEach(abi ->
+                platformTags.forEach(platform -> tags.add(new AbiDetails(pythonExecutable, interpreter, abi, platform))));
+        }
+        if (abi3) {
+            platformTags.forEach(platform -> tags.add(new AbiDetails(pythonExecutable, interpreter, "abi3", platform)));
+        }
+        platformTags.forEach(platform -> tags.add(new AbiDetails(pythonExecutable, interpreter, "none", platform)));
+        if (abi3) {
+            for (int older = minor - 1; older > 1; older--) {
+                String olderInterpreter = implementation + major + older;
+                platformTags.forEach(platform -> tags.add(new AbiDetails(pythonExecutable, olderInterpreter, "abi3", platform)));
+            }
+        }
+
+        // Wheels that only need a Python version, and maybe a platform.
+        List<String> pythonTags = new ArrayList<>();
+        pythonTags.add("py" + major + minor);
+        pythonTags.add("py" + major);
+        for (int older = minor - 1; older >= 0; older--) {
+            pythonTags.add("py" + major + older);
+        }
+        pythonTags.forEach(python ->
+            platformTags.forEach(platform -> tags.add(new AbiDetails(pythonExecutable, python, "none", platform))));
+        tags.add(new AbiDetails(pythonExecutable, interpreter, "none", "any"));
+        pythonTags.forEach(python -> tags.add(new AbiDetails(pythonExecutable, python, "none", "any")));
+        return tags;
+    }
+
+    /*
+     * PEP 600: manylinux_2_Y for every glibc 2.Y from the one of the host
+     * down, with the older names of the same glibc version right after.
+     */
+    private static List<String> manylinuxTags(String arch, String glibcVersion) {
+        Matcher matcher = glibcVersion == null ? null : GLIBC_VERSION.matcher(glibcVersion);
+        if (matcher == null || !matcher.find() || !MANYLINUX2014_ARCHS.contains(arch)) {
+            return Collections.emptyList();
+        }
+
+        int glibcMajor = Integer.parseInt(matcher.group(1));
+        int glibcMinor = Integer.parseInt(matcher.group(2));
+        // Before manylinux2014, the wheels were only made for x86.
+        int oldestMinor = arch.equals("x86_64") || arch.equals("i686") ? 5 : 17;
+
+        List<String> tags = new ArrayList<>();
+        for (int minor = glibcMinor; glibcMajor == 2 && minor >= oldestMinor; minor--) {
+            String version = glibcMajor + "_" + minor;
+            tags.add("manylinux_" + version + "_" + arch);
+            if (LEGACY_MANYLINUX.containsKey(version)) {
+                tags.add(LEGACY_MANYLINUX.get(version) + "_" + arch);
+            }
+        }
+        return tags;
+    }
+
+    private static List<String> macTags(String macVersion, String arch) {
+        String[] parts = macVersion.split("\\.");
+        int major = Integer.parseInt(parts[0]);
+        int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+
+        List<String> tags = new ArrayList<>();
+        if (major == 10) {
+            for (int older = minor; older >= 0; older--) {
+                addMacTags(tags, 10, older, arch);
+            }
+            return tags;
+        }
+
+        // From macOS 11 on, only the major version counts.
+        for (int older = major; older >= 11; older--) {
+            addMacTags(tags, older, 0, arch);
+        }
+        // No 10.x release before 10.4 ran on Intel, so there are no older universal2 binaries.
+        for (int older = 16; older >= 4; older--) {
+            if (arch.equals("x86_64")) {
+                addMacTags(tags, 10, older, arch);
+            } else {
+                tags.add("macosx_10_" + older + "_universal2");
+            }
+        }
+        return tags;
+    }
+
+    private static void addMacTags(List<String> tags, int major, int minor, String arch) {
+        for (String format : macBinaryFormats(major, minor, arch)) {
+            tags.add("macosx_" + major + "_" + minor + "_" + format);
+        }
+    }
+
+    private static List<String> macBinaryFormats(int major, int minor, String arch) {
+        List<String> formats = new ArrayList<>(Collections.singletonList(arch));
+        if (arch.equals("x86_64")) {
+            if (major == 10 && minor < 4) {
+                return Collections.emptyList();
+            }
+            formats.addAll(Arrays.asList("intel", "fat64", "fat32"));
+        } else if (arch.equals("i386")) {
+            if (major == 10 && minor < 4) {
+                return Collections.emptyList();
+            }
+            formats.addAll(Arrays.asList("intel", "fat32", "fat"));
+        } else if (arch.equals("ppc64")) {
+            if (major > 10 || minor > 5 || minor < 4) {
+                return Collections.emptyList();
+            }
+            formats.add("fat64");
+        } else if (arch.equals("ppc")) {
+            if (major > 10 || minor > 6) {
+                return Collections.emptyList();
+            }
+            formats.addAll(Arrays.asList("fat32", "fat"));
+        }
+
+        if (arch.equals("x86_64") || arch.equals("arm64")) {
+            formats.add("universal2");
+        }
+        if (arch.equals("x86_64") || arch.equals("i386") || arch.equals("ppc64") || arch.equals("ppc")) {
+            formats.add("universal");
+        }
+        return formats;
+    }
+
+    private static String normalize(String value) {
+        return value.replace('-', '_').replace('.', '_');
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.util.internal.Digests;
+import com.linkedin.gradle.python.wheel.PythonAbiContainer;
+import com.linkedin.gradle.python.wheel.PythonWheelDetails;
+import com.linkedin.gradle.python.wheel.RemoteWheelCacheClient;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wheel cache layer kept on a remote server.
+ *
+ * <p>The wheels of a package version are listed in an index stored under a
+ * key derived from the normalized name and version. Every line of the
+ * index has the SHA-256 and the file name of a wheel, and each wheel is
+ * stored under a key derived from its file name, which carries its ABI
+ * tags. A lookup loads the index, picks the best wheel for the interpreter
+ * the same way the local layers do, and loads and verifies that wheel.</p>
+ *
+ * <p>Indexes are read once per build, outside of any lock, so a slow server
+ * only holds up the lookups of its own package. Wheels are pushed one at a
+ * time on a background thread, so the build does not wait for uploads. The
+ * first failure to talk to the server disables the layer for the rest of
+ * the build, like the Gradle build cache does.</p>
+ */
+public class RemoteWheelLayer {
+
+    private static final Logger logger = Logging.getLogger(RemoteWheelLayer.class);
+
+    // Part of every key, so a change of the layout does not read old entries.
+    private static final String KEY_FORMAT = "pygradle-wheel-1";
+    private static final long PUSH_TIMEOUT_MINUTES = 5;
+
+    private final RemoteWheelCacheClient client;
+    private final boolean push;
+    private final PythonAbiContainer pythonAbiContainer;
+    private final ConcurrentMap<String, List<IndexEntry>> indexes = new ConcurrentHashMap<>();
+
+    private ExecutorService pushExecutor;
+    private volatile boolean disabled;
+
+    public RemoteWheelLayer(RemoteWheelCacheClient client, boolean push, PythonAbiContainer pythonAbiContainer) {
+        this.client = client;
+        this.push = push;
+        this.pythonAbiContainer = pythonAbiContainer;
+    }
+
+    /**
+     * Downloads the best wheel for the interpreter.
+     *
+     * @param name package name
+     * @param version package version
+     * @param pythonExecutable Python interpreter executable file
+     * @param cacheDir the cache directory to download the wheel into
+     * @return the wheel downloaded into a new directory in the cache directory, otherwise {@code Optional.empty()}
+     */
+    public Optional<File> fetch(String name, String version, File pythonExecutable, File cacheDir) {
+        if (disabled) {
+            return Optional.empty();
+        }
+
+        List<IndexEntry> index;
+        try {
+            index = getIndex(indexKey(name, version));
+        } catch (IOException e) {
+            disable(e);
+            return Optional.empty();
+        }
+
+        Optional<IndexEntry> best = index.stream()
+            .filter(it -> it.rank(pythonExecutable) != PythonAbiContainer.NOT_SUPPORTED)
+            .min(Comparator.comparingInt(it -> it.rank(pythonExecutable)));
+
+        if (!best.isPresent()) {
+            return Optional.empty();
+        }
+
+        File downloadDir = null;
+        try {
+            // Only made when there is something to download, because it changes the cache directory.
+            downloadDir = Files.createTempDirectory(cacheDir.toPath(), ".remote").toFile();
+            File wheel = new File(downloadDir, best.get().fileName);
+            if (!client.load(wheelKey(wheel.getName()), wheel)) {
+                logger.info("Wheel {} is listed in the remote wheel cache, but missing", wheel.getName());
+                FileUtils.deleteQuietly(downloadDir);
+                return Optional.empty();
+            }
+
+            if (!WheelBlobStore.digest(wheel.toPath()).equals(best.get().sha256)) {
+                logger.warn("Wheel {} from the remote wheel cache does not match its digest, ignoring it", wheel.getName());
+                FileUtils.deleteQuietly(downloadDir);
+                return Optional.empty();
+            }
+
+            logger.info("Downloaded {} from the remote wheel cache", wheel.getName());
+            return Optional.of(wheel);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(downloadDir);
+            disable(e);
+            return Optional.empty();
+        }
+    }
+
+    private List<IndexEntry> getIndex(String key) throws IOException {
+        List<IndexEntry> known = indexes.get(key);
+        if (known != null) {
+            return known;
+        }
+
+        // Read outside of the map, which must not be blocked while the server answers.
+        List<IndexEntry> index = readIndex(key);
+        List<IndexEntry> raced = indexes.putIfAbsent(key, index);
+        return raced != null ? raced : index;
+    }
+
+    /**
+     * Uploads the wheel in the background, if pushing is enabled.
+     *
+     * @param wheel the wheel to upload
+     */
+    public synchronized void push(File wheel) {
+        if (!push || disabled) {
+            return;
+        }
+
+        if (pushExecutor == null) {
+            pushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pygradle-wheel-push");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        pushExecutor.execute(() -> {
+            if (disabled) {
+                return;
+            }
+
+            try {
+                upload(wheel);
+            } catch (IOException e) {
+                disable(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the pending uploads to finish.
+     */
+    public synchronized void awaitPushes() {
+        if (pushExecutor == null) {
+            return;
+        }
+
+        pushExecutor.shutdown();
+        try {
+            if (!pushExecutor.awaitTermination(PUSH_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                logger.warn("Gave up waiting for wheels to be pushed to the remote wheel cache");
+                pushExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pushExecutor = null;
+    }
+
+    /*
+     * Runs on the push thread only, so the index updates of this build do not race.
+     * Concurrent pushes from other hosts may drop an index line, which costs a rebuild.
+     */
+    private void upload(File wheel) throws IOException {
+        Optional<PythonWheelDetails> details = PythonWheelDetails.fromFile(wheel);
+        if (!details.isPresent() || !wheel.isFile()) {
+            return;
+        }
+
+        String key = indexKey(details.get().getDist(), details.get().getVersion());
+        String sha256 = WheelBlobStore.digest(wheel.toPath());
+        List<IndexEntry> index = new ArrayList<>(readIndex(key));
+        if (index.stream().anyMatch(it -> it.fileName.equals(wheel.getName()) && it.sha256.equals(sha256))) {
+            return;
+        }
+
+        client.store(wheelKey(wheel.getName()), wheel);
+
+        index.removeIf(it -> it.fileName.equals(wheel.getName()));
+        index.add(new IndexEntry(sha256, wheel.getName()));
+        File indexFile = File.createTempFile("wheel-index", ".txt");
+        try {
+            List<String> lines = new ArrayList<>();
+            for (IndexEntry entry : index) {
+                lines.add(entry.sha256 + " " + entry.fileName);
+            }
+            Files.write(indexFile.toPath(), lines, StandardCharsets.UTF_8);
+            client.store(key, indexFile);
+        } finally {
+            Files.deleteIfExists(indexFile.toPath());
+        }
+
+        indexes.put(key, Collections.unmodifiableList(index));
+        logger.info("Pushed {} to the remote wheel cache", wheel.getName());
+    }
+
+    private List<IndexEntry> readIndex(String key) throws IOException {
+        File indexFile = File.createTempFile("wheel-index", ".txt");
+        try {
+            if (!client.load(key, indexFile)) {
+                return Collections.emptyList();
+            }
+
+            List<IndexEntry> index = new ArrayList<>();
+            for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                // Ignore anything that is not a wheel, so a bad line cannot make us write outside the download directory.
+                if (separator > 0 && PythonWheelDetails.fromFile(new File(line.substring(separator + 1))).isPresent()
+                    && line.indexOf('/') < 0 && line.indexOf('\\') < 0) {
+                    index.add(new IndexEntry(line.substring(0, separator), line.substring(separator + 1)));
+                }
+            }
+            return Collections.unmodifiableList(index);
+        } finally {
+            Files.deleteIfExists(indexFile.toPath());
+        }
+    }
+
+    private void disable(IOException e) {
+        if (!disabled) {
+            disabled = true;
+            logger.warn("The remote wheel cache is disabled for the rest of the build: {}", e.getMessage());
+            logger.info("Remote wheel cache failure", e);
+        }
+    }
+
+    private static String indexKey(String name, String version) {
+        return Digests.sha256(KEY_FORMAT + "\nindex\n" + WheelCacheIndex.normalizeName(name) + "\n"
+            + WheelCacheIndex.normalizeVersion(version));
+    }
+
+    private static String wheelKey(String fileName) {
+        return Digests.sha256(KEY_FORMAT + "\nwheel\n" + fileName);
+    }
+
+    private final class IndexEntry {
+        private final String sha256;
+        private final String fileName;
+        private final PythonWheelDetails details;
+
+        private IndexEntry(String sha256, String fileName) {
+            this.sha256 = sha256;
+            this.fileName = fileName;
+            this.details = PythonWheelDetails.fromFile(new File(fileName)).get();
+        }
+
+        private int rank(File pythonExecutable) {
+            return pythonAbiContainer.rankSupportedVersion(
+                pythonExecutable, details.getPythonTag(), details.getAbiTag(), details.getPlatformTag());
+        }
+    }
+}
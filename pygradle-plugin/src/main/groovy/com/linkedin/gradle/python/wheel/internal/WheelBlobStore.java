@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.util.internal.Digests;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Content-addressed store of the wheel files kept in the host layer.
+ *
+ * <p>Every wheel is stored once, under the SHA-256 of its content, and the
+ * cache layers only hold hard links to the stored blobs. When a directory
+ * cannot hold a hard link to the store, e.g. it is on another file system,
+ * the blob is copied instead. Recent JDKs clone the file on copy where the
+ * file system supports it, which is the closest Java gets to a reflink.</p>
+ *
+ * <p>The digests of the most recently used files are remembered for the life
+ * of the daemon, so storing a wheel that was already stored, or one that
+ * links to a blob, is a map lookup followed by a link. A digest is dropped
+ * as soon as its file is seen to have changed.</p>
+ */
+public class WheelBlobStore {
+
+    public static final String STORE_DIR_NAME = ".blobs";
+
+    /** Suffix of the files next to the blobs whose modification time tells when the blob was last stored. */
+    public static final String USED_SUFFIX = ".used";
+
+    private static final Logger logger = Logging.getLogger(WheelBlobStore.class);
+
+    private static final int MAX_DIGESTS = 4096;
+
+    // Hard links share the file key, so a digest is computed once for all links to a blob.
+    private static final Map<Object, Digest> DIGESTS = Collections.synchronizedMap(
+        new LinkedHashMap<Object, Digest>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Digest> eldest) {
+                return size() > MAX_DIGESTS;
+            }
+        });
+    // Directories that could not link to the store, so we do not try and fail for every wheel.
+    private static final ConcurrentMap<File, Boolean> UNLINKABLE_DIRS = new ConcurrentHashMap<>();
+
+    private final File storeDir;
+
+    /**
+     * Creates the store kept in the host layer cache directory.
+     *
+     * @param hostLayerDir the host layer cache directory
+     */
+    public WheelBlobStore(File hostLayerDir) {
+        this.storeDir = new File(hostLayerDir, STORE_DIR_NAME);
+    }
+
+    /**
+     * Puts the wheel into the target file, sharing the content with the store.
+     *
+     * <p>The wheel is added to the store first if its content is not there yet.</p>
+     *
+     * @param wheel the wheel file to materialize
+     * @param target the file to create, must not exist
+     * @throws FileAlreadyExistsException when the target already exists
+     * @throws IOException when the wheel cannot be read or the target cannot be written
+     */
+    public void materialize(File wheel, File target) throws IOException {
+        Path targetPath = target.toPath();
+        if (Files.exists(targetPath)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        Path blob = store(wheel.toPath());
+        File targetDir = target.getAbsoluteFile().getParentFile();
+
+        if (!UNLINKABLE_DIRS.containsKey(targetDir)) {
+            try {
+                Files.createLink(targetPath, blob);
+                return;
+            } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                logger.info("Cannot link wheels from {} into {}, copying them instead: {}", storeDir, targetDir, e.getMessage());
+                UNLINKABLE_DIRS.put(targetDir, Boolean.TRUE);
+            }
+        }
+
+        WheelFiles.copy(blob, targetPath);
+    }
+
+    /**
+     * Removes the blob holding the content of the wheel.
+     *
+     * <p>Other links to the blob keep their content, but later stores of the
+     * same content go through a new blob.</p>
+     *
+     * @param wheel the wheel file whose content is removed from the store
+     * @throws IOException when the wheel cannot be read or the blob cannot be removed
+     */
+    public void remove(File wheel) throws IOException {
+        Path blob = blobPath(digest(wheel.toPath()));
+        Files.deleteIfExists(blob);
+        Files.deleteIfExists(usedPath(blob));
+    }
+
+    /**
+     * Gets the file telling when the blob was last stored.
+     *
+     * @param blob the blob file
+     * @return the file next to the blob, which may not exist
+     */
+    public static Path usedPath(Path blob) {
+        return blob.resolveSibling("." + blob.getFileName() + USED_SUFFIX);
+    }
+
+    /*
+     * The blob is written under a temporary name and moved into place, so
+     * readers never see a partial blob. Concurrent stores of the same
+     * content move identical blobs, so it does not matter which one lands.
+     * The cache cleaner must not remove a blob about to be linked to. A new
+     * blob tells it by its modification time. An existing blob tells it by
+     * the file next to it, since touching the blob would touch every wheel
+     * linked to it and make their manifest entries look replaced.
+     */
+    private Path store(Path wheel) throws IOException {
+        String digest = digest(wheel);
+        Path blob = blobPath(digest);
+        Path blobDir = blob.getParent();
+
+        if (Files.exists(blob)) {
+            markUsed(blob);
+            if (Files.exists(blob)) {
+                return blob;
+            }
+            logger.info("Wheel blob {} was removed, storing it again", blob);
+        }
+
+        Files.createDirectories(blobDir);
+        Path temporary = WheelFiles.createTemporary(blobDir, digest);
+        try {
+            Files.copy(wheel, temporary, REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(temporary, WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, blob, ATOMIC_MOVE);
+            // The blob has the same file key as the temporary file, remember the digest for the links.
+            remember(blob, digest);
+        } catch (FileAlreadyExistsException e) {
+            logger.info("Wheel blob {} already stored", blob);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        return blob;
+    }
+
+    private static void markUsed(Path blob) throws IOException {
+        Path used = usedPath(blob);
+        try {
+            Files.createFile(used);
+        } catch (FileAlreadyExistsException e) {
+            Files.setLastModifiedTime(used, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+    }
+
+    private Path blobPath(String digest) {
+        return storeDir.toPath().resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    /**
+     * Gets the SHA-256 of the file content, remembered per file.
+     *
+     * @param file the file to digest
+     * @return the hex encoded digest
+     * @throws IOException when the file cannot be read
+     */
+    static String digest(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Object key = fileKey(file, attributes);
+        Digest known = DIGESTS.get(key);
+        if (known != null) {
+            if (known.matches(attributes)) {
+                return known.sha256;
+            }
+            DIGESTS.remove(key);
+        }
+
+        String sha256 = Digests.sha256(file);
+        DIGESTS.put(key, new Digest(attributes, sha256));
+        return sha256;
+    }
+
+    private static void remember(Path file, String sha256) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        DIGESTS.put(fileKey(file, attributes), new Digest(attributes, sha256));
+    }
+
+    private static Object fileKey(Path file, BasicFileAttributes attributes) {
+        // Not all file systems have file keys, the path is good enough for those.
+        Object key = attributes.fileKey();
+        return key != null ? key : file.toAbsolutePath().normalize();
+    }
+
+
+    private static final class Digest {
+        private final long size;
+        private final long lastModified;
+        private final String sha256;
+
+        private Digest(BasicFileAttributes attributes, String sha256) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.sha256 = sha256;
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.wheel.WheelCacheLock;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Lock on building a wheel into a shared cache directory.
+ *
+ * <p>Builds that need the same package version for the same Python version
+ * take the same lock, so the later ones wait for the first one and then find
+ * its wheel in the cache instead of building it again. The wheels of one
+ * package for different Python versions are built at the same time. File
+ * locks are held per process, so threads of the same daemon also take a
+ * lock in memory first.</p>
+ *
+ * <p>Lock files are never removed. Removing a lock file while another
+ * process waits on it would let a third process lock a new file.</p>
+ */
+public final class WheelBuildLock implements WheelCacheLock {
+
+    public static final String LOCK_DIR_NAME = ".locks";
+
+    private static final Logger logger = Logging.getLogger(WheelBuildLock.class);
+
+    private static final ConcurrentMap<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock processLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private WheelBuildLock(ReentrantLock processLock, FileChannel channel, FileLock fileLock) {
+        this.processLock = processLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Takes the lock on building the package version, waiting for other builds.
+     *
+     * @param cacheDir the shared cache directory
+     * @param name package name
+     * @param version package version
+     * @param pythonVersion the major and minor version of the interpreter the wheel is built for
+     * @return the lock to close when the wheel is in the cache
+     */
+    public static WheelBuildLock acquire(File cacheDir, String name, String version, String pythonVersion) {
+        Path lockFile = new File(new File(cacheDir, LOCK_DIR_NAME),
+            WheelCacheIndex.normalizeName(name) + "-" + WheelCacheIndex.normalizeVersion(String.valueOf(version))
+                + "-py" + pythonVersion + ".lock")
+            .toPath().toAbsolutePath();
+
+        ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(lockFile, key -> new ReentrantLock());
+        if (!processLock.tryLock()) {
+            logger.lifecycle("Waiting for another build of {} {} wheel", name, version);
+            processLock.lock();
+        }
+
+        FileChannel channel = null;
+        boolean locked = false;
+        try {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, CREATE, WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                logger.lifecycle("Waiting for another build of {} {} wheel", name, version);
+                fileLock = channel.lock();
+            }
+            locked = true;
+            return new WheelBuildLock(processLock, channel, fileLock);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!locked) {
+                closeQuietly(channel);
+                processLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileLock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // The lock was not taken, nothing else to release.
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import org.gradle.api.invocation.Gradle;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Permits to build wheels, shared by all the projects of a build.
+ *
+ * <p>Every wheel build runs pip in a process of its own. Without a shared
+ * budget, each project building wheels in a {@code --parallel} build would
+ * start as many of them as the machine has processors. With it, the whole
+ * build runs at most {@code --max-workers} wheel builds at the same time.</p>
+ *
+ * <p>The permits belong to the root build, so included builds share them
+ * too, and a daemon drops them along with the build.</p>
+ */
+public final class WheelBuildPermits {
+
+    private static final Map<Gradle, WheelBuildPermits> BUILDS = new WeakHashMap<>();
+
+    private final Semaphore permits;
+    private final int size;
+
+    private WheelBuildPermits(int size) {
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+    }
+
+    /**
+     * Gets the permits of the build, as many as its max workers.
+     *
+     * @param gradle the build, or any build included in it
+     * @return the permits shared by the build
+     */
+    public static WheelBuildPermits forBuild(Gradle gradle) {
+        Gradle root = gradle;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+
+        synchronized (BUILDS) {
+            return BUILDS.computeIfAbsent(root, it -> new WheelBuildPermits(it.getStartParameter().getMaxWorkerCount()));
+        }
+    }
+
+    /**
+     * Gets the number of wheels the build may build at the same time.
+     *
+     * @return the number of permits
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Takes a permit, waiting for a wheel build of any project to finish if there is none left.
+     *
+     * @return the permit to close when the wheel is built
+     */
+    public Permit acquire() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to build a wheel", e);
+        }
+        return new Permit();
+    }
+
+    /**
+     * Permit to build a wheel, held until the build is done.
+     */
+    public final class Permit implements AutoCloseable {
+        private boolean released;
+
+        private Permit() {
+        }
+
+        /**
+         * Releases the permit.
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+}
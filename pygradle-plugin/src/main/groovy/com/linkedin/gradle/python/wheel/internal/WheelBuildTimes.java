@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.util.PackageInfo;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * How long wheels took to build, kept in the host wheel cache.
+ *
+ * <p>The durations order the wheel builds longest first, so the few slow
+ * builds, e.g. numpy, start right away instead of last and the parallel
+ * builds finish at about the same time. Packages built before are expected
+ * to take as long again. The others are estimated from the size of their
+ * source distribution, at the rate of the packages built before, or just
+ * ordered by size when there is no rate to go by.</p>
+ *
+ * <p>The durations are kept per package version and Python version in a
+ * directory of the cache, so updating them does not change the cache
+ * directory and does not invalidate its index. Builds on the host may
+ * save their durations at the same time; the last one to save may drop
+ * a few durations of the others, which are then estimated again.</p>
+ */
+public class WheelBuildTimes {
+
+    public static final String TIMINGS_DIR_NAME = ".timings";
+
+    private static final Logger logger = Logging.getLogger(WheelBuildTimes.class);
+
+    private static final String FILE_NAME = "wheel-build-times.properties";
+
+    private final Path file;
+    private final String pythonVersion;
+    private final Map<String, Long> recorded = new ConcurrentHashMap<>();
+    private Map<String, Long> durations;
+
+    /**
+     * Creates the build times kept in the cache directory.
+     *
+     * @param cacheDir the host wheel cache directory
+     * @param pythonVersion the major and minor version of the interpreter building the wheels
+     */
+    public WheelBuildTimes(File cacheDir, String pythonVersion) {
+        this.file = new File(new File(cacheDir, TIMINGS_DIR_NAME), FILE_NAME).toPath();
+        this.pythonVersion = pythonVersion;
+    }
+
+    /**
+     * Gets how long the wheel of the package took to build the last time.
+     *
+     * @param packageInfo the package
+     * @return the build duration in milliseconds, if the wheel was built before
+     */
+    public synchronized Optional<Long> getDuration(PackageInfo packageInfo) {
+        if (durations == null) {
+            durations = read();
+        }
+        return Optional.ofNullable(durations.get(toKey(packageInfo)));
+    }
+
+    /**
+     * Records how long the wheel of the package took to build.
+     *
+     * @param packageInfo the package
+     * @param durationMs the build duration in milliseconds
+     */
+    public void record(PackageInfo packageInfo, long durationMs) {
+        recorded.put(toKey(packageInfo), durationMs);
+    }
+
+    /**
+     * Orders the packages by their expected build duration, longest first.
+     *
+     * @param packages the packages to build
+     * @return the packages, longest build first
+     */
+    public List<PackageInfo> schedule(Collection<PackageInfo> packages) {
+        long knownMs = 0;
+        long knownBytes = 0;
+        Map<PackageInfo, Long> known = new HashMap<>();
+        for (PackageInfo packageInfo : packages) {
+            Optional<Long> duration = getDuration(packageInfo);
+            if (duration.isPresent()) {
+                known.put(packageInfo, duration.get());
+                knownMs += duration.get();
+                knownBytes += packageInfo.getPackageFile().length();
+            }
+        }
+
+        // Without any history, the sizes are estimates of their own.
+        double msPerByte = knownBytes == 0 ? 1 : (double) knownMs / knownBytes;
+        Map<PackageInfo, Double> expected = new HashMap<>();
+        for (PackageInfo packageInfo : packages) {
+            Long duration = known.get(packageInfo);
+            expected.put(packageInfo, duration != null ? duration : packageInfo.getPackageFile().length() * msPerByte);
+        }
+
+        List<PackageInfo> scheduled = new ArrayList<>(packages);
+        scheduled.sort(Comparator.comparing(expected::get, Comparator.reverseOrder()));
+        return scheduled;
+    }
+
+    /**
+     * Adds the recorded durations to the ones kept in the cache.
+     */
+    public void save() {
+        if (recorded.isEmpty()) {
+            return;
+        }
+
+        synchronized (WheelBuildTimes.class) {
+            Map<String, Long> merged = read();
+            merged.putAll(recorded);
+
+            Properties properties = new Properties();
+            merged.forEach((key, value) -> properties.setProperty(key, String.valueOf(value)));
+
+            Path temporary = null;
+            try {
+                Files.createDirectories(file.getParent());
+                temporary = WheelFiles.createTemporary(file.getParent(), FILE_NAME);
+                try (OutputStream output = Files.newOutputStream(temporary)) {
+                    properties.store(output, "Wheel build durations in milliseconds");
+                }
+                Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The durations only order the builds, they are no reason to fail one.
+                logger.info("Could not save the wheel build times to {}", file, e);
+            } finally {
+                if (temporary != null) {
+                    FileUtils.deleteQuietly(temporary.toFile());
+                }
+            }
+        }
+    }
+
+    private Map<String, Long> read() {
+        Map<String, Long> read = new HashMap<>();
+        if (!Files.exists(file)) {
+            return read;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.info("Could not read the wheel build times from {}", file, e);
+            return read;
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                read.put(key, Long.parseLong(properties.getProperty(key)));
+            } catch (NumberFormatException ignored) {
+                // A damaged entry is as good as a missing one.
+            }
+        }
+        return read;
+    }
+
+    private String toKey(PackageInfo packageInfo) {
+        return WheelCacheIndex.normalizeName(packageInfo.getName())
+            + "-" + WheelCacheIndex.normalizeVersion(String.valueOf(packageInfo.getVersion()))
+            + "-py" + pythonVersion;
+    }
+}
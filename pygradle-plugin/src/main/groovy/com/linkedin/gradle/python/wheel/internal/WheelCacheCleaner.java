@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Keeps the host layer wheel cache within its size and age budget.
+ *
+ * <p>Cache hits set the access time of the wheel, so the least recently used
+ * wheels can be removed first. The access time is set explicitly because
+ * many build hosts mount their file systems with noatime or relatime.</p>
+ *
+ * <p>Only one process cleans a cache directory at a time, under a lock file
+ * in it. Wheels used within the last hour are never removed, because a
+ * concurrent build may be about to link or install them.</p>
+ *
+ * <p>Blobs of the wheel store that no wheel links to any more are removed
+ * too. Blobs the wheels could not be linked to, which hold a copy of their
+ * content, count toward the size budget until then.</p>
+ */
+public class WheelCacheCleaner {
+
+    public static final String LOCK_FILE_NAME = ".wheel-cache-gc.lock";
+
+    private static final Logger logger = Logging.getLogger(WheelCacheCleaner.class);
+
+    private static final long ACCESS_RESOLUTION_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long IN_USE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long BACKGROUND_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long LEFTOVER_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static final ConcurrentMap<File, Long> RECORDED_ACCESS = new ConcurrentHashMap<>();
+    private static final Set<File> SCHEDULED = ConcurrentHashMap.newKeySet();
+
+    private final File cacheDir;
+    private final Optional<Long> maxSize;
+    private final Optional<Long> maxAge;
+
+    /**
+     * Creates the cleaner for a cache directory.
+     *
+     * @param cacheDir the cache directory
+     * @param maxSize the size budget in bytes, if any
+     * @param maxAgeDays the number of days an unused wheel is kept, if limited
+     */
+    public WheelCacheCleaner(File cacheDir, Optional<Long> maxSize, Optional<Integer> maxAgeDays) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.maxAge = maxAgeDays.map(TimeUnit.DAYS::toMillis);
+    }
+
+    /**
+     * Records that the wheel was used.
+     *
+     * <p>The access time is set at most once an hour per wheel and daemon.</p>
+     *
+     * @param wheel the wheel found in the cache
+     */
+    public static void recordAccess(File wheel) {
+        long now = System.currentTimeMillis();
+        Long recorded = RECORDED_ACCESS.get(wheel);
+        if (recorded != null && now - recorded < ACCESS_RESOLUTION_MS) {
+            return;
+        }
+
+        RECORDED_ACCESS.put(wheel, now);
+        try {
+            Files.getFileAttributeView(wheel.toPath(), BasicFileAttributeView.class)
+                .setTimes(null, FileTime.fromMillis(now), null);
+        } catch (IOException e) {
+            // The wheel may look older than it is, which is no reason to fail the build.
+            logger.debug("Could not record access to {}", wheel, e);
+        }
+    }
+
+    /**
+     * Tells if there is any budget to keep the cache within.
+     *
+     * @return true when a size or an age budget is set
+     */
+    public boolean hasBudget() {
+        return maxSize.isPresent() || maxAge.isPresent();
+    }
+
+    /**
+     * Removes the least recently used wheels until the cache is within budget.
+     *
+     * @return the outcome, or {@code Optional.empty()} when another build is cleaning the cache
+     * @throws IOException when the lock file cannot be created
+     */
+    public Optional<Result> clean() throws IOException {
+        File lockFile = new File(cacheDir, LOCK_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), CREATE, WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+
+            if (lock == null) {
+                logger.info("Another build is cleaning {}", cacheDir);
+                return Optional.empty();
+            }
+
+            try {
+                Result result = evict();
+                // The lock file tells when the cache was cleaned last.
+                lockFile.setLastModified(System.currentTimeMillis());
+                return Optional.of(result);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Cleans the cache on a background thread, unless it was cleaned recently.
+     *
+     * <p>The thread does not keep the JVM alive. Removing a wheel is a single
+     * file operation, so a cleaning cut short leaves a consistent cache.</p>
+     */
+    public void cleanInBackground() {
+        if (!hasBudget() || !cacheDir.isDirectory() || !SCHEDULED.add(cacheDir)) {
+            return;
+        }
+
+        long lastCleaned = new File(cacheDir, LOCK_FILE_NAME).lastModified();
+        if (System.currentTimeMillis() - lastCleaned < BACKGROUND_INTERVAL_MS) {
+            SCHEDULED.remove(cacheDir);
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                clean().ifPresent(it -> logger.info("Removed {} wheels ({} bytes) from {}", it.getRemovedWheels(), it.getRemovedBytes(), cacheDir));
+            } catch (IOException | UncheckedIOException e) {
+                logger.info("Could not clean {}", cacheDir, e);
+            } finally {
+                SCHEDULED.remove(cacheDir);
+            }
+        }, "pygradle-wheel-cache-cleaner");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private Result evict() {
+        long now = System.currentTimeMillis();
+        removeLeftovers(cacheDir, now);
+        File[] blobDirs = new File(cacheDir, WheelBlobStore.STORE_DIR_NAME).listFiles(File::isDirectory);
+        if (blobDirs != null) {
+            for (File blobDir : blobDirs) {
+                removeLeftovers(blobDir, now);
+            }
+        }
+
+        BlobSweep blobs = sweepBlobs(blobDirs, now);
+
+        List<CachedWheel> wheels = new ArrayList<>();
+        long totalSize = blobs.unlinkedBytes;
+
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".whl"));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    CachedWheel wheel = new CachedWheel(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+                    wheels.add(wheel);
+                    totalSize += wheel.size;
+                } catch (IOException e) {
+                    logger.debug("Could not read the attributes of {}", file, e);
+                }
+            }
+        }
+
+        wheels.sort(Comparator.comparingLong(it -> it.lastUsed));
+
+        WheelBlobStore blobStore = new WheelBlobStore(cacheDir);
+        int removedWheels = 0;
+        long removedBytes = blobs.removedBytes;
+
+        for (CachedWheel wheel : wheels) {
+            boolean expired = maxAge.isPresent() && now - wheel.lastUsed > maxAge.get();
+            boolean overBudget = maxSize.isPresent() && totalSize > maxSize.get();
+            // The wheels are sorted by last use, so the rest is within budget or in use too.
+            if ((!expired && !overBudget) || now - wheel.lastUsed < IN_USE_MS) {
+                break;
+            }
+
+            try {
+                // The blob is found by content, so it goes before the wheel.
+                blobStore.remove(wheel.file);
+                Files.deleteIfExists(wheel.file.toPath());
+                logger.info("Removed {} from the wheel cache", wheel.file.getName());
+                removedWheels++;
+                removedBytes += wheel.size;
+                totalSize -= wheel.size;
+            } catch (IOException e) {
+                logger.info("Could not remove {} from the wheel cache", wheel.file, e);
+            }
+        }
+
+        return new Result(removedWheels, removedBytes, totalSize);
+    }
+
+    /*
+     * A blob with a single link is not shared with any wheel: the wheels were
+     * removed, or they are copies because the blob could not be linked to.
+     * Such blobs are removed once they were not stored for an hour, since
+     * a concurrent build may be about to link to a blob it just stored.
+     */
+    private static BlobSweep sweepBlobs(File[] blobDirs, long now) {
+        BlobSweep sweep = new BlobSweep();
+        if (blobDirs == null) {
+            return sweep;
+        }
+
+        for (File blobDir : blobDirs) {
+            File[] blobs = blobDir.listFiles((dir, name) -> !name.startsWith("."));
+            if (blobs == null) {
+                continue;
+            }
+
+            for (File blob : blobs) {
+                Optional<Integer> links = linkCount(blob);
+                if (!links.isPresent()) {
+                    // The link count cannot be read on this file system, so any blob may be shared.
+                    return sweep;
+                }
+                if (links.get() > 1) {
+                    continue;
+                }
+
+                long size = blob.length();
+                File used = WheelBlobStore.usedPath(blob.toPath()).toFile();
+                if (now - Math.max(blob.lastModified(), used.lastModified()) < IN_USE_MS) {
+                    sweep.unlinkedBytes += size;
+                } else if (blob.delete()) {
+                    FileUtils.deleteQuietly(used);
+                    logger.info("Removed unused wheel blob {}", blob.getName());
+                    sweep.removedBytes += size;
+                } else {
+                    sweep.unlinkedBytes += size;
+                }
+            }
+        }
+        return sweep;
+    }
+
+    private static Optional<Integer> linkCount(File file) {
+        try {
+            return Optional.of((Integer) Files.getAttribute(file.toPath(), "unix:nlink"));
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            logger.debug("Could not read the link count of {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /*
+     * Temporary files and directories are removed by the build that made
+     * them, unless it was killed. Leftovers a day old belong to no build.
+     * The marks of blob use only matter for an hour, so they go too.
+     */
+    private static void removeLeftovers(File dir, long now) {
+        File[] leftovers = dir.listFiles((parent, name) -> name.startsWith(".")
+            && (name.endsWith(WheelFiles.TEMPORARY_SUFFIX) || name.endsWith(WheelBlobStore.USED_SUFFIX)
+            || name.startsWith(".build") || name.startsWith(".remote")));
+        if (leftovers == null) {
+            return;
+        }
+
+        for (File leftover : leftovers) {
+            if (now - leftover.lastModified() > LEFTOVER_AGE_MS) {
+                logger.info("Removing leftover {}", leftover);
+                FileUtils.deleteQuietly(leftover);
+            }
+        }
+    }
+
+    private static final class BlobSweep {
+        private long unlinkedBytes;
+        private long removedBytes;
+    }
+
+    private static final class CachedWheel {
+        private final File file;
+        private final long size;
+        private final long lastUsed;
+
+        private CachedWheel(File file, BasicFileAttributes attributes) {
+            this.file = file;
+            this.size = attributes.size();
+            this.lastUsed = Math.max(attributes.lastAccessTime().toMillis(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * The outcome of a cleaning.
+     */
+    public static final class Result {
+        private final int removedWheels;
+        private final long removedBytes;
+        private final long remainingBytes;
+
+        private Result(int removedWheels, long removedBytes, long remainingBytes) {
+            this.removedWheels = removedWheels;
+            this.removedBytes = removedBytes;
+            this.remainingBytes = remainingBytes;
+        }
+
+        public int getRemovedWheels() {
+            return removedWheels;
+        }
+
+        public long getRemovedBytes() {
+            return removedBytes;
+        }
+
+        public long getRemainingBytes() {
+            return remainingBytes;
+        }
+    }
+}
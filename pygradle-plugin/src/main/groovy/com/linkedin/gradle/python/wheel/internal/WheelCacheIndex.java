@@ -0,0 +1,313 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.util.PackageInfo;
+import com.linkedin.gradle.python.wheel.PythonWheelDetails;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the wheels stored in wheel cache directories.
+ *
+ * <p>Each directory is listed once and its wheels are grouped by normalized
+ * name and version, so a lookup does not need to read the whole directory
+ * and parse every file name again. The directory modification time is
+ * checked on every lookup and the directory is listed again when it changed,
+ * e.g. when pip built a wheel straight into it.</p>
+ *
+ * <p>File systems may report modification times with a coarse (one second)
+ * granularity. A directory modified within that window of its listing can
+ * still hide new wheels, so a miss in such directory triggers a new listing.</p>
+ *
+ * <p>The index of a directory is shared by all the wheel caches of the
+ * daemon, per canonical directory, so the projects of a build do not list
+ * the same directory each. Listings are persisted in a
+ * {@link WheelCacheManifest} inside the directory, so a new daemon can
+ * skip the listing as long as the directory did not change since.</p>
+ */
+public final class WheelCacheIndex {
+
+    private static final Logger logger = Logging.getLogger(WheelCacheIndex.class);
+
+    private static final Pattern NAME_SEPARATORS = Pattern.compile("[-_.]+");
+    private static final long MODIFICATION_TIME_GRANULARITY_MS = 2000L;
+
+    private static final ConcurrentMap<File, DirectoryIndex> DIRECTORIES = new ConcurrentHashMap<>();
+
+    private WheelCacheIndex() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Gets all the wheels for a package version stored in the cache directory.
+     *
+     * <p>Versions are matched exactly, so 0.0.2 does not match 0.0.20.</p>
+     *
+     * @param cacheDir the cache directory
+     * @param name package name
+     * @param version package version
+     * @return the wheels for that package version, possibly empty, never null
+     */
+    public static List<PythonWheelDetails> getWheels(File cacheDir, String name, String version) {
+        // Packages from a directory may not have a version, there is no wheel for them yet.
+        if (name == null || version == null) {
+            return Collections.emptyList();
+        }
+        return indexOf(cacheDir).getWheels(normalizeName(name), normalizeVersion(version));
+    }
+
+    /**
+     * Gets all the wheels for each of the packages stored in the cache directory.
+     *
+     * <p>The directory is checked for changes once for all the packages, and
+     * listed again at most once.</p>
+     *
+     * @param cacheDir the cache directory
+     * @param packages the packages to look up
+     * @return the wheels for each package, possibly empty, in the order of the packages
+     */
+    public static Map<PackageInfo, List<PythonWheelDetails>> getWheels(File cacheDir, Collection<PackageInfo> packages) {
+        Map<PackageInfo, List<PythonWheelDetails>> found = new LinkedHashMap<>();
+        List<PackageInfo> versioned = new ArrayList<>();
+        for (PackageInfo packageInfo : packages) {
+            if (packageInfo.getName() == null || packageInfo.getVersion() == null) {
+                found.put(packageInfo, Collections.emptyList());
+            } else {
+                versioned.add(packageInfo);
+            }
+        }
+
+        if (!versioned.isEmpty()) {
+            found.putAll(indexOf(cacheDir).getWheels(versioned));
+        }
+        return found;
+    }
+
+    /**
+     * Adds a wheel that was just stored into the cache directory.
+     *
+     * @param cacheDir the cache directory
+     * @param wheel the stored wheel
+     * @param lastModifiedBeforeStore the cache directory modification time before the wheel was stored
+     */
+    public static void addWheel(File cacheDir, File wheel, long lastModifiedBeforeStore) {
+        DirectoryIndex directoryIndex = DIRECTORIES.get(canonical(cacheDir));
+        if (directoryIndex != null) {
+            directoryIndex.addWheel(wheel, lastModifiedBeforeStore);
+        }
+    }
+
+    private static DirectoryIndex indexOf(File cacheDir) {
+        return DIRECTORIES.computeIfAbsent(canonical(cacheDir), DirectoryIndex::new);
+    }
+
+    // The layers of one project and the caches of other projects may name the same directory differently.
+    private static File canonical(File cacheDir) {
+        try {
+            return cacheDir.getCanonicalFile();
+        } catch (IOException e) {
+            return cacheDir.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Normalizes the package name the way pip does when comparing names.
+     *
+     * <p>The name is lower cased and any run of hyphens, underscores and dots
+     * becomes a single underscore. See PEP 503 and PEP 427.</p>
+     *
+     * @param name package name
+     * @return normalized name
+     */
+    public static String normalizeName(String name) {
+        return NAME_SEPARATORS.matcher(name.toLowerCase(Locale.ENGLISH)).replaceAll("_");
+    }
+
+    /**
+     * Normalizes the version the way it appears in wheel file names.
+     *
+     * @param version package version
+     * @return normalized version
+     */
+    public static String normalizeVersion(String version) {
+        return version.replace('-', '_');
+    }
+
+    private static final class DirectoryIndex {
+        private final File cacheDir;
+        private final WheelCacheManifest manifest;
+
+        // name -> version -> wheels
+        private Map<String, Map<String, List<WheelCacheManifest.Entry>>> wheels;
+        private long lastModified;
+        private boolean settled;
+
+        private DirectoryIndex(File cacheDir) {
+            this.cacheDir = cacheDir;
+            this.manifest = new WheelCacheManifest(cacheDir);
+        }
+
+        private synchronized List<PythonWheelDetails> getWheels(String name, String version) {
+            revalidate();
+
+            List<WheelCacheManifest.Entry> found = lookup(name, version);
+            if (isStale(found)) {
+                list();
+                found = lookup(name, version);
+            }
+
+            return toDetails(found);
+        }
+
+        private synchronized Map<PackageInfo, List<PythonWheelDetails>> getWheels(List<PackageInfo> packages) {
+            revalidate();
+
+            Map<PackageInfo, List<WheelCacheManifest.Entry>> found = new LinkedHashMap<>();
+            packages.forEach(it -> found.put(it, lookup(it)));
+            if (found.values().stream().anyMatch(this::isStale)) {
+                list();
+                packages.forEach(it -> found.put(it, lookup(it)));
+            }
+
+            Map<PackageInfo, List<PythonWheelDetails>> details = new LinkedHashMap<>();
+            found.forEach((packageInfo, entries) -> details.put(packageInfo, toDetails(entries)));
+            return details;
+        }
+
+        private void revalidate() {
+            long currentLastModified = cacheDir.lastModified();
+            if (wheels == null) {
+                load(currentLastModified);
+            } else if (currentLastModified != lastModified) {
+                list();
+            }
+        }
+
+        // A replaced wheel, or a miss in a directory that may hide new wheels, calls for a new listing.
+        private boolean isStale(List<WheelCacheManifest.Entry> found) {
+            boolean replaced = found.stream().anyMatch(it -> !it.isCurrent());
+            return replaced || (found.isEmpty() && !settled);
+        }
+
+        private static List<PythonWheelDetails> toDetails(List<WheelCacheManifest.Entry> entries) {
+            return entries.stream().map(WheelCacheManifest.Entry::getDetails).collect(Collectors.toList());
+        }
+
+        private synchronized void addWheel(File wheel, long lastModifiedBeforeStore) {
+            Optional<PythonWheelDetails> details = PythonWheelDetails.fromFile(wheel);
+            if (!details.isPresent()) {
+                return;
+            }
+
+            WheelCacheManifest.Entry entry = WheelCacheManifest.Entry.fromFile(details.get());
+            long lastModifiedAfterStore = cacheDir.lastModified();
+            manifest.append(entry, lastModifiedBeforeStore, lastModifiedAfterStore);
+
+            if (wheels == null) {
+                return;
+            }
+
+            List<WheelCacheManifest.Entry> candidates = wheels
+                .computeIfAbsent(normalizeName(details.get().getDist()), key -> new HashMap<>())
+                .computeIfAbsent(normalizeVersion(details.get().getVersion()), key -> new ArrayList<>());
+            candidates.removeIf(it -> it.getDetails().getFile().getName().equals(wheel.getName()));
+            candidates.add(entry);
+
+            // Only our own store changed the directory since the listing, so the index is still complete.
+            if (lastModified == lastModifiedBeforeStore) {
+                lastModified = lastModifiedAfterStore;
+            }
+        }
+
+        private List<WheelCacheManifest.Entry> lookup(PackageInfo packageInfo) {
+            return lookup(normalizeName(packageInfo.getName()), normalizeVersion(packageInfo.getVersion()));
+        }
+
+        private List<WheelCacheManifest.Entry> lookup(String name, String version) {
+            return wheels.getOrDefault(name, Collections.emptyMap()).getOrDefault(version, Collections.emptyList());
+        }
+
+        /*
+         * Another project or an earlier daemon may have listed the directory already.
+         * Its manifest is as good as a listing while the directory did not change.
+         */
+        private void load(long currentLastModified) {
+            Optional<WheelCacheManifest.Snapshot> snapshot = manifest.read();
+            if (snapshot.isPresent() && snapshot.get().getLastModified() == currentLastModified) {
+                logger.info("Loaded {} wheels from the manifest of {}", snapshot.get().getEntries().size(), cacheDir);
+                index(snapshot.get().getEntries(), currentLastModified, snapshot.get().isSettled());
+            } else {
+                list();
+            }
+        }
+
+        private void list() {
+            // Creating the manifest changes the directory, so it goes first.
+            long lastModifiedBeforeCreate = cacheDir.lastModified();
+            boolean created = manifest.create();
+
+            long currentLastModified = cacheDir.lastModified();
+            long startedAt = System.currentTimeMillis();
+            List<WheelCacheManifest.Entry> entries = new ArrayList<>();
+            File[] files = cacheDir.listFiles((dir, entry) -> entry.endsWith(".whl"));
+
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    PythonWheelDetails.fromFile(file).ifPresent(it -> entries.add(WheelCacheManifest.Entry.fromFile(it)));
+                }
+            }
+
+            // Our own manifest creation does not make the listing racy.
+            long changedAt = created ? lastModifiedBeforeCreate : currentLastModified;
+            boolean listingSettled = startedAt - changedAt >= MODIFICATION_TIME_GRANULARITY_MS;
+            logger.info("Listed {} wheels in {}", entries.size(), cacheDir);
+            index(entries, currentLastModified, listingSettled);
+            manifest.rewrite(entries, currentLastModified, listingSettled);
+        }
+
+        private void index(List<WheelCacheManifest.Entry> entries, long indexedLastModified, boolean indexedSettled) {
+            Map<String, Map<String, List<WheelCacheManifest.Entry>>> indexed = new HashMap<>();
+            for (WheelCacheManifest.Entry entry : entries) {
+                indexed.computeIfAbsent(normalizeName(entry.getDetails().getDist()), key -> new HashMap<>())
+                    .computeIfAbsent(normalizeVersion(entry.getDetails().getVersion()), key -> new ArrayList<>())
+                    .add(entry);
+            }
+
+            wheels = indexed;
+            lastModified = indexedLastModified;
+            settled = indexedSettled;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import com.linkedin.gradle.python.wheel.PythonWheelDetails;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent manifest of the wheels stored in a wheel cache directory.
+ *
+ * <p>The manifest lets a new daemon or another project skip listing a
+ * directory that was already listed. It is a binary file with a fixed
+ * header followed by append-only records, one per wheel:</p>
+ *
+ * <pre>
+ * header: magic (int), format (int), directory modification time (long), settled (byte)
+ * record: length (int), payload, CRC32 of the payload (int)
+ * payload: file name, dist, version, python tag, abi tag, platform tag (UTF), size (long), modification time (long)
+ * </pre>
+ *
+ * <p>The manifest describes the directory only while the recorded directory
+ * modification time matches the actual one. Otherwise the directory is
+ * listed again and the manifest rewritten, which also drops any torn record
+ * left behind by a killed build. An append first cuts off such a record, so
+ * the records it writes are not lost behind it. The file is read into memory
+ * through its channel, never mapped, so it can be truncated by a rewrite, and
+ * all access is guarded by a file lock, so several Gradle processes can share
+ * one manifest.</p>
+ */
+public class WheelCacheManifest {
+
+    public static final String MANIFEST_FILE_NAME = ".wheel-cache-manifest";
+
+    private static final Logger logger = Logging.getLogger(WheelCacheManifest.class);
+
+    private static final int MAGIC = 0x50595748;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 17;
+    private static final int LAST_MODIFIED_OFFSET = 8;
+
+    // File locks are held per process, so threads of one daemon must also exclude each other.
+    private static final ConcurrentMap<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final File cacheDir;
+    private final Path manifestPath;
+
+    public WheelCacheManifest(File cacheDir) {
+        this.cacheDir = cacheDir;
+        this.manifestPath = new File(cacheDir, MANIFEST_FILE_NAME).toPath().toAbsolutePath();
+    }
+
+    /**
+     * Creates an empty manifest unless one exists.
+     *
+     * <p>Creating the file changes the directory modification time, so this
+     * has to happen before the directory is listed.</p>
+     *
+     * @return true when this call created the manifest
+     */
+    public boolean create() {
+        if (!cacheDir.isDirectory() || Files.exists(manifestPath)) {
+            return false;
+        }
+
+        try {
+            Files.createFile(manifestPath);
+            return true;
+        } catch (FileAlreadyExistsException ignored) {
+            // Another build created it meanwhile.
+            return false;
+        } catch (IOException e) {
+            logger.info("Unable to create wheel cache manifest {}: {}", manifestPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the manifest.
+     *
+     * @return the manifest contents, or {@code Optional.empty()} when it is missing or invalid
+     */
+    public Optional<Snapshot> read() {
+        if (!Files.isRegularFile(manifestPath)) {
+            return Optional.empty();
+        }
+
+        synchronized (processLock()) {
+            try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.READ);
+                 FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+                return read(channel);
+            } catch (IOException e) {
+                logger.info("Unable to read wheel cache manifest {}: {}", manifestPath, e.getMessage());
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Replaces the manifest contents with the listed wheels.
+     *
+     * @param entries the wheels found in the directory
+     * @param lastModified the directory modification time taken before listing it
+     * @param settled true when the directory was not modified shortly before listing it
+     */
+    public void rewrite(List<Entry> entries, long lastModified, boolean settled) {
+        if (!Files.isRegularFile(manifestPath)) {
+            return;
+        }
+
+        synchronized (processLock()) {
+            try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                for (Entry entry : entries) {
+                    records.write(toRecord(entry));
+                }
+
+                // An invalid header first, so a rewrite that does not finish leaves an ignored manifest.
+                channel.truncate(0);
+                writeFully(channel, header(0, lastModified, settled), 0);
+                writeFully(channel, ByteBuffer.wrap(records.toByteArray()), HEADER_SIZE);
+                channel.force(false);
+                writeFully(channel, header(MAGIC, lastModified, settled), 0);
+                channel.force(false);
+            } catch (IOException e) {
+                logger.info("Unable to write wheel cache manifest {}: {}", manifestPath, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends a wheel that was just stored into the directory.
+     *
+     * <p>When the manifest was complete right before the store, the recorded
+     * directory modification time moves forward with the store, so the
+     * manifest stays valid. Otherwise, the next reader lists the directory.</p>
+     *
+     * @param entry the stored wheel
+     * @param lastModifiedBeforeStore the directory modification time before the store
+     * @param lastModifiedAfterStore the directory modification time after the store
+     */
+    public void append(Entry entry, long lastModifiedBeforeStore, long lastModifiedAfterStore) {
+        if (!Files.isRegularFile(manifestPath)) {
+            return;
+        }
+
+        synchronized (processLock()) {
+            try (FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Optional<ByteBuffer> contents = readContents(channel);
+                if (!contents.isPresent()) {
+                    return;
+                }
+
+                // Records written after a torn one would never be read.
+                int end = parseRecords(contents.get(), new ArrayList<>());
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+                writeFully(channel, ByteBuffer.wrap(toRecord(entry)), end);
+
+                ByteBuffer recorded = ByteBuffer.allocate(Long.BYTES);
+                channel.read(recorded, LAST_MODIFIED_OFFSET);
+                if (recorded.getLong(0) == lastModifiedBeforeStore) {
+                    ByteBuffer updated = ByteBuffer.allocate(Long.BYTES);
+                    updated.putLong(0, lastModifiedAfterStore);
+                    writeFully(channel, updated, LAST_MODIFIED_OFFSET);
+                }
+            } catch (IOException e) {
+                logger.info("Unable to append to wheel cache manifest {}: {}", manifestPath, e.getMessage());
+            }
+        }
+    }
+
+    private Object processLock() {
+        return PROCESS_LOCKS.computeIfAbsent(manifestPath, key -> new Object());
+    }
+
+    private Optional<Snapshot> read(FileChannel channel) throws IOException {
+        Optional<ByteBuffer> contents = readContents(channel);
+        if (!contents.isPresent()) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = contents.get();
+        long lastModified = buffer.getLong(LAST_MODIFIED_OFFSET);
+        boolean settled = buffer.get(LAST_MODIFIED_OFFSET + Long.BYTES) != 0;
+        List<Entry> entries = new ArrayList<>();
+        parseRecords(buffer, entries);
+
+        return Optional.of(new Snapshot(entries, lastModified, settled));
+    }
+
+    /*
+     * The whole manifest, when it has a valid header. The manifest is small,
+     * so it is read into the heap rather than mapped.
+     */
+    private static Optional<ByteBuffer> readContents(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        if (buffer.position() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+        buffer.limit(buffer.position());
+        return Optional.of(buffer);
+    }
+
+    /*
+     * Reads the complete records into the entries and returns where they end.
+     */
+    private int parseRecords(ByteBuffer buffer, List<Entry> entries) throws IOException {
+        int size = buffer.limit();
+        int offset = HEADER_SIZE;
+        while (offset + Integer.BYTES <= size) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || (long) offset + Integer.BYTES + length + Integer.BYTES > size) {
+                // A torn record from an interrupted append, ignore the rest.
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++) {
+                payload[i] = buffer.get(offset + Integer.BYTES + i);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES + length)) {
+                break;
+            }
+
+            entries.add(fromPayload(payload));
+            offset += Integer.BYTES + length + Integer.BYTES;
+        }
+        return offset;
+    }
+
+    private Entry fromPayload(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        File file = new File(cacheDir, in.readUTF());
+        String dist = in.readUTF();
+        String version = in.readUTF();
+        String pythonTag = in.readUTF();
+        String abiTag = in.readUTF();
+        String platformTag = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+
+        return new Entry(new PythonWheelDetails(file, dist, version, pythonTag, abiTag, platformTag), size, lastModified);
+    }
+
+    private static byte[] toRecord(Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        PythonWheelDetails details = entry.getDetails();
+        out.writeUTF(details.getFile().getName());
+        out.writeUTF(details.getDist());
+        out.writeUTF(details.getVersion());
+        out.writeUTF(details.getPythonTag());
+        out.writeUTF(details.getAbiTag());
+        out.writeUTF(details.getPlatformTag());
+        out.writeLong(entry.getSize());
+        out.writeLong(entry.getLastModified());
+        out.flush();
+
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + bytes.length + Integer.BYTES);
+        record.putInt(bytes.length);
+        record.put(bytes);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    private static ByteBuffer header(int magic, long lastModified, boolean settled) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(magic);
+        header.putInt(FORMAT_VERSION);
+        header.putLong(lastModified);
+        header.put((byte) (settled ? 1 : 0));
+        return ByteBuffer.wrap(header.array());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    /**
+     * A wheel recorded in the manifest.
+     */
+    public static final class Entry {
+        private final PythonWheelDetails details;
+        private final long size;
+        private final long lastModified;
+
+        public Entry(PythonWheelDetails details, long size, long lastModified) {
+            this.details = details;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public static Entry fromFile(PythonWheelDetails details) {
+            File file = details.getFile();
+            return new Entry(details, file.length(), file.lastModified());
+        }
+
+        public PythonWheelDetails getDetails() {
+            return details;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Tells if the wheel file is still the one recorded.
+         *
+         * @return true when the file exists and was not replaced since
+         */
+        public boolean isCurrent() {
+            return details.getFile().lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * The manifest contents at the time of reading.
+     */
+    public static final class Snapshot {
+        private final List<Entry> entries;
+        private final long lastModified;
+        private final boolean settled;
+
+        private Snapshot(List<Entry> entries, long lastModified, boolean settled) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.lastModified = lastModified;
+            this.settled = settled;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isSettled() {
+            return settled;
+        }
+    }
+}
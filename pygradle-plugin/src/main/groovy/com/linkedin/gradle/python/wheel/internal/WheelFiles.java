@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Publishes files into wheel cache directories atomically.
+ *
+ * <p>A file is written under a temporary name, flushed to the disk and only
+ * then given its final name, so a killed build never leaves a truncated
+ * wheel behind for later lookups. Temporary files do not end with .whl,
+ * so the cache index never sees them.</p>
+ */
+public final class WheelFiles {
+
+    public static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private WheelFiles() {
+        // Private constructor for utils class.
+    }
+
+    /**
+     * Creates a temporary file for a file to publish in the directory.
+     *
+     * @param dir the directory to publish the file in
+     * @param fileName the final name of the file
+     * @return the temporary file
+     * @throws IOException when the file cannot be created
+     */
+    public static Path createTemporary(Path dir, String fileName) throws IOException {
+        return Files.createTempFile(dir, "." + fileName + ".", TEMPORARY_SUFFIX);
+    }
+
+    /**
+     * Gives the complete temporary file its final name, unless the name is taken.
+     *
+     * <p>The temporary file is gone afterwards, whether it was published or not.</p>
+     *
+     * @param temporary the complete temporary file in the same directory as the target
+     * @param target the final file
+     * @throws FileAlreadyExistsException when the target already exists
+     * @throws IOException when the file cannot be published
+     */
+    public static void publish(Path temporary, Path target) throws IOException {
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, WRITE)) {
+                channel.force(true);
+            }
+
+            try {
+                // Unlike a rename, a link fails when the target exists.
+                Files.createLink(target, temporary);
+            } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                if (Files.exists(target)) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                Files.move(temporary, target, ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Copies the file and publishes the copy atomically, unless the target exists.
+     *
+     * @param source the file to copy
+     * @param target the final copy, must not exist
+     * @throws FileAlreadyExistsException when the target already exists
+     * @throws IOException when the file cannot be copied
+     */
+    public static void copy(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        Path temporary = createTemporary(target.toAbsolutePath().getParent(), target.getFileName().toString());
+        try {
+            Files.copy(source, temporary, REPLACE_EXISTING, COPY_ATTRIBUTES);
+            publish(temporary, target);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+#
+# Copyright 2016 LinkedIn Corp.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# Describes the interpreter running it, as JSON on stdout.
+#
+# Runs with the system interpreter, so it only uses the standard library.
+# The wheel tags are computed by the plugin from the tagFacts.
+
+import json
+import os
+import platform
+import sys
+import sysconfig
+
+
+def site_packages():
+    # The layout of a virtual environment made from this interpreter, relative to its root.
+    scheme = 'nt' if os.name == 'nt' else 'posix_prefix'
+    root = os.path.abspath(os.sep + 'venv')
+    paths = sysconfig.get_paths(scheme, vars={'base': root, 'platbase': root})
+    return os.path.relpath(paths['purelib'], root)
+
+
+def glibc_version():
+    try:
+        # e.g. glibc 2.17
+        return os.confstr('CS_GNU_LIBC_VERSION')
+    except (AttributeError, OSError, ValueError):
+        return None
+
+
+def tag_facts():
+    implementation = platform.python_implementation()
+    py_debug = sysconfig.get_config_var('Py_DEBUG')
+    with_pymalloc = sysconfig.get_config_var('WITH_PYMALLOC')
+    return {
+        'implementation': {'CPython': 'cp', 'PyPy': 'pp', 'IronPython': 'ip', 'Jython': 'jy'}.get(implementation, implementation.lower()),
+        'soabi': sysconfig.get_config_var('SOABI'),
+        'pyDebug': bool(py_debug) if py_debug is not None else hasattr(sys, 'gettotalrefcount'),
+        # Unknown on Windows, where CPython uses pymalloc.
+        'withPymalloc': bool(with_pymalloc) if with_pymalloc is not None else None,
+        'ucs4': sys.maxunicode == 0x10ffff,
+        'platform': sysconfig.get_platform(),
+        'is32bit': sys.maxsize <= 2 ** 32,
+        'glibcVersion': glibc_version(),
+        'macVersion': platform.mac_ver()[0],
+    }
+
+
+info = {
+    'version': platform.python_version(),
+    'executable': os.path.realpath(sys.executable),
+    'paths': sysconfig.get_paths(),
+    'sitePackages': site_packages(),
+    'tagFacts': tag_facts(),
+}
+sys.stdout.write(json.dumps(info))
@@ -0,0 +1,41 @@
+#
+# Copyright 2016 LinkedIn Corp.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# The __main__.py pex writes into every pex: it puts the pex runtime of
+# .bootstrap on the path and lets it run the pex.
+
+import os
+import sys
+
+__entry_point__ = None
+if '__file__' in locals() and __file__ is not None:
+  __entry_point__ = os.path.dirname(__file__)
+elif '__loader__' in locals():
+  from pkgutil import ImpLoader
+  if hasattr(__loader__, 'archive'):
+    __entry_point__ = __loader__.archive
+  elif isinstance(__loader__, ImpLoader):
+    __entry_point__ = os.path.dirname(__loader__.get_filename())
+
+if __entry_point__ is None:
+  sys.stderr.write('Could not launch python executable!\n')
+  sys.exit(2)
+
+sys.path[0] = os.path.abspath(sys.path[0])
+sys.path.insert(0, os.path.abspath(os.path.join(__entry_point__, '.bootstrap')))
+
+from pex.pex_bootstrapper import bootstrap_pex
+bootstrap_pex(__entry_point__)
@@ -0,0 +1,121 @@
+#
+# Copyright 2016 LinkedIn Corp.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# Runs Python scripts, such as pip wheel, one after the other in this interpreter.
+#
+# Each request is a line of JSON on stdin: {"argv": [...], "env": {...}, "cwd": "..."}.
+# Each response is a line of JSON on stdout: {"exitCode": 0, "stdout": "...", "stderr": "..."}.
+# The output of the script and of its child processes is captured into the
+# response, stdout and stderr apart. Anything else written to stdout goes to
+# stderr so it cannot break the protocol.
+
+import json
+import os
+import runpy
+import sys
+import tempfile
+import traceback
+
+try:
+    from StringIO import StringIO
+except ImportError:
+    from io import StringIO
+
+def run(request):
+    argv = request['argv']
+    saved_environ = dict(os.environ)
+    saved_cwd = os.getcwd()
+    saved_argv = sys.argv
+    saved_path = list(sys.path)
+    saved_stdout = sys.stdout
+    saved_stderr = sys.stderr
+    output = StringIO()
+    errors = StringIO()
+    exit_code = 0
+    # Child processes write to the file descriptors, not to sys.stdout.
+    captures = tempfile.TemporaryFile(), tempfile.TemporaryFile()
+    saved_fds = os.dup(1), os.dup(2)
+
+    try:
+        os.dup2(captures[0].fileno(), 1)
+        os.dup2(captures[1].fileno(), 2)
+        os.environ.update(request.get('env', {}))
+        if request.get('cwd'):
+            os.chdir(request['cwd'])
+        sys.argv = list(argv)
+        sys.path[0] = os.path.dirname(os.path.abspath(argv[0]))
+        sys.stdout = output
+        sys.stderr = errors
+        try:
+            runpy.run_path(argv[0], run_name='__main__')
+        except SystemExit as e:
+            if e.code is None:
+                exit_code = 0
+            elif isinstance(e.code, int):
+                exit_code = e.code
+            else:
+                errors.write(str(e.code) + '\n')
+                exit_code = 1
+        except BaseException:
+            traceback.print_exc(file=errors)
+            exit_code = 1
+    finally:
+        sys.stdout = saved_stdout
+        sys.stderr = saved_stderr
+        os.dup2(saved_fds[0], 1)
+        os.dup2(saved_fds[1], 2)
+        os.close(saved_fds[0])
+        os.close(saved_fds[1])
+        sys.path[:] = saved_path
+        sys.argv = saved_argv
+        os.chdir(saved_cwd)
+        os.environ.clear()
+        os.environ.update(saved_environ)
+
+    child_output = []
+    for capture in captures:
+        capture.seek(0)
+        child_output.append(capture.read().decode('utf-8', 'replace'))
+        capture.close()
+    return exit_code, child_output[0] + output.getvalue(), child_output[1] + errors.getvalue()
+
+
+def main():
+    protocol = os.fdopen(os.dup(1), 'w')
+    os.dup2(2, 1)
+
+    # Imported once, for all the requests; the command line of pip is in pip._internal since pip 10.
+    for module in ('pip', 'pip._internal.cli.main', 'pip._internal'):
+        try:
+            __import__(module)
+        except ImportError:
+            pass
+
+    protocol.write(json.dumps({'ready': True}) + '\n')
+    protocol.flush()
+
+    for line in iter(sys.stdin.readline, ''):
+        if not line.strip():
+            continue
+        request = json.loads(line)
+        exit_code, output, errors = run(request)
+        response = {'exitCode': exit_code, 'stdout': output, 'stderr': errors}
+        protocol.write(json.dumps(response) + '\n')
+        protocol.flush()
+
+
+if __name__ == '__main__':
+    main()
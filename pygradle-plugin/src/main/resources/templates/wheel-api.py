@@ -14,13 +14,29 @@
 # limitations under the License.
 #
 
-from wheel.pep425tags import get_supported
 from json import dump
 import sys
 
 supported_values = []
-for entry in get_supported():
-  supported_values.append( { 'pythonTag': entry[0], 'abiTag': entry[1], 'platformTag': entry[2] })
+try:
+  from wheel.pep425tags import get_supported
+  for entry in get_supported():
+    supported_values.append( { 'pythonTag': entry[0], 'abiTag': entry[1], 'platformTag': entry[2] })
+except ImportError:
+  try:
+    # Newer wheel releases dropped pep425tags; pip vendors its replacement.
+    from pip._vendor.packaging.tags import sys_tags
+    for tag in sys_tags():
+      supported_values.append( { 'pythonTag': tag.interpreter, 'abiTag': tag.abi, 'platformTag': tag.platform })
+  except ImportError:
+    try:
+      # Older pip releases vendor a packaging without sys_tags, and have pep425tags of their own.
+      from pip._internal.pep425tags import get_supported
+      for entry in get_supported():
+        supported_values.append( { 'pythonTag': entry[0], 'abiTag': entry[1], 'platformTag': entry[2] })
+    except ImportError:
+      # No tags to tell; the plugin computes them from the interpreter instead.
+      pass
 
 result_file = sys.argv[1]
 with open(result_file, 'w') as outfile:
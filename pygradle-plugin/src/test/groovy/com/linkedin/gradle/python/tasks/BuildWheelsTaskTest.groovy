@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks
+
+import com.linkedin.gradle.python.exception.PipExecutionException
+import com.linkedin.gradle.python.extension.PythonDetailsFactory
+import com.linkedin.gradle.python.extension.PythonDetailsTestDouble
+import com.linkedin.gradle.python.extension.internal.DefaultVirtualEnvironment
+import com.linkedin.gradle.python.tasks.action.pip.PipActionHelpers
+import com.linkedin.gradle.python.tasks.exec.ExternalExec
+import com.linkedin.gradle.python.wheel.EmptyWheelCache
+import org.gradle.api.Action
+import org.gradle.process.ExecResult
+import org.gradle.process.ExecSpec
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BuildWheelsTaskTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "reports the failures of all the wheels built at the same time"() {
+        setup: "two packages whose builds fail once both have started"
+        def project = new ProjectBuilder().withProjectDir(temporaryFolder.root).build()
+        project.gradle.startParameter.maxWorkerCount = 2
+        project.plugins.apply('com.linkedin.python')
+
+        def binDir = temporaryFolder.newFolder('build', 'venv', PythonDetailsFactory.getPythonApplicationDirectory())
+        DefaultVirtualEnvironment.findExecutable(binDir.toPath(), "pip").createNewFile()
+        DefaultVirtualEnvironment.findExecutable(binDir.toPath(), "python").createNewFile()
+
+        def started = new CountDownLatch(2)
+        def task = project.tasks.create('buildWheelsInParallel', BuildWheelsTask)
+        task.pythonDetails = new PythonDetailsTestDouble(project, binDir.parentFile)
+        task.wheelCache = new EmptyWheelCache()
+        task.packageSettings = new PipActionHelpers.RequiresRebuildOverridePackageSettings(temporaryFolder, [])
+        task.installFileCollection = project.files(
+            temporaryFolder.newFile('foo-1.0.0.tar.gz'), temporaryFolder.newFile('bar-1.0.0.tar.gz'))
+        task.maxParallelWheelBuilds = 2
+        task.externalExec = { Action<? super ExecSpec> action ->
+            started.countDown()
+            assert started.await(30, TimeUnit.SECONDS)
+            OutputStream output = null
+            List<String> commandLine = []
+            action.execute([
+                environment      : { Map env -> null },
+                commandLine      : { List args -> commandLine.addAll(args); null },
+                setStandardOutput: { OutputStream stream -> output = stream; null },
+                setErrorOutput   : { OutputStream stream -> null },
+                setIgnoreExitValue: { boolean ignore -> null },
+            ] as ExecSpec)
+            output.write("could not build ${ new File(commandLine.last()).name }".bytes)
+            return ['getExitValue': { -> 1 }] as ExecResult
+        } as ExternalExec
+
+        when: "the wheels are built"
+        task.buildWheelsTask()
+
+        then: "the build fails with the output of both builds"
+        thrown(PipExecutionException)
+        task.reason.contains('could not build foo-1.0.0.tar.gz')
+        task.reason.contains('could not build bar-1.0.0.tar.gz')
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks
+
+import com.linkedin.gradle.python.extension.MatrixExtension
+import com.linkedin.gradle.python.extension.PythonDetailsFactory
+import com.linkedin.gradle.python.util.ExtensionUtils
+import com.linkedin.gradle.python.util.StandardTextValues
+import org.gradle.api.GradleException
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+class PythonMatrixTaskTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "check runs the matrix with the versions of the extension"() {
+        setup:
+        def project = new ProjectBuilder().build()
+        project.plugins.apply('com.linkedin.python')
+        ExtensionUtils.getPythonComponentExtension(project, MatrixExtension).versions = ['3.6', '3.7', '3.8']
+
+        when:
+        def task = (PythonMatrixTask) project.tasks.getByName(StandardTextValues.TASK_PYTHON_MATRIX.value)
+
+        then:
+        task.versions == ['3.6', '3.7', '3.8']
+        project.tasks.getByName(StandardTextValues.TASK_CHECK.value).dependsOn.contains(task)
+        task.matrixDir == new File(project.buildDir, 'python-matrix')
+    }
+
+    def "the command line narrows the matrix down"() {
+        setup:
+        def project = new ProjectBuilder().build()
+        project.plugins.apply('com.linkedin.python')
+        ExtensionUtils.getPythonComponentExtension(project, MatrixExtension).versions = ['3.6', '3.7', '3.8']
+        def task = (PythonMatrixTask) project.tasks.getByName(StandardTextValues.TASK_PYTHON_MATRIX.value)
+
+        when:
+        task.onlyVersion('3.7')
+        task.onlyVersion('3.9')
+
+        then:
+        task.versions == ['3.7']
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "runs every version and fails when one of them does"() {
+        setup: "the version of python3, with its virtual environment made, and a version not installed"
+        def project = new ProjectBuilder().withProjectDir(temporaryFolder.root).build()
+        project.plugins.apply('com.linkedin.python')
+        def version = ['/usr/bin/python3', '-c', 'import sys; print("%d.%d" % sys.version_info[:2])'].execute().text.trim()
+        ExtensionUtils.getPythonComponentExtension(project, MatrixExtension).versions = [version, '2.1']
+        // No repository in the test, the matrix installs nothing.
+        project.configurations.each { it.dependencies.clear() }
+
+        def task = (PythonMatrixTask) project.tasks.getByName(StandardTextValues.TASK_PYTHON_MATRIX.value)
+        def binDir = new File(task.matrixDir, "py${ version }/venv/${ PythonDetailsFactory.pythonApplicationDirectory }")
+        binDir.mkdirs()
+        new File(binDir, 'python').createNewFile()
+        new File(binDir, 'pip').createNewFile()
+
+        when:
+        task.runMatrix()
+
+        then:
+        def e = thrown(GradleException)
+        e.message.contains('failed for 2.1')
+        def report = new File(task.matrixDir, 'report.txt').text
+        report.contains("${ version }: passed")
+        report.contains('2.1: failed')
+        task.reason.startsWith('Python 2.1:')
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks
+
+import com.linkedin.gradle.python.extension.PythonDetailsTestDouble
+import com.linkedin.gradle.python.extension.PythonVersion
+import com.linkedin.gradle.python.util.internal.VenvState
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+class SyncVirtualEnvironmentTaskTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "finds the installed packages no install task asks for"() {
+        setup:
+        def installed = ['python-dateutil': '2.8.0', 'PyYAML': '3.13', 'six': '1.12.0', 'enum34': '1.1.6']
+
+        expect: "names match in any spelling pip accepts"
+        SyncVirtualEnvironmentTask.findStalePackages(installed, ['python_dateutil', 'pyyaml', 'Six']) == ['enum34']
+    }
+
+    def "finds nothing when every installed package is wanted"() {
+        expect:
+        SyncVirtualEnvironmentTask.findStalePackages(['pip': '18.1'], ['pip', 'setuptools']).isEmpty()
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "uninstalls only the stale packages from a virtual environment"() {
+        setup: "a virtual environment with a stale package, a package to keep and the project itself"
+        def project = new ProjectBuilder().withName('my-project').withProjectDir(temporaryFolder.newFolder('my-project')).build()
+        def venv = new File(temporaryFolder.root, 'venv')
+        assert ['/usr/bin/python3', '-m', 'venv', venv.path].execute().waitFor() == 0
+
+        def version = ['/usr/bin/python3', '-c', 'import sys; print("%d.%d" % sys.version_info[:2])'].execute().text.trim()
+        def details = new PythonDetailsTestDouble(project, venv)
+        details.pythonVersion = new PythonVersion(version)
+        def sitePackages = VenvState.findSitePackages(details).toFile()
+        ['stale', 'kept', 'my_project'].each { fakeInstall(sitePackages, it) }
+        def bootstrapped = VenvState.of(details).packages.keySet() - ['stale', 'kept', 'my_project']
+
+        def task = project.tasks.create('syncVenv', SyncVirtualEnvironmentTask)
+        task.pythonDetails = details
+        task.keep = ['kept']
+
+        when:
+        task.syncVenv()
+
+        then: "pip and the packages installed with it survive too"
+        bootstrapped.contains('pip')
+        VenvState.of(details).packages.keySet() == bootstrapped + ['kept', 'my_project'] as Set
+        !new File(sitePackages, 'stale.py').exists()
+        new File(sitePackages, 'kept.py').exists()
+    }
+
+    /*
+     * Installs a module the way pip records it, so pip can uninstall it.
+     */
+    private static void fakeInstall(File sitePackages, String name) {
+        def distInfo = new File(sitePackages, "${ name }-1.0.dist-info")
+        distInfo.mkdirs()
+        new File(sitePackages, "${ name }.py").text = ''
+        new File(distInfo, 'METADATA').text = "Metadata-Version: 2.1\nName: ${ name }\nVersion: 1.0\n"
+        new File(distInfo, 'INSTALLER').text = 'pip\n'
+        new File(distInfo, 'RECORD').text = ["${ name }.py", 'METADATA', 'INSTALLER', 'RECORD']
+            .collect { it.endsWith('.py') ? "${ it },," : "${ distInfo.name }/${ it },," }
+            .join('\n') + '\n'
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+class VirtualEnvBootstrapCacheTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "unpacks the distribution once per distutils.cfg"() {
+        setup:
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def tarball = temporaryFolder.newFile('virtualenv-16.1.0.tar.gz')
+        tarball.text = 'virtualenv'
+        int unpacked = 0
+        def unpack = { File dir ->
+            unpacked++
+            new File(dir, 'virtualenv.py').text = 'print(1)\n'
+        } as Consumer<File>
+
+        when:
+        def first = new VirtualEnvBootstrapCache(cacheDir, null).get([tarball], unpack)
+        def second = new VirtualEnvBootstrapCache(cacheDir, null).get([tarball], unpack)
+        def customized = new VirtualEnvBootstrapCache(cacheDir, '[easy_install]\n').get([tarball], unpack)
+
+        then: "the same distribution is reused, a customized one is unpacked on its own"
+        unpacked == 2
+        first == second
+        customized != first
+        new File(first, 'virtualenv.py').text == 'print(1)\n'
+
+        and: "no staging directory is left behind"
+        cacheDir.list().findAll { it.contains('.tmp-') }.isEmpty()
+    }
+
+    def "builds unpacking the same distribution at once both get it"() {
+        setup: "two builds that both unpack before either moves its entry into place"
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def tarball = temporaryFolder.newFile('virtualenv-16.1.0.tar.gz')
+        tarball.text = 'virtualenv'
+        def unpacking = new CountDownLatch(2)
+        def unpack = { File dir ->
+            new File(dir, 'virtualenv.py').text = 'print(1)\n'
+            unpacking.countDown()
+            assert unpacking.await(30, TimeUnit.SECONDS)
+        } as Consumer<File>
+        def executor = Executors.newFixedThreadPool(2)
+
+        when:
+        def gets = (1..2).collect { executor.submit({ new VirtualEnvBootstrapCache(cacheDir, null).get([tarball], unpack) }) }
+        def entries = gets*.get()
+        executor.shutdown()
+
+        then: "the entry of the winner is used by both"
+        entries[0] == entries[1]
+        new File(entries[0], 'virtualenv.py').text == 'print(1)\n'
+        cacheDir.list().toList() == [entries[0].name]
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action
+
+import com.linkedin.gradle.python.util.OperatingSystem
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+@Requires({ OperatingSystem.current() == OperatingSystem.UNIX })
+class VirtualEnvTemplateTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "copies the template with the paths and the prompt of the virtual environment"() {
+        setup: "a template made in a staging directory"
+        def template = new VirtualEnvTemplate(temporaryFolder.newFolder('templates'), 'key')
+        template.create({ File dir ->
+            new File(dir, 'bin').mkdirs()
+            def pip = new File(dir, 'bin/pip')
+            pip.text = "#!${ dir }/bin/python\nimport pip\n"
+            pip.setExecutable(true)
+            new File(dir, 'bin/activate').text = "VIRTUAL_ENV=\"${ dir }\"\nPS1=\"${ VirtualEnvTemplate.TEMPLATE_PROMPT } \$PS1\"\n"
+            new File(dir, 'lib/python3.6/__pycache__').mkdirs()
+            new File(dir, 'lib/python3.6/__pycache__/site.cpython-36.pyc').text = dir.path
+            Files.createSymbolicLink(new File(dir, 'local').toPath(), new File(dir, 'lib').toPath())
+        } as Consumer<File>)
+
+        when: "it is copied to a project"
+        def venv = new File(temporaryFolder.root, 'project/build/venv')
+        template.copyTo(venv, '(project)')
+
+        then:
+        template.exists()
+        new File(venv, 'bin/pip').text == "#!${ venv }/bin/python\nimport pip\n"
+        new File(venv, 'bin/pip').canExecute()
+        new File(venv, 'bin/activate').text == "VIRTUAL_ENV=\"${ venv }\"\nPS1=\"(project) \$PS1\"\n"
+        Files.readSymbolicLink(new File(venv, 'local').toPath()) == new File(venv, 'lib').toPath()
+        !new File(venv, 'lib/python3.6/__pycache__').exists()
+    }
+
+    def "lets the shell start the interpreter when the shebang gets too long"() {
+        setup:
+        def template = new VirtualEnvTemplate(temporaryFolder.newFolder('templates'), 'key')
+        template.create({ File dir ->
+            new File(dir, 'bin').mkdirs()
+            new File(dir, 'bin/pip').text = "#!${ dir }/bin/python\nimport pip\n"
+        } as Consumer<File>)
+
+        when:
+        def venv = new File(temporaryFolder.root, 'x' * 120 + '/venv')
+        template.copyTo(venv, '(project)')
+
+        then:
+        new File(venv, 'bin/pip').text == "#!/bin/sh\n'''exec' \"${ venv }/bin/python\" \"\$0\" \"\$@\"\n' '''\nimport pip\n"
+    }
+
+    def "copies files other than scripts and configs as they are"() {
+        setup:
+        def template = new VirtualEnvTemplate(temporaryFolder.newFolder('templates'), 'key')
+        template.create({ File dir ->
+            new File(dir, 'bin').mkdirs()
+            new File(dir, 'bin/python').text = "\u007fELF ${ dir } ${ VirtualEnvTemplate.TEMPLATE_PROMPT }"
+            new File(dir, 'pyvenv.cfg').text = "prompt = ${ VirtualEnvTemplate.TEMPLATE_PROMPT }\n"
+        } as Consumer<File>)
+
+        when:
+        def venv = new File(temporaryFolder.root, 'project/build/venv')
+        template.copyTo(venv, '(project)')
+
+        then:
+        new File(venv, 'bin/python').text.contains(VirtualEnvTemplate.TEMPLATE_PROMPT)
+        !new File(venv, 'bin/python').text.contains(venv.path)
+        new File(venv, 'pyvenv.cfg').text == 'prompt = (project)\n'
+    }
+
+    def "removes the templates no build copied for a month"() {
+        setup:
+        def templatesDir = temporaryFolder.newFolder('templates')
+        def unused = new VirtualEnvTemplate(templatesDir, 'unused')
+        unused.create({ File dir -> dir.mkdirs() } as Consumer<File>)
+        new File(templatesDir, 'unused/.pygradle-template-origin').lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31)
+        def used = new VirtualEnvTemplate(templatesDir, 'used')
+        used.create({ File dir -> dir.mkdirs() } as Consumer<File>)
+
+        when:
+        VirtualEnvTemplate.removeUnused(templatesDir)
+
+        then:
+        !unused.exists()
+        used.exists()
+        templatesDir.list() as List == ['used']
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.action
+
+import com.linkedin.gradle.python.extension.PythonDetailsTestDouble
+import com.linkedin.gradle.python.util.OperatingSystem
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.security.MessageDigest
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@Requires({ OperatingSystem.current() == OperatingSystem.UNIX })
+class WheelInstallerTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    File venv
+    File sitePackages
+    WheelInstaller installer
+
+    def setup() {
+        venv = temporaryFolder.newFolder('venv')
+        new File(venv, 'bin').mkdirs()
+        sitePackages = new File(venv, 'lib/python3.6/site-packages')
+        sitePackages.mkdirs()
+        def pythonDetails = new PythonDetailsTestDouble(new ProjectBuilder().build(), venv)
+        installer = new WheelInstaller(pythonDetails, sitePackages.toPath(), 2)
+    }
+
+    def 'installs the wheel the way pip does'() {
+        setup:
+        def wheel = createWheel('Foo', [
+            'foo/__init__.py'                   : 'X = 1\n',
+            'Foo-1.0.dist-info/METADATA'        : 'Name: Foo\nVersion: 1.0\n',
+            'Foo-1.0.dist-info/entry_points.txt': '[console_scripts]\nfoo = foo.cli:main\n',
+            'Foo-1.0.data/scripts/bar'          : '#!python\nprint(1)\n',
+        ])
+
+        when:
+        installer.install(wheel)
+
+        then:
+        new File(sitePackages, 'foo/__init__.py').text == 'X = 1\n'
+        new File(sitePackages, 'Foo-1.0.dist-info/INSTALLER').text == 'pygradle\n'
+        new File(venv, 'bin/bar').text == "#!${ venv.absolutePath }/bin/python\nprint(1)\n"
+        new File(venv, 'bin/foo').text.contains('from foo.cli import main')
+        new File(venv, 'bin/foo').canExecute()
+
+        def record = new File(sitePackages, 'Foo-1.0.dist-info/RECORD').readLines()
+        record.contains("foo/__init__.py,${ hash('X = 1\n') },6".toString())
+        record.any { it.startsWith('../../../bin/foo,sha256=') }
+        record.contains('Foo-1.0.dist-info/RECORD,,')
+
+        and: 'the package is installed now'
+        !installer.canInstall(wheel)
+    }
+
+    def 'wheel not matching its record is not installed'() {
+        setup:
+        def wheel = createWheel('Bad', ['bad/x.py': 'y'], ['bad/x.py': 'sha256=nope'])
+
+        when:
+        def failed = installer.installAll([wheel])
+
+        then:
+        failed == [wheel]
+        !new File(sitePackages, 'bad').exists()
+        !new File(sitePackages, 'Bad-1.0.dist-info').exists()
+    }
+
+    def 'wheel with entries outside of the virtual environment is not installed'() {
+        setup:
+        def wheel = createWheel('Evil', ['../../../../evil.py': 'y'])
+
+        when:
+        installer.install(wheel)
+
+        then:
+        thrown(IOException)
+        !new File(temporaryFolder.root, 'evil.py').exists()
+    }
+
+    def 'wheel with a console script calling no function is not installed'() {
+        setup:
+        def wheel = createWheel('Foo', [
+            'foo/__init__.py'                   : 'X = 1\n',
+            'Foo-1.0.dist-info/entry_points.txt': '[console_scripts]\nfoo = foo.cli\n',
+        ])
+
+        when:
+        def failed = installer.installAll([wheel])
+
+        then: 'the wheel is left to pip'
+        failed == [wheel]
+        !new File(venv, 'bin/foo').exists()
+        !new File(sitePackages, 'foo').exists()
+        !new File(sitePackages, 'Foo-1.0.dist-info').exists()
+    }
+
+    def 'does not replace the files of another package'() {
+        setup:
+        new File(sitePackages, 'foo').mkdirs()
+        new File(sitePackages, 'foo/__init__.py').text = 'other'
+        def wheel = createWheel('Foo', ['foo/x.py': 'X = 1\n', 'foo/__init__.py': ''])
+
+        when:
+        def failed = installer.installAll([wheel])
+
+        then: 'the wheel is left to pip and only its own files are removed'
+        failed == [wheel]
+        new File(sitePackages, 'foo/__init__.py').text == 'other'
+        !new File(sitePackages, 'foo/x.py').exists()
+        !new File(sitePackages, 'Foo-1.0.dist-info').exists()
+    }
+
+    def 'wheels sharing a top-level name are installed one after the other'() {
+        setup:
+        def first = createWheel('First', ['ns/__init__.py': '', 'ns/first.py': 'X = 1\n'])
+        def second = createWheel('Second', ['ns/__init__.py': '', 'ns/second.py': 'X = 2\n'])
+
+        when:
+        def failed = installer.installAll([first, second])
+
+        then: 'the first one is installed and the second one is left to pip'
+        failed == [second]
+        new File(sitePackages, 'ns/first.py').exists()
+        !new File(sitePackages, 'ns/second.py').exists()
+        new File(sitePackages, 'First-1.0.dist-info/RECORD').exists()
+    }
+
+    def 'does not install sdists'() {
+        setup:
+        def sdist = temporaryFolder.newFile('foo-1.0.tar.gz')
+
+        expect:
+        !installer.canInstall(sdist)
+    }
+
+    private File createWheel(String name, Map<String, String> files, Map<String, String> hashes = [:]) {
+        def distInfo = "${ name }-1.0.dist-info"
+        def content = new LinkedHashMap<String, String>(files)
+        content["${ distInfo }/WHEEL".toString()] = 'Wheel-Version: 1.0\nRoot-Is-Purelib: true\n'
+        content["${ distInfo }/RECORD".toString()] = content.collect { path, text ->
+            "${ path },${ hashes.getOrDefault(path, hash(text)) },${ text.bytes.length }"
+        }.join('\n') + "\n${ distInfo }/RECORD,,\n"
+
+        def wheel = new File(temporaryFolder.root, "${ name }-1.0-py3-none-any.whl")
+        new ZipOutputStream(wheel.newOutputStream()).withCloseable { zip ->
+            content.each { path, text ->
+                zip.putNextEntry(new ZipEntry(path))
+                zip.write(text.bytes)
+                zip.closeEntry()
+            }
+        }
+        return wheel
+    }
+
+    private static String hash(String text) {
+        def digest = MessageDigest.getInstance('SHA-256').digest(text.bytes)
+        return 'sha256=' + Base64.urlEncoder.withoutPadding().encodeToString(digest)
+    }
+}
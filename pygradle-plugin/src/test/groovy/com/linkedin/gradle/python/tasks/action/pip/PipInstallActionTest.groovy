@@ -19,6 +19,8 @@ import com.linkedin.gradle.python.exception.PipExecutionException
 import com.linkedin.gradle.python.extension.PythonDetailsFactory
 import com.linkedin.gradle.python.extension.PythonDetailsTestDouble
 import com.linkedin.gradle.python.extension.internal.DefaultVirtualEnvironment
+import com.linkedin.gradle.python.tasks.exec.ExternalExec
+import com.linkedin.gradle.python.tasks.exec.ExternalExecFailTestDouble
 import com.linkedin.gradle.python.tasks.exec.ExternalExecTestDouble
 import com.linkedin.gradle.python.util.DefaultEnvironmentMerger
 import com.linkedin.gradle.python.util.PackageSettings
@@ -184,18 +186,56 @@ class PipInstallActionTest extends Specification {
         0 * execSpec._
     }
 
+    def 'batches packages without options of their own, keeping the order'() {
+        Map<String, List<String>> override = ['setuptools': ['--install-option', '--ignore=E123,E234']]
+        def settings = new PipActionHelpers.InstallOptionOverridePackageSettings(temporaryFolder, override)
+        def execSpec = Mock(ExecSpec)
+        def pipInstallAction = createPipInstallAction(settings, execSpec)
+        def commands = []
+
+        when:
+        pipInstallAction.executeBatched(['foo-1.0.0.tar.gz', 'bar-1.0.0.tar.gz', 'setuptools-1.0.0.tar.gz',
+                                         'baz-1.0.0.tar.gz', 'qux-1.0.0.tar.gz'].collect { packageInGradleCache(it) }, [])
+
+        then:
+        3 * execSpec.commandLine(_) >> { List<List<String>> args -> commands << args[0] }
+        commands.collect { command -> command.findAll { it.endsWith('.tar.gz') }.collect { new File(it).name } } == [
+            ['foo-1.0.0.tar.gz', 'bar-1.0.0.tar.gz'],
+            ['setuptools-1.0.0.tar.gz'],
+            ['baz-1.0.0.tar.gz', 'qux-1.0.0.tar.gz'],
+        ]
+    }
+
+    def 'failed batch is installed one by one to find the failing package'() {
+        def settings = new PipActionHelpers.RequiresRebuildOverridePackageSettings(temporaryFolder, [])
+        def execSpec = Mock(ExecSpec)
+        def pipInstallAction = createPipInstallAction(settings, new ExternalExecFailTestDouble(execSpec), new EmptyWheelCache())
+
+        when:
+        pipInstallAction.executeBatched([packageInGradleCache('foo-1.0.0.tar.gz'), packageInGradleCache('bar-1.0.0.tar.gz')], [])
+
+        then:
+        2 * execSpec.commandLine(_)
+        def e = thrown(PipExecutionException)
+        e.message.startsWith('Failed to install foo-1.0.0.')
+    }
+
     private PipInstallAction createPipInstallAction(PackageSettings settings, ExecSpec execSpec) {
         return createPipInstallAction(settings, execSpec, new EmptyWheelCache())
     }
 
     private PipInstallAction createPipInstallAction(PackageSettings settings, ExecSpec execSpec, WheelCache wheelCache) {
+        return createPipInstallAction(settings, new ExternalExecTestDouble(execSpec), wheelCache)
+    }
+
+    private PipInstallAction createPipInstallAction(PackageSettings settings, ExternalExec externalExec, WheelCache wheelCache) {
         def project = new ProjectBuilder().withProjectDir(temporaryFolder.root).build()
         def binDir = temporaryFolder.newFolder('build', 'venv', PythonDetailsFactory.getPythonApplicationDirectory())
         DefaultVirtualEnvironment.findExecutable(binDir.toPath(), "pip").createNewFile()
         DefaultVirtualEnvironment.findExecutable(binDir.toPath(), "python").createNewFile()
 
         def details = new PythonDetailsTestDouble(project, binDir.parentFile)
-        return new PipInstallAction(settings, project, new ExternalExecTestDouble(execSpec),
+        return new PipInstallAction(settings, project, externalExec,
             ['CPPFLAGS': 'bogus', 'LDFLAGS': 'bogus'],
             details, wheelCache, new DefaultEnvironmentMerger(), { it -> false })
     }
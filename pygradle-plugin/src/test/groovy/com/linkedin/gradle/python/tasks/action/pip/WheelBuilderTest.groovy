@@ -27,6 +27,7 @@ import com.linkedin.gradle.python.util.PackageInfo
 import com.linkedin.gradle.python.util.PackageSettings
 import com.linkedin.gradle.python.wheel.WheelCache
 import com.linkedin.gradle.python.wheel.WheelCacheLayer
+import com.linkedin.gradle.python.wheel.WheelCacheLock
 import org.gradle.api.logging.Logger
 import org.gradle.process.ExecSpec
 import org.gradle.testfixtures.ProjectBuilder
@@ -86,6 +87,79 @@ class WheelBuilderTest extends Specification {
         0 * execSpec._
     }
 
+    def "wheel found in remote layer is returned"() {
+        setup: "return wheel stub from remote layer only"
+        def execSpec = Mock(ExecSpec)
+        def expected = 'fake/host-dir/wheel'
+        // Cardinality of calls on stubs cannot be asserted, as opposed to mocks, so we keep the counter.
+        def storeCounter = 0
+        def stubWheelCache = Stub(WheelCache) {
+            getTargetDirectory() >> Optional.of(new File('fake/project-dir'))
+            findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.of(new File(expected))
+            storeWheel(!null, WheelCacheLayer.PROJECT_LAYER) >> { storeCounter++ }
+        }
+        def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
+
+        when: "we request package that is present only in remote layer"
+        def pkg = wheelBuilder.getPackage(packageInGradleCache("foo-1.0.0.tar.gz"), [])
+
+        then: "we get the downloaded wheel without any rebuilding and store it into project layer too"
+        pkg.toString() == expected
+        storeCounter == 1
+        0 * execSpec._
+    }
+
+    def "built wheel is pushed to remote layer"() {
+        setup: "do not return wheel from cache layers on first attempt"
+        def execSpec = Mock(ExecSpec)
+        def expected = 'fake/project-dir/wheel'
+        // Cardinality of calls on stubs cannot be asserted, as opposed to mocks, so we keep the counter.
+        def pushCounter = 0
+        def stubWheelCache = Stub(WheelCache) {
+            getTargetDirectory() >> Optional.of(new File('fake/project-dir'))
+            findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >>> [
+                    Optional.empty(), Optional.of(new File(expected))]
+            findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.empty()
+            storeWheel(!null, WheelCacheLayer.REMOTE_LAYER) >> { pushCounter++ }
+        }
+        def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
+
+        when: "we request package that is not in cache"
+        def pkg = wheelBuilder.getPackage(packageInGradleCache("foo-1.0.0.tar.gz"), [])
+
+        then: "wheel is built and stored into remote layer"
+        pkg.toString() == expected
+        pushCounter == 1
+    }
+
+    def "wheel built by another build while waiting for the lock is returned"() {
+        setup: "return wheel stub from host layer only after the lock is taken"
+        def execSpec = Mock(ExecSpec)
+        def expected = 'fake/host-dir/wheel'
+        def locked = false
+        def stubWheelCache = Stub(WheelCache) {
+            getTargetDirectory() >> Optional.of(new File('fake/project-dir'))
+            findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> {
+                locked ? Optional.of(new File(expected)) : Optional.empty()
+            }
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.empty()
+            lockWheelBuild(!null, !null, !null) >> { locked = true; return { locked = false } as WheelCacheLock }
+        }
+        def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
+
+        when: "we request package that another build is building"
+        def pkg = wheelBuilder.getPackage(packageInGradleCache("foo-1.0.0.tar.gz"), [])
+
+        then: "we get the wheel of the other build without building it and release the lock"
+        pkg.toString() == expected
+        !locked
+        0 * execSpec._
+    }
+
     def "wheel not found in cache is built"() {
         setup: "do not return wheel from cache layers"
         def execSpec = Mock(ExecSpec)
@@ -118,6 +192,7 @@ class WheelBuilderTest extends Specification {
             findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >>> [
                     Optional.empty(), Optional.of(new File(expected))]
             findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.empty()
             storeWheel(!null, WheelCacheLayer.HOST_LAYER) >> { storeCounter++ }
         }
         def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
@@ -145,6 +220,7 @@ class WheelBuilderTest extends Specification {
             findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >>> [
                 Optional.empty(), Optional.of(new File(expected))]
             findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.empty()
         }
         def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
 
@@ -384,6 +460,7 @@ class WheelBuilderTest extends Specification {
             findWheel(!null, !null, !null, WheelCacheLayer.PROJECT_LAYER) >>> [
                 Optional.empty(), Optional.of(new File(fakeWheel))]
             findWheel(!null, !null, !null, WheelCacheLayer.HOST_LAYER) >> Optional.empty()
+            findWheel(!null, !null, !null, WheelCacheLayer.REMOTE_LAYER) >> Optional.empty()
         }
         def wheelBuilder = createWheelBuilder(execSpec, stubWheelCache)
         def generatedDir = temporaryFolder.newFolder('build', 'generated', wheelBuilder.project.getName())
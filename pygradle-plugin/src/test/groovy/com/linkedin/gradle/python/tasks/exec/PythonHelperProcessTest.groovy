@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.exec
+
+import org.gradle.process.ExecSpec
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+@Requires({ new File('/usr/bin/python3').exists() })
+class PythonHelperProcessTest extends Specification {
+
+    private static final File PYTHON = new File('/usr/bin/python3')
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    PythonHelperProcess helper
+    File sitePackages
+    File script
+
+    def setup() {
+        sitePackages = temporaryFolder.newFolder('venv', 'lib', 'site-packages')
+        helper = new PythonHelperProcess(PYTHON, temporaryFolder.newFile('pip'), sitePackages.toPath(),
+            new File(temporaryFolder.root, 'build/python-helper/python-helper.py'))
+        script = temporaryFolder.newFile('wheel-api.py')
+    }
+
+    def cleanup() {
+        helper.close()
+    }
+
+    def "returns the exit code and the output and errors of the script and its child processes"() {
+        setup:
+        def project = new ProjectBuilder().withProjectDir(temporaryFolder.newFolder('project')).build()
+        script.text = '''\
+import os, subprocess, sys
+print('cwd ' + os.getcwd())
+print('env ' + os.environ['PYGRADLE_TEST'])
+sys.stderr.write('a warning\\n')
+sys.stdout.flush()
+subprocess.call([sys.executable, '-c', 'import sys; print("from a child"); sys.stderr.write("a child warning\\\\n")'])
+sys.exit(3)
+'''
+        def output = new ByteArrayOutputStream()
+        def errors = new ByteArrayOutputStream()
+
+        when:
+        def result = helper.tryExec(project, { ExecSpec spec ->
+            spec.commandLine(PYTHON, script, 'arg')
+            spec.environment([PYGRADLE_TEST: 'set'])
+            spec.standardOutput = output
+            spec.errorOutput = errors
+            spec.ignoreExitValue = true
+        })
+
+        then:
+        result.get().exitValue == 3
+        output.toString().contains("cwd ${ project.projectDir.canonicalPath }")
+        output.toString().contains('env set')
+        output.toString().contains('from a child')
+        !output.toString().contains('warning')
+        errors.toString().readLines() == ['a child warning', 'a warning']
+    }
+
+    def "runs in the same process until the installed packages change"() {
+        setup:
+        def project = new ProjectBuilder().withProjectDir(temporaryFolder.newFolder('project')).build()
+        script.text = '''\
+import os
+print(os.getpid())
+'''
+        def run = {
+            def output = new ByteArrayOutputStream()
+            helper.tryExec(project, { ExecSpec spec ->
+                spec.commandLine(PYTHON, script)
+                spec.standardOutput = output
+            })
+            return output.toString().trim()
+        }
+
+        when:
+        def first = run()
+        def second = run()
+        new File(sitePackages, 'six-1.11.0.dist-info').mkdirs()
+        def third = run()
+
+        then:
+        first == second
+        third != second
+    }
+
+    def "runs pip but leaves the build tools and setup.py commands to regular execs"() {
+        setup:
+        def pip = new File(temporaryFolder.root, 'pip').path
+
+        expect:
+        helper.canRun([PYTHON.path, pip, 'freeze', '--all'])
+        helper.canRun([PYTHON.path, pip, 'wheel', '--no-deps', '/cache/six-1.11.0.tar.gz'])
+        helper.canRun([PYTHON.path, pip, 'install', '--no-deps', '/cache/six-1.11.0-py2.py3-none-any.whl'])
+        !helper.canRun([PYTHON.path, pip, 'install', '--upgrade', '/cache/pip-20.0.2-py2.py3-none-any.whl'])
+        !helper.canRun([PYTHON.path, pip, 'uninstall', '--yes', 'setuptools-40.5.0'])
+        !helper.canRun([PYTHON.path, 'setup.py', 'develop'])
+    }
+
+    def "builds wheels in the same process and starts a new one after an install"() {
+        setup: "a virtual environment seeing the setuptools and wheel of the system, and a project"
+        def venv = new File(temporaryFolder.root, 'real-venv')
+        assert ['/usr/bin/python3', '-m', 'venv', '--system-site-packages', venv.path].execute().waitFor() == 0
+        def python = new File(venv, 'bin/python')
+        def venvSitePackages = new File(venv, 'lib').listFiles()[0].toPath().resolve('site-packages')
+        def venvHelper = new PythonHelperProcess(python, new File(venv, 'bin/pip'), venvSitePackages,
+            new File(temporaryFolder.root, 'build/python-helper/python-helper.py'))
+        def project = new ProjectBuilder().withProjectDir(temporaryFolder.newFolder('project')).build()
+        def hello = temporaryFolder.newFolder('hello-src')
+        new File(hello, 'setup.py').text = "from setuptools import setup\nsetup(name='hello', version='1.0', py_modules=['hello'])\n"
+        new File(hello, 'hello.py').text = 'X = 42\n'
+        def wheelDir = temporaryFolder.newFolder('wheels')
+        script.text = '''\
+import os
+try:
+    import hello
+    print('%d %d' % (os.getpid(), hello.X))
+except ImportError:
+    print('%d -' % os.getpid())
+'''
+        def run = { List<String> args ->
+            def output = new ByteArrayOutputStream()
+            def result = venvHelper.tryExec(project, { ExecSpec spec ->
+                spec.commandLine([python.path] + args)
+                spec.standardOutput = output
+                spec.errorOutput = output
+            })
+            assert result.isPresent()
+            return output.toString()
+        }
+
+        when:
+        def first = run([script.path]).trim().split(' ')
+        run([new File(venv, 'bin/pip').path, 'wheel', '--no-deps', '--no-index', '--no-build-isolation', '-w', wheelDir.path, hello.path])
+        def afterWheel = run([script.path]).trim().split(' ')
+        run([new File(venv, 'bin/pip').path, 'install', '--no-deps', '--no-index', wheelDir.listFiles()[0].path])
+        def afterInstall = run([script.path]).trim().split(' ')
+
+        then:
+        wheelDir.list().toList() == ['hello-1.0-py3-none-any.whl']
+        first == [afterWheel[0], '-']
+        afterWheel == [first[0], '-']
+        afterInstall[0] != first[0]
+        afterInstall[1] == '42'
+
+        cleanup:
+        venvHelper?.close()
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.tasks.exec
+
+import org.gradle.process.ExecSpec
+import spock.lang.Specification
+
+class RecordedExecSpecTest extends Specification {
+
+    def "records the command of a pip exec"() {
+        setup:
+        def stream = new ByteArrayOutputStream()
+        def errors = new ByteArrayOutputStream()
+
+        when:
+        def recorded = RecordedExecSpec.record({ ExecSpec spec ->
+            spec.environment([PATH: '/venv/bin'])
+            spec.commandLine(['/venv/bin/python', new File('/venv/bin/pip'), 'install'])
+            spec.args('six')
+            spec.standardOutput = stream
+            spec.errorOutput = errors
+            spec.ignoreExitValue = true
+        })
+
+        then:
+        recorded.get().commandLine == ['/venv/bin/python', '/venv/bin/pip', 'install', 'six']
+        recorded.get().environment == [PATH: '/venv/bin']
+        recorded.get().standardOutput.get() == stream
+        recorded.get().errorOutput.get() == errors
+        recorded.get().ignoreExitValue
+        !recorded.get().workingDir.isPresent()
+    }
+
+    def "leaves an exec reading stdin to a new process"() {
+        expect:
+        !RecordedExecSpec.record({ ExecSpec spec ->
+            spec.commandLine('/venv/bin/python', 'setup.py', 'develop')
+            spec.standardInput = new ByteArrayInputStream(new byte[0])
+        }).isPresent()
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal
+
+import com.eclipsesource.json.Json
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class InterpreterMetadataTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "reads the metadata another build probed, and adds the tags of a virtual environment"() {
+        setup: "an interpreter probed by an earlier build"
+        def gradleUserHome = temporaryFolder.newFolder('gradle-home')
+        def project = ProjectBuilder.builder().withGradleUserHomeDir(gradleUserHome).build()
+        def interpreter = temporaryFolder.newFile('python3.6')
+        def entry = new File(gradleUserHome, "pygradle/interpreters/${ InterpreterMetadata.key(interpreter) }.json")
+        entry.parentFile.mkdirs()
+        entry.text = '{"version": "3.6.8", "sitePackages": "lib/python3.6/site-packages", "tags": []}'
+
+        when:
+        def metadata = InterpreterMetadata.forInterpreter(project, interpreter)
+
+        then: "the interpreter is not started"
+        metadata.version == '3.6.8'
+        metadata.sitePackages.get() == 'lib/python3.6/site-packages'
+        metadata.getTags(new File('/venv/bin/python')).isEmpty()
+        InterpreterMetadata.known(interpreter).get() == metadata
+
+        when: "a virtual environment made from it was probed"
+        InterpreterMetadata.recordTags(project, interpreter,
+            Json.parse('[{"pythonTag": "cp36", "abiTag": "cp36m", "platformTag": "linux_x86_64"}]').asArray())
+
+        then: "the tags are kept for the next builds too"
+        InterpreterMetadata.forInterpreter(project, interpreter).getTags(new File('/venv/bin/python'))*.abiTag == ['cp36m']
+        Json.parse(entry.text).asObject().get('tags').asArray().size() == 1
+    }
+
+    def "probes an interpreter again once it changed"() {
+        setup:
+        def interpreter = temporaryFolder.newFile('python2.7')
+        def key = InterpreterMetadata.key(interpreter)
+
+        when:
+        interpreter.text = 'upgraded'
+
+        then:
+        InterpreterMetadata.key(interpreter) != key
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "probes an interpreter from threads of its own"() {
+        setup: "an interpreter no build probed yet"
+        def project = ProjectBuilder.builder().withGradleUserHomeDir(temporaryFolder.newFolder('gradle-home')).build()
+        def interpreter = temporaryFolder.newFile('python3')
+        interpreter.text = '#!/bin/sh\nexec /usr/bin/python3 "$@"\n'
+        interpreter.setExecutable(true)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when: "worker threads look it up at the same time"
+        def lookups = (1..4).collect { executor.submit({ InterpreterMetadata.forInterpreter(project, interpreter) } as Callable) }
+        def results = lookups*.get()
+
+        then: "they all get the same metadata"
+        results.unique(false).size() == 1
+        results[0].version == ['/usr/bin/python3', '--version'].execute().text.trim().split(' ')[1]
+        results[0].sitePackages.isPresent()
+
+        cleanup:
+        executor?.shutdown()
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal
+
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TaskTimerTest extends Specification {
+
+    def "reports the clocks stopped on all threads"() {
+        setup: "a timer shared by a pool of threads"
+        def taskTimer = new TaskTimer()
+        def executor = Executors.newFixedThreadPool(8)
+
+        when: "many clocks are started and stopped concurrently"
+        (0..<1000).each { i ->
+            executor.submit({ taskTimer.start(String.format('package-%04d', i)).stop() } as Runnable)
+        }
+        executor.shutdown()
+        executor.awaitTermination(1, TimeUnit.MINUTES)
+        def lines = taskTimer.buildReport().readLines()
+
+        then: "every clock is in the report, ordered by name"
+        lines.size() == 1000
+        lines.first().startsWith('package-0000:\t')
+        lines.last().startsWith('package-0999:\t')
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class VenvStateTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "lists the packages like pip freeze --all"() {
+        setup: "a wheel install, an egg-info directory and an egg-info file"
+        def sitePackages = temporaryFolder.newFolder('site-packages')
+        def distInfo = new File(sitePackages, 'python_dateutil-2.8.0.dist-info')
+        distInfo.mkdirs()
+        new File(distInfo, 'METADATA').text = 'Metadata-Version: 2.1\nName: python-dateutil\nVersion: 2.8.0\n\nName: not-a-header\n'
+        def eggInfo = new File(sitePackages, 'PyYAML-3.13-py3.6.egg-info')
+        eggInfo.mkdirs()
+        new File(eggInfo, 'PKG-INFO').text = 'Metadata-Version: 1.1\nName: PyYAML\nVersion: 3.13\n'
+        new File(sitePackages, 'six-1.12.0-py3.6.egg-info').createNewFile()
+
+        when:
+        def state = VenvState.of(sitePackages.toPath())
+
+        then: "the names are spelled like the metadata spells them"
+        state.packages == ['python-dateutil': '2.8.0', 'PyYAML': '3.13', 'six': '1.12.0']
+
+        and: "looked up in any spelling"
+        state.isInstalled('Python_DateUtil', '2.8.0')
+        state.getVersion('pyyaml').get() == '3.13'
+        !state.isInstalled('six', '1.11.0')
+    }
+
+    def "sees packages installed after the first lookup"() {
+        setup:
+        def sitePackages = temporaryFolder.newFolder('site-packages')
+        def state = VenvState.of(sitePackages.toPath())
+
+        expect:
+        state.packages.isEmpty()
+
+        when: "a package is installed"
+        new File(sitePackages, 'pyflakes-1.6.0.dist-info').mkdirs()
+
+        then:
+        state.isInstalled('pyflakes', '1.6.0')
+    }
+}
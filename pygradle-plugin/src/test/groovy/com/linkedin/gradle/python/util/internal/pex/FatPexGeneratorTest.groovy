@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal.pex
+
+import com.eclipsesource.json.Json
+import com.linkedin.gradle.python.extension.DeployableExtension
+import com.linkedin.gradle.python.util.ExtensionUtils
+import com.linkedin.gradle.python.util.PexFileUtil
+import com.linkedin.gradle.python.util.internal.zipapp.PexAssembler
+import org.gradle.api.GradleException
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.zip.ZipFile
+
+class FatPexGeneratorTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    Project project
+    File binDir
+    File dependencyPex
+
+    def setup() {
+        project = new ProjectBuilder().withProjectDir(temporaryFolder.root).build()
+        project.plugins.apply('com.linkedin.python-pex')
+        project.gradle.startParameter.maxWorkerCount = 3
+        binDir = ExtensionUtils.getPythonComponentExtension(project, DeployableExtension).deployableBinDir
+
+        def runtime = temporaryFolder.newFolder('site-packages', 'pex')
+        new File(runtime, '__init__.py').text = ''
+        dependencyPex = new File(project.buildDir, 'dependencies.pex')
+        new PexAssembler(runtime, '/usr/bin/python').assemble(dependencyPex)
+    }
+
+    def "copies the dependency pex to a pex per entry point"() {
+        when:
+        new FatPexGenerator(project, []).copyEntryPoints(dependencyPex, ['hello = hello:main', 'bye = hello:bye', 'hi = hi.cli:run'])
+
+        then:
+        entryPoint('hello') == 'hello:main'
+        entryPoint('bye') == 'hello:bye'
+        entryPoint('hi') == 'hi.cli:run'
+        binDir.list().sort() == ['bye', 'hello', 'hi'].collect { PexFileUtil.createFatPexFilename(it) }.sort()
+        !dependencyPex.exists()
+    }
+
+    def "a failed copy leaves no partial pex files and no dependency pex"() {
+        setup: "a directory in the way of one of the pex files"
+        new File(binDir, PexFileUtil.createFatPexFilename('bye') + '/taken').mkdirs()
+
+        when:
+        new FatPexGenerator(project, []).copyEntryPoints(dependencyPex, ['hello = hello:main', 'bye = hello:bye'])
+
+        then:
+        thrown(GradleException)
+        !dependencyPex.exists()
+        binDir.list().every { !it.contains('.tmp-') }
+    }
+
+    private String entryPoint(String name) {
+        return new ZipFile(new File(binDir, PexFileUtil.createFatPexFilename(name))).withCloseable { zip ->
+            Json.parse(zip.getInputStream(zip.getEntry('PEX-INFO')).text).asObject().getString('entry_point', null)
+        }
+    }
+}
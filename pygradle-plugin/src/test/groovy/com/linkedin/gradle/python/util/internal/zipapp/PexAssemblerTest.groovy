@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.util.internal.zipapp
+
+import com.eclipsesource.json.Json
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class PexAssemblerTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    File wheel
+    File runtime
+
+    def setup() {
+        wheel = temporaryFolder.newFile('hello-1.0-py2.py3-none-any.whl')
+        new ZipOutputStream(new FileOutputStream(wheel)).withCloseable { zip ->
+            ['hello/__init__.py'                   : 'def main():\n    print("hello")\n',
+             'hello-1.0.dist-info/METADATA'        : 'Name: hello\nVersion: 1.0\n',
+             'hello-1.0.data/purelib/extra.py'     : 'X = 42\n',
+             'hello-1.0.data/scripts/hello'        : '#!python\n'].each { name, content ->
+                zip.putNextEntry(new ZipEntry(name))
+                zip.write(content.bytes)
+                zip.closeEntry()
+            }
+        }
+
+        runtime = temporaryFolder.newFolder('site-packages', 'pex')
+        new File(runtime, '__init__.py').text = ''
+        new File(runtime, 'pex_bootstrapper.py').text = 'def bootstrap_pex(entry_point):\n    pass\n'
+        new File(runtime, 'version.py').text = "__version__ = '1.5.2'\n"
+    }
+
+    def "writes the wheels, the runtime and the pex info"() {
+        setup:
+        def pexFile = new File(temporaryFolder.root, 'hello.pex')
+        def assembler = new PexAssembler(runtime, '/usr/bin/python')
+        assembler.addWheel(wheel, 'hello==1.0')
+        assembler.entryPoint = 'hello:main'
+        assembler.zipSafe = false
+
+        when:
+        assembler.assemble(pexFile)
+        def zip = new ZipFile(pexFile)
+        def pexInfo = Json.parse(zip.getInputStream(zip.getEntry('PEX-INFO')).text).asObject()
+
+        then:
+        pexFile.readLines().first() == '#!/usr/bin/python'
+        pexFile.canExecute()
+        zip.entries().toList()*.name.containsAll([
+            '.bootstrap/pex/pex_bootstrapper.py',
+            '.deps/hello-1.0-py2.py3-none-any.whl/hello/__init__.py',
+            '.deps/hello-1.0-py2.py3-none-any.whl/extra.py',
+            '.deps/hello-1.0-py2.py3-none-any.whl/bin/hello',
+            '__main__.py'])
+        zip.getInputStream(zip.getEntry('__main__.py')).text.contains('bootstrap_pex(__entry_point__)')
+        pexInfo.getString('entry_point', null) == 'hello:main'
+        !pexInfo.getBoolean('zip_safe', true)
+        pexInfo.get('distributions').asObject().get('hello-1.0-py2.py3-none-any.whl')
+        pexInfo.get('build_properties').asObject().getString('pex_version', null) == '1.5.2'
+    }
+
+    def "the same inputs make the same pex file"() {
+        setup:
+        def first = new File(temporaryFolder.root, 'first.pex')
+        def second = new File(temporaryFolder.root, 'second.pex')
+
+        when:
+        [first, second].each {
+            def assembler = new PexAssembler(runtime, '/usr/bin/python')
+            assembler.addWheel(wheel, 'hello==1.0')
+            assembler.assemble(it)
+        }
+
+        then:
+        first.bytes == second.bytes
+    }
+
+    def "a copy of a pex gets its own entry point"() {
+        setup:
+        def dependencies = new File(temporaryFolder.root, 'dependencies.pex')
+        def copy = new File(temporaryFolder.root, 'hello.pex')
+        def assembler = new PexAssembler(runtime, '/usr/bin/python')
+        assembler.addWheel(wheel, 'hello==1.0')
+        assembler.assemble(dependencies)
+
+        when:
+        PexAssembler.copyWithEntryPoint(dependencies, copy, 'hello:main')
+        def original = new ZipFile(dependencies)
+        def zip = new ZipFile(copy)
+        def pexInfo = Json.parse(zip.getInputStream(zip.getEntry('PEX-INFO')).text).asObject()
+
+        then:
+        copy.readLines().first() == '#!/usr/bin/python'
+        zip.entries().toList()*.name.sort() == original.entries().toList()*.name.sort()
+        pexInfo.getString('entry_point', null) == 'hello:main'
+        pexInfo.names() == pexInfo.names().sort(false)
+        pexInfo.get('requirements').asArray().collect { it.asString() } == ['hello==1.0']
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "copies a pex written by Python, with offsets counted from before the shebang"() {
+        setup: "a pex written like the pex command writes it, a shebang line then a zip appended by zipfile"
+        def pexFile = new File(temporaryFolder.root, 'written-by-pex.pex')
+        def copy = new File(temporaryFolder.root, 'hello.pex')
+        def writePex = '''\
+import json, sys, zipfile
+with open(sys.argv[1], 'wb') as pex:
+    pex.write(b'#!/usr/bin/env python3\\n')
+with zipfile.ZipFile(sys.argv[1], 'a', zipfile.ZIP_DEFLATED) as pex:
+    pex.writestr('.bootstrap/pex/__init__.py', '')
+    pex.writestr('.deps/hello-1.0-py2.py3-none-any.whl/hello/__init__.py', 'def main():\\n    pass\\n')
+    pex.writestr('PEX-INFO', json.dumps({'entry_point': None, 'zip_safe': True}, sort_keys=True))
+    pex.writestr('__main__.py', 'import sys\\n')
+'''
+        def readPex = '''\
+import json, sys, zipfile
+with zipfile.ZipFile(sys.argv[1]) as pex:
+    assert pex.testzip() is None
+    print(' '.join(sorted(pex.namelist())))
+    print(json.loads(pex.read('PEX-INFO').decode('utf-8'))['entry_point'])
+'''
+        ['/usr/bin/python3', '-c', writePex, pexFile.path].execute().waitFor()
+
+        when:
+        PexAssembler.copyWithEntryPoint(pexFile, copy, 'hello:main')
+        def read = ['/usr/bin/python3', '-c', readPex, copy.path].execute().text.readLines()
+
+        then:
+        copy.readLines().first() == '#!/usr/bin/env python3'
+        read == ['.bootstrap/pex/__init__.py .deps/hello-1.0-py2.py3-none-any.whl/hello/__init__.py PEX-INFO __main__.py', 'hello:main']
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "the pex runs with the interpreter of its shebang"() {
+        setup: "a runtime that, like the pex one, puts the wheels on the path and calls the entry point"
+        new File(runtime, 'pex_bootstrapper.py').text = '''\
+import importlib, json, os, sys, zipfile
+
+def bootstrap_pex(entry_point):
+    with zipfile.ZipFile(entry_point) as pex:
+        pex_info = json.loads(pex.read('PEX-INFO').decode('utf-8'))
+    for wheel in pex_info['distributions']:
+        sys.path.insert(0, os.path.join(entry_point, '.deps', wheel))
+    module, function = pex_info['entry_point'].split(':')
+    getattr(importlib.import_module(module), function)()
+'''
+        def app = temporaryFolder.newFile('app.py')
+        app.text = 'import extra\nimport hello\n\ndef main():\n    hello.main()\n    print(extra.X)\n'
+        def pexFile = new File(temporaryFolder.root, 'app.pex')
+        def assembler = new PexAssembler(runtime, '/usr/bin/python3')
+        assembler.addWheel(wheel, 'hello==1.0')
+        assembler.addSource(app, 'app.py')
+        assembler.entryPoint = 'app:main'
+
+        when:
+        assembler.assemble(pexFile)
+        def process = [pexFile.path].execute()
+        def output = process.text
+        process.waitFor()
+
+        then:
+        process.exitValue() == 0
+        output.readLines() == ['hello', '42']
+        temporaryFolder.root.list().findAll { it.startsWith('app.pex') } == ['app.pex']
+    }
+
+    @Requires({ new File('/usr/bin/python3').exists() })
+    def "the code hash is the one pex computes for the sources"() {
+        setup:
+        def sources = temporaryFolder.newFolder('src')
+        ['app.py': 'import pkg\n', 'app.pyc': 'compiled', '.hidden': 'hidden',
+         'pkg/__init__.py': '', 'pkg/util.py': 'X = 1\n'].each { name, content ->
+            def file = new File(sources, name)
+            file.parentFile.mkdirs()
+            file.text = content
+        }
+        def pexFile = new File(temporaryFolder.root, 'app.pex')
+        def assembler = new PexAssembler(runtime, '/usr/bin/python3')
+        sources.eachFileRecurse { file ->
+            if (file.isFile()) {
+                assembler.addSource(file, sources.toPath().relativize(file.toPath()).toString())
+            }
+        }
+        // CacheHelper.pex_hash of pex 1.5
+        def pexHash = '''\
+import hashlib, os, sys
+d = sys.argv[1]
+names = sorted(os.path.relpath(os.path.join(root, f), d) for root, _, files in os.walk(d) for f in files)
+names = [n for n in names if not (n.endswith('.pyc') or n.startswith('.'))]
+digest = hashlib.sha1()
+digest.update(''.join(n.replace(os.sep, '/') for n in names).encode('utf-8'))
+for n in names:
+    with open(os.path.join(d, n), 'rb') as fp:
+        digest.update(fp.read())
+print(digest.hexdigest())
+'''
+
+        when:
+        assembler.assemble(pexFile)
+        def zip = new ZipFile(pexFile)
+        def pexInfo = Json.parse(zip.getInputStream(zip.getEntry('PEX-INFO')).text).asObject()
+
+        then:
+        pexInfo.getString('code_hash', null) == ['/usr/bin/python3', '-c', pexHash, sources.path].execute().text.trim()
+        zip.getEntry('pkg/util.py')
+    }
+
+    def "wheel data goes where pex installs it"() {
+        expect:
+        PexAssembler.installedName(name) == installed
+
+        where:
+        name                                  || installed
+        'hello/__init__.py'                   || 'hello/__init__.py'
+        'hello-1.0.data/platlib/hello/_c.so'  || 'hello/_c.so'
+        'hello-1.0.data/scripts/hello'        || 'bin/hello'
+        'hello-1.0.data/headers/hello.h'      || 'headers/hello.h'
+        'hello-1.0.dist-info/RECORD'          || 'hello-1.0.dist-info/RECORD'
+    }
+}
@@ -63,4 +63,50 @@ class FileBackedWheelCacheTest extends Specification {
         cache.findWheel('my-special-package', '0.0.3', pythonExec)
             .get().toPath().getFileName().toString() == 'my_special_package-0.0.3-py2.py3-none-any.whl'
     }
+
+    def "finds the wheel regardless of name case and separators"() {
+        setup: "the wheel file name uses a normalized project name"
+        new File(wheelCache, 'zope.interface-4.4.3-py2-none-any.whl').createNewFile()
+
+        expect: "we find the wheel using the name from the dependency"
+        cache.findWheel('Zope-Interface', '4.4.3', pythonExec).isPresent()
+    }
+
+    def "finds the wheel added after the previous lookup"() {
+        expect: "the wheel is not there yet"
+        !cache.findWheel('Sphinx', '1.6.3', pythonExec).isPresent()
+
+        when: "the wheel gets built into the cache directory"
+        new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl').createNewFile()
+
+        then: "we find the wheel"
+        cache.findWheel('Sphinx', '1.6.3', pythonExec).isPresent()
+    }
+
+    def "does not find the wheel removed after the previous lookup"() {
+        setup: "the wheel is found once"
+        def wheel = new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.createNewFile()
+        cache.findWheel('Sphinx', '1.6.3', pythonExec).isPresent()
+
+        when: "the wheel gets deleted"
+        wheel.delete()
+
+        then: "we do not find the wheel anymore"
+        !cache.findWheel('Sphinx', '1.6.3', pythonExec).isPresent()
+    }
+
+    def "finds the most preferred of the matching wheels"() {
+        setup: "a platform specific wheel is preferred over a pure one"
+        def formats = new DefaultPythonAbiContainer()
+        formats.addSupportedAbi(new AbiDetails(pythonExec, 'cp27', 'cp27mu', 'manylinux1_x86_64'))
+        formats.addSupportedAbi(new AbiDetails(pythonExec, 'py2', 'none', 'any'))
+        def rankedCache = new FileBackedWheelCache(wheelCache, formats)
+        new File(wheelCache, 'simplejson-3.16.0-py2-none-any.whl').createNewFile()
+        new File(wheelCache, 'simplejson-3.16.0-cp27-cp27mu-manylinux1_x86_64.whl').createNewFile()
+
+        expect: "we find the platform specific wheel"
+        rankedCache.findWheel('simplejson', '3.16.0', pythonExec)
+            .get().name == 'simplejson-3.16.0-cp27-cp27mu-manylinux1_x86_64.whl'
+    }
 }
@@ -17,12 +17,19 @@ package com.linkedin.gradle.python.wheel
 
 
 import com.linkedin.gradle.python.extension.internal.DefaultPythonDetails
+import com.linkedin.gradle.python.util.PackageInfo
 import com.linkedin.gradle.python.wheel.internal.DefaultPythonAbiContainer
 import org.gradle.testfixtures.ProjectBuilder
 import org.junit.Rule
 import org.junit.rules.TemporaryFolder
 import spock.lang.Specification
 
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributeView
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.TimeUnit
+
 class LayeredWheelCacheTest extends Specification {
 
     @Rule
@@ -237,4 +244,100 @@ class LayeredWheelCacheTest extends Specification {
         cleanup: "restore cache map"
         cacheMap[WheelCacheLayer.PROJECT_LAYER] = projectLayerCache
     }
+
+    def "can find Sphinx-1.6.3 built into project layer after a miss"() {
+        expect: "wheel is not found in any layer"
+        !cache.findWheel('Sphinx', '1.6.3', pythonDetails).isPresent()
+
+        when: "the wheel is built into project layer"
+        new File(projectLayerCache, 'Sphinx-1.6.3-py2.py3-none-any.whl').createNewFile()
+
+        then: "wheel is found in project layer"
+        cache.findWheel('Sphinx', '1.6.3', pythonDetails, WheelCacheLayer.PROJECT_LAYER).isPresent()
+    }
+
+    def "stored wheel is found in the layer indexed before the store"() {
+        setup: "index the host layer and put the wheel in another cache"
+        !cache.findWheel('Sphinx', '1.6.3', pythonDetails, WheelCacheLayer.HOST_LAYER).isPresent()
+        def wheelFile = new File(otherCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheelFile.createNewFile()
+
+        when: "wheel is stored in host layer"
+        cache.storeWheel(wheelFile, WheelCacheLayer.HOST_LAYER)
+
+        then: "wheel is found in host layer"
+        cache.findWheel('Sphinx', '1.6.3', pythonDetails, WheelCacheLayer.HOST_LAYER).get()
+            == new File(hostLayerCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+    }
+
+    def "layers share the content of the stored wheel"() {
+        setup: "put the wheel in another cache"
+        def wheelFile = new File(otherCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheelFile.text = 'wheel'
+
+        when: "wheel is stored in both layers"
+        cache.storeWheel(wheelFile)
+
+        then: "both layers link to the same file"
+        Files.isSameFile(
+            new File(projectLayerCache, wheelFile.name).toPath(),
+            new File(hostLayerCache, wheelFile.name).toPath())
+        new File(projectLayerCache, wheelFile.name).text == 'wheel'
+    }
+
+    def "finds the wheels of several packages across layers"() {
+        setup: "put one wheel in each layer and leave one package without wheel"
+        new File(projectLayerCache, 'Sphinx-1.6.3-py2.py3-none-any.whl').createNewFile()
+        new File(hostLayerCache, 'six-1.11.0-py2.py3-none-any.whl').createNewFile()
+        def sphinx = PackageInfo.fromPath(new File(otherCache, 'Sphinx-1.6.3.tar.gz'))
+        def six = PackageInfo.fromPath(new File(otherCache, 'six-1.11.0.tar.gz'))
+        def pytest = PackageInfo.fromPath(new File(otherCache, 'pytest-3.2.0.tar.gz'))
+
+        when: "the wheels are looked up at once"
+        def wheels = cache.findWheels([sphinx, six, pytest], pythonDetails)
+
+        then: "each package maps to its wheel, if any, in the order asked"
+        wheels.keySet() as List == [sphinx, six, pytest]
+        wheels[sphinx].get() == new File(projectLayerCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheels[six].get() == new File(hostLayerCache, 'six-1.11.0-py2.py3-none-any.whl')
+        !wheels[pytest].isPresent()
+    }
+
+    def "looking up the local wheels does not ask the remote layer"() {
+        setup: "a remote layer and a wheel in the host layer"
+        def client = Mock(RemoteWheelCacheClient)
+        cache.setRemoteWheelCache(client, false)
+        new File(hostLayerCache, 'six-1.11.0-py2.py3-none-any.whl').createNewFile()
+        def six = PackageInfo.fromPath(new File(otherCache, 'six-1.11.0.tar.gz'))
+        def pytest = PackageInfo.fromPath(new File(otherCache, 'pytest-3.2.0.tar.gz'))
+
+        when: "the local wheels are looked up"
+        def wheels = cache.findLocalWheels([six, pytest], pythonDetails)
+
+        then: "only the local wheel is found and nothing is downloaded"
+        wheels[six].isPresent()
+        !wheels[pytest].isPresent()
+        0 * client.load(_, _)
+    }
+
+    def "looking up the local wheels does not record them as used"() {
+        setup: "a wheel in the host layer last used long ago"
+        def wheel = new File(hostLayerCache, 'six-1.11.0-py2.py3-none-any.whl')
+        wheel.createNewFile()
+        def longAgo = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30))
+        Files.getFileAttributeView(wheel.toPath(), BasicFileAttributeView).setTimes(null, longAgo, null)
+        def six = PackageInfo.fromPath(new File(otherCache, 'six-1.11.0.tar.gz'))
+
+        when: "the local wheels are looked up"
+        cache.findLocalWheels([six], pythonDetails)
+
+        then: "the wheel still looks unused"
+        Files.readAttributes(wheel.toPath(), BasicFileAttributes).lastAccessTime() == longAgo
+
+        when: "the wheels are looked up to be used"
+        cache.findWheels([six], pythonDetails)
+
+        then: "the wheel is recorded as used"
+        Files.readAttributes(wheel.toPath(), BasicFileAttributes).lastAccessTime() > longAgo
+    }
 }
@@ -49,4 +49,34 @@ class PythonAbiContainerTest extends Specification {
         !formats.matchesSupportedVersion(python2Exe, 'py2.py3', 'none', 'any')
     }
 
+    def 'ranks the tags in the order they were added'() {
+        def pythonExe = temporaryFolder.newFile('python')
+        def formats = new DefaultPythonAbiContainer()
+        formats.addSupportedAbi(new AbiDetails(pythonExe, 'cp37', 'cp37m', 'manylinux1_x86_64'))
+        formats.addSupportedAbi(new AbiDetails(pythonExe, 'cp37', 'cp37m', 'linux_x86_64'))
+        formats.addSupportedAbi(new AbiDetails(pythonExe, 'py3', 'none', 'any'))
+
+        expect:
+        formats.rankSupportedVersion(pythonExe, 'cp37', 'cp37m', 'manylinux1_x86_64') == 0
+        formats.rankSupportedVersion(pythonExe, 'cp37', 'cp37m', 'linux_x86_64') == 1
+        formats.rankSupportedVersion(pythonExe, 'py2.py3', 'none', 'any') == 2
+        formats.rankSupportedVersion(pythonExe, 'cp37', 'cp37m', 'linux_x86_64.manylinux1_x86_64') == 0
+        formats.rankSupportedVersion(pythonExe, 'py2', 'none', 'any') == PythonAbiContainer.NOT_SUPPORTED
+    }
+
+    def 'tags added after a match are matched'() {
+        def pythonExe = temporaryFolder.newFile('python')
+        def formats = new DefaultPythonAbiContainer()
+        formats.addSupportedAbi(new AbiDetails(pythonExe, 'py2', 'none', 'any'))
+
+        expect:
+        !formats.matchesSupportedVersion(pythonExe, 'py3', 'none', 'any')
+
+        when:
+        formats.addSupportedAbi(new AbiDetails(pythonExe, 'py3', 'none', 'any'))
+
+        then:
+        formats.matchesSupportedVersion(pythonExe, 'py3', 'none', 'any')
+        formats.copy().matchesSupportedVersion(pythonExe, 'py3', 'none', 'any')
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+class InFlightWheelBuildsTest extends Specification {
+
+    def "the second build of a wheel waits for the first one"() {
+        setup: "a build in flight"
+        def wheel = new File('numpy-1.16.0-cp36-cp36m-linux_x86_64.whl')
+        def first = InFlightWheelBuilds.register('numpy', '1.16.0', '3.6')
+
+        when: "another project builds the same wheel"
+        def second = InFlightWheelBuilds.register('NumPy', '1.16.0', '3.6')
+        def shared = CompletableFuture.supplyAsync { second.await() }
+        first.complete(Optional.of(wheel))
+
+        then: "it gets the wheel of the first build"
+        first.owner
+        !second.owner
+        shared.get() == Optional.of(wheel)
+
+        cleanup:
+        first.close()
+        second.close()
+    }
+
+    def "wheels for different interpreters are built at the same time"() {
+        when:
+        def python2 = InFlightWheelBuilds.register('grpcio', '1.20.0', '2.7')
+        def python3 = InFlightWheelBuilds.register('grpcio', '1.20.0', '3.6')
+
+        then:
+        python2.owner
+        python3.owner
+
+        cleanup:
+        python2.close()
+        python3.close()
+    }
+
+    def "a failed build leaves the others to build the wheel themselves"() {
+        setup:
+        def first = InFlightWheelBuilds.register('lxml', '4.3.0', '3.6')
+        def second = InFlightWheelBuilds.register('lxml', '4.3.0', '3.6')
+
+        when: "the first build ends without a wheel"
+        first.close()
+        def shared = second.await()
+        def third = InFlightWheelBuilds.register('lxml', '4.3.0', '3.6')
+
+        then: "the waiting build gets none, and the next build owns its build"
+        !shared.isPresent()
+        third.owner
+
+        cleanup:
+        third.close()
+    }
+}
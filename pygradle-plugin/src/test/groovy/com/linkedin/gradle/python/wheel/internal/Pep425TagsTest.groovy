@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class Pep425TagsTest extends Specification {
+
+    private static final File PYTHON = new File('/venv/bin/python')
+
+    @Unroll
+    def "abi tag of #soabi on python #major.#minor is #expected"() {
+        expect:
+        Pep425Tags.abiTag('cp', major, minor, soabi, debug, pymalloc, ucs4) == expected
+
+        where:
+        major | minor | soabi                          | debug | pymalloc | ucs4  || expected
+        3     | 7     | 'cpython-37m-x86_64-linux-gnu' | false | true     | true  || 'cp37m'
+        3     | 8     | 'cpython-38-x86_64-linux-gnu'  | false | true     | true  || 'cp38'
+        3     | 8     | 'cp38-win_amd64'               | false | null     | false || 'cp38'
+        3     | 6     | null                           | false | null     | false || 'cp36m'
+        2     | 7     | null                           | false | true     | true  || 'cp27mu'
+        2     | 7     | null                           | true  | true     | false || 'cp27dm'
+    }
+
+    def "manylinux tags come before the linux tag, newest glibc first"() {
+        when:
+        def platforms = Pep425Tags.platformTags('linux-x86_64', false, 'glibc 2.17', null)
+
+        then:
+        platforms.take(3) == ['manylinux_2_17_x86_64', 'manylinux2014_x86_64', 'manylinux_2_16_x86_64']
+        platforms.contains('manylinux2010_x86_64')
+        platforms.indexOf('manylinux1_x86_64') == platforms.size() - 2
+        platforms.last() == 'linux_x86_64'
+    }
+
+    def "only manylinux2014 and later for other architectures"() {
+        expect:
+        Pep425Tags.platformTags('linux-aarch64', false, 'glibc 2.18', null) ==
+            ['manylinux_2_18_aarch64', 'manylinux_2_17_aarch64', 'manylinux2014_aarch64', 'linux_aarch64']
+        Pep425Tags.platformTags('linux-x86_64', false, null, null) == ['linux_x86_64']
+        Pep425Tags.platformTags('linux-x86_64', true, 'glibc 2.5', null) == ['manylinux_2_5_i686', 'manylinux1_i686', 'linux_i686']
+    }
+
+    def "mac tags go down to the oldest version of the os"() {
+        when:
+        def platforms = Pep425Tags.platformTags('macosx-10.9-x86_64', false, null, '10.15.7')
+
+        then:
+        platforms.take(6) == ['macosx_10_15_x86_64', 'macosx_10_15_intel', 'macosx_10_15_fat64',
+                              'macosx_10_15_fat32', 'macosx_10_15_universal2', 'macosx_10_15_universal']
+        platforms.contains('macosx_10_4_x86_64')
+        !platforms.contains('macosx_10_3_x86_64')
+    }
+
+    @Unroll
+    def "mac tags for #arch on macOS 11 stop at 10.4"() {
+        when:
+        def platforms = Pep425Tags.platformTags("macosx-11.0-${ arch }", false, null, '12.1')
+
+        then:
+        platforms.first() == "macosx_12_0_${ arch }".toString()
+        platforms.contains("macosx_10_4_${ arch == 'x86_64' ? 'x86_64' : 'universal2' }".toString())
+        !platforms.any { it.startsWith('macosx_10_3_') || it.startsWith('macosx_10_0_') }
+
+        where:
+        arch << ['x86_64', 'arm64']
+    }
+
+    @Unroll
+    def "debug builds of python #major.#minor also take the #extra abi"() {
+        when:
+        def tags = Pep425Tags.supportedTags(PYTHON, 'cp', major, minor, abi, ['linux_x86_64'])
+            .collect { "${ it.pythonTag }-${ it.abiTag }-${ it.platformTag }".toString() }
+
+        then:
+        tags.take(2) == ["cp${ major }${ minor }-${ abi }-linux_x86_64", "cp${ major }${ minor }-${ extra }-linux_x86_64"]*.toString()
+
+        where:
+        major | minor | abi      || extra
+        3     | 8     | 'cp38d'  || 'cp38'
+        3     | 9     | 'cp39d'  || 'cp39'
+    }
+
+    def "debug builds of python before 3.8 only take their own abi"() {
+        when:
+        def abis = Pep425Tags.supportedTags(PYTHON, 'cp', 3, 7, 'cp37dm', ['linux_x86_64'])*.abiTag.unique()
+
+        then:
+        abis == ['cp37dm', 'abi3', 'none']
+    }
+
+    def "tags are ordered like packaging.tags"() {
+        when:
+        def tags = Pep425Tags.supportedTags(PYTHON, 'cp', 3, 7, 'cp37m', ['manylinux1_x86_64', 'linux_x86_64'])
+            .collect { "${ it.pythonTag }-${ it.abiTag }-${ it.platformTag }".toString() }
+
+        then:
+        tags.take(7) == [
+            'cp37-cp37m-manylinux1_x86_64', 'cp37-cp37m-linux_x86_64',
+            'cp37-abi3-manylinux1_x86_64', 'cp37-abi3-linux_x86_64',
+            'cp37-none-manylinux1_x86_64', 'cp37-none-linux_x86_64',
+            'cp36-abi3-manylinux1_x86_64']
+        tags.indexOf('cp32-abi3-linux_x86_64') < tags.indexOf('py37-none-manylinux1_x86_64')
+        !tags.contains('cp31-abi3-linux_x86_64')
+        tags.takeRight(3) == ['py32-none-any', 'py31-none-any', 'py30-none-any']
+        tags.contains('py3-none-any')
+    }
+
+    def "python 2 has no stable abi"() {
+        when:
+        def tags = Pep425Tags.supportedTags(PYTHON, 'cp', 2, 7, 'cp27mu', ['linux_x86_64'])
+
+        then:
+        tags.every { it.abiTag != 'abi3' }
+        tags.first().abiTag == 'cp27mu'
+        tags.every { it.pythonExecutable == PYTHON }
+    }
+
+    def "the tags match wheels through the abi container"() {
+        setup:
+        def container = new DefaultPythonAbiContainer()
+        Pep425Tags.supportedTags(PYTHON, 'cp', 3, 6, 'cp36m',
+            Pep425Tags.platformTags('linux-x86_64', false, 'glibc 2.28', null)).each { container.addSupportedAbi(it) }
+
+        expect:
+        container.matchesSupportedVersion(PYTHON, 'cp36', 'cp36m', 'manylinux_2_24_x86_64')
+        container.matchesSupportedVersion(PYTHON, 'cp35', 'abi3', 'manylinux2014_x86_64')
+        container.matchesSupportedVersion(PYTHON, 'py2.py3', 'none', 'any')
+        !container.matchesSupportedVersion(PYTHON, 'cp36', 'cp36m', 'manylinux_2_31_x86_64')
+        container.rankSupportedVersion(PYTHON, 'cp36', 'cp36m', 'manylinux2014_x86_64') <
+            container.rankSupportedVersion(PYTHON, 'cp36', 'cp36m', 'manylinux1_x86_64')
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import com.linkedin.gradle.python.extension.internal.DefaultPythonDetails
+import com.linkedin.gradle.python.wheel.AbiDetails
+import com.linkedin.gradle.python.wheel.LayeredWheelCache
+import com.linkedin.gradle.python.wheel.RemoteWheelCacheClient
+import com.linkedin.gradle.python.wheel.WheelCacheLayer
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RemoteWheelLayerTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    private Map<String, byte[]> stored = [:]
+    private int failWithStatus = 0
+    private HttpServer server
+    private URI cacheUri
+    private File pythonExec
+    private DefaultPythonDetails pythonDetails
+    private DefaultPythonAbiContainer formats
+
+    void setup() {
+        // An in-process stand-in for an HTTP build cache node.
+        server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+        server.createContext('/cache/') { HttpExchange exchange ->
+            String key = exchange.requestURI.path
+            if (failWithStatus) {
+                exchange.sendResponseHeaders(failWithStatus, -1)
+            } else if (exchange.requestMethod == 'PUT') {
+                stored[key] = exchange.requestBody.bytes
+                exchange.sendResponseHeaders(201, -1)
+            } else if (stored.containsKey(key)) {
+                exchange.sendResponseHeaders(200, stored[key].length)
+                exchange.responseBody.write(stored[key])
+            } else {
+                exchange.sendResponseHeaders(404, -1)
+            }
+            exchange.close()
+        }
+        server.start()
+        cacheUri = URI.create("http://127.0.0.1:${server.address.port}/cache/")
+
+        def virtualEnv = temporaryFolder.newFile('venv')
+        pythonExec = new File(virtualEnv, 'bin/python')
+        pythonDetails = new DefaultPythonDetails(new ProjectBuilder().build(), virtualEnv)
+        formats = new DefaultPythonAbiContainer()
+        formats.addSupportedAbi(new AbiDetails(pythonExec, 'py2', 'none', 'any'))
+    }
+
+    void cleanup() {
+        server.stop(0)
+    }
+
+    def "wheel pushed from one host is found on another"() {
+        setup: "a wheel pushed by one host"
+        def wheel = temporaryFolder.newFile('Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.text = 'wheel'
+        def pushingCache = layeredCache('first', true)
+        pushingCache.storeWheel(wheel, WheelCacheLayer.REMOTE_LAYER)
+        pushingCache.awaitRemotePushes()
+
+        when: "another host looks for it"
+        def cache = layeredCache('second', false)
+        def found = cache.findWheel('sphinx', '1.6.3', pythonDetails)
+
+        then: "it is downloaded into its host layer"
+        found.get() == new File(temporaryFolder.root, 'second/host/Sphinx-1.6.3-py2.py3-none-any.whl')
+        found.get().text == 'wheel'
+        cache.findWheel('Sphinx', '1.6.3', pythonDetails, WheelCacheLayer.HOST_LAYER).isPresent()
+    }
+
+    def "wheel is not pushed unless enabled"() {
+        setup: "a cache that does not push"
+        def wheel = temporaryFolder.newFile('Sphinx-1.6.3-py2.py3-none-any.whl')
+        def cache = layeredCache('first', false)
+
+        when: "the wheel is stored into the remote layer"
+        cache.storeWheel(wheel, WheelCacheLayer.REMOTE_LAYER)
+        cache.awaitRemotePushes()
+
+        then: "nothing is uploaded"
+        stored.isEmpty()
+    }
+
+    def "wheel with a different content than listed is ignored"() {
+        setup: "a pushed wheel replaced on the server"
+        def wheel = temporaryFolder.newFile('Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.text = 'wheel'
+        def pushingCache = layeredCache('first', true)
+        pushingCache.storeWheel(wheel, WheelCacheLayer.REMOTE_LAYER)
+        pushingCache.awaitRemotePushes()
+        stored.each { key, content -> if (new String(content) == 'wheel') { stored[key] = 'other'.bytes } }
+
+        expect: "the wheel is not found"
+        !layeredCache('second', false).findWheel('Sphinx', '1.6.3', pythonDetails).isPresent()
+    }
+
+    def "server failure does not fail the lookup"() {
+        setup: "a failing server"
+        failWithStatus = 500
+
+        expect: "the wheel is not found"
+        !layeredCache('first', false).findWheel('Sphinx', '1.6.3', pythonDetails).isPresent()
+    }
+
+    def "slow index lookup does not hold up the lookups of other packages"() {
+        setup: "a server that answers the first request only when told to"
+        def entered = new CountDownLatch(1)
+        def answer = new CountDownLatch(1)
+        def client = [
+            load : { String key, File target ->
+                if (entered.count > 0) {
+                    entered.countDown()
+                    answer.await(10, TimeUnit.SECONDS)
+                }
+                return false
+            },
+            store: { String key, File source -> },
+        ] as RemoteWheelCacheClient
+        def layer = new RemoteWheelLayer(client, false, formats)
+        def cacheDir = temporaryFolder.newFolder('cache')
+
+        when: "another package is looked up while the first lookup waits for the server"
+        def slow = Thread.start { layer.fetch('Sphinx', '1.6.3', pythonExec, cacheDir) }
+        entered.await(10, TimeUnit.SECONDS)
+        def other = layer.fetch('six', '1.11.0', pythonExec, cacheDir)
+        def slowStillWaiting = slow.alive
+        answer.countDown()
+        slow.join()
+
+        then: "it is answered before the slow one"
+        !other.isPresent()
+        slowStillWaiting
+    }
+
+    private LayeredWheelCache layeredCache(String host, boolean push) {
+        def cacheMap = [
+            (WheelCacheLayer.PROJECT_LAYER): temporaryFolder.newFolder(host, 'project'),
+            (WheelCacheLayer.HOST_LAYER): temporaryFolder.newFolder(host, 'host'),
+        ]
+        def cache = new LayeredWheelCache(cacheMap, formats)
+        cache.setRemoteWheelCache(new HttpRemoteWheelCacheClient(cacheUri), push)
+        return cache
+    }
+}
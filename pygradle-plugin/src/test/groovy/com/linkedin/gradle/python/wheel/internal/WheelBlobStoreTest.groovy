@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.concurrent.TimeUnit
+
+class WheelBlobStoreTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    private File hostLayerCache
+    private WheelBlobStore store
+
+    void setup() {
+        hostLayerCache = temporaryFolder.newFolder('host-cache')
+        store = new WheelBlobStore(hostLayerCache)
+    }
+
+    def "stores the same content once"() {
+        setup: "two wheels with the same content"
+        def first = temporaryFolder.newFile('first.whl')
+        first.text = 'wheel'
+        def second = temporaryFolder.newFile('second.whl')
+        second.text = 'wheel'
+
+        when: "both are materialized"
+        store.materialize(first, new File(hostLayerCache, 'first.whl'))
+        store.materialize(second, new File(hostLayerCache, 'second.whl'))
+
+        then: "there is one blob named by the content digest"
+        def blobs = []
+        new File(hostLayerCache, WheelBlobStore.STORE_DIR_NAME).eachFileRecurse { if (it.file) blobs << it }
+        blobs*.name == [sha256('wheel')]
+        Files.isSameFile(new File(hostLayerCache, 'first.whl').toPath(), blobs[0].toPath())
+        Files.isSameFile(new File(hostLayerCache, 'second.whl').toPath(), blobs[0].toPath())
+    }
+
+    def "storing the content again leaves the wheels linked to it alone"() {
+        setup: "a wheel linked to its blob, not changed for a day"
+        def first = temporaryFolder.newFile('first.whl')
+        first.text = 'wheel'
+        def linked = new File(hostLayerCache, 'first.whl')
+        store.materialize(first, linked)
+        def dayAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)
+        linked.lastModified = dayAgo
+
+        when: "a wheel with the same content is stored"
+        def second = temporaryFolder.newFile('second.whl')
+        second.text = 'wheel'
+        store.materialize(second, new File(hostLayerCache, 'second.whl'))
+
+        then: "the linked wheel keeps its time, the use of the blob is marked next to it"
+        linked.lastModified() == dayAgo
+        def blob = new File(hostLayerCache, "${ WheelBlobStore.STORE_DIR_NAME }/${ sha256('wheel').substring(0, 2) }/${ sha256('wheel') }")
+        System.currentTimeMillis() - WheelBlobStore.usedPath(blob.toPath()).toFile().lastModified() < TimeUnit.HOURS.toMillis(1)
+    }
+
+    def "does not replace an existing file"() {
+        setup: "a wheel and a file in its place"
+        def wheel = temporaryFolder.newFile('wheel.whl')
+        wheel.text = 'wheel'
+        def target = new File(hostLayerCache, 'wheel.whl')
+        target.text = 'other'
+
+        when: "the wheel is materialized"
+        store.materialize(wheel, target)
+
+        then: "the file is left alone"
+        thrown(FileAlreadyExistsException)
+        target.text == 'other'
+    }
+
+    def "digests a file again when it changes"() {
+        setup: "a digested file"
+        def wheel = temporaryFolder.newFile('wheel.whl')
+        wheel.text = 'wheel'
+        wheel.lastModified = 1000L
+        WheelBlobStore.digest(wheel.toPath())
+
+        when: "the file is rewritten"
+        wheel.text = 'other'
+        wheel.lastModified = 2000L
+
+        then: "the new content is digested"
+        WheelBlobStore.digest(wheel.toPath()) == sha256('other')
+    }
+
+    private static String sha256(String text) {
+        return MessageDigest.getInstance('SHA-256').digest(text.bytes).encodeHex().toString()
+    }
+}
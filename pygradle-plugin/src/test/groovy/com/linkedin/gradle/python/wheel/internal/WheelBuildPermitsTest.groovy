@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import org.gradle.testfixtures.ProjectBuilder
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class WheelBuildPermitsTest extends Specification {
+
+    def "projects of the same build share the permits"() {
+        setup: "a build with two projects"
+        def root = new ProjectBuilder().build()
+        def child = new ProjectBuilder().withParent(root).build()
+
+        expect: "one budget of max workers for both"
+        WheelBuildPermits.forBuild(root.gradle).is(WheelBuildPermits.forBuild(child.gradle))
+        WheelBuildPermits.forBuild(root.gradle).size == root.gradle.startParameter.maxWorkerCount
+    }
+
+    def "builds wait for a permit when there is none left"() {
+        setup: "all the permits taken"
+        def permits = WheelBuildPermits.forBuild(new ProjectBuilder().build().gradle)
+        def taken = (1..permits.size).collect { permits.acquire() }
+        def acquired = new CountDownLatch(1)
+
+        when: "another build asks for a permit"
+        Thread.start {
+            permits.acquire().close()
+            acquired.countDown()
+        }
+
+        then: "it waits"
+        !acquired.await(200, TimeUnit.MILLISECONDS)
+
+        when: "a permit is released"
+        taken.each { it.close() }
+
+        then: "it gets the permit"
+        acquired.await(5, TimeUnit.SECONDS)
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import com.linkedin.gradle.python.util.PackageInfo
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class WheelBuildTimesTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "packages without history are ordered by size, largest first"() {
+        setup:
+        def buildTimes = new WheelBuildTimes(temporaryFolder.newFolder('cache'), '3.6')
+        def small = sdist('six-1.11.0.tar.gz', 10)
+        def large = sdist('numpy-1.16.0.tar.gz', 1000)
+
+        expect:
+        buildTimes.schedule([small, large]) == [large, small]
+    }
+
+    def "saved durations schedule the next build"() {
+        setup: "a small package that took long to build"
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def small = sdist('grpcio-1.20.0.tar.gz', 10)
+        def large = sdist('six-1.11.0.tar.gz', 1000)
+        def buildTimes = new WheelBuildTimes(cacheDir, '3.6')
+        buildTimes.record(small, 60000)
+        buildTimes.record(large, 100)
+        buildTimes.save()
+
+        when: "the next build schedules them"
+        def nextBuildTimes = new WheelBuildTimes(cacheDir, '3.6')
+
+        then: "the longest build goes first"
+        nextBuildTimes.getDuration(small).get() == 60000
+        nextBuildTimes.schedule([large, small]) == [small, large]
+
+        and: "the durations are kept per Python version"
+        !new WheelBuildTimes(cacheDir, '2.7').getDuration(small).isPresent()
+
+        and: "the cache directory itself holds no new files"
+        cacheDir.list() as List == [WheelBuildTimes.TIMINGS_DIR_NAME]
+    }
+
+    private PackageInfo sdist(String name, int size) {
+        def file = temporaryFolder.newFile(name)
+        file.bytes = new byte[size]
+        return PackageInfo.fromPath(file)
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributeView
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.TimeUnit
+
+class WheelCacheCleanerTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    private File hostLayerCache
+
+    void setup() {
+        hostLayerCache = temporaryFolder.newFolder('host-cache')
+    }
+
+    def "removes the least recently used wheels over the size budget"() {
+        setup: "three wheels used at different times"
+        def oldest = wheel('a-1.0-py2-none-any.whl', 10)
+        def older = wheel('b-1.0-py2-none-any.whl', 5)
+        def recent = wheel('c-1.0-py2-none-any.whl', 0)
+        def cleaner = new WheelCacheCleaner(hostLayerCache, Optional.of(30L), Optional.empty())
+
+        when: "the cache is cleaned"
+        def result = cleaner.clean().get()
+
+        then: "only the recently used wheel is kept"
+        !oldest.exists()
+        !older.exists()
+        recent.exists()
+        result.removedWheels == 2
+        result.remainingBytes == recent.length()
+    }
+
+    def "removes the wheels unused for longer than the age budget"() {
+        setup: "an old and a new wheel"
+        def old = wheel('a-1.0-py2-none-any.whl', 40)
+        def used = wheel('b-1.0-py2-none-any.whl', 20)
+
+        when: "the cache is cleaned"
+        new WheelCacheCleaner(hostLayerCache, Optional.empty(), Optional.of(30)).clean()
+
+        then: "the old wheel is removed"
+        !old.exists()
+        used.exists()
+    }
+
+    def "recorded access keeps the wheel"() {
+        setup: "an old wheel that is used again"
+        def used = wheel('a-1.0-py2-none-any.whl', 40)
+        WheelCacheCleaner.recordAccess(used)
+
+        when: "the cache is cleaned"
+        new WheelCacheCleaner(hostLayerCache, Optional.of(0L), Optional.of(30)).clean()
+
+        then: "the wheel is kept"
+        used.exists()
+    }
+
+    def "removes the blobs no wheel links to"() {
+        setup: "a stored wheel and a blob whose wheel was removed"
+        def store = new WheelBlobStore(hostLayerCache)
+        def source = temporaryFolder.newFile('a-1.0-py2-none-any.whl')
+        source.text = 'linked'
+        def linked = new File(hostLayerCache, source.name)
+        store.materialize(source, linked)
+        def orphan = new File(hostLayerCache, "${WheelBlobStore.STORE_DIR_NAME}/ab/abcdef")
+        orphan.parentFile.mkdirs()
+        orphan.text = 'orphan'
+        orphan.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)
+
+        when: "the cache is cleaned"
+        def result = new WheelCacheCleaner(hostLayerCache, Optional.of(1000L), Optional.empty()).clean().get()
+
+        then: "only the unlinked blob is removed"
+        !orphan.exists()
+        linked.text == 'linked'
+        result.removedBytes == 'orphan'.length()
+    }
+
+    def "keeps an unlinked blob that was just stored again"() {
+        setup: "an old blob no wheel links to, marked as stored a moment ago"
+        def blob = new File(hostLayerCache, "${WheelBlobStore.STORE_DIR_NAME}/ab/abcdef")
+        blob.parentFile.mkdirs()
+        blob.text = 'about to be linked'
+        blob.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)
+        WheelBlobStore.usedPath(blob.toPath()).toFile().text = ''
+
+        when: "the cache is cleaned"
+        new WheelCacheCleaner(hostLayerCache, Optional.of(1000L), Optional.empty()).clean()
+
+        then: "the blob is kept for the build linking to it"
+        blob.exists()
+    }
+
+    def "blobs holding a copy count toward the size budget"() {
+        setup: "a recent blob no wheel links to and an old wheel"
+        def blob = new File(hostLayerCache, "${WheelBlobStore.STORE_DIR_NAME}/ab/abcdef")
+        blob.parentFile.mkdirs()
+        blob.text = 'copied content'
+        def old = wheel('a-1.0-py2-none-any.whl', 10)
+
+        when: "the cache is cleaned with a budget the wheel alone fits in"
+        def result = new WheelCacheCleaner(hostLayerCache, Optional.of(old.length()), Optional.empty()).clean().get()
+
+        then: "the wheel is removed to make room for the blob"
+        !old.exists()
+        blob.exists()
+        result.remainingBytes == blob.length()
+    }
+
+    private File wheel(String name, int daysUnused) {
+        def file = new File(hostLayerCache, name)
+        file.text = name
+        def time = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysUnused))
+        Files.getFileAttributeView(file.toPath(), BasicFileAttributeView).setTimes(time, time, null)
+        return file
+    }
+}
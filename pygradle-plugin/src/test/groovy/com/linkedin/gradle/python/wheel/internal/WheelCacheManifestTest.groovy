@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import com.linkedin.gradle.python.wheel.AbiDetails
+import com.linkedin.gradle.python.wheel.FileBackedWheelCache
+import com.linkedin.gradle.python.wheel.PythonWheelDetails
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class WheelCacheManifestTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    private File wheelCache
+    private WheelCacheManifest manifest
+
+    void setup() {
+        wheelCache = temporaryFolder.newFolder('wheel-cache')
+        manifest = new WheelCacheManifest(wheelCache)
+    }
+
+    def "reads back the rewritten entries"() {
+        setup: "a wheel in the cache"
+        def wheel = new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.text = 'wheel'
+        manifest.create()
+
+        when: "the manifest is rewritten and read"
+        manifest.rewrite([entry(wheel)], 42L, true)
+        def snapshot = manifest.read().get()
+
+        then: "the entries and header round trip"
+        snapshot.lastModified == 42L
+        snapshot.settled
+        snapshot.entries.size() == 1
+        snapshot.entries[0].details.file == wheel
+        snapshot.entries[0].details.dist == 'Sphinx'
+        snapshot.entries[0].details.version == '1.6.3'
+        snapshot.entries[0].details.pythonTag == 'py2.py3'
+        snapshot.entries[0].size == 5L
+        snapshot.entries[0].current
+    }
+
+    def "append moves the directory modification time forward only when it matched"() {
+        setup: "an empty manifest"
+        manifest.create()
+        manifest.rewrite([], 42L, true)
+        def wheel = new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.createNewFile()
+
+        when: "a wheel is appended after a store over the recorded state"
+        manifest.append(entry(wheel), 42L, 43L)
+
+        then: "the manifest follows the store"
+        manifest.read().get().lastModified == 43L
+        manifest.read().get().entries.size() == 1
+
+        when: "a wheel is appended after a store over a different state"
+        manifest.append(entry(wheel), 42L, 44L)
+
+        then: "the manifest is left for the next reader to rewrite"
+        manifest.read().get().lastModified == 43L
+    }
+
+    def "ignores a torn record at the end"() {
+        setup: "a manifest with a partially written record"
+        def wheel = new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.createNewFile()
+        manifest.create()
+        manifest.rewrite([entry(wheel)], 42L, true)
+        new File(wheelCache, WheelCacheManifest.MANIFEST_FILE_NAME).append([0, 0, 0, 80, 1, 2, 3] as byte[])
+
+        expect: "the complete records are read"
+        manifest.read().get().entries.size() == 1
+    }
+
+    def "an append after a torn record is not lost"() {
+        setup: "a manifest with a partially written record"
+        def sphinx = new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl')
+        def six = new File(wheelCache, 'six-1.11.0-py2.py3-none-any.whl')
+        sphinx.createNewFile()
+        six.createNewFile()
+        manifest.create()
+        manifest.rewrite([entry(sphinx)], 42L, true)
+        new File(wheelCache, WheelCacheManifest.MANIFEST_FILE_NAME).append([0, 0, 0, 80, 1, 2, 3] as byte[])
+
+        when: "another wheel is appended"
+        manifest.append(entry(six), 42L, 43L)
+
+        then: "the torn record is replaced by the new one"
+        manifest.read().get().entries.size() == 2
+        manifest.read().get().settled
+    }
+
+    def "ignores a manifest with an invalid header"() {
+        setup: "a manifest that was never completed"
+        new File(wheelCache, WheelCacheManifest.MANIFEST_FILE_NAME).bytes = new byte[17]
+
+        expect: "nothing is read"
+        !manifest.read().isPresent()
+    }
+
+    def "a new cache finds wheels through the manifest of another"() {
+        setup: "a wheel found once"
+        def pythonExec = temporaryFolder.newFile('python')
+        def formats = new DefaultPythonAbiContainer()
+        formats.addSupportedAbi(new AbiDetails(pythonExec, 'py2', 'none', 'any'))
+        new File(wheelCache, 'Sphinx-1.6.3-py2.py3-none-any.whl').createNewFile()
+        new FileBackedWheelCache(wheelCache, formats).findWheel('Sphinx', '1.6.3', pythonExec)
+
+        expect: "the manifest describes the directory and another cache finds the wheel"
+        manifest.read().get().lastModified == wheelCache.lastModified()
+        new FileBackedWheelCache(wheelCache, formats).findWheel('Sphinx', '1.6.3', pythonExec).isPresent()
+    }
+
+    private static WheelCacheManifest.Entry entry(File wheel) {
+        return WheelCacheManifest.Entry.fromFile(PythonWheelDetails.fromFile(wheel).get())
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.gradle.python.wheel.internal
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.nio.file.FileAlreadyExistsException
+import java.util.concurrent.CopyOnWriteArrayList
+
+class WheelFilesTest extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder
+
+    def "copy leaves no temporary file behind"() {
+        setup: "a wheel to copy"
+        def wheel = temporaryFolder.newFile('Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.text = 'wheel'
+        def cacheDir = temporaryFolder.newFolder('cache')
+
+        when: "the wheel is copied"
+        WheelFiles.copy(wheel.toPath(), new File(cacheDir, wheel.name).toPath())
+
+        then: "only the wheel is in the cache"
+        cacheDir.list() as List == [wheel.name]
+        new File(cacheDir, wheel.name).text == 'wheel'
+    }
+
+    def "copy does not replace a published file"() {
+        setup: "a wheel already published"
+        def wheel = temporaryFolder.newFile('Sphinx-1.6.3-py2.py3-none-any.whl')
+        wheel.text = 'wheel'
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def published = new File(cacheDir, wheel.name)
+        published.text = 'published'
+
+        when: "the wheel is copied"
+        WheelFiles.copy(wheel.toPath(), published.toPath())
+
+        then: "the published file is left alone"
+        thrown(FileAlreadyExistsException)
+        published.text == 'published'
+        cacheDir.list() as List == [wheel.name]
+    }
+
+    def "build lock makes the second builder wait"() {
+        setup: "a lock held by the first builder"
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def events = new CopyOnWriteArrayList<String>()
+        def lock = WheelBuildLock.acquire(cacheDir, 'Sphinx', '1.6.3', '3.6')
+
+        when: "the second builder asks for the lock while the first one builds"
+        def second = Thread.start {
+            WheelBuildLock.acquire(cacheDir, 'sphinx', '1.6.3', '3.6').withCloseable { events << 'second' }
+        }
+        Thread.sleep(200)
+        events << 'first'
+        lock.close()
+        second.join()
+
+        then: "the second builder goes after the first one"
+        events == ['first', 'second']
+    }
+
+    def "build lock lets the builds for other Python versions go"() {
+        setup: "a lock held by the builder for Python 2.7"
+        def cacheDir = temporaryFolder.newFolder('cache')
+        def events = new CopyOnWriteArrayList<String>()
+        def lock = WheelBuildLock.acquire(cacheDir, 'grpcio', '1.20.0', '2.7')
+
+        when: "the builder for Python 3.6 asks for its lock"
+        def python3 = Thread.start {
+            WheelBuildLock.acquire(cacheDir, 'grpcio', '1.20.0', '3.6').withCloseable { events << 'python3' }
+        }
+        python3.join(5000)
+        events << 'python2'
+        lock.close()
+
+        then: "it does not wait for the other build"
+        events == ['python3', 'python2']
+    }
+}